@@ -0,0 +1,126 @@
+package me.jellysquid.mods.sodium.benchmark;
+
+import me.jellysquid.mods.sodium.client.gl.arena.BufferSegmentAllocator;
+import me.jellysquid.mods.sodium.client.gl.arena.GlBufferSegment;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a trace of allocations and frees against the segment allocator of a buffer arena, without needing a graphics
+ * context. The trace models the sections of a single region being rebuilt over and over again in a random order, with
+ * mesh sizes which change a little on every rebuild, which is what slowly fragments an arena during normal play.
+ * Scores are reported per operation, where each operation frees the previous mesh of a section and allocates a new one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArenaAllocatorBenchmark {
+    private static final int OPERATIONS = 100_000;
+
+    private static final int VERTEX_STRIDE = 20;
+    private static final int BYTES_PER_QUAD = VERTEX_STRIDE * 4;
+
+    /**
+     * The number of meshes which share the arena, which is one or three render passes for each of the 256 sections
+     * in a region.
+     */
+    @Param({ "256", "768" })
+    public int meshes;
+
+    private int[] sections;
+    private int[] sizes;
+
+    private int capacity;
+
+    private GlBufferSegment[] live;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(0xC0FFEE);
+
+        this.sections = new int[OPERATIONS];
+        this.sizes = new int[OPERATIONS];
+        this.live = new GlBufferSegment[this.meshes];
+
+        int[] current = new int[this.meshes];
+        long liveBytes = 0;
+        long maxLiveBytes = 0;
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int section = random.nextInt(this.meshes);
+            int size;
+
+            if (random.nextInt(32) == 0) {
+                // The section was unloaded or became empty
+                size = 0;
+            } else if (current[section] == 0) {
+                size = randomMeshSize(random);
+            } else {
+                // Most rebuilds only change a few quads of the previous mesh
+                int quads = (current[section] / BYTES_PER_QUAD) + random.nextInt(33) - 16;
+                size = Math.max(1, quads) * BYTES_PER_QUAD;
+            }
+
+            liveBytes += size - current[section];
+            maxLiveBytes = Math.max(maxLiveBytes, liveBytes);
+
+            current[section] = size;
+
+            this.sections[i] = section;
+            this.sizes[i] = size;
+        }
+
+        // Leave some headroom, as the arena would otherwise grow whenever the free space is too fragmented
+        this.capacity = (int) (maxLiveBytes + (maxLiveBytes / 4));
+    }
+
+    private static int randomMeshSize(Random random) {
+        // Mesh sizes roughly follow a log-normal distribution, with most sections containing a few hundred quads
+        double quads = Math.exp(Math.log(400.0) + (random.nextGaussian() * 1.2));
+
+        return (int) Math.max(1, Math.min(quads, 24576)) * BYTES_PER_QUAD;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int replayTrace() {
+        BufferSegmentAllocator allocator = new BufferSegmentAllocator(null, this.capacity);
+
+        GlBufferSegment[] live = this.live;
+        Arrays.fill(live, null);
+
+        int failures = 0;
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int section = this.sections[i];
+            GlBufferSegment segment = live[section];
+
+            if (segment != null) {
+                allocator.free(segment);
+            }
+
+            int size = this.sizes[i];
+
+            if (size > 0) {
+                segment = allocator.alloc(size);
+
+                // The arena would need to grow here, which is outside the scope of this benchmark
+                if (segment == null) {
+                    failures++;
+                }
+            } else {
+                segment = null;
+            }
+
+            live[section] = segment;
+        }
+
+        return failures + allocator.getUsed();
+    }
+}
@@ -0,0 +1,40 @@
+package me.jellysquid.mods.sodium.benchmark;
+
+import me.jellysquid.mods.sodium.client.SodiumClientMod;
+import me.jellysquid.mods.sodium.client.gui.SodiumGameOptions;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+
+import java.lang.reflect.Field;
+
+/**
+ * Sets up the minimal amount of global state needed to run parts of the chunk meshing pipeline outside of the game.
+ * Benchmarks are not started through Fabric Loader, so the mod initializer never runs and the options which the vertex
+ * writers and native buffers depend on must be installed by hand. The registries are bootstrapped so that benchmarks
+ * can use real blocks, which doesn't need a window or the game's resources.
+ */
+public class BenchmarkEnvironment {
+    private static boolean initialized;
+
+    public static synchronized void init() {
+        if (initialized) {
+            return;
+        }
+
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+
+        SodiumGameOptions options = new SodiumGameOptions();
+        options.setReadOnly();
+
+        try {
+            Field field = SodiumClientMod.class.getDeclaredField("CONFIG");
+            field.setAccessible(true);
+            field.set(null, options);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Failed to install benchmark options", e);
+        }
+
+        initialized = true;
+    }
+}
@@ -0,0 +1,108 @@
+package me.jellysquid.mods.sodium.benchmark;
+
+import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildBuffers;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ChunkModelVertexFormats;
+import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPassManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time and memory needed to mesh a single chunk section. Every operation corresponds to one section, so
+ * the reported scores are in nanoseconds per section and (with the GC profiler) bytes allocated per section. Blocks are
+ * rendered by the real block renderer, see {@link SyntheticSectionRenderer} for what is stubbed out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkMeshingBenchmark {
+    /**
+     * The full meshing path of a section, from writing vertices into the scratch buffers to creating the finished
+     * meshes for every render pass.
+     */
+    @Benchmark
+    public void buildSection(SectionState state, Blackhole bh) {
+        state.buffers.init(new ChunkRenderData.Builder(), 0);
+
+        bh.consume(state.renderer.render(state.buffers));
+
+        createMeshes(state.buffers, bh);
+    }
+
+    /**
+     * Only the rendering of blocks into the scratch buffers, including face culling, lighting and tinting.
+     */
+    @Benchmark
+    public void renderBlocks(SectionState state, Blackhole bh) {
+        state.buffers.init(new ChunkRenderData.Builder(), 0);
+
+        bh.consume(state.renderer.render(state.buffers));
+    }
+
+    /**
+     * Only the creation of the finished meshes from scratch buffers which were filled before the invocation.
+     */
+    @Benchmark
+    public void createMesh(FilledSectionState state, Blackhole bh) {
+        createMeshes(state.buffers, bh);
+    }
+
+    private static void createMeshes(ChunkBuildBuffers buffers, Blackhole bh) {
+        for (BlockRenderPass pass : BlockRenderPass.VALUES) {
+            ChunkMeshData mesh = buffers.createMesh(pass);
+
+            if (mesh != null) {
+                bh.consume(mesh);
+
+                mesh.getVertexData().delete();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SectionState {
+        @Param
+        public SyntheticSection.Scenario scenario;
+
+        @Param({"DEFAULT", "COMPACT"})
+        public String vertexFormat;
+
+        SyntheticSectionRenderer renderer;
+        ChunkBuildBuffers buffers;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            BenchmarkEnvironment.init();
+
+            this.renderer = new SyntheticSectionRenderer(new SyntheticWorld(new SyntheticSection(this.scenario)));
+
+            ChunkVertexType vertexType = switch (this.vertexFormat) {
+                case "COMPACT" -> ChunkModelVertexFormats.COMPACT;
+                default -> ChunkModelVertexFormats.DEFAULT;
+            };
+
+            this.buffers = new ChunkBuildBuffers(vertexType, BlockRenderPassManager.createDefaultMappings());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            this.buffers.destroy();
+        }
+    }
+
+    public static class FilledSectionState extends SectionState {
+        // Filling the buffers takes far longer than the timer resolution, so per-invocation setup is acceptable here
+        @Setup(Level.Invocation)
+        public void fill() {
+            this.buffers.init(new ChunkRenderData.Builder(), 0);
+            this.renderer.render(this.buffers);
+        }
+    }
+}
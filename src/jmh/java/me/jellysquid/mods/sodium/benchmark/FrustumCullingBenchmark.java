@@ -0,0 +1,128 @@
+package me.jellysquid.mods.sodium.benchmark;
+
+import me.jellysquid.mods.sodium.client.render.chunk.region.RenderRegionVisibility;
+import me.jellysquid.mods.sodium.client.util.math.AabbBatch;
+import me.jellysquid.mods.sodium.client.util.math.BatchFrustumCuller;
+import me.jellysquid.mods.sodium.client.util.math.FrustumExtended;
+import me.jellysquid.mods.sodium.client.util.math.ScalarFrustumCuller;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares testing the sections around the camera against the frustum one box at a time with the scalar and
+ * vectorized batch cullers. The render distances cover the default, a high, and the maximum render distance.
+ *
+ * The vectorized culler is only used when the incubator module is available, which the benchmark's JVM arguments
+ * take care of.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class FrustumCullingBenchmark {
+    private static final int WORLD_HEIGHT = 24;
+
+    @Param({ "12", "20", "32" })
+    public int renderDistance;
+
+    private FrustumExtended frustum;
+    private AabbBatch boxes;
+
+    private BatchFrustumCuller scalarCuller;
+    private BatchFrustumCuller vectorCuller;
+
+    private boolean[] visible;
+    private RenderRegionVisibility[] containment;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        float far = this.renderDistance * 16.0f;
+
+        this.frustum = new SyntheticFrustum(8.0f, 70.0f, 8.0f, 0.6f, (float) Math.toRadians(70.0D), 16.0f / 9.0f, far);
+        this.boxes = new AabbBatch();
+
+        for (int x = -this.renderDistance; x <= this.renderDistance; x++) {
+            for (int z = -this.renderDistance; z <= this.renderDistance; z++) {
+                for (int y = -4; y < WORLD_HEIGHT - 4; y++) {
+                    this.boxes.add(x * 16.0f, y * 16.0f, z * 16.0f, (x + 1) * 16.0f, (y + 1) * 16.0f, (z + 1) * 16.0f);
+                }
+            }
+        }
+
+        this.scalarCuller = new ScalarFrustumCuller();
+        this.scalarCuller.setFrustum(this.frustum);
+
+        this.vectorCuller = BatchFrustumCuller.create();
+        this.vectorCuller.setFrustum(this.frustum);
+
+        this.visible = new boolean[this.boxes.size()];
+        this.containment = new RenderRegionVisibility[this.boxes.size()];
+    }
+
+    @Benchmark
+    public boolean[] intersectionPerBox() {
+        FrustumExtended frustum = this.frustum;
+        boolean[] visible = this.visible;
+
+        int i = 0;
+
+        for (int x = -this.renderDistance; x <= this.renderDistance; x++) {
+            for (int z = -this.renderDistance; z <= this.renderDistance; z++) {
+                for (int y = -4; y < WORLD_HEIGHT - 4; y++) {
+                    visible[i++] = frustum.fastAabbTest(x * 16.0f, y * 16.0f, z * 16.0f, (x + 1) * 16.0f, (y + 1) * 16.0f, (z + 1) * 16.0f);
+                }
+            }
+        }
+
+        return visible;
+    }
+
+    @Benchmark
+    public boolean[] intersectionScalarBatch() {
+        this.scalarCuller.testIntersection(this.boxes, this.visible);
+
+        return this.visible;
+    }
+
+    @Benchmark
+    public boolean[] intersectionVectorBatch() {
+        this.vectorCuller.testIntersection(this.boxes, this.visible);
+
+        return this.visible;
+    }
+
+    @Benchmark
+    public RenderRegionVisibility[] containmentPerBox() {
+        FrustumExtended frustum = this.frustum;
+        RenderRegionVisibility[] containment = this.containment;
+
+        int i = 0;
+
+        for (int x = -this.renderDistance; x <= this.renderDistance; x++) {
+            for (int z = -this.renderDistance; z <= this.renderDistance; z++) {
+                for (int y = -4; y < WORLD_HEIGHT - 4; y++) {
+                    containment[i++] = frustum.aabbTest(x * 16.0f, y * 16.0f, z * 16.0f, (x + 1) * 16.0f, (y + 1) * 16.0f, (z + 1) * 16.0f);
+                }
+            }
+        }
+
+        return containment;
+    }
+
+    @Benchmark
+    public RenderRegionVisibility[] containmentScalarBatch() {
+        this.scalarCuller.testContainment(this.boxes, this.containment);
+
+        return this.containment;
+    }
+
+    @Benchmark
+    public RenderRegionVisibility[] containmentVectorBatch() {
+        this.vectorCuller.testContainment(this.boxes, this.containment);
+
+        return this.containment;
+    }
+}
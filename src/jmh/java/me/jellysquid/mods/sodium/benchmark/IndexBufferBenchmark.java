@@ -0,0 +1,53 @@
+package me.jellysquid.mods.sodium.benchmark;
+
+import me.jellysquid.mods.sodium.client.model.IndexBufferBuilder;
+import me.jellysquid.mods.sodium.client.model.quad.properties.ModelQuadWinding;
+import me.jellysquid.mods.sodium.client.util.ContentHasher;
+import org.openjdk.jmh.annotations.*;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of building the index buffer for one facing of a section's mesh. The quad counts cover a nearly
+ * empty section, a typical section, and the worst case of a section in which every block face is visible.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBufferBenchmark {
+    @Param({ "64", "2048", "24576" })
+    public int quads;
+
+    private IndexBufferBuilder builder;
+    private ByteBuffer output;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.builder = new IndexBufferBuilder(1024);
+        this.output = MemoryUtil.memAlloc(this.quads * ModelQuadWinding.CLOCKWISE.getIndices().length * 4);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MemoryUtil.memFree(this.output);
+    }
+
+    @Benchmark
+    public int buildIndices() {
+        IndexBufferBuilder builder = this.builder;
+        builder.start();
+
+        for (int i = 0; i < this.quads; i++) {
+            builder.add(i * 4, ModelQuadWinding.CLOCKWISE);
+        }
+
+        IndexBufferBuilder.Result result = builder.pop();
+
+        return result.writeTo(0, this.output, new ContentHasher());
+    }
+}
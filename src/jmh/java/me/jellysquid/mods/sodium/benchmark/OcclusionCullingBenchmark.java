@@ -0,0 +1,63 @@
+package me.jellysquid.mods.sodium.benchmark;
+
+import me.jellysquid.mods.sodium.client.render.chunk.occlusion.SoftwareOcclusionCuller;
+import me.jellysquid.mods.sodium.client.util.math.FrustumExtended;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full pass of the software occlusion culler over the sections around the camera, where a ridge of opaque
+ * sections a few chunks in front of the camera hides most of the terrain behind it. Sections are visited in order of
+ * their distance from the camera, as they would be by the graph search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OcclusionCullingBenchmark {
+    private static final int WORLD_HEIGHT = 16;
+    private static final int RIDGE_DISTANCE = 4;
+
+    @Param({ "12", "20", "32" })
+    public int renderDistance;
+
+    private FrustumExtended frustum;
+    private SoftwareOcclusionCuller culler;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.frustum = new SyntheticFrustum(8.0f, 70.0f, 8.0f, 0.0f, (float) Math.toRadians(70.0D), 16.0f / 9.0f,
+                this.renderDistance * 16.0f);
+        this.culler = new SoftwareOcclusionCuller();
+    }
+
+    @Benchmark
+    public int cullSections() {
+        SoftwareOcclusionCuller culler = this.culler;
+        culler.begin(this.frustum);
+
+        for (int dist = 0; dist <= this.renderDistance; dist++) {
+            for (int z = -dist; z <= dist; z++) {
+                // The camera looks along the positive x-axis, so only the sections in front of it are visited
+                int x = dist;
+
+                for (int y = 0; y < WORLD_HEIGHT; y++) {
+                    float minX = x * 16.0f, minY = y * 16.0f, minZ = z * 16.0f;
+
+                    if (culler.isOccluded(minX, minY, minZ, minX + 16.0f, minY + 16.0f, minZ + 16.0f)) {
+                        continue;
+                    }
+
+                    if (x == RIDGE_DISTANCE && y < 8) {
+                        culler.addOccluder(minX, minY, minZ, minX + 16.0f, minY + 16.0f, minZ + 16.0f);
+                    }
+                }
+            }
+        }
+
+        return culler.getCulledCount();
+    }
+}
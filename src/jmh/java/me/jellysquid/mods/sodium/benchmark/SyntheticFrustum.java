@@ -0,0 +1,140 @@
+package me.jellysquid.mods.sodium.benchmark;
+
+import me.jellysquid.mods.sodium.client.render.chunk.region.RenderRegionVisibility;
+import me.jellysquid.mods.sodium.client.util.math.FrustumExtended;
+
+/**
+ * A perspective frustum which is built directly from a camera position and direction, since the game's frustum can't
+ * be created outside of the game. The box tests are the same as those which are patched into the game's frustum.
+ */
+public class SyntheticFrustum implements FrustumExtended {
+    private final float xF, yF, zF;
+
+    private final float nxX, nxY, nxZ, nxW;
+    private final float pxX, pxY, pxZ, pxW;
+    private final float nyX, nyY, nyZ, nyW;
+    private final float pyX, pyY, pyZ, pyW;
+    private final float nzX, nzY, nzZ, nzW;
+    private final float pzX, pzY, pzZ, pzW;
+
+    private final float[] viewProjection;
+
+    /**
+     * @param yaw The horizontal angle the camera is looking in, in radians
+     * @param fov The vertical field of view, in radians
+     * @param aspect The ratio of the width of the view to its height
+     * @param far The distance to the far plane
+     */
+    public SyntheticFrustum(float x, float y, float z, float yaw, float fov, float aspect, float far) {
+        this.xF = x;
+        this.yF = y;
+        this.zF = z;
+
+        float fX = (float) Math.cos(yaw), fZ = (float) Math.sin(yaw);
+        float rX = -fZ, rZ = fX;
+
+        float vertical = fov / 2.0f;
+        float horizontal = (float) Math.atan(Math.tan(vertical) * aspect);
+
+        float hs = (float) Math.sin(horizontal), hc = (float) Math.cos(horizontal);
+        float vs = (float) Math.sin(vertical), vc = (float) Math.cos(vertical);
+
+        // Left and right
+        this.nxX = (rX * hc) + (fX * hs); this.nxY = 0.0f; this.nxZ = (rZ * hc) + (fZ * hs); this.nxW = 0.0f;
+        this.pxX = (-rX * hc) + (fX * hs); this.pxY = 0.0f; this.pxZ = (-rZ * hc) + (fZ * hs); this.pxW = 0.0f;
+
+        // Bottom and top
+        this.nyX = fX * vs; this.nyY = vc; this.nyZ = fZ * vs; this.nyW = 0.0f;
+        this.pyX = fX * vs; this.pyY = -vc; this.pyZ = fZ * vs; this.pyW = 0.0f;
+
+        // Near and far
+        this.nzX = fX; this.nzY = 0.0f; this.nzZ = fZ; this.nzW = 0.05f;
+        this.pzX = -fX; this.pzY = 0.0f; this.pzZ = -fZ; this.pzW = far;
+
+        float near = 0.05f;
+        float scaleY = 1.0f / (float) Math.tan(vertical);
+        float scaleX = scaleY / aspect;
+        float depthScale = (far + near) / (far - near);
+        float depthOffset = -(2.0f * far * near) / (far - near);
+
+        this.viewProjection = new float[] {
+                rX * scaleX, 0.0f, rZ * scaleX, 0.0f,
+                0.0f, scaleY, 0.0f, 0.0f,
+                fX * depthScale, 0.0f, fZ * depthScale, depthOffset,
+                fX, 0.0f, fZ, 0.0f
+        };
+    }
+
+    @Override
+    public void writePlanes(float[] planes) {
+        writePlane(planes, 0, this.nxX, this.nxY, this.nxZ, this.nxW);
+        writePlane(planes, 4, this.pxX, this.pxY, this.pxZ, this.pxW);
+        writePlane(planes, 8, this.nyX, this.nyY, this.nyZ, this.nyW);
+        writePlane(planes, 12, this.pyX, this.pyY, this.pyZ, this.pyW);
+        writePlane(planes, 16, this.nzX, this.nzY, this.nzZ, this.nzW);
+        writePlane(planes, 20, this.pzX, this.pzY, this.pzZ, this.pzW);
+
+        planes[24] = this.xF;
+        planes[25] = this.yF;
+        planes[26] = this.zF;
+    }
+
+    private static void writePlane(float[] planes, int offset, float x, float y, float z, float w) {
+        planes[offset] = x;
+        planes[offset + 1] = y;
+        planes[offset + 2] = z;
+        planes[offset + 3] = w;
+    }
+
+    @Override
+    public void writeViewProjection(float[] matrix) {
+        System.arraycopy(this.viewProjection, 0, matrix, 0, 16);
+    }
+
+    @Override
+    public boolean fastAabbTest(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        return this.isAnyCornerVisible(minX - this.xF, minY - this.yF, minZ - this.zF,
+                maxX - this.xF, maxY - this.yF, maxZ - this.zF);
+    }
+
+    private boolean isAnyCornerVisible(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        return this.nxX * (this.nxX < 0 ? minX : maxX) + this.nxY * (this.nxY < 0 ? minY : maxY) + this.nxZ * (this.nxZ < 0 ? minZ : maxZ) >= -this.nxW &&
+                this.pxX * (this.pxX < 0 ? minX : maxX) + this.pxY * (this.pxY < 0 ? minY : maxY) + this.pxZ * (this.pxZ < 0 ? minZ : maxZ) >= -this.pxW &&
+                this.nyX * (this.nyX < 0 ? minX : maxX) + this.nyY * (this.nyY < 0 ? minY : maxY) + this.nyZ * (this.nyZ < 0 ? minZ : maxZ) >= -this.nyW &&
+                this.pyX * (this.pyX < 0 ? minX : maxX) + this.pyY * (this.pyY < 0 ? minY : maxY) + this.pyZ * (this.pyZ < 0 ? minZ : maxZ) >= -this.pyW &&
+                this.nzX * (this.nzX < 0 ? minX : maxX) + this.nzY * (this.nzY < 0 ? minY : maxY) + this.nzZ * (this.nzZ < 0 ? minZ : maxZ) >= -this.nzW &&
+                this.pzX * (this.pzX < 0 ? minX : maxX) + this.pzY * (this.pzY < 0 ? minY : maxY) + this.pzZ * (this.pzZ < 0 ? minZ : maxZ) >= -this.pzW;
+    }
+
+    @Override
+    public RenderRegionVisibility aabbTest(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        return this.aabbTest0(minX - this.xF, minY - this.yF, minZ - this.zF,
+                maxX - this.xF, maxY - this.yF, maxZ - this.zF);
+    }
+
+    private RenderRegionVisibility aabbTest0(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        boolean inside = true;
+
+        if (nxX * (nxX < 0 ? minX : maxX) + nxY * (nxY < 0 ? minY : maxY) + nxZ * (nxZ < 0 ? minZ : maxZ) >= -nxW) {
+            inside &= nxX * (nxX < 0 ? maxX : minX) + nxY * (nxY < 0 ? maxY : minY) + nxZ * (nxZ < 0 ? maxZ : minZ) >= -nxW;
+            if (pxX * (pxX < 0 ? minX : maxX) + pxY * (pxY < 0 ? minY : maxY) + pxZ * (pxZ < 0 ? minZ : maxZ) >= -pxW) {
+                inside &= pxX * (pxX < 0 ? maxX : minX) + pxY * (pxY < 0 ? maxY : minY) + pxZ * (pxZ < 0 ? maxZ : minZ) >= -pxW;
+                if (nyX * (nyX < 0 ? minX : maxX) + nyY * (nyY < 0 ? minY : maxY) + nyZ * (nyZ < 0 ? minZ : maxZ) >= -nyW) {
+                    inside &= nyX * (nyX < 0 ? maxX : minX) + nyY * (nyY < 0 ? maxY : minY) + nyZ * (nyZ < 0 ? maxZ : minZ) >= -nyW;
+                    if (pyX * (pyX < 0 ? minX : maxX) + pyY * (pyY < 0 ? minY : maxY) + pyZ * (pyZ < 0 ? minZ : maxZ) >= -pyW) {
+                        inside &= pyX * (pyX < 0 ? maxX : minX) + pyY * (pyY < 0 ? maxY : minY) + pyZ * (pyZ < 0 ? maxZ : minZ) >= -pyW;
+                        if (nzX * (nzX < 0 ? minX : maxX) + nzY * (nzY < 0 ? minY : maxY) + nzZ * (nzZ < 0 ? minZ : maxZ) >= -nzW) {
+                            inside &= nzX * (nzX < 0 ? maxX : minX) + nzY * (nzY < 0 ? maxY : minY) + nzZ * (nzZ < 0 ? maxZ : minZ) >= -nzW;
+                            if (pzX * (pzX < 0 ? minX : maxX) + pzY * (pzY < 0 ? minY : maxY) + pzZ * (pzZ < 0 ? minZ : maxZ) >= -pzW) {
+                                inside &= pzX * (pzX < 0 ? maxX : minX) + pzY * (pzY < 0 ? maxY : minY) + pzZ * (pzZ < 0 ? maxZ : minZ) >= -pzW;
+                                return inside ? RenderRegionVisibility.FULLY_VISIBLE : RenderRegionVisibility.VISIBLE;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return RenderRegionVisibility.CULLED;
+    }
+}
@@ -0,0 +1,209 @@
+package me.jellysquid.mods.sodium.benchmark;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.client.render.model.BakedModel;
+import net.minecraft.client.render.model.BakedQuad;
+import net.minecraft.client.render.model.json.ModelOverrideList;
+import net.minecraft.client.render.model.json.ModelTransformation;
+import net.minecraft.client.texture.Sprite;
+import net.minecraft.util.math.Direction;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Stands in for the baked models of the blocks in a {@link SyntheticSection}, which would otherwise need the game's
+ * resources to be loaded. The models have the same shape as their vanilla counterparts, so the block renderer does the
+ * same culling, lighting and tinting work for them as it would in game.
+ */
+public class SyntheticModel implements BakedModel {
+    // The corners of each face of a unit cube, indexed by the ordinal of the face's direction
+    private static final float[][][] CUBE_FACES = {
+            { { 0.0f, 0.0f, 1.0f }, { 0.0f, 0.0f, 0.0f }, { 1.0f, 0.0f, 0.0f }, { 1.0f, 0.0f, 1.0f } },
+            { { 0.0f, 1.0f, 0.0f }, { 0.0f, 1.0f, 1.0f }, { 1.0f, 1.0f, 1.0f }, { 1.0f, 1.0f, 0.0f } },
+            { { 1.0f, 1.0f, 0.0f }, { 1.0f, 0.0f, 0.0f }, { 0.0f, 0.0f, 0.0f }, { 0.0f, 1.0f, 0.0f } },
+            { { 0.0f, 1.0f, 1.0f }, { 0.0f, 0.0f, 1.0f }, { 1.0f, 0.0f, 1.0f }, { 1.0f, 1.0f, 1.0f } },
+            { { 0.0f, 1.0f, 0.0f }, { 0.0f, 0.0f, 0.0f }, { 0.0f, 0.0f, 1.0f }, { 0.0f, 1.0f, 1.0f } },
+            { { 1.0f, 1.0f, 1.0f }, { 1.0f, 0.0f, 1.0f }, { 1.0f, 0.0f, 0.0f }, { 1.0f, 1.0f, 0.0f } }
+    };
+
+    private static final float[][][] CROSS_FACES = {
+            { { 0.0f, 1.0f, 0.0f }, { 0.0f, 0.0f, 0.0f }, { 1.0f, 0.0f, 1.0f }, { 1.0f, 1.0f, 1.0f } },
+            { { 1.0f, 1.0f, 1.0f }, { 1.0f, 0.0f, 1.0f }, { 0.0f, 0.0f, 0.0f }, { 0.0f, 1.0f, 0.0f } },
+            { { 0.0f, 1.0f, 1.0f }, { 0.0f, 0.0f, 1.0f }, { 1.0f, 0.0f, 0.0f }, { 1.0f, 1.0f, 0.0f } },
+            { { 1.0f, 1.0f, 0.0f }, { 1.0f, 0.0f, 0.0f }, { 0.0f, 0.0f, 1.0f }, { 0.0f, 1.0f, 1.0f } }
+    };
+
+    private static final Direction[] CROSS_DIRECTIONS = { Direction.SOUTH, Direction.NORTH, Direction.NORTH, Direction.SOUTH };
+
+    private static int nextSprite;
+
+    private final Map<Direction, List<BakedQuad>> culledQuads = new EnumMap<>(Direction.class);
+    private final List<BakedQuad> unculledQuads = new ArrayList<>();
+
+    private final Sprite sprite;
+    private final boolean ambientOcclusion;
+
+    private SyntheticModel(Sprite sprite, boolean ambientOcclusion) {
+        this.sprite = sprite;
+        this.ambientOcclusion = ambientOcclusion;
+    }
+
+    /**
+     * A full cube which every face of can be culled, such as stone or leaves.
+     */
+    public static SyntheticModel cube(int colorIndex) {
+        SyntheticModel model = new SyntheticModel(createSprite(), true);
+
+        for (Direction dir : Direction.values()) {
+            model.culledQuads.put(dir, List.of(new SyntheticQuad(CUBE_FACES[dir.ordinal()], dir, model.sprite, colorIndex)));
+        }
+
+        return model;
+    }
+
+    /**
+     * A block of the given height whose bottom face can be culled, such as a repeater or a carpet.
+     */
+    public static SyntheticModel slab(float height) {
+        SyntheticModel model = new SyntheticModel(createSprite(), true);
+
+        for (Direction dir : Direction.values()) {
+            float[][] corners = new float[4][];
+
+            for (int i = 0; i < 4; i++) {
+                float[] corner = CUBE_FACES[dir.ordinal()][i];
+                corners[i] = new float[] { corner[0], corner[1] * height, corner[2] };
+            }
+
+            SyntheticQuad quad = new SyntheticQuad(corners, dir, model.sprite, -1);
+
+            if (dir == Direction.DOWN) {
+                model.culledQuads.put(dir, List.of(quad));
+            } else {
+                model.unculledQuads.add(quad);
+            }
+        }
+
+        return model;
+    }
+
+    /**
+     * Two crossed planes which are never culled, such as grass or flowers.
+     */
+    public static SyntheticModel cross(int colorIndex) {
+        SyntheticModel model = new SyntheticModel(createSprite(), false);
+
+        for (int i = 0; i < CROSS_FACES.length; i++) {
+            model.unculledQuads.add(new SyntheticQuad(CROSS_FACES[i], CROSS_DIRECTIONS[i], model.sprite, colorIndex));
+        }
+
+        return model;
+    }
+
+    /**
+     * A single flat plane just above the bottom of the block which is never culled, such as redstone wire.
+     */
+    public static SyntheticModel flat(int colorIndex) {
+        SyntheticModel model = new SyntheticModel(createSprite(), false);
+
+        float[][] corners = new float[4][];
+
+        for (int i = 0; i < 4; i++) {
+            float[] corner = CUBE_FACES[Direction.UP.ordinal()][i];
+            corners[i] = new float[] { corner[0], 0.0625f, corner[2] };
+        }
+
+        model.unculledQuads.add(new SyntheticQuad(corners, Direction.UP, model.sprite, colorIndex));
+
+        return model;
+    }
+
+    /**
+     * Sprites can't be created without a texture atlas and native image, so a bare instance is allocated and the
+     * fields which the renderers read are filled in. Each sprite is given its own tile of a 16x16 atlas.
+     */
+    private static Sprite createSprite() {
+        int index = nextSprite++;
+
+        float minU = (index % 16) / 16.0f;
+        float minV = (index / 16) / 16.0f;
+
+        try {
+            Field unsafeField = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+
+            Object unsafe = unsafeField.get(null);
+            Sprite sprite = (Sprite) unsafe.getClass()
+                    .getMethod("allocateInstance", Class.class)
+                    .invoke(unsafe, Sprite.class);
+
+            setField(sprite, "width", 16);
+            setField(sprite, "height", 16);
+            setField(sprite, "uMin", minU);
+            setField(sprite, "uMax", minU + (1.0f / 16.0f));
+            setField(sprite, "vMin", minV);
+            setField(sprite, "vMax", minV + (1.0f / 16.0f));
+
+            return sprite;
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Failed to create synthetic sprite", e);
+        }
+    }
+
+    private static void setField(Sprite sprite, String name, Object value) throws ReflectiveOperationException {
+        Field field = Sprite.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(sprite, value);
+    }
+
+    @Override
+    public List<BakedQuad> getQuads(@Nullable BlockState state, @Nullable Direction face, Random random) {
+        if (face == null) {
+            return this.unculledQuads;
+        }
+
+        return this.culledQuads.getOrDefault(face, Collections.emptyList());
+    }
+
+    @Override
+    public boolean useAmbientOcclusion() {
+        return this.ambientOcclusion;
+    }
+
+    @Override
+    public boolean hasDepth() {
+        return true;
+    }
+
+    @Override
+    public boolean isSideLit() {
+        return true;
+    }
+
+    @Override
+    public boolean isBuiltin() {
+        return false;
+    }
+
+    @Override
+    public Sprite getSprite() {
+        return this.sprite;
+    }
+
+    @Override
+    public ModelTransformation getTransformation() {
+        return ModelTransformation.NONE;
+    }
+
+    @Override
+    public ModelOverrideList getOverrides() {
+        return ModelOverrideList.EMPTY;
+    }
+}
@@ -0,0 +1,100 @@
+package me.jellysquid.mods.sodium.benchmark;
+
+import me.jellysquid.mods.sodium.client.model.quad.ModelQuadView;
+import me.jellysquid.mods.sodium.client.model.quad.properties.ModelQuadFlags;
+import net.minecraft.client.render.model.BakedQuad;
+import net.minecraft.client.texture.Sprite;
+import net.minecraft.util.math.Direction;
+
+import static me.jellysquid.mods.sodium.client.util.ModelQuadUtil.*;
+
+/**
+ * A baked quad which is created directly from its corners rather than loaded from a model file. Benchmarks aren't
+ * started with mixins applied, so this implements {@link ModelQuadView} over the vanilla vertex data itself in the
+ * same way as the mixin does for every other baked quad.
+ */
+public class SyntheticQuad extends BakedQuad implements ModelQuadView {
+    private static final float[][] CORNER_UVS = { { 0.0f, 0.0f }, { 0.0f, 1.0f }, { 1.0f, 1.0f }, { 1.0f, 0.0f } };
+
+    private final int flags;
+
+    public SyntheticQuad(float[][] corners, Direction face, Sprite sprite, int colorIndex) {
+        super(createVertexData(corners, face, sprite), colorIndex, face, sprite, true);
+
+        this.flags = ModelQuadFlags.getQuadFlags(this);
+    }
+
+    private static int[] createVertexData(float[][] corners, Direction face, Sprite sprite) {
+        int[] data = new int[VERTEX_SIZE * 4];
+
+        for (int i = 0; i < 4; i++) {
+            int offset = vertexOffset(i);
+
+            data[offset + POSITION_INDEX] = Float.floatToRawIntBits(corners[i][0]);
+            data[offset + POSITION_INDEX + 1] = Float.floatToRawIntBits(corners[i][1]);
+            data[offset + POSITION_INDEX + 2] = Float.floatToRawIntBits(corners[i][2]);
+            data[offset + COLOR_INDEX] = 0xFFFFFFFF;
+            data[offset + TEXTURE_INDEX] = Float.floatToRawIntBits(sprite.getFrameU(CORNER_UVS[i][0] * 16.0D));
+            data[offset + TEXTURE_INDEX + 1] = Float.floatToRawIntBits(sprite.getFrameV(CORNER_UVS[i][1] * 16.0D));
+            data[offset + LIGHT_INDEX] = 0;
+            data[offset + NORMAL_INDEX] = getFacingNormal(face);
+        }
+
+        return data;
+    }
+
+    @Override
+    public float getX(int idx) {
+        return Float.intBitsToFloat(this.vertexData[vertexOffset(idx) + POSITION_INDEX]);
+    }
+
+    @Override
+    public float getY(int idx) {
+        return Float.intBitsToFloat(this.vertexData[vertexOffset(idx) + POSITION_INDEX + 1]);
+    }
+
+    @Override
+    public float getZ(int idx) {
+        return Float.intBitsToFloat(this.vertexData[vertexOffset(idx) + POSITION_INDEX + 2]);
+    }
+
+    @Override
+    public int getColor(int idx) {
+        return this.vertexData[vertexOffset(idx) + COLOR_INDEX];
+    }
+
+    @Override
+    public Sprite getSprite() {
+        return this.sprite;
+    }
+
+    @Override
+    public float getTexU(int idx) {
+        return Float.intBitsToFloat(this.vertexData[vertexOffset(idx) + TEXTURE_INDEX]);
+    }
+
+    @Override
+    public float getTexV(int idx) {
+        return Float.intBitsToFloat(this.vertexData[vertexOffset(idx) + TEXTURE_INDEX + 1]);
+    }
+
+    @Override
+    public int getFlags() {
+        return this.flags;
+    }
+
+    @Override
+    public int getLight(int idx) {
+        return this.vertexData[vertexOffset(idx) + LIGHT_INDEX];
+    }
+
+    @Override
+    public int getNormal(int idx) {
+        return this.vertexData[vertexOffset(idx) + NORMAL_INDEX];
+    }
+
+    @Override
+    public int getColorIndex() {
+        return this.colorIndex;
+    }
+}
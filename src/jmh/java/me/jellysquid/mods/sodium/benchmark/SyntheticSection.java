@@ -0,0 +1,147 @@
+package me.jellysquid.mods.sodium.benchmark;
+
+import net.minecraft.util.math.MathHelper;
+
+/**
+ * A synthetic chunk section along with a one block border of its neighbors, used as reproducible input for the meshing
+ * benchmarks. The contents are generated from a pure function of the block position, so every run (and every machine)
+ * will see exactly the same blocks.
+ */
+public class SyntheticSection {
+    public static final int SIZE = 16;
+
+    // The length of each axis including the border on both sides
+    private static final int LENGTH = SIZE + 2;
+
+    public static final byte AIR = 0;
+    public static final byte STONE = 1;
+    public static final byte LEAVES = 2;
+    public static final byte PLANT = 3;
+    public static final byte WATER = 4;
+    public static final byte REDSTONE_WIRE = 5;
+    public static final byte REPEATER = 6;
+
+    private final byte[] blocks = new byte[LENGTH * LENGTH * LENGTH];
+
+    public SyntheticSection(Scenario scenario) {
+        for (int y = -1; y <= SIZE; y++) {
+            for (int z = -1; z <= SIZE; z++) {
+                for (int x = -1; x <= SIZE; x++) {
+                    this.blocks[index(x, y, z)] = scenario.getBlock(x, y, z);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the block at the given position relative to the section's origin. Positions one block outside the
+     * section on any axis are valid and return the neighboring blocks.
+     */
+    public byte getBlock(int x, int y, int z) {
+        return this.blocks[index(x, y, z)];
+    }
+
+    private static int index(int x, int y, int z) {
+        return ((y + 1) * LENGTH * LENGTH) + ((z + 1) * LENGTH) + (x + 1);
+    }
+
+    private static int hash(int x, int y, int z) {
+        return (int) (MathHelper.hashCode(x, y, z) >>> 16);
+    }
+
+    public enum Scenario {
+        /**
+         * A section which is entirely filled with stone, producing no geometry. This measures the fixed cost of
+         * iterating over a section.
+         */
+        STONE {
+            @Override
+            byte getBlock(int x, int y, int z) {
+                return SyntheticSection.STONE;
+            }
+        },
+        /**
+         * Stone with winding tunnels carved through it, producing many exposed faces in every direction.
+         */
+        CAVES {
+            @Override
+            byte getBlock(int x, int y, int z) {
+                float density = MathHelper.sin(x * 0.31f) + MathHelper.sin((y * 0.43f) + (z * 0.17f)) +
+                        MathHelper.sin((z * 0.37f) + (x * 0.11f));
+
+                return density > 0.9f ? SyntheticSection.AIR : SyntheticSection.STONE;
+            }
+        },
+        /**
+         * A forest floor with tall grass and blobs of leaves, which is dominated by cutout geometry that is not
+         * culled against itself.
+         */
+        FOLIAGE {
+            @Override
+            byte getBlock(int x, int y, int z) {
+                if (y < 3) {
+                    return SyntheticSection.STONE;
+                }
+
+                int hash = hash(x, y, z);
+
+                if (y == 3) {
+                    return (hash & 3) == 0 ? SyntheticSection.PLANT : SyntheticSection.AIR;
+                }
+
+                // Spheres of leaves centered on an 8x8 grid, with random holes punched through them
+                int dx = Math.floorMod(x, 8) - 4;
+                int dy = y - 10;
+                int dz = Math.floorMod(z, 8) - 4;
+
+                if ((dx * dx) + (dy * dy) + (dz * dz) < 14 && (hash & 7) != 0) {
+                    return SyntheticSection.LEAVES;
+                }
+
+                return SyntheticSection.AIR;
+            }
+        },
+        /**
+         * An ocean with an uneven floor. Fluids aren't rendered by the benchmarks, so this measures the cost of
+         * culling the faces of blocks against the fluid around them.
+         */
+        WATER {
+            @Override
+            byte getBlock(int x, int y, int z) {
+                int floor = 2 + (hash(x, 0, z) & 3);
+
+                if (y < floor) {
+                    return SyntheticSection.STONE;
+                }
+
+                return y < 13 ? SyntheticSection.WATER : SyntheticSection.AIR;
+            }
+        },
+        /**
+         * A redstone-heavy base with lines of wire and repeaters on top of layers of stone, which is dominated by many
+         * small non-occluding models.
+         */
+        REDSTONE {
+            @Override
+            byte getBlock(int x, int y, int z) {
+                int layer = Math.floorMod(y, 4);
+
+                if (layer == 0) {
+                    return SyntheticSection.STONE;
+                }
+
+                if (layer == 1) {
+                    if (Math.floorMod(z, 2) != 0) {
+                        return SyntheticSection.AIR;
+                    }
+
+                    return Math.floorMod(x, 5) == 0 ? SyntheticSection.REPEATER : SyntheticSection.REDSTONE_WIRE;
+                }
+
+                return (hash(x, y, z) & 15) == 0 ? SyntheticSection.STONE : SyntheticSection.AIR;
+            }
+        };
+
+        abstract byte getBlock(int x, int y, int z);
+    }
+}
@@ -0,0 +1,93 @@
+package me.jellysquid.mods.sodium.benchmark;
+
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import me.jellysquid.mods.sodium.client.model.light.LightPipelineProvider;
+import me.jellysquid.mods.sodium.client.model.light.cache.HashLightDataCache;
+import me.jellysquid.mods.sodium.client.model.quad.ModelQuadColorProvider;
+import me.jellysquid.mods.sodium.client.model.quad.blender.FlatBiomeColorBlender;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildBuffers;
+import me.jellysquid.mods.sodium.client.render.pipeline.BlockRenderer;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockRenderType;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.RenderLayers;
+import net.minecraft.client.render.model.BakedModel;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.Map;
+
+/**
+ * Renders the blocks of a {@link SyntheticSection} with the real block renderer, in the same way as a chunk rebuild
+ * task renders the blocks of a world slice. Only the inputs which need the game's resources or a running client are
+ * replaced, with {@link SyntheticModel synthetic models} and a fixed tint for every colored quad.
+ *
+ * Fluids are not rendered, as the fluid renderer needs the sprites of the block atlas and the fluid handlers which are
+ * registered by Fabric API once the client has started.
+ */
+public class SyntheticSectionRenderer {
+    private static final int TINT_COLOR = 0xFF48B518;
+
+    private static final ModelQuadColorProvider<BlockState> TINT = (state, world, pos, tintIndex) -> TINT_COLOR;
+
+    private final Map<Block, BakedModel> models = new Reference2ObjectOpenHashMap<>();
+
+    private final HashLightDataCache lightCache;
+    private final BlockRenderer blockRenderer;
+
+    private final SyntheticWorld world;
+
+    public SyntheticSectionRenderer(SyntheticWorld world) {
+        this.world = world;
+
+        this.models.put(Blocks.STONE, SyntheticModel.cube(-1));
+        this.models.put(Blocks.OAK_LEAVES, SyntheticModel.cube(0));
+        this.models.put(Blocks.GRASS, SyntheticModel.cross(0));
+        this.models.put(Blocks.REDSTONE_WIRE, SyntheticModel.flat(0));
+        this.models.put(Blocks.REPEATER, SyntheticModel.slab(0.125f));
+
+        this.lightCache = new HashLightDataCache(world);
+        this.blockRenderer = new BlockRenderer(state -> TINT, new LightPipelineProvider(this.lightCache),
+                new FlatBiomeColorBlender(), true);
+    }
+
+    /**
+     * Renders all the blocks in the section into the given buffers, which must have already been initialized.
+     * @return The number of blocks which were rendered
+     */
+    public int render(ChunkBuildBuffers buffers) {
+        // Light data is only cached for the duration of a single build in game
+        this.lightCache.clearCache();
+
+        BlockPos.Mutable blockPos = new BlockPos.Mutable();
+
+        int rendered = 0;
+
+        for (int y = 0; y < SyntheticSection.SIZE; y++) {
+            for (int z = 0; z < SyntheticSection.SIZE; z++) {
+                for (int x = 0; x < SyntheticSection.SIZE; x++) {
+                    BlockState blockState = this.world.getBlockState(x, y, z);
+
+                    if (blockState.isAir() || blockState.getRenderType() != BlockRenderType.MODEL) {
+                        continue;
+                    }
+
+                    blockPos.set(x, y, z);
+
+                    RenderLayer layer = RenderLayers.getBlockLayer(blockState);
+                    BakedModel model = this.models.get(blockState.getBlock());
+
+                    long seed = blockState.getRenderingSeed(blockPos);
+
+                    // The section's origin is at the origin of the world, so the block's position is also its offset
+                    if (this.blockRenderer.renderModel(this.world, blockState, blockPos, blockPos, model, buffers.get(layer), true, seed)) {
+                        rendered++;
+                    }
+                }
+            }
+        }
+
+        return rendered;
+    }
+}
@@ -0,0 +1,106 @@
+package me.jellysquid.mods.sodium.benchmark;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.LeavesBlock;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.world.BlockRenderView;
+import net.minecraft.world.LightType;
+import net.minecraft.world.biome.ColorResolver;
+import net.minecraft.world.chunk.light.LightingProvider;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A view of a {@link SyntheticSection} and its border as real block states, which can be passed to the block renderer
+ * in place of a world slice. Everything outside the section and its border is air. There is no lighting engine, so the
+ * sky light is always at full brightness and there is no block light apart from what blocks emit themselves.
+ */
+public class SyntheticWorld implements BlockRenderView {
+    private static final int FOLIAGE_COLOR = 0xFF48B518;
+
+    private final BlockState[] states;
+    private final SyntheticSection section;
+
+    public SyntheticWorld(SyntheticSection section) {
+        this.section = section;
+        this.states = new BlockState[] {
+                Blocks.AIR.getDefaultState(),
+                Blocks.STONE.getDefaultState(),
+                Blocks.OAK_LEAVES.getDefaultState().with(LeavesBlock.PERSISTENT, true),
+                Blocks.GRASS.getDefaultState(),
+                Blocks.WATER.getDefaultState(),
+                Blocks.REDSTONE_WIRE.getDefaultState(),
+                Blocks.REPEATER.getDefaultState()
+        };
+    }
+
+    @Override
+    public BlockState getBlockState(BlockPos pos) {
+        return this.getBlockState(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public BlockState getBlockState(int x, int y, int z) {
+        if (!isInside(x) || !isInside(y) || !isInside(z)) {
+            return this.states[SyntheticSection.AIR];
+        }
+
+        return this.states[this.section.getBlock(x, y, z)];
+    }
+
+    private static boolean isInside(int coord) {
+        return coord >= -1 && coord <= SyntheticSection.SIZE;
+    }
+
+    @Override
+    public FluidState getFluidState(BlockPos pos) {
+        return this.getBlockState(pos).getFluidState();
+    }
+
+    @Nullable
+    @Override
+    public BlockEntity getBlockEntity(BlockPos pos) {
+        return null;
+    }
+
+    @Override
+    public float getBrightness(Direction direction, boolean shaded) {
+        if (!shaded) {
+            return 1.0f;
+        }
+
+        return switch (direction) {
+            case DOWN -> 0.5f;
+            case UP -> 1.0f;
+            case NORTH, SOUTH -> 0.8f;
+            case WEST, EAST -> 0.6f;
+        };
+    }
+
+    @Override
+    public LightingProvider getLightingProvider() {
+        throw new UnsupportedOperationException("Synthetic worlds have no lighting engine");
+    }
+
+    @Override
+    public int getLightLevel(LightType type, BlockPos pos) {
+        return type == LightType.SKY ? 15 : 0;
+    }
+
+    @Override
+    public int getColor(BlockPos pos, ColorResolver resolver) {
+        return FOLIAGE_COLOR;
+    }
+
+    @Override
+    public int getHeight() {
+        return 384;
+    }
+
+    @Override
+    public int getBottomY() {
+        return -64;
+    }
+}
@@ -7,7 +7,6 @@ import me.jellysquid.mods.sodium.client.gl.buffer.GlMutableBuffer;
 import me.jellysquid.mods.sodium.client.gl.device.CommandList;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -17,26 +16,30 @@ import java.util.stream.Stream;
 // TODO: handle alignment
 // TODO: handle element vs pointers
 public class AsyncBufferArena implements GlBufferArena {
-    static final boolean CHECK_ASSERTIONS = false;
-
     private static final GlBufferUsage BUFFER_USAGE = GlBufferUsage.STATIC_DRAW;
 
+    // The arena is shrunk once less than 1/SHRINK_RATIO of it has been used for SHRINK_DELAY frames in a row
+    private static final int SHRINK_RATIO = 4;
+    private static final int SHRINK_DELAY = 600;
+
+    // When the arena is forced to shrink, it is left with 1/FORCED_SHRINK_HEADROOM of its used space free
+    private static final int FORCED_SHRINK_HEADROOM = 8;
+
+    private final int initialCapacity;
     private final int resizeIncrement;
 
+    private int lowUsageFrames;
+
     private final StagingBuffer stagingBuffer;
     private GlMutableBuffer arenaBuffer;
 
-    private GlBufferSegment head;
-
-    private int capacity;
-    private int used;
+    private final BufferSegmentAllocator allocator;
 
     public AsyncBufferArena(CommandList commands, int initialCapacity, StagingBuffer stagingBuffer) {
+        this.initialCapacity = initialCapacity;
         this.resizeIncrement = initialCapacity / 16;
-        this.capacity = initialCapacity;
 
-        this.head = new GlBufferSegment(this, 0, initialCapacity);
-        this.head.setFree(true);
+        this.allocator = new BufferSegmentAllocator(this, initialCapacity);
 
         this.arenaBuffer = commands.createMutableBuffer();
 
@@ -46,74 +49,9 @@ public class AsyncBufferArena implements GlBufferArena {
     }
 
     private void resize(CommandList commandList, int newCapacity) {
-        if (this.used > newCapacity) {
-            throw new UnsupportedOperationException("New capacity must be larger than used size");
-        }
-
-        this.checkAssertions();
-
-        int freeBytes = newCapacity - this.used;
-
-        List<GlBufferSegment> usedSegments = this.getUsedSegments();
-        List<PendingBufferCopyCommand> pendingCopies = this.buildTransferList(usedSegments, freeBytes);
+        List<PendingBufferCopyCommand> pendingCopies = this.allocator.compact(newCapacity);
 
         this.transferSegments(commandList, pendingCopies, newCapacity);
-
-        this.head = new GlBufferSegment(this, 0, freeBytes);
-        this.head.setFree(true);
-
-        if (usedSegments.isEmpty()) {
-            this.head.setNext(null);
-        } else {
-            this.head.setNext(usedSegments.get(0));
-            this.head.getNext()
-                    .setPrev(this.head);
-        }
-
-        this.checkAssertions();
-    }
-
-    private List<PendingBufferCopyCommand> buildTransferList(List<GlBufferSegment> usedSegments, int base) {
-        List<PendingBufferCopyCommand> pendingCopies = new ArrayList<>();
-        PendingBufferCopyCommand currentCopyCommand = null;
-
-        int writeOffset = base;
-
-        for (int i = 0; i < usedSegments.size(); i++) {
-            GlBufferSegment s = usedSegments.get(i);
-
-            if (currentCopyCommand == null || currentCopyCommand.writeOffset + currentCopyCommand.length != s.getOffset()) {
-                if (currentCopyCommand != null) {
-                    pendingCopies.add(currentCopyCommand);
-                }
-
-                currentCopyCommand = new PendingBufferCopyCommand(s.getOffset(), writeOffset, s.getLength());
-            } else {
-                currentCopyCommand.length += s.getLength();
-            }
-
-            s.setOffset(writeOffset);
-
-            if (i + 1 < usedSegments.size()) {
-                s.setNext(usedSegments.get(i + 1));
-            } else {
-                s.setNext(null);
-            }
-
-            if (i - 1 < 0) {
-                s.setPrev(null);
-            } else {
-                s.setPrev(usedSegments.get(i - 1));
-            }
-
-            writeOffset += s.getLength();
-        }
-
-        if (currentCopyCommand != null) {
-            pendingCopies.add(currentCopyCommand);
-        }
-
-        return pendingCopies;
     }
 
     private void transferSegments(CommandList commandList, Collection<PendingBufferCopyCommand> list, int capacity) {
@@ -133,130 +71,107 @@ public class AsyncBufferArena implements GlBufferArena {
         commandList.deleteBuffer(srcBufferObj);
 
         this.arenaBuffer = dstBufferObj;
-        this.capacity = capacity;
-    }
-
-    private ArrayList<GlBufferSegment> getUsedSegments() {
-        ArrayList<GlBufferSegment> used = new ArrayList<>();
-        GlBufferSegment seg = this.head;
-
-        while (seg != null) {
-            GlBufferSegment next = seg.getNext();
-
-            if (!seg.isFree()) {
-                used.add(seg);
-            }
-
-            seg = next;
-        }
-
-        return used;
     }
 
     @Override
     public int getDeviceUsedMemory() {
-        return this.used;
+        return this.allocator.getUsed();
     }
 
     @Override
     public int getDeviceAllocatedMemory() {
-        return this.capacity;
+        return this.allocator.getCapacity();
     }
 
-    private GlBufferSegment alloc(int size) {
-        GlBufferSegment a = this.findFree(size);
-
-        if (a == null) {
-            return null;
-        }
-
-        GlBufferSegment result;
+    @Override
+    public int getDeviceFragmentedMemory() {
+        return this.allocator.getFragmentedBytes();
+    }
 
-        if (a.getLength() == size) {
-            a.setFree(false);
+    @Override
+    public void free(GlBufferSegment entry) {
+        this.allocator.free(entry);
+    }
 
-            result = a;
-        } else {
-            GlBufferSegment b = new GlBufferSegment(this, a.getEnd() - size, size);
-            b.setNext(a.getNext());
-            b.setPrev(a);
+    @Override
+    public void delete(CommandList commands) {
+        commands.deleteBuffer(this.arenaBuffer);
+    }
 
-            if (b.getNext() != null) {
-                b.getNext()
-                        .setPrev(b);
-            }
+    @Override
+    public boolean isEmpty() {
+        return this.allocator.getUsed() <= 0;
+    }
 
-            a.setLength(a.getLength() - size);
-            a.setNext(b);
+    @Override
+    public GlBuffer getBufferObject() {
+        return this.arenaBuffer;
+    }
 
-            result = b;
+    @Override
+    public int defragment(CommandList commandList, int maxBytes) {
+        if (!this.allocator.needsDefragment()) {
+            return 0;
         }
 
-        this.used += result.getLength();
-        this.checkAssertions();
+        int moved = 0;
 
-        return result;
-    }
-
-    private GlBufferSegment findFree(int size) {
-        GlBufferSegment entry = this.head;
-        GlBufferSegment best = null;
-
-        while (entry != null) {
-            if (entry.isFree()) {
-                if (entry.getLength() == size) {
-                    return entry;
-                } else if (entry.getLength() >= size) {
-                    if (best == null || best.getLength() > entry.getLength()) {
-                        best = entry;
-                    }
-                }
-            }
+        // Segments are moved within the same buffer, so existing tessellations remain valid
+        for (PendingBufferCopyCommand cmd : this.allocator.defragment(maxBytes)) {
+            commandList.copyBufferSubData(this.arenaBuffer, this.arenaBuffer,
+                    cmd.readOffset,
+                    cmd.writeOffset,
+                    cmd.length);
 
-            entry = entry.getNext();
+            moved += cmd.length;
         }
 
-        return best;
+        return moved;
     }
 
     @Override
-    public void free(GlBufferSegment entry) {
-        if (entry.isFree()) {
-            throw new IllegalStateException("Already freed");
-        }
+    public boolean shrink(CommandList commandList, boolean force) {
+        int capacity = this.allocator.getCapacity();
+        int used = this.allocator.getUsed();
 
-        entry.setFree(true);
+        if (force) {
+            this.lowUsageFrames = 0;
 
-        this.used -= entry.getLength();
+            // Only leave a little room for the arena to grow, as it is being shrunk to release memory
+            return this.shrinkTo(commandList, roundUp(used + (used / FORCED_SHRINK_HEADROOM), this.resizeIncrement));
+        }
 
-        GlBufferSegment next = entry.getNext();
+        if (capacity <= this.initialCapacity || used * SHRINK_RATIO >= capacity) {
+            this.lowUsageFrames = 0;
 
-        if (next != null && next.isFree()) {
-            entry.mergeInto(next);
+            return false;
         }
 
-        GlBufferSegment prev = entry.getPrev();
-
-        if (prev != null && prev.isFree()) {
-            prev.mergeInto(entry);
+        if (++this.lowUsageFrames < SHRINK_DELAY) {
+            return false;
         }
 
-        this.checkAssertions();
-    }
+        this.lowUsageFrames = 0;
 
-    @Override
-    public void delete(CommandList commands) {
-        commands.deleteBuffer(this.arenaBuffer);
+        // Leave enough room for the arena to fill up again a bit without immediately needing to grow, keeping the
+        // capacity a multiple of the resize increment so that it stays aligned to the size of its elements
+        return this.shrinkTo(commandList, roundUp(used * 2, this.resizeIncrement));
     }
 
-    @Override
-    public boolean isEmpty() {
-        return this.used <= 0;
+    private boolean shrinkTo(CommandList commandList, int capacity) {
+        int newCapacity = Math.max(this.initialCapacity, capacity);
+
+        if (newCapacity >= this.allocator.getCapacity()) {
+            return false;
+        }
+
+        this.resize(commandList, newCapacity);
+
+        return true;
     }
 
-    @Override
-    public GlBuffer getBufferObject() {
-        return this.arenaBuffer;
+    private static int roundUp(int value, int multiple) {
+        return ((value + multiple - 1) / multiple) * multiple;
     }
 
     @Override
@@ -306,7 +221,7 @@ public class AsyncBufferArena implements GlBufferArena {
 
         int elementCount = data.remaining();
 
-        GlBufferSegment dst = this.alloc(elementCount);
+        GlBufferSegment dst = this.allocator.alloc(elementCount);
 
         if (dst == null) {
             return false;
@@ -324,77 +239,10 @@ public class AsyncBufferArena implements GlBufferArena {
         // Re-sizing the arena results in a compaction, so any free space in the arena will be
         // made into one contiguous segment, joined with the new segment of free space we're asking for
         // We calculate the number of free elements in our arena and then subtract that from the total requested
-        int elementsNeeded = elementCount - (this.capacity - this.used);
+        int capacity = this.allocator.getCapacity();
+        int elementsNeeded = elementCount - (capacity - this.allocator.getUsed());
 
         // Try to allocate some extra buffer space unless this is an unusually large allocation
-        this.resize(commandList, Math.max(this.capacity + this.resizeIncrement, this.capacity + elementsNeeded));
+        this.resize(commandList, Math.max(capacity + this.resizeIncrement, capacity + elementsNeeded));
     }
-
-    private void checkAssertions() {
-        if (CHECK_ASSERTIONS) {
-            this.checkAssertions0();
-        }
-    }
-
-    private void checkAssertions0() {
-        GlBufferSegment seg = this.head;
-        int used = 0;
-
-        while (seg != null) {
-            if (seg.getOffset() < 0) {
-                throw new IllegalStateException("segment.start < 0: out of bounds");
-            } else if (seg.getEnd() > this.capacity) {
-                throw new IllegalStateException("segment.end > arena.capacity: out of bounds");
-            }
-
-            if (!seg.isFree()) {
-                used += seg.getLength();
-            }
-
-            GlBufferSegment next = seg.getNext();
-
-            if (next != null) {
-                if (next.getOffset() < seg.getEnd()) {
-                    throw new IllegalStateException("segment.next.start < segment.end: overlapping segments (corrupted)");
-                } else if (next.getOffset() > seg.getEnd()) {
-                    throw new IllegalStateException("segment.next.start > segment.end: not truly connected (sparsity error)");
-                }
-
-                if (next.isFree() && next.getNext() != null) {
-                    if (next.getNext().isFree()) {
-                        throw new IllegalStateException("segment.free && segment.next.free: not merged consecutive segments");
-                    }
-                }
-            }
-
-            GlBufferSegment prev = seg.getPrev();
-
-            if (prev != null) {
-                if (prev.getEnd() > seg.getOffset()) {
-                    throw new IllegalStateException("segment.prev.end > segment.start: overlapping segments (corrupted)");
-                } else if (prev.getEnd() < seg.getOffset()) {
-                    throw new IllegalStateException("segment.prev.end < segment.start: not truly connected (sparsity error)");
-                }
-
-                if (prev.isFree() && prev.getPrev() != null) {
-                    if (prev.getPrev().isFree()) {
-                        throw new IllegalStateException("segment.free && segment.prev.free: not merged consecutive segments");
-                    }
-                }
-            }
-
-            seg = next;
-        }
-
-        if (this.used < 0) {
-            throw new IllegalStateException("arena.used < 0: failure to track");
-        } else if (this.used > this.capacity) {
-            throw new IllegalStateException("arena.used > arena.capacity: failure to track");
-        }
-
-        if (this.used != used) {
-            throw new IllegalStateException("arena.used is invalid");
-        }
-    }
-
 }
@@ -0,0 +1,604 @@
+package me.jellysquid.mods.sodium.client.gl.arena;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manages the segments of a buffer arena without touching any graphics state, which allows the allocator to be used
+ * (and measured) on its own.
+ *
+ * All segments form a linked list ordered by their offset, which is used to merge free neighbours. Free segments are
+ * additionally kept in segregated lists by size (a two-level scheme, similar to TLSF), so finding a free segment for an
+ * allocation takes constant time regardless of how fragmented the arena has become. The first level of bins splits
+ * sizes by powers of two, and the second level splits each power of two linearly into {@link #SL_COUNT} ranges.
+ */
+public class BufferSegmentAllocator {
+    static final boolean CHECK_ASSERTIONS = false;
+
+    private static final int SL_BITS = 3;
+    private static final int SL_COUNT = 1 << SL_BITS;
+
+    private static final int FL_COUNT = Integer.SIZE - SL_BITS;
+
+    // The largest number of copies which can be used to slide a segment into the gap before it. Sliding a segment into
+    // a gap which is smaller than itself needs to be split into copies no larger than the gap to avoid overlapping
+    private static final int MAX_COPIES_PER_MOVE = 16;
+
+    private final GlBufferArena arena;
+
+    // The heads of the free lists for each bin
+    private final GlBufferSegment[] bins = new GlBufferSegment[FL_COUNT * SL_COUNT];
+
+    // The bit for each first level is set if any of its bins are non-empty
+    private int firstLevelMask;
+
+    // The bit for each second level bin is set if the bin is non-empty
+    private final int[] secondLevelMasks = new int[FL_COUNT];
+
+    private GlBufferSegment head;
+    private GlBufferSegment tail;
+
+    private int capacity;
+    private int used;
+
+    // True if the last defragmentation pass couldn't move anything, cleared whenever the segments change
+    private boolean defragmentStalled;
+
+    /**
+     * @param arena The arena which allocated segments belong to, or null if they will only ever be freed through
+     *              this allocator
+     * @param capacity The initial size of the arena in bytes
+     */
+    public BufferSegmentAllocator(GlBufferArena arena, int capacity) {
+        this.arena = arena;
+        this.capacity = capacity;
+
+        this.head = new GlBufferSegment(arena, 0, capacity);
+        this.head.setFree(true);
+        this.tail = this.head;
+
+        this.insertFree(this.head);
+    }
+
+    /**
+     * Allocates a segment of exactly the given size from the free space of the arena.
+     *
+     * @return The allocated segment, or null if there is no free segment large enough
+     */
+    public GlBufferSegment alloc(int size) {
+        GlBufferSegment a = this.findFree(size);
+
+        if (a == null) {
+            return null;
+        }
+
+        this.removeFree(a);
+
+        GlBufferSegment result;
+
+        if (a.getLength() == size) {
+            a.setFree(false);
+
+            result = a;
+        } else {
+            // Allocate from the start of the free segment, so that free space tends to collect at the end of the arena
+            GlBufferSegment b = new GlBufferSegment(this.arena, a.getOffset(), size);
+            b.setPrev(a.getPrev());
+            b.setNext(a);
+
+            if (b.getPrev() != null) {
+                b.getPrev()
+                        .setNext(b);
+            } else {
+                this.head = b;
+            }
+
+            a.setPrev(b);
+            a.setOffset(a.getOffset() + size);
+            a.setLength(a.getLength() - size);
+
+            // The remainder is smaller now, so it likely belongs in another bin
+            this.insertFree(a);
+
+            result = b;
+        }
+
+        this.used += result.getLength();
+        this.defragmentStalled = false;
+
+        this.checkAssertions();
+
+        return result;
+    }
+
+    public void free(GlBufferSegment entry) {
+        if (entry.isFree()) {
+            throw new IllegalStateException("Already freed");
+        }
+
+        entry.setFree(true);
+
+        this.used -= entry.getLength();
+
+        GlBufferSegment next = entry.getNext();
+
+        if (next != null && next.isFree()) {
+            this.removeFree(next);
+
+            this.merge(entry, next);
+        }
+
+        GlBufferSegment prev = entry.getPrev();
+
+        if (prev != null && prev.isFree()) {
+            this.removeFree(prev);
+
+            this.merge(prev, entry);
+            entry = prev;
+        }
+
+        this.insertFree(entry);
+        this.defragmentStalled = false;
+
+        this.checkAssertions();
+    }
+
+    private void merge(GlBufferSegment segment, GlBufferSegment next) {
+        segment.mergeInto(next);
+
+        if (this.tail == next) {
+            this.tail = segment;
+        }
+    }
+
+    /**
+     * Closes the gaps between used segments by sliding used segments towards the start of the arena, moving at most
+     * the given number of bytes. The offsets of all moved segments are updated immediately, so the caller must perform
+     * the returned copies (in order) within the arena's buffer before the segments are used again.
+     *
+     * At least one segment is moved if possible, even if it is larger than the limit, so that progress is always made.
+     * Gaps which are very small compared to the segment after them are skipped, and will only be reclaimed when the
+     * arena is next compacted as a whole.
+     *
+     * @return The copies which need to be made within the buffer to move the contents of each segment
+     */
+    List<PendingBufferCopyCommand> defragment(int maxBytes) {
+        List<PendingBufferCopyCommand> pendingCopies = new ArrayList<>();
+
+        int moved = 0;
+
+        GlBufferSegment seg = this.head;
+
+        while (seg != null) {
+            GlBufferSegment next = seg.getNext();
+
+            // Free segments are always merged, so a free segment is either followed by a used segment or is the tail
+            if (!seg.isFree() || next == null) {
+                seg = next;
+                continue;
+            }
+
+            int length = next.getLength();
+
+            if (length > (long) seg.getLength() * MAX_COPIES_PER_MOVE) {
+                seg = next;
+                continue;
+            }
+
+            if (moved > 0 && moved + length > maxBytes) {
+                break;
+            }
+
+            // The gap moves to after the segment and might be merged with the next gap, so continue from there
+            seg = this.slide(next, seg, pendingCopies);
+            moved += length;
+        }
+
+        this.defragmentStalled = moved == 0;
+
+        this.checkAssertions();
+
+        return pendingCopies;
+    }
+
+    /**
+     * Swaps a used segment with the free segment right before it.
+     *
+     * @return The free segment after it has been moved and merged with any following free segment
+     */
+    private GlBufferSegment slide(GlBufferSegment segment, GlBufferSegment gap, List<PendingBufferCopyCommand> pendingCopies) {
+        int gapOffset = gap.getOffset();
+        int gapLength = gap.getLength();
+
+        int length = segment.getLength();
+
+        // Copy in pieces no larger than the gap, from front to back, so that no copy overlaps its own source and no
+        // piece is overwritten before it has been copied
+        for (int pos = 0; pos < length; pos += gapLength) {
+            pendingCopies.add(new PendingBufferCopyCommand(segment.getOffset() + pos, gapOffset + pos,
+                    Math.min(gapLength, length - pos)));
+        }
+
+        GlBufferSegment prev = gap.getPrev();
+        GlBufferSegment after = segment.getNext();
+
+        segment.setPrev(prev);
+        segment.setNext(gap);
+        segment.setOffset(gapOffset);
+
+        gap.setPrev(segment);
+        gap.setNext(after);
+        gap.setOffset(gapOffset + length);
+
+        if (prev != null) {
+            prev.setNext(segment);
+        } else {
+            this.head = segment;
+        }
+
+        if (after != null) {
+            after.setPrev(gap);
+
+            if (after.isFree()) {
+                this.removeFree(gap);
+                this.removeFree(after);
+
+                this.merge(gap, after);
+
+                this.insertFree(gap);
+            }
+        } else {
+            this.tail = gap;
+        }
+
+        return gap;
+    }
+
+    /**
+     * @return True if there are gaps between the used segments of the arena which can be closed by
+     * {@link BufferSegmentAllocator#defragment(int)}
+     */
+    public boolean needsDefragment() {
+        return !this.defragmentStalled && this.getFragmentedBytes() > 0;
+    }
+
+    /**
+     * @return The number of free bytes which are not part of the free space at the end of the arena
+     */
+    public int getFragmentedBytes() {
+        int free = this.capacity - this.used;
+
+        if (this.tail != null && this.tail.isFree()) {
+            free -= this.tail.getLength();
+        }
+
+        return free;
+    }
+
+    /**
+     * Moves all used segments to the start of an arena with the given capacity, leaving the free space as one segment
+     * at the end of the arena. The offsets of all segments are updated immediately, so the caller must perform the
+     * returned copies from the old buffer to the new buffer before the segments are used again.
+     *
+     * @return The copies which need to be made from the old buffer to move the contents of each segment
+     */
+    List<PendingBufferCopyCommand> compact(int newCapacity) {
+        if (this.used > newCapacity) {
+            throw new UnsupportedOperationException("New capacity must be larger than used size");
+        }
+
+        this.checkAssertions();
+
+        int freeBytes = newCapacity - this.used;
+
+        List<GlBufferSegment> usedSegments = this.getUsedSegments();
+        List<PendingBufferCopyCommand> pendingCopies = buildTransferList(usedSegments, 0);
+
+        this.clearFree();
+
+        this.capacity = newCapacity;
+
+        GlBufferSegment last = usedSegments.isEmpty() ? null : usedSegments.get(usedSegments.size() - 1);
+
+        if (freeBytes > 0) {
+            GlBufferSegment free = new GlBufferSegment(this.arena, this.used, freeBytes);
+            free.setFree(true);
+            free.setPrev(last);
+
+            if (last != null) {
+                last.setNext(free);
+            }
+
+            this.insertFree(free);
+
+            last = free;
+        }
+
+        this.head = usedSegments.isEmpty() ? last : usedSegments.get(0);
+        this.tail = last;
+
+        this.defragmentStalled = false;
+
+        this.checkAssertions();
+
+        return pendingCopies;
+    }
+
+    private static List<PendingBufferCopyCommand> buildTransferList(List<GlBufferSegment> usedSegments, int base) {
+        List<PendingBufferCopyCommand> pendingCopies = new ArrayList<>();
+        PendingBufferCopyCommand currentCopyCommand = null;
+
+        int writeOffset = base;
+
+        for (int i = 0; i < usedSegments.size(); i++) {
+            GlBufferSegment s = usedSegments.get(i);
+
+            // Segments can only share a copy if they are contiguous in the source buffer as well
+            if (currentCopyCommand == null || currentCopyCommand.readOffset + currentCopyCommand.length != s.getOffset()) {
+                if (currentCopyCommand != null) {
+                    pendingCopies.add(currentCopyCommand);
+                }
+
+                currentCopyCommand = new PendingBufferCopyCommand(s.getOffset(), writeOffset, s.getLength());
+            } else {
+                currentCopyCommand.length += s.getLength();
+            }
+
+            s.setOffset(writeOffset);
+
+            if (i + 1 < usedSegments.size()) {
+                s.setNext(usedSegments.get(i + 1));
+            } else {
+                s.setNext(null);
+            }
+
+            if (i - 1 < 0) {
+                s.setPrev(null);
+            } else {
+                s.setPrev(usedSegments.get(i - 1));
+            }
+
+            writeOffset += s.getLength();
+        }
+
+        if (currentCopyCommand != null) {
+            pendingCopies.add(currentCopyCommand);
+        }
+
+        return pendingCopies;
+    }
+
+    private ArrayList<GlBufferSegment> getUsedSegments() {
+        ArrayList<GlBufferSegment> used = new ArrayList<>();
+        GlBufferSegment seg = this.head;
+
+        while (seg != null) {
+            GlBufferSegment next = seg.getNext();
+
+            if (!seg.isFree()) {
+                used.add(seg);
+            }
+
+            seg = next;
+        }
+
+        return used;
+    }
+
+    private GlBufferSegment findFree(int size) {
+        // Round the size up to the next bin, so that any segment in the bins which are searched is large enough
+        int rounded = size;
+        int msb = 31 - Integer.numberOfLeadingZeros(size);
+
+        if (msb >= SL_BITS) {
+            rounded += (1 << (msb - SL_BITS)) - 1;
+        }
+
+        GlBufferSegment segment = this.findFreeInBins(rounded);
+
+        if (segment != null) {
+            return segment;
+        }
+
+        // The bin the size belongs to can still contain a large enough segment, which is common when the same size is
+        // re-allocated after a section is rebuilt, so check it as a last resort before the arena needs to grow
+        int bin = getBinIndex(size);
+
+        for (GlBufferSegment entry = this.bins[bin]; entry != null; entry = entry.getNextFree()) {
+            if (entry.getLength() >= size) {
+                return entry;
+            }
+        }
+
+        return null;
+    }
+
+    private GlBufferSegment findFreeInBins(int size) {
+        if (size < 0) {
+            // The size overflowed while being rounded up, so there can't be a segment large enough
+            return null;
+        }
+
+        int bin = getBinIndex(size);
+
+        int fl = bin / SL_COUNT;
+        int sl = bin % SL_COUNT;
+
+        int slMask = this.secondLevelMasks[fl] & (~0 << sl);
+
+        if (slMask == 0) {
+            // Nothing left in this power of two, so find the next first level with any free segments
+            int flMask = fl + 1 < FL_COUNT ? this.firstLevelMask & (~0 << (fl + 1)) : 0;
+
+            if (flMask == 0) {
+                return null;
+            }
+
+            fl = Integer.numberOfTrailingZeros(flMask);
+            slMask = this.secondLevelMasks[fl];
+        }
+
+        sl = Integer.numberOfTrailingZeros(slMask);
+
+        return this.bins[(fl * SL_COUNT) + sl];
+    }
+
+    private void insertFree(GlBufferSegment segment) {
+        int bin = getBinIndex(segment.getLength());
+
+        GlBufferSegment head = this.bins[bin];
+
+        segment.setPrevFree(null);
+        segment.setNextFree(head);
+
+        if (head != null) {
+            head.setPrevFree(segment);
+        }
+
+        this.bins[bin] = segment;
+
+        this.firstLevelMask |= 1 << (bin / SL_COUNT);
+        this.secondLevelMasks[bin / SL_COUNT] |= 1 << (bin % SL_COUNT);
+    }
+
+    private void removeFree(GlBufferSegment segment) {
+        int bin = getBinIndex(segment.getLength());
+
+        GlBufferSegment prev = segment.getPrevFree();
+        GlBufferSegment next = segment.getNextFree();
+
+        if (prev != null) {
+            prev.setNextFree(next);
+        } else {
+            this.bins[bin] = next;
+        }
+
+        if (next != null) {
+            next.setPrevFree(prev);
+        }
+
+        segment.setPrevFree(null);
+        segment.setNextFree(null);
+
+        if (this.bins[bin] == null) {
+            int fl = bin / SL_COUNT;
+
+            this.secondLevelMasks[fl] &= ~(1 << (bin % SL_COUNT));
+
+            if (this.secondLevelMasks[fl] == 0) {
+                this.firstLevelMask &= ~(1 << fl);
+            }
+        }
+    }
+
+    private void clearFree() {
+        for (int i = 0; i < this.bins.length; i++) {
+            this.bins[i] = null;
+        }
+
+        for (int i = 0; i < this.secondLevelMasks.length; i++) {
+            this.secondLevelMasks[i] = 0;
+        }
+
+        this.firstLevelMask = 0;
+    }
+
+    private static int getBinIndex(int size) {
+        int msb = 31 - Integer.numberOfLeadingZeros(size);
+
+        if (msb < SL_BITS) {
+            // Small sizes are placed directly into the bins of the first level
+            return size;
+        }
+
+        int fl = msb - SL_BITS + 1;
+        int sl = (size >>> (msb - SL_BITS)) & (SL_COUNT - 1);
+
+        return (fl * SL_COUNT) + sl;
+    }
+
+    public int getUsed() {
+        return this.used;
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    private void checkAssertions() {
+        if (CHECK_ASSERTIONS) {
+            this.checkAssertions0();
+        }
+    }
+
+    private void checkAssertions0() {
+        GlBufferSegment seg = this.head;
+        int used = 0;
+
+        while (seg != null) {
+            if (seg.getOffset() < 0) {
+                throw new IllegalStateException("segment.start < 0: out of bounds");
+            } else if (seg.getEnd() > this.capacity) {
+                throw new IllegalStateException("segment.end > arena.capacity: out of bounds");
+            }
+
+            if (!seg.isFree()) {
+                used += seg.getLength();
+            }
+
+            GlBufferSegment next = seg.getNext();
+
+            if (next != null) {
+                if (next.getOffset() < seg.getEnd()) {
+                    throw new IllegalStateException("segment.next.start < segment.end: overlapping segments (corrupted)");
+                } else if (next.getOffset() > seg.getEnd()) {
+                    throw new IllegalStateException("segment.next.start > segment.end: not truly connected (sparsity error)");
+                }
+
+                if (next.isFree() && next.getNext() != null) {
+                    if (next.getNext().isFree()) {
+                        throw new IllegalStateException("segment.free && segment.next.free: not merged consecutive segments");
+                    }
+                }
+            }
+
+            GlBufferSegment prev = seg.getPrev();
+
+            if (prev != null) {
+                if (prev.getEnd() > seg.getOffset()) {
+                    throw new IllegalStateException("segment.prev.end > segment.start: overlapping segments (corrupted)");
+                } else if (prev.getEnd() < seg.getOffset()) {
+                    throw new IllegalStateException("segment.prev.end < segment.start: not truly connected (sparsity error)");
+                }
+
+                if (prev.isFree() && prev.getPrev() != null) {
+                    if (prev.getPrev().isFree()) {
+                        throw new IllegalStateException("segment.free && segment.prev.free: not merged consecutive segments");
+                    }
+                }
+            }
+
+            seg = next;
+        }
+
+        for (int bin = 0; bin < this.bins.length; bin++) {
+            for (GlBufferSegment entry = this.bins[bin]; entry != null; entry = entry.getNextFree()) {
+                if (!entry.isFree()) {
+                    throw new IllegalStateException("bin contains a used segment (corrupted)");
+                } else if (getBinIndex(entry.getLength()) != bin) {
+                    throw new IllegalStateException("segment.length does not match bin: failure to re-bin after resize");
+                }
+            }
+        }
+
+        if (this.used < 0) {
+            throw new IllegalStateException("arena.used < 0: failure to track");
+        } else if (this.used > this.capacity) {
+            throw new IllegalStateException("arena.used > arena.capacity: failure to track");
+        }
+
+        if (this.used != used) {
+            throw new IllegalStateException("arena.used is invalid");
+        }
+    }
+}
@@ -10,6 +10,12 @@ public interface GlBufferArena {
 
     int getDeviceAllocatedMemory();
 
+    /**
+     * @return The number of allocated bytes which are lost to gaps between used segments, and can't be used for
+     * allocations larger than those gaps
+     */
+    int getDeviceFragmentedMemory();
+
     void free(GlBufferSegment entry);
 
     void delete(CommandList commands);
@@ -19,4 +25,23 @@ public interface GlBufferArena {
     GlBuffer getBufferObject();
 
     boolean upload(CommandList commandList, Stream<PendingUpload> stream);
+
+    /**
+     * Moves some of the data in the arena to close the gaps left behind by freed segments, without re-allocating the
+     * buffer. This should be called regularly with a small limit to spread the work over many frames.
+     *
+     * @param maxBytes The number of bytes which should be moved at most, though one segment is always moved if
+     *                 possible even if it exceeds the limit
+     * @return The number of bytes which were moved
+     */
+    int defragment(CommandList commandList, int maxBytes);
+
+    /**
+     * Releases unused memory if the arena has been mostly empty for a while. This should be called once per frame.
+     *
+     * @param force If true, the arena is shrunk to fit its contents right away, such as when device memory is over
+     *              budget
+     * @return True if the arena's buffer object was re-allocated
+     */
+    boolean shrink(CommandList commandList, boolean force);
 }
@@ -11,6 +11,10 @@ public class GlBufferSegment {
     private GlBufferSegment next;
     private GlBufferSegment prev;
 
+    // The neighbours of this segment in the free list of its size, only valid while the segment is free
+    private GlBufferSegment nextFree;
+    private GlBufferSegment prevFree;
+
     public GlBufferSegment(GlBufferArena arena, int offset, int length) {
         this.arena = arena;
         this.offset = offset;
@@ -73,6 +77,22 @@ public class GlBufferSegment {
         this.prev = prev;
     }
 
+    protected GlBufferSegment getNextFree() {
+        return this.nextFree;
+    }
+
+    protected void setNextFree(GlBufferSegment nextFree) {
+        this.nextFree = nextFree;
+    }
+
+    protected GlBufferSegment getPrevFree() {
+        return this.prevFree;
+    }
+
+    protected void setPrevFree(GlBufferSegment prevFree) {
+        this.prevFree = prevFree;
+    }
+
     protected void mergeInto(GlBufferSegment entry) {
         this.setLength(this.getLength() + entry.getLength());
         this.setNext(entry.getNext());
@@ -37,6 +37,12 @@ public class SwapBufferArena implements GlBufferArena {
         return this.used;
     }
 
+    @Override
+    public int getDeviceFragmentedMemory() {
+        // The buffer is always re-allocated to fit its contents exactly
+        return 0;
+    }
+
     @Override
     public void free(GlBufferSegment entry) {
         StashedData data = this.active.remove(entry);
@@ -72,6 +78,18 @@ public class SwapBufferArena implements GlBufferArena {
         return this.deviceBuffer;
     }
 
+    @Override
+    public int defragment(CommandList commandList, int maxBytes) {
+        // The whole buffer is re-created without gaps on every upload
+        return 0;
+    }
+
+    @Override
+    public boolean shrink(CommandList commandList, boolean force) {
+        // The buffer is always exactly as large as the data it contains
+        return false;
+    }
+
     @Override
     public boolean upload(CommandList commandList, Stream<PendingUpload> stream) {
         List<PendingUpload> uploads = stream.collect(Collectors.toList());
@@ -9,9 +9,17 @@ import me.jellysquid.mods.sodium.client.gl.functions.BufferStorageFunctions;
 import me.jellysquid.mods.sodium.client.gl.sync.GlFence;
 import me.jellysquid.mods.sodium.client.gl.util.EnumBitField;
 import me.jellysquid.mods.sodium.client.util.MathUtil;
+import me.jellysquid.mods.sodium.client.util.NativeBufferAllocator;
+import net.minecraft.util.math.MathHelper;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * A staging buffer which copies data through a persistently mapped ring buffer. The ring grows when uploads don't fit
+ * into it and have to use the (much slower) fallback path, and shrinks again once it has been mostly empty for a while.
+ */
 public class MappedStagingBuffer implements StagingBuffer {
     private static final EnumBitField<GlBufferStorageFlags> STORAGE_FLAGS =
             EnumBitField.of(GlBufferStorageFlags.PERSISTENT, GlBufferStorageFlags.CLIENT_STORAGE, GlBufferStorageFlags.MAP_WRITE, GlBufferStorageFlags.COHERENT);
@@ -19,27 +27,74 @@ public class MappedStagingBuffer implements StagingBuffer {
     private static final EnumBitField<GlBufferMapFlags> MAP_FLAGS =
             EnumBitField.of(GlBufferMapFlags.PERSISTENT, GlBufferMapFlags.INVALIDATE_BUFFER, GlBufferMapFlags.WRITE, GlBufferMapFlags.COHERENT);
 
+    private static final int DEFAULT_CAPACITY = 1024 * 1024 * 16; /* 16 MB */
+    private static final int MAX_CAPACITY = 1024 * 1024 * 256; /* 256 MB */
+
+    private static final int HEAP_CAPACITY = 1024 * 1024 * 64; /* 64 MB */
+
+    // The ring is shrunk once less than 1/SHRINK_RATIO of it has been used for SHRINK_DELAY frames in a row
+    private static final int SHRINK_RATIO = 4;
+    private static final int SHRINK_DELAY = 600;
+
+    // The weight of each frame in the moving average of the ring's occupancy
+    private static final float OCCUPANCY_SMOOTHING = 1.0f / 60.0f;
+
     private final FallbackStagingBuffer fallbackStagingBuffer;
 
-    private final MappedBuffer mappedBuffer;
+    // The heap which workers write finished meshes into, or null if meshes are always copied through the ring
+    private final MappedStagingHeap heap;
+
+    private MappedBuffer mappedBuffer;
     private final PriorityQueue<CopyCommand> pendingCopies = new ObjectArrayFIFOQueue<>();
     private final PriorityQueue<FencedMemoryRegion> fencedRegions = new ObjectArrayFIFOQueue<>();
 
     private int head = 0;
 
-    private final int capacity;
+    private final int minCapacity;
+    private int capacity;
     private int remaining;
 
+    private int frame;
+
+    // The number of fences which have been created, used to identify when memory in the heap can be re-used
+    private long fenceCount;
+
+    // The statistics of the current frame, which are used to decide whether the ring should be resized
+    private int frameBytesStaged;
+    private int frameFallbackBytes;
+    private int framePeakOccupancy;
+
+    private int lowOccupancyFrames;
+
+    // The number of frames it took for the device to finish the copies of the most recently completed region
+    private int fenceLatency;
+
+    private long totalBytesStaged;
+    private long totalBytesDirect;
+    private long totalFallbackBytes;
+    private long fallbackHits;
+    private long fenceStalls;
+    private long resizeCount;
+
+    private int lastFrameBytesStaged;
+    private float averageOccupancy;
+
     public MappedStagingBuffer(CommandList commandList) {
-        this(commandList, 1024 * 1024 * 16 /* 16 MB */);
+        this(commandList, false);
     }
 
-    public MappedStagingBuffer(CommandList commandList, int capacity) {
-        GlImmutableBuffer buffer = commandList.createImmutableBuffer(capacity, STORAGE_FLAGS);
-        GlBufferMapping map = commandList.mapBuffer(buffer, 0, capacity, MAP_FLAGS);
+    /**
+     * @param useHeap True if chunk builder workers should write their meshes directly into a mapped heap
+     */
+    public MappedStagingBuffer(CommandList commandList, boolean useHeap) {
+        this(commandList, DEFAULT_CAPACITY, useHeap ? HEAP_CAPACITY : 0);
+    }
 
-        this.mappedBuffer = new MappedBuffer(buffer, map);
+    public MappedStagingBuffer(CommandList commandList, int capacity, int heapCapacity) {
+        this.mappedBuffer = MappedBuffer.create(commandList, capacity);
         this.fallbackStagingBuffer = new FallbackStagingBuffer(commandList);
+        this.heap = heapCapacity > 0 ? new MappedStagingHeap(commandList, heapCapacity) : null;
+        this.minCapacity = capacity;
         this.capacity = capacity;
         this.remaining = this.capacity;
     }
@@ -52,9 +107,21 @@ public class MappedStagingBuffer implements StagingBuffer {
     public void enqueueCopy(CommandList commandList, ByteBuffer data, GlBuffer dst, long writeOffset) {
         int length = data.remaining();
 
+        // Data which was written into the heap by a worker can be copied into the destination as-is
+        if (this.heap != null && this.heap.contains(data)) {
+            this.pendingCopies.enqueue(new CopyCommand(this.heap.getBufferObject(), dst, this.heap.getOffset(data), writeOffset, length));
+            this.totalBytesDirect += length;
+
+            return;
+        }
+
         if (length > this.remaining) {
             this.fallbackStagingBuffer.enqueueCopy(commandList, data, dst, writeOffset);
 
+            this.fallbackHits++;
+            this.totalFallbackBytes += length;
+            this.frameFallbackBytes += length;
+
             return;
         }
 
@@ -74,11 +141,15 @@ public class MappedStagingBuffer implements StagingBuffer {
         }
 
         this.remaining -= length;
+
+        this.totalBytesStaged += length;
+        this.frameBytesStaged += length;
+        this.framePeakOccupancy = Math.max(this.framePeakOccupancy, this.capacity - this.remaining);
     }
 
     private void addTransfer(ByteBuffer data, GlBuffer dst, long readOffset, long writeOffset) {
         this.mappedBuffer.map().write(data, (int) readOffset);
-        this.pendingCopies.enqueue(new CopyCommand(dst, readOffset, writeOffset, data.remaining()));
+        this.pendingCopies.enqueue(new CopyCommand(this.mappedBuffer.buffer(), dst, readOffset, writeOffset, data.remaining()));
     }
 
     @Override
@@ -91,47 +162,198 @@ public class MappedStagingBuffer implements StagingBuffer {
 
         while (!this.pendingCopies.isEmpty()) {
             CopyCommand command = this.pendingCopies.dequeue();
-            commandList.copyBufferSubData(this.mappedBuffer.buffer(), command.buffer, command.readOffset, command.writeOffset, command.bytes);
+            commandList.copyBufferSubData(command.src, command.dst, command.readOffset, command.writeOffset, command.bytes);
 
-            bytes += command.bytes;
+            // Only copies out of the ring take up space in it
+            if (command.src == this.mappedBuffer.buffer()) {
+                bytes += command.bytes;
+            }
         }
 
-        this.fencedRegions.enqueue(new FencedMemoryRegion(commandList.createFence(), bytes));
+        long fence = ++this.fenceCount;
+
+        this.fencedRegions.enqueue(new FencedMemoryRegion(commandList.createFence(), bytes, this.mappedBuffer, this.frame, fence));
+
+        if (this.heap != null) {
+            this.heap.onFenceCreated(fence);
+        }
     }
 
     @Override
     public void delete(CommandList commandList) {
+        // Buffers which were replaced by a resize might still be waiting for their copies to complete
+        while (!this.fencedRegions.isEmpty()) {
+            FencedMemoryRegion region = this.fencedRegions.dequeue();
+
+            if (region.buffer() != this.mappedBuffer && this.isLastRegionOf(region.buffer())) {
+                region.buffer().delete(commandList);
+            }
+        }
+
         this.mappedBuffer.delete(commandList);
         this.fallbackStagingBuffer.delete(commandList);
         this.pendingCopies.clear();
+
+        if (this.heap != null) {
+            this.heap.delete(commandList);
+        }
     }
 
     @Override
-    public void flip() {
+    public void flip(CommandList commandList) {
         while (!this.fencedRegions.isEmpty()) {
             FencedMemoryRegion fencedRegion = this.fencedRegions.first();
 
             if (!fencedRegion.fence().isCompleted()) {
+                // The device is still copying data which was staged during an earlier frame
+                if (fencedRegion.frame() != this.frame) {
+                    this.fenceStalls++;
+                }
+
                 break;
             }
 
             this.fencedRegions.dequeue();
-            this.remaining += fencedRegion.length();
+            this.fenceLatency = this.frame - fencedRegion.frame();
+
+            if (this.heap != null) {
+                this.heap.onFenceCompleted(fencedRegion.serial());
+            }
+
+            if (fencedRegion.buffer() == this.mappedBuffer) {
+                this.remaining += fencedRegion.length();
+            } else if (this.isLastRegionOf(fencedRegion.buffer())) {
+                // All copies out of a buffer which was replaced by a resize have completed, so it can be released
+                fencedRegion.buffer().delete(commandList);
+            }
+        }
+
+        // If nothing is in flight, memory freed after the last fence was created can't be waiting on any copies
+        if (this.heap != null && this.fencedRegions.isEmpty() && this.pendingCopies.isEmpty()) {
+            this.heap.onFenceCompleted(Long.MAX_VALUE);
         }
+
+        this.updateCapacity(commandList);
+
+        this.averageOccupancy += ((float) this.framePeakOccupancy / this.capacity - this.averageOccupancy) * OCCUPANCY_SMOOTHING;
+        this.lastFrameBytesStaged = this.frameBytesStaged;
+
+        this.frameBytesStaged = 0;
+        this.frameFallbackBytes = 0;
+        this.framePeakOccupancy = this.capacity - this.remaining;
+
+        this.frame++;
     }
 
-    private record CopyCommand(GlBuffer buffer, long readOffset, long writeOffset, long bytes) {
+    /**
+     * Fenced regions are released in the order they were created, so once the next region belongs to a different
+     * buffer, no more copies out of the given buffer are pending.
+     */
+    private boolean isLastRegionOf(MappedBuffer buffer) {
+        return this.fencedRegions.isEmpty() || this.fencedRegions.first().buffer() != buffer;
+    }
+
+    private void updateCapacity(CommandList commandList) {
+        if (this.frameFallbackBytes > 0) {
+            this.lowOccupancyFrames = 0;
+
+            // The ring needs to hold everything staged in a frame for as many frames as the device takes to copy it
+            long demand = (long) (this.frameBytesStaged + this.frameFallbackBytes) * (this.fenceLatency + 1);
+            int capacity = MathHelper.smallestEncompassingPowerOfTwo((int) Math.min(Math.max(demand, this.capacity * 2L), MAX_CAPACITY));
+
+            if (capacity > this.capacity) {
+                this.resize(commandList, capacity);
+            }
+        } else if (this.capacity > this.minCapacity && this.framePeakOccupancy * SHRINK_RATIO < this.capacity) {
+            if (++this.lowOccupancyFrames >= SHRINK_DELAY) {
+                this.lowOccupancyFrames = 0;
+
+                this.resize(commandList, Math.max(this.minCapacity, this.capacity / 2));
+            }
+        } else {
+            this.lowOccupancyFrames = 0;
+        }
+    }
+
+    private void resize(CommandList commandList, int capacity) {
+        // If copies out of the old buffer are still pending, it is released once they have completed
+        if (this.fencedRegions.isEmpty() || this.fencedRegions.last().buffer() != this.mappedBuffer) {
+            this.mappedBuffer.delete(commandList);
+        }
+
+        this.mappedBuffer = MappedBuffer.create(commandList, capacity);
+        this.capacity = capacity;
+        this.remaining = capacity;
+        this.head = 0;
+
+        this.resizeCount++;
+    }
+
+    @Override
+    public NativeBufferAllocator getMeshAllocator() {
+        return this.heap != null ? this.heap : NativeBufferAllocator.DEFAULT;
+    }
+
+    @Override
+    public List<String> getDebugStrings() {
+        List<String> list = new ArrayList<>();
+        list.add(String.format("Staging throughput: %d KiB/frame, %d MiB total", this.lastFrameBytesStaged / 1024, MathUtil.toMib(this.totalBytesStaged)));
+        list.add(String.format("Staging occupancy: %d%% avg, %d frame fence latency", Math.round(this.averageOccupancy * 100.0f), this.fenceLatency));
+        list.add(String.format("Staging fallbacks: %d (%d MiB), %d fence stalls, %d resizes", this.fallbackHits,
+                MathUtil.toMib(this.totalFallbackBytes), this.fenceStalls, this.resizeCount));
+
+        if (this.heap != null) {
+            list.add(String.format("Staging heap: %d/%d MiB, %d MiB direct, %d fallbacks", MathUtil.toMib(this.heap.getUsedMemory()),
+                    MathUtil.toMib(this.heap.getCapacity()), MathUtil.toMib(this.totalBytesDirect), this.heap.getFallbackCount()));
+        }
+
+        return list;
+    }
+
+    @Override
+    public long getTotalBytesStaged() {
+        return this.totalBytesStaged;
+    }
+
+    @Override
+    public long getTotalFallbackBytes() {
+        return this.totalFallbackBytes;
+    }
+
+    public long getFallbackHits() {
+        return this.fallbackHits;
+    }
+
+    public long getFenceStalls() {
+        return this.fenceStalls;
+    }
+
+    /**
+     * @return The moving average of the fraction of the ring which is in use each frame
+     */
+    public float getAverageOccupancy() {
+        return this.averageOccupancy;
+    }
+
+    private record CopyCommand(GlBuffer src, GlBuffer dst, long readOffset, long writeOffset, long bytes) {
     }
 
     private record MappedBuffer(GlImmutableBuffer buffer,
                                 GlBufferMapping map) {
+        public static MappedBuffer create(CommandList commandList, int capacity) {
+            GlImmutableBuffer buffer = commandList.createImmutableBuffer(capacity, STORAGE_FLAGS);
+            GlBufferMapping map = commandList.mapBuffer(buffer, 0, capacity, MAP_FLAGS);
+
+            return new MappedBuffer(buffer, map);
+        }
+
         public void delete(CommandList commandList) {
             commandList.unmap(this.map);
             commandList.deleteBuffer(this.buffer);
         }
     }
 
-    private record FencedMemoryRegion(GlFence fence, int length) {
+    private record FencedMemoryRegion(GlFence fence, int length, MappedBuffer buffer, int frame, long serial) {
 
     }
 
@@ -0,0 +1,177 @@
+package me.jellysquid.mods.sodium.client.gl.arena.staging;
+
+import me.jellysquid.mods.sodium.client.gl.arena.BufferSegmentAllocator;
+import me.jellysquid.mods.sodium.client.gl.arena.GlBufferSegment;
+import me.jellysquid.mods.sodium.client.gl.buffer.*;
+import me.jellysquid.mods.sodium.client.gl.device.CommandList;
+import me.jellysquid.mods.sodium.client.gl.util.EnumBitField;
+import me.jellysquid.mods.sodium.client.util.NativeBuffer;
+import me.jellysquid.mods.sodium.client.util.NativeBufferAllocator;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A persistently mapped buffer which chunk builder workers write their finished meshes into, so that the main thread
+ * only needs to tell the device to copy them into an arena. This avoids copying every mesh into the staging ring on
+ * the main thread. If the heap is full, meshes are placed into regular native memory and uploaded as usual.
+ *
+ * Memory which is freed is not re-used until the device has finished every copy which was submitted before it was
+ * freed, as the copy out of it might still be pending.
+ */
+public class MappedStagingHeap implements NativeBufferAllocator {
+    private static final EnumBitField<GlBufferStorageFlags> STORAGE_FLAGS =
+            EnumBitField.of(GlBufferStorageFlags.PERSISTENT, GlBufferStorageFlags.CLIENT_STORAGE, GlBufferStorageFlags.MAP_WRITE, GlBufferStorageFlags.COHERENT);
+
+    private static final EnumBitField<GlBufferMapFlags> MAP_FLAGS =
+            EnumBitField.of(GlBufferMapFlags.PERSISTENT, GlBufferMapFlags.INVALIDATE_BUFFER, GlBufferMapFlags.WRITE, GlBufferMapFlags.COHERENT);
+
+    private static final int ALIGNMENT = 16;
+
+    private final GlImmutableBuffer buffer;
+    private final GlBufferMapping mapping;
+
+    private final long address;
+    private final int capacity;
+
+    // Guarded by this object, as memory is allocated by the workers and freed by the main thread
+    private final BufferSegmentAllocator allocator;
+    private final List<PendingFree> pendingFrees = new ArrayList<>();
+
+    // The fence which memory freed right now needs to wait for, which is the next one the staging buffer will create
+    private volatile long nextFence = 1;
+
+    private final LongAdder allocations = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public MappedStagingHeap(CommandList commandList, int capacity) {
+        this.buffer = commandList.createImmutableBuffer(capacity, STORAGE_FLAGS);
+        this.mapping = commandList.mapBuffer(this.buffer, 0, capacity, MAP_FLAGS);
+
+        this.address = MemoryUtil.memAddress(this.mapping.getMemoryBuffer());
+        this.capacity = capacity;
+
+        this.allocator = new BufferSegmentAllocator(null, capacity);
+    }
+
+    @Override
+    public NativeBuffer allocate(int bytes) {
+        GlBufferSegment segment;
+
+        synchronized (this) {
+            segment = this.allocator.alloc(align(bytes));
+        }
+
+        if (segment == null) {
+            this.fallbacks.increment();
+
+            return new NativeBuffer(bytes);
+        }
+
+        this.allocations.increment();
+
+        return new HeapBuffer(this, segment, bytes);
+    }
+
+    @Override
+    public boolean isReadable() {
+        // The mapping is write-combined, so reading from it is uncached and much slower than writing to it
+        return false;
+    }
+
+    private synchronized void free(GlBufferSegment segment) {
+        this.pendingFrees.add(new PendingFree(segment, this.nextFence));
+    }
+
+    /**
+     * Releases the memory which was waiting for the given fence (and all fences before it) to complete.
+     */
+    synchronized void onFenceCompleted(long fence) {
+        Iterator<PendingFree> it = this.pendingFrees.iterator();
+
+        while (it.hasNext()) {
+            PendingFree pending = it.next();
+
+            if (pending.fence() <= fence) {
+                this.allocator.free(pending.segment());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Called by the staging buffer after it creates a fence, so that memory freed from now on waits for the next one.
+     */
+    void onFenceCreated(long fence) {
+        this.nextFence = fence + 1;
+    }
+
+    /**
+     * @return True if the data is stored within this heap, and can be copied straight out of it
+     */
+    public boolean contains(ByteBuffer data) {
+        long address = MemoryUtil.memAddress(data);
+
+        return address >= this.address && address < this.address + this.capacity;
+    }
+
+    public long getOffset(ByteBuffer data) {
+        return MemoryUtil.memAddress(data) - this.address;
+    }
+
+    public GlBuffer getBufferObject() {
+        return this.buffer;
+    }
+
+    public synchronized int getUsedMemory() {
+        return this.allocator.getUsed();
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public long getAllocationCount() {
+        return this.allocations.sum();
+    }
+
+    public long getFallbackCount() {
+        return this.fallbacks.sum();
+    }
+
+    public void delete(CommandList commandList) {
+        commandList.unmap(this.mapping);
+        commandList.deleteBuffer(this.buffer);
+    }
+
+    private static int align(int bytes) {
+        return Math.max(ALIGNMENT, (bytes + ALIGNMENT - 1) & -ALIGNMENT);
+    }
+
+    private record PendingFree(GlBufferSegment segment, long fence) {
+
+    }
+
+    private static class HeapBuffer extends NativeBuffer {
+        private final MappedStagingHeap heap;
+        private final GlBufferSegment segment;
+
+        private HeapBuffer(MappedStagingHeap heap, GlBufferSegment segment, int length) {
+            super(heap.address + segment.getOffset(), length);
+
+            this.heap = heap;
+            this.segment = segment;
+        }
+
+        @Override
+        public void free() {
+            this.markFreed();
+
+            this.heap.free(this.segment);
+        }
+    }
+}
@@ -2,8 +2,10 @@ package me.jellysquid.mods.sodium.client.gl.arena.staging;
 
 import me.jellysquid.mods.sodium.client.gl.buffer.GlBuffer;
 import me.jellysquid.mods.sodium.client.gl.device.CommandList;
+import me.jellysquid.mods.sodium.client.util.NativeBufferAllocator;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 public interface StagingBuffer {
     void enqueueCopy(CommandList commandList, ByteBuffer data, GlBuffer dst, long writeOffset);
@@ -12,5 +14,36 @@ public interface StagingBuffer {
 
     void delete(CommandList commandList);
 
-    void flip();
+    /**
+     * Reclaims the memory of copies which the device has finished. This should be called once per frame.
+     */
+    void flip(CommandList commandList);
+
+    /**
+     * @return The allocator which chunk builder workers should create the buffers of finished meshes with
+     */
+    default NativeBufferAllocator getMeshAllocator() {
+        return NativeBufferAllocator.DEFAULT;
+    }
+
+    /**
+     * @return The total number of bytes which have been copied through the staging buffer
+     */
+    default long getTotalBytesStaged() {
+        return 0;
+    }
+
+    /**
+     * @return The total number of bytes which didn't fit into the staging buffer and had to be uploaded another way
+     */
+    default long getTotalFallbackBytes() {
+        return 0;
+    }
+
+    /**
+     * @return Additional lines describing the state of the staging buffer to show on the debug screen
+     */
+    default List<String> getDebugStrings() {
+        return List.of();
+    }
 }
@@ -4,13 +4,17 @@ import me.jellysquid.mods.sodium.client.gl.attribute.GlVertexFormat;
 import me.jellysquid.mods.sodium.client.util.NativeBuffer;
 
 /**
- * Helper type for tagging the vertex format alongside the raw buffer data.
+ * Helper type for tagging the vertex format alongside the raw buffer data. The index buffer is null if the vertex data
+ * is drawn using a shared index buffer.
  */
 public record IndexedVertexData(GlVertexFormat<?> vertexFormat,
                                 NativeBuffer vertexBuffer,
                                 NativeBuffer indexBuffer) {
     public void delete() {
         this.vertexBuffer.free();
-        this.indexBuffer.free();
+
+        if (this.indexBuffer != null) {
+            this.indexBuffer.free();
+        }
     }
 }
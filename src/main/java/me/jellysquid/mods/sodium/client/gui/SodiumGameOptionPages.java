@@ -247,6 +247,16 @@ public class SodiumGameOptionPages {
                         .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
                         .build()
                 )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(new TranslatableText("sodium.options.use_direct_mesh_uploads.name"))
+                        .setTooltip(new TranslatableText("sodium.options.use_direct_mesh_uploads.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setEnabled(MappedStagingBuffer.isSupported(RenderDevice.INSTANCE))
+                        .setBinding((opts, value) -> opts.advanced.useDirectMeshUploads = value, opts -> opts.advanced.useDirectMeshUploads)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
                 .build());
 
         groups.add(OptionGroup.createBuilder()
@@ -268,6 +278,24 @@ public class SodiumGameOptionPages {
                         .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
                         .build()
                 )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(new TranslatableText("sodium.options.use_traversal_cache.name"))
+                        .setTooltip(new TranslatableText("sodium.options.use_traversal_cache.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setBinding((opts, value) -> opts.advanced.useTraversalCache = value, opts -> opts.advanced.useTraversalCache)
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(new TranslatableText("sodium.options.use_software_occlusion_culling.name"))
+                        .setTooltip(new TranslatableText("sodium.options.use_software_occlusion_culling.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setBinding((opts, value) -> opts.advanced.useSoftwareOcclusionCulling = value, opts -> opts.advanced.useSoftwareOcclusionCulling)
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
                 .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
                         .setName(new TranslatableText("sodium.options.use_entity_culling.name"))
                         .setTooltip(new TranslatableText("sodium.options.use_entity_culling.tooltip"))
@@ -303,6 +331,96 @@ public class SodiumGameOptionPages {
                         .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
                         .build()
                 )
+                .add(OptionImpl.createBuilder(int.class, sodiumOpts)
+                        .setName(new TranslatableText("sodium.options.device_memory_budget.name"))
+                        .setTooltip(new TranslatableText("sodium.options.device_memory_budget.tooltip"))
+                        .setControl(opt -> new SliderControl(opt, 0, 8192, 256, ControlValueFormatter.memoryBudget()))
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setBinding((opts, value) -> opts.advanced.deviceMemoryBudget = value, opts -> opts.advanced.deviceMemoryBudget)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(int.class, sodiumOpts)
+                        .setName(new TranslatableText("sodium.options.chunk_upload_limit.name"))
+                        .setTooltip(new TranslatableText("sodium.options.chunk_upload_limit.tooltip"))
+                        .setControl(opt -> new SliderControl(opt, 0, 128, 4, ControlValueFormatter.uploadLimit("sodium.options.chunk_upload_limit.value")))
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setBinding((opts, value) -> opts.advanced.chunkUploadLimit = value, opts -> opts.advanced.chunkUploadLimit)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(int.class, sodiumOpts)
+                        .setName(new TranslatableText("sodium.options.chunk_upload_time_limit.name"))
+                        .setTooltip(new TranslatableText("sodium.options.chunk_upload_time_limit.tooltip"))
+                        .setControl(opt -> new SliderControl(opt, 0, 20, 1, ControlValueFormatter.uploadLimit("sodium.options.chunk_upload_time_limit.value")))
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setBinding((opts, value) -> opts.advanced.chunkUploadTimeLimit = value, opts -> opts.advanced.chunkUploadTimeLimit)
+                        .build()
+                )
+                .build());
+
+        groups.add(OptionGroup.createBuilder()
+                .add(OptionImpl.createBuilder(int.class, sodiumOpts)
+                        .setName(new TranslatableText("sodium.options.chunk_builder_thread_limit.name"))
+                        .setTooltip(new TranslatableText("sodium.options.chunk_builder_thread_limit.tooltip"))
+                        .setControl(opt -> new SliderControl(opt, 0, Runtime.getRuntime().availableProcessors(), 1, ControlValueFormatter.threadLimit()))
+                        .setImpact(OptionImpact.HIGH)
+                        .setBinding((opts, value) -> opts.advanced.chunkBuilderThreadLimit = value, opts -> opts.advanced.chunkBuilderThreadLimit)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(new TranslatableText("sodium.options.use_adaptive_chunk_builder_threads.name"))
+                        .setTooltip(new TranslatableText("sodium.options.use_adaptive_chunk_builder_threads.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setBinding((opts, value) -> opts.advanced.useAdaptiveChunkBuilderThreads = value, opts -> opts.advanced.useAdaptiveChunkBuilderThreads)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(new TranslatableText("sodium.options.use_incremental_chunk_rebuilds.name"))
+                        .setTooltip(new TranslatableText("sodium.options.use_incremental_chunk_rebuilds.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setBinding((opts, value) -> opts.advanced.useIncrementalChunkRebuilds = value, opts -> opts.advanced.useIncrementalChunkRebuilds)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(new TranslatableText("sodium.options.use_greedy_meshing.name"))
+                        .setTooltip(new TranslatableText("sodium.options.use_greedy_meshing.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setBinding((opts, value) -> opts.advanced.useGreedyMeshing = value, opts -> opts.advanced.useGreedyMeshing)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(new TranslatableText("sodium.options.use_translucent_face_sorting.name"))
+                        .setTooltip(new TranslatableText("sodium.options.use_translucent_face_sorting.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setBinding((opts, value) -> opts.advanced.useTranslucentFaceSorting = value, opts -> opts.advanced.useTranslucentFaceSorting)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(new TranslatableText("sodium.options.use_compact_vertex_format.name"))
+                        .setTooltip(new TranslatableText("sodium.options.use_compact_vertex_format.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.MEDIUM)
+                        .setBinding((opts, value) -> opts.advanced.useCompactVertexFormat = value, opts -> opts.advanced.useCompactVertexFormat)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(new TranslatableText("sodium.options.use_mesh_cache.name"))
+                        .setTooltip(new TranslatableText("sodium.options.use_mesh_cache.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.LOW)
+                        .setBinding((opts, value) -> opts.advanced.useMeshCache = value, opts -> opts.advanced.useMeshCache)
+                        .setFlags(OptionFlag.REQUIRES_RENDERER_RELOAD)
+                        .build()
+                )
                 .build());
 
         groups.add(OptionGroup.createBuilder()
@@ -323,6 +441,14 @@ public class SodiumGameOptionPages {
                         .setBinding((opts, value) -> opts.advanced.enableMemoryTracing = value, opts -> opts.advanced.enableMemoryTracing)
                         .build()
                 )
+                .add(OptionImpl.createBuilder(boolean.class, sodiumOpts)
+                        .setName(new TranslatableText("sodium.options.show_render_metrics.name"))
+                        .setTooltip(new TranslatableText("sodium.options.show_render_metrics.tooltip"))
+                        .setControl(TickBoxControl::new)
+                        .setImpact(OptionImpact.LOW)
+                        .setBinding((opts, value) -> opts.advanced.showRenderMetrics = value, opts -> opts.advanced.showRenderMetrics)
+                        .build()
+                )
                 .build());
 
         return new OptionPage(new TranslatableText("sodium.options.pages.advanced"), ImmutableList.copyOf(groups));
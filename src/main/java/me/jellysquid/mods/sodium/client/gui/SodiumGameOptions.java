@@ -43,12 +43,34 @@ public class SodiumGameOptions {
         public boolean useEntityCulling = true;
         public boolean useParticleCulling = true;
         public boolean useFogOcclusion = true;
+        public boolean useTraversalCache = true;
+        public boolean useSoftwareOcclusionCulling = false;
         public boolean useBlockFaceCulling = true;
         public boolean allowDirectMemoryAccess = true;
         public boolean enableMemoryTracing = false;
+        public boolean showRenderMetrics = false;
         public boolean useAdvancedStagingBuffers = true;
+        public boolean useDirectMeshUploads = false;
+        public boolean useAdaptiveChunkBuilderThreads = true;
+        public boolean useIncrementalChunkRebuilds = true;
+        public boolean useGreedyMeshing = false;
+        public boolean useTranslucentFaceSorting = true;
+        public boolean useCompactVertexFormat = false;
+        public boolean useMeshCache = false;
 
         public int maxPreRenderedFrames = 3;
+        public int chunkBuilderThreadLimit = 0;
+        public int deviceMemoryBudget = 0;
+        public int chunkUploadLimit = 32;
+        public int chunkUploadTimeLimit = 4;
+
+        /**
+         * The compact vertex format has no room for the tiling coordinates of merged quads, so greedy meshing is
+         * unavailable while it is in use.
+         */
+        public boolean isGreedyMeshingEnabled() {
+            return this.useGreedyMeshing && !this.useCompactVertexFormat;
+        }
     }
 
     public static class QualitySettings {
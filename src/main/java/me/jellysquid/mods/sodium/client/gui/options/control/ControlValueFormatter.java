@@ -27,6 +27,18 @@ public interface ControlValueFormatter {
         return (v) -> (v == 0) ? new TranslatableText("gui.none").getString() : new TranslatableText("sodium.options.biome_blend.value", v).getString();
     }
 
+    static ControlValueFormatter threadLimit() {
+        return (v) -> (v == 0) ? new TranslatableText("sodium.options.chunk_builder_thread_limit.auto").getString() : new TranslatableText("sodium.options.chunk_builder_thread_limit.value", v).getString();
+    }
+
+    static ControlValueFormatter memoryBudget() {
+        return (v) -> (v == 0) ? new TranslatableText("sodium.options.device_memory_budget.unlimited").getString() : new TranslatableText("sodium.options.device_memory_budget.value", v).getString();
+    }
+
+    static ControlValueFormatter uploadLimit(String key) {
+        return (v) -> (v == 0) ? new TranslatableText("sodium.options.chunk_upload_limit.unlimited").getString() : new TranslatableText(key, v).getString();
+    }
+
     String format(int value);
 
     static ControlValueFormatter translateVariable(String key) {
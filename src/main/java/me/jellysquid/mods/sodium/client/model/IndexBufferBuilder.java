@@ -4,6 +4,7 @@ import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntIterator;
 import me.jellysquid.mods.sodium.client.gl.tessellation.GlIndexType;
 import me.jellysquid.mods.sodium.client.model.quad.properties.ModelQuadWinding;
+import me.jellysquid.mods.sodium.client.util.ContentHasher;
 
 import java.nio.ByteBuffer;
 
@@ -20,6 +21,15 @@ public class IndexBufferBuilder {
         }
     }
 
+    /**
+     * Adds a range of indices from the given array, offset by {@param baseVertex}.
+     */
+    public void add(int[] indices, int from, int to, int baseVertex) {
+        for (int i = from; i < to; i++) {
+            this.indices.add(indices[i] + baseVertex);
+        }
+    }
+
     public void start() {
         this.indices.clear();
     }
@@ -32,7 +42,7 @@ public class IndexBufferBuilder {
         return new Result(this.indices);
     }
 
-    private static GlIndexType getOptimalIndexType(int count) {
+    public static GlIndexType getOptimalIndexType(int count) {
         if (count < 65536) {
             return GlIndexType.UNSIGNED_SHORT;
         } else {
@@ -44,6 +54,10 @@ public class IndexBufferBuilder {
         return this.indices.size();
     }
 
+    public int get(int i) {
+        return this.indices.getInt(i);
+    }
+
     public static class Result {
         private final IntArrayList indices;
 
@@ -71,7 +85,12 @@ public class IndexBufferBuilder {
             this.format = getOptimalIndexType(this.maxIndex - this.minIndex);
         }
 
-        public int writeTo(int offset, ByteBuffer buffer) {
+        /**
+         * Writes the indices into the buffer, adding each of them to the hasher as they are written.
+         *
+         * @return The offset in the buffer after the last index
+         */
+        public int writeTo(int offset, ByteBuffer buffer, ContentHasher hasher) {
             IntIterator it = this.indices.iterator();
             int stride = this.format.getStride();
 
@@ -79,6 +98,7 @@ public class IndexBufferBuilder {
 
             while (it.hasNext()) {
                 int value = it.nextInt() - this.minIndex;
+                hasher.putInt(value);
 
                 switch (this.format) {
                     case UNSIGNED_BYTE -> buffer.put(pointer, (byte) value);
@@ -2,6 +2,7 @@ package me.jellysquid.mods.sodium.client.model.vertex.buffer;
 
 import me.jellysquid.mods.sodium.client.gl.attribute.BufferVertexFormat;
 import me.jellysquid.mods.sodium.client.util.NativeBuffer;
+import me.jellysquid.mods.sodium.client.util.NativeBufferAllocator;
 import org.lwjgl.system.MemoryUtil;
 
 import java.nio.ByteBuffer;
@@ -97,10 +98,26 @@ public class VertexBufferBuilder implements VertexBufferView {
     }
 
     public NativeBuffer pop() {
+        return this.pop(NativeBufferAllocator.DEFAULT);
+    }
+
+    /**
+     * Copies the contents of the buffer into a new buffer from the given allocator.
+     *
+     * @return The new buffer, or null if this buffer is empty
+     */
+    public NativeBuffer pop(NativeBufferAllocator allocator) {
         if (this.writerOffset == 0) {
             return null;
         }
 
-        return NativeBuffer.copy(MemoryUtil.memByteBuffer(MemoryUtil.memAddress(this.buffer), this.writerOffset));
+        return NativeBuffer.copy(this.getWrittenBuffer(), allocator);
+    }
+
+    /**
+     * @return A view of the data which has been written into this buffer so far
+     */
+    public ByteBuffer getWrittenBuffer() {
+        return MemoryUtil.memByteBuffer(MemoryUtil.memAddress(this.buffer), this.writerOffset);
     }
 }
@@ -3,6 +3,9 @@ package me.jellysquid.mods.sodium.client.model.vertex.type;
 import me.jellysquid.mods.sodium.client.render.chunk.format.ChunkMeshAttribute;
 import me.jellysquid.mods.sodium.client.render.chunk.format.ModelVertexSink;
 
+import java.util.Collections;
+import java.util.List;
+
 public interface ChunkVertexType extends BlittableVertexType<ModelVertexSink>, CustomVertexType<ModelVertexSink, ChunkMeshAttribute> {
     /**
      * @return The scale to be applied to vertex coordinates
@@ -18,4 +21,11 @@ public interface ChunkVertexType extends BlittableVertexType<ModelVertexSink>, C
      * @return The scale to be applied to texture coordinates
      */
     float getTextureScale();
+
+    /**
+     * @return The shader defines needed to decode this vertex format
+     */
+    default List<String> getShaderDefines() {
+        return Collections.emptyList();
+    }
 }
@@ -25,6 +25,7 @@ import net.minecraft.client.render.model.ModelLoader;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.client.world.ClientWorld;
 import net.minecraft.entity.Entity;
+import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Box;
 import net.minecraft.util.math.MathHelper;
@@ -180,7 +181,7 @@ public class SodiumWorldRenderer implements ChunkStatusListener {
                 pitch != this.lastCameraPitch || yaw != this.lastCameraYaw;
 
         if (dirty) {
-            this.renderSectionManager.markGraphDirty();
+            this.renderSectionManager.markCameraDirty();
         }
 
         this.lastCameraX = pos.x;
@@ -373,7 +374,16 @@ public class SodiumWorldRenderer implements ChunkStatusListener {
      * Schedules chunk rebuilds for all chunks in the specified block region.
      */
     public void scheduleRebuildForBlockArea(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, boolean important) {
-        this.scheduleRebuildForChunks(minX >> 4, minY >> 4, minZ >> 4, maxX >> 4, maxY >> 4, maxZ >> 4, important);
+        BlockBox area = new BlockBox(minX, minY, minZ, maxX, maxY, maxZ);
+
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkY = minY >> 4; chunkY <= maxY >> 4; chunkY++) {
+                for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                    // Passing along the changed area allows sections to only render the affected blocks again
+                    this.renderSectionManager.scheduleRebuild(chunkX, chunkY, chunkZ, important, area);
+                }
+            }
+        }
     }
 
     /**
@@ -399,4 +409,9 @@ public class SodiumWorldRenderer implements ChunkStatusListener {
     public Collection<String> getMemoryDebugStrings() {
         return this.renderSectionManager.getDebugStrings();
     }
+
+    public Collection<String> getMetricsDebugStrings() {
+        return this.renderSectionManager.getMetrics()
+                .getDebugStrings();
+    }
 }
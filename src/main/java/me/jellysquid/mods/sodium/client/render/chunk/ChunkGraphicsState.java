@@ -4,19 +4,25 @@ import me.jellysquid.mods.sodium.client.gl.arena.GlBufferSegment;
 import me.jellysquid.mods.sodium.client.gl.util.ElementRange;
 import me.jellysquid.mods.sodium.client.model.quad.properties.ModelQuadFacing;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
+import me.jellysquid.mods.sodium.client.render.chunk.data.TranslucentQuadData;
+import me.jellysquid.mods.sodium.client.util.NativeBuffer;
 import org.apache.commons.lang3.Validate;
 
 import java.util.Map;
 
 public class ChunkGraphicsState {
     private final GlBufferSegment vertexSegment;
-    private final GlBufferSegment indexSegment;
+    private GlBufferSegment indexSegment;
 
     private final ElementRange[] parts;
 
+    private final TranslucentQuadData translucentQuads;
+
+    private final long vertexHash;
+    private long indexHash;
+
     public ChunkGraphicsState(GlBufferSegment vertexSegment, GlBufferSegment indexSegment, ChunkMeshData data) {
         Validate.notNull(vertexSegment);
-        Validate.notNull(indexSegment);
 
         this.vertexSegment = vertexSegment;
         this.indexSegment = indexSegment;
@@ -26,11 +32,19 @@ public class ChunkGraphicsState {
         for (Map.Entry<ModelQuadFacing, ElementRange> entry : data.getParts().entrySet()) {
             this.parts[entry.getKey().ordinal()] = entry.getValue();
         }
+
+        this.translucentQuads = data.getTranslucentQuads();
+
+        this.vertexHash = data.getVertexHash();
+        this.indexHash = data.getIndexHash();
     }
 
     public void delete() {
         this.vertexSegment.delete();
-        this.indexSegment.delete();
+
+        if (this.indexSegment != null) {
+            this.indexSegment.delete();
+        }
     }
 
     public ElementRange getModelPart(ModelQuadFacing facing) {
@@ -41,7 +55,50 @@ public class ChunkGraphicsState {
         return this.vertexSegment;
     }
 
+    /**
+     * @return The segment containing the index data of this state, or null if it is drawn using the shared index buffer
+     */
     public GlBufferSegment getIndexSegment() {
         return this.indexSegment;
     }
+
+    /**
+     * Replaces the index data of this state with a re-sorted copy. The element ranges of a sorted mesh don't depend on
+     * the order of its quads, so only the segment needs to change. The caller is responsible for deleting the
+     * previous segment.
+     */
+    public void setIndexSegment(GlBufferSegment indexSegment, long indexHash) {
+        Validate.notNull(indexSegment);
+
+        this.indexSegment = indexSegment;
+        this.indexHash = indexHash;
+    }
+
+    /**
+     * @return True if the mesh has the same vertex data and element ranges as this state
+     */
+    public boolean hasSameVertexData(ChunkMeshData data) {
+        return this.vertexHash == data.getVertexHash() &&
+                this.vertexSegment.getLength() == data.getVertexData().vertexBuffer().getLength();
+    }
+
+    /**
+     * @return True if the mesh has the same index data as this state, or if neither of them have any
+     */
+    public boolean hasSameIndexData(ChunkMeshData data) {
+        NativeBuffer indexBuffer = data.getVertexData().indexBuffer();
+
+        if (this.indexSegment == null || indexBuffer == null) {
+            return this.indexSegment == null && indexBuffer == null;
+        }
+
+        return this.indexHash == data.getIndexHash() && this.indexSegment.getLength() == indexBuffer.getLength();
+    }
+
+    /**
+     * @return The quads of this state's mesh which can be sorted again, or null if the mesh is not sorted
+     */
+    public TranslucentQuadData getTranslucentQuads() {
+        return this.translucentQuads;
+    }
 }
@@ -0,0 +1,287 @@
+package me.jellysquid.mods.sodium.client.render.chunk;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
+import net.minecraft.client.render.Camera;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Tracks the sections which are waiting to be rebuilt for each {@link ChunkUpdateType}. Unlike a simple FIFO queue,
+ * sections stay in the queue across graph updates until they are either submitted to the builder or become invalid,
+ * and are handed out in order of priority rather than in the order they were discovered.
+ *
+ * The priority of a section is computed lazily when draining the queue, since the camera will usually have moved
+ * between the time a section is enqueued and the time it is submitted. The sections which will be handed out are
+ * selected with a heap bounded to the number requested, so draining k sections from a queue of n sections takes
+ * O(n log k) time rather than sorting the whole queue. Sections which are closer to the camera, were visible in the
+ * last graph update, and lie in the direction the camera is looking will be built first.
+ */
+public class ChunkRebuildQueue {
+    /**
+     * The squared distance (in blocks) under which sections are always considered to be in front of the camera. This
+     * keeps the sections immediately around the player from being starved when looking straight up or down.
+     */
+    private static final float NEAR_DISTANCE_SQ = 32.0f * 32.0f;
+
+    /**
+     * The factor applied to the priority of sections which were not visible in the last graph update.
+     */
+    private static final float NOT_VISIBLE_PENALTY = 4.0f;
+
+    private final Map<ChunkUpdateType, ReferenceLinkedOpenHashSet<RenderSection>> queues = new EnumMap<>(ChunkUpdateType.class);
+
+    private float cameraX, cameraY, cameraZ;
+    private float lookX, lookY, lookZ;
+
+    private int frame = -1;
+
+    // Scratch arrays holding the heap of the highest priority sections when draining a queue
+    private RenderSection[] heapSections = new RenderSection[0];
+    private float[] heapPriorities = new float[0];
+
+    public ChunkRebuildQueue() {
+        for (ChunkUpdateType type : ChunkUpdateType.values()) {
+            this.queues.put(type, new ReferenceLinkedOpenHashSet<>());
+        }
+    }
+
+    /**
+     * Updates the camera state which is used to prioritize sections.
+     * @param camera The camera of the last graph update
+     * @param frame The frame index of the last graph update, used to determine which sections were visible
+     */
+    public void setCamera(Camera camera, int frame) {
+        Vec3d pos = camera.getPos();
+
+        this.cameraX = (float) pos.x;
+        this.cameraY = (float) pos.y;
+        this.cameraZ = (float) pos.z;
+
+        float pitch = camera.getPitch() * ((float) Math.PI / 180.0f);
+        float yaw = -camera.getYaw() * ((float) Math.PI / 180.0f);
+
+        float cosPitch = MathHelper.cos(pitch);
+
+        this.lookX = MathHelper.sin(yaw) * cosPitch;
+        this.lookY = -MathHelper.sin(pitch);
+        this.lookZ = MathHelper.cos(yaw) * cosPitch;
+
+        this.frame = frame;
+    }
+
+    /**
+     * Adds the section to the queue matching its pending update type. If the section is already queued, this does
+     * nothing.
+     */
+    public void enqueue(RenderSection section) {
+        ChunkUpdateType type = section.getPendingUpdate();
+
+        if (type != null) {
+            this.queues.get(type).add(section);
+        }
+    }
+
+    /**
+     * Removes the section from all queues. This should be called when the section is unloaded.
+     */
+    public void remove(RenderSection section) {
+        for (ReferenceLinkedOpenHashSet<RenderSection> queue : this.queues.values()) {
+            queue.remove(section);
+        }
+    }
+
+    /**
+     * Removes up to {@param limit} sections from the queue for the given update type, ordered from the highest to
+     * the lowest priority. Sections which have been disposed, no longer have a matching pending update, or are
+     * rejected by the filter are silently dropped from the queue, and don't count towards the limit.
+     */
+    public List<RenderSection> dequeue(ChunkUpdateType type, int limit, Predicate<RenderSection> filter) {
+        ReferenceLinkedOpenHashSet<RenderSection> queue = this.queues.get(type);
+
+        if (limit <= 0 || queue.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        int count = this.selectCandidates(queue, type, Math.min(limit, queue.size()), filter);
+
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+
+        RenderSection[] heapSections = this.heapSections;
+
+        // Repeatedly moving the lowest priority section to the end of the heap leaves the sections in order
+        for (int end = count - 1; end > 0; end--) {
+            this.swap(0, end);
+            this.siftDown(0, end);
+        }
+
+        List<RenderSection> sections = new ObjectArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            RenderSection section = heapSections[i];
+
+            queue.remove(section);
+            sections.add(section);
+        }
+
+        Arrays.fill(heapSections, 0, count, null);
+
+        return sections;
+    }
+
+    /**
+     * Finds the sections with the highest priority in the queue, without sorting the whole queue. The sections are
+     * kept in a max-heap of the given capacity, where the root is the lowest priority section found so far, and is
+     * replaced whenever a section with a higher priority is found.
+     *
+     * @return The number of sections in the heap
+     */
+    private int selectCandidates(ReferenceLinkedOpenHashSet<RenderSection> queue, ChunkUpdateType type, int capacity,
+                                 Predicate<RenderSection> filter) {
+        this.ensureHeapCapacity(capacity);
+
+        RenderSection[] heapSections = this.heapSections;
+        float[] heapPriorities = this.heapPriorities;
+
+        int size = 0;
+
+        var it = queue.iterator();
+
+        while (it.hasNext()) {
+            RenderSection section = it.next();
+
+            if (section.isDisposed() || section.getPendingUpdate() != type || !filter.test(section)) {
+                it.remove();
+                continue;
+            }
+
+            float priority = this.getPriority(section);
+
+            if (size < capacity) {
+                heapSections[size] = section;
+                heapPriorities[size] = priority;
+
+                this.siftUp(size++);
+            } else if (priority < heapPriorities[0]) {
+                heapSections[0] = section;
+                heapPriorities[0] = priority;
+
+                this.siftDown(0, size);
+            }
+        }
+
+        return size;
+    }
+
+    private void siftUp(int index) {
+        float[] priorities = this.heapPriorities;
+
+        while (index > 0) {
+            int parent = (index - 1) >> 1;
+
+            if (priorities[parent] >= priorities[index]) {
+                break;
+            }
+
+            this.swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index, int size) {
+        float[] priorities = this.heapPriorities;
+
+        while (true) {
+            int child = (index << 1) + 1;
+
+            if (child >= size) {
+                break;
+            }
+
+            if (child + 1 < size && priorities[child + 1] > priorities[child]) {
+                child++;
+            }
+
+            if (priorities[index] >= priorities[child]) {
+                break;
+            }
+
+            this.swap(index, child);
+            index = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        RenderSection section = this.heapSections[a];
+        this.heapSections[a] = this.heapSections[b];
+        this.heapSections[b] = section;
+
+        float priority = this.heapPriorities[a];
+        this.heapPriorities[a] = this.heapPriorities[b];
+        this.heapPriorities[b] = priority;
+    }
+
+    private void ensureHeapCapacity(int size) {
+        if (this.heapSections.length < size) {
+            int capacity = Math.max(size, this.heapSections.length * 2);
+
+            this.heapSections = new RenderSection[capacity];
+            this.heapPriorities = new float[capacity];
+        }
+    }
+
+    /**
+     * @return The priority of the section, where smaller values are more important
+     */
+    private float getPriority(RenderSection section) {
+        float dx = (section.getOriginX() + 8.0f) - this.cameraX;
+        float dy = (section.getOriginY() + 8.0f) - this.cameraY;
+        float dz = (section.getOriginZ() + 8.0f) - this.cameraZ;
+
+        float distanceSq = (dx * dx) + (dy * dy) + (dz * dz);
+        float priority = distanceSq;
+
+        if (distanceSq > NEAR_DISTANCE_SQ) {
+            // Scale between 1x (directly in front of the camera) and 4x (directly behind the camera)
+            float dot = ((dx * this.lookX) + (dy * this.lookY) + (dz * this.lookZ)) / (float) Math.sqrt(distanceSq);
+            float facing = 1.5f - (dot * 0.5f);
+
+            priority *= facing * facing;
+        }
+
+        if (section.getGraphInfo().getLastVisibleFrame() != this.frame) {
+            priority *= NOT_VISIBLE_PENALTY;
+        }
+
+        return priority;
+    }
+
+    public int size(ChunkUpdateType type) {
+        return this.queues.get(type).size();
+    }
+
+    public boolean isEmpty() {
+        for (ReferenceLinkedOpenHashSet<RenderSection> queue : this.queues.values()) {
+            if (!queue.isEmpty()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public void clear() {
+        for (ReferenceLinkedOpenHashSet<RenderSection> queue : this.queues.values()) {
+            queue.clear();
+        }
+    }
+}
@@ -3,7 +3,9 @@ package me.jellysquid.mods.sodium.client.render.chunk;
 import com.google.common.collect.Lists;
 import com.mojang.blaze3d.systems.RenderSystem;
 import me.jellysquid.mods.sodium.client.SodiumClientMod;
+import me.jellysquid.mods.sodium.client.gl.arena.GlBufferSegment;
 import me.jellysquid.mods.sodium.client.gl.attribute.GlVertexAttributeBinding;
+import me.jellysquid.mods.sodium.client.gl.buffer.GlBuffer;
 import me.jellysquid.mods.sodium.client.gl.buffer.GlBufferUsage;
 import me.jellysquid.mods.sodium.client.gl.buffer.GlMutableBuffer;
 import me.jellysquid.mods.sodium.client.gl.device.CommandList;
@@ -36,6 +38,10 @@ public class RegionChunkRenderer extends ShaderChunkRenderer {
     private final GlVertexAttributeBinding[] vertexAttributeBindings;
 
     private final GlMutableBuffer chunkInfoBuffer;
+    private final SharedQuadIndexBuffer sharedIndexBuffer;
+
+    // The largest number of elements drawn by a single call in the current batches
+    private int maxElementCount;
     private final boolean isBlockFaceCullingEnabled = SodiumClientMod.options().advanced.useBlockFaceCulling;
 
     public RegionChunkRenderer(RenderDevice device, ChunkVertexType vertexType) {
@@ -58,6 +64,8 @@ public class RegionChunkRenderer extends ShaderChunkRenderer {
             try (MemoryStack stack = MemoryStack.stackPush()) {
                 commandList.uploadData(this.chunkInfoBuffer, createChunkInfoBuffer(stack), GlBufferUsage.STATIC_DRAW);
             }
+
+            this.sharedIndexBuffer = new SharedQuadIndexBuffer(commandList, 16384);
         }
 
         this.batches = new MultiDrawBatch[GlIndexType.VALUES.length];
@@ -107,6 +115,10 @@ public class RegionChunkRenderer extends ShaderChunkRenderer {
 
             this.setModelMatrixUniforms(shader, matrixStack, region, camera);
 
+            if (!pass.isTranslucent()) {
+                this.sharedIndexBuffer.ensureCapacity(commandList, this.maxElementCount);
+            }
+
             GlTessellation tessellation = this.createTessellationForRegion(commandList, region.getArenas(), pass);
             executeDrawBatches(commandList, tessellation);
         }
@@ -119,6 +131,8 @@ public class RegionChunkRenderer extends ShaderChunkRenderer {
             batch.begin();
         }
 
+        this.maxElementCount = 0;
+
         for (RenderSection render : sortedChunks(sections, pass.isTranslucent())) {
             ChunkGraphicsState state = render.getGraphicsState(pass);
 
@@ -128,8 +142,10 @@ public class RegionChunkRenderer extends ShaderChunkRenderer {
 
             ChunkRenderBounds bounds = render.getBounds();
 
-            long indexOffset = state.getIndexSegment()
-                    .getOffset();
+            GlBufferSegment indexSegment = state.getIndexSegment();
+
+            // Meshes without index data of their own are drawn using the shared index buffer, which starts at zero
+            long indexOffset = indexSegment != null ? indexSegment.getOffset() : 0L;
 
             int baseVertex = state.getVertexSegment()
                     .getOffset() / this.vertexFormat.getStride();
@@ -182,7 +198,7 @@ public class RegionChunkRenderer extends ShaderChunkRenderer {
         GlTessellation tessellation = arenas.getTessellation(pass);
 
         if (tessellation == null) {
-            arenas.setTessellation(pass, tessellation = this.createRegionTessellation(commandList, arenas));
+            arenas.setTessellation(pass, tessellation = this.createRegionTessellation(commandList, arenas, pass));
         }
 
         return tessellation;
@@ -215,13 +231,18 @@ public class RegionChunkRenderer extends ShaderChunkRenderer {
         if (part != null) {
             MultiDrawBatch batch = this.batches[part.indexType().ordinal()];
             batch.add(baseIndexPointer + part.elementPointer(), part.elementCount(), baseVertexIndex + part.baseVertex());
+
+            this.maxElementCount = Math.max(this.maxElementCount, part.elementCount());
         }
     }
 
-    private GlTessellation createRegionTessellation(CommandList commandList, RenderRegion.RenderRegionArenas arenas) {
+    private GlTessellation createRegionTessellation(CommandList commandList, RenderRegion.RenderRegionArenas arenas, BlockRenderPass pass) {
+        // Only translucent meshes have their own index data, as the order of their quads changes when they are sorted
+        GlBuffer indexBuffer = pass.isTranslucent() ? arenas.indexBuffers.getBufferObject() : this.sharedIndexBuffer.getBufferObject();
+
         return commandList.createTessellation(GlPrimitiveType.TRIANGLES, new TessellationBinding[] {
                 TessellationBinding.forVertexBuffer(arenas.vertexBuffers.getBufferObject(), this.vertexAttributeBindings),
-                TessellationBinding.forElementBuffer(arenas.indexBuffers.getBufferObject())
+                TessellationBinding.forElementBuffer(indexBuffer)
         });
     }
 
@@ -233,8 +254,11 @@ public class RegionChunkRenderer extends ShaderChunkRenderer {
             batch.delete();
         }
 
-        RenderDevice.INSTANCE.createCommandList()
-                .deleteBuffer(this.chunkInfoBuffer);
+        try (CommandList commandList = RenderDevice.INSTANCE.createCommandList()) {
+            commandList.deleteBuffer(this.chunkInfoBuffer);
+
+            this.sharedIndexBuffer.delete(commandList);
+        }
     }
 
     private static Iterable<Map.Entry<RenderRegion, List<RenderSection>>> sortedRegions(ChunkRenderList list, boolean translucent) {
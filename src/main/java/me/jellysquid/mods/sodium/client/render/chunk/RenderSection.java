@@ -2,18 +2,20 @@ package me.jellysquid.mods.sodium.client.render.chunk;
 
 import me.jellysquid.mods.sodium.client.render.SodiumWorldRenderer;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildResult;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkBlockGeometry;
+import me.jellysquid.mods.sodium.client.render.chunk.graph.ChunkGraph;
 import me.jellysquid.mods.sodium.client.render.chunk.graph.ChunkGraphInfo;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderBounds;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
 import me.jellysquid.mods.sodium.client.render.chunk.region.RenderRegion;
+import me.jellysquid.mods.sodium.client.render.chunk.tasks.ChunkRebuildScope;
 import me.jellysquid.mods.sodium.client.render.texture.SpriteUtil;
-import me.jellysquid.mods.sodium.common.util.DirectionUtil;
 import net.minecraft.client.render.chunk.ChunkOcclusionData;
 import net.minecraft.client.texture.Sprite;
+import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkSectionPos;
-import net.minecraft.util.math.Direction;
 
 import java.util.EnumMap;
 import java.util.Map;
@@ -36,10 +38,12 @@ public class RenderSection {
     private final float regionOffsetY;
     private final float regionOffsetZ;
 
-    private final RenderSection[] adjacent = new RenderSection[DirectionUtil.ALL_DIRECTIONS.length];
-
     private ChunkRenderData data = ChunkRenderData.ABSENT;
     private CompletableFuture<?> rebuildTask = null;
+    private CompletableFuture<?> sortTask = null;
+
+    // The camera position which the translucent geometry of this section was last sorted against
+    private double sortX = Double.NaN, sortY = Double.NaN, sortZ = Double.NaN;
 
     private ChunkUpdateType pendingUpdate;
 
@@ -48,7 +52,18 @@ public class RenderSection {
 
     private int lastAcceptedBuildTime = -1;
 
-    public RenderSection(SodiumWorldRenderer worldRenderer, int chunkX, int chunkY, int chunkZ, RenderRegion region) {
+    // The per-block geometry of the last accepted build, if it was retained for incremental rebuilds
+    private ChunkBlockGeometry blockGeometry;
+
+    // The section-local region of blocks which have changed since the last accepted build, or null if no blocks have
+    // changed. If the whole section has been invalidated, the region is ignored and every block will be rendered.
+    private BlockBox dirtyBlocks;
+    private boolean dirtyAll = true;
+
+    // Incremented every time blocks are invalidated, so that finished builds can tell whether they are still current
+    private int blockUpdateVersion;
+
+    public RenderSection(SodiumWorldRenderer worldRenderer, int chunkX, int chunkY, int chunkZ, RenderRegion region, ChunkGraph graph) {
         this.worldRenderer = worldRenderer;
         this.region = region;
 
@@ -56,8 +71,6 @@ public class RenderSection {
         this.chunkY = chunkY;
         this.chunkZ = chunkZ;
 
-        this.graphInfo = new ChunkGraphInfo(this);
-
         this.graphicsStates = new EnumMap<>(BlockRenderPass.class);
 
         int rX = this.getChunkX() & (RenderRegion.REGION_WIDTH - 1);
@@ -69,15 +82,9 @@ public class RenderSection {
         this.regionOffsetZ = rZ * 16.0f;
 
         this.chunkId = RenderRegion.getChunkIndex(rX, rY, rZ);
-    }
 
-
-    public RenderSection getAdjacent(Direction dir) {
-        return this.adjacent[dir.ordinal()];
-    }
-
-    public void setAdjacentNode(Direction dir, RenderSection node) {
-        this.adjacent[dir.ordinal()] = node;
+        // The graph state of the section is stored within the graph itself
+        this.graphInfo = new ChunkGraphInfo(graph, graph.add(this));
     }
 
     /**
@@ -89,6 +96,15 @@ public class RenderSection {
             this.rebuildTask.cancel(false);
             this.rebuildTask = null;
         }
+
+        this.cancelSortTask();
+    }
+
+    private void cancelSortTask() {
+        if (this.sortTask != null) {
+            this.sortTask.cancel(false);
+            this.sortTask = null;
+        }
     }
 
     public ChunkRenderData getData() {
@@ -105,9 +121,53 @@ public class RenderSection {
         this.setData(ChunkRenderData.ABSENT);
         this.deleteGraphicsState();
 
+        this.blockGeometry = null;
+
         this.disposed = true;
     }
 
+    /**
+     * Releases the device memory of this section's meshes while keeping the rest of its render data, so that it still
+     * takes part in the visibility graph. The section is marked for a rebuild, which will be scheduled once it comes
+     * back into view.
+     *
+     * @return The number of bytes of device memory which were released
+     */
+    public long evictGraphicsState() {
+        long bytes = this.getDeviceMemoryUsage();
+
+        this.cancelRebuildTask();
+        this.deleteGraphicsState();
+
+        // The retained geometry would only be used to rebuild the section incrementally, which needs the mesh anyways
+        this.blockGeometry = null;
+
+        this.markForUpdate(ChunkUpdateType.REBUILD);
+
+        return bytes;
+    }
+
+    /**
+     * @return The number of bytes of device memory used by the meshes of this section
+     */
+    public long getDeviceMemoryUsage() {
+        long bytes = 0;
+
+        for (ChunkGraphicsState state : this.graphicsStates.values()) {
+            bytes += state.getVertexSegment().getLength();
+
+            if (state.getIndexSegment() != null) {
+                bytes += state.getIndexSegment().getLength();
+            }
+        }
+
+        return bytes;
+    }
+
+    public boolean hasGraphicsState() {
+        return !this.graphicsStates.isEmpty();
+    }
+
     private void deleteGraphicsState() {
         for (ChunkGraphicsState state : this.graphicsStates.values()) {
             state.delete();
@@ -272,8 +332,11 @@ public class RenderSection {
         return this.graphInfo;
     }
 
-    public void setOcclusionData(ChunkOcclusionData occlusionData) {
-        this.graphInfo.setOcclusionData(occlusionData);
+    /**
+     * @return True if the occlusion data changed which sections can be seen through this section
+     */
+    public boolean setOcclusionData(ChunkOcclusionData occlusionData) {
+        return this.graphInfo.setOcclusionData(occlusionData);
     }
 
     public ChunkUpdateType getPendingUpdate() {
@@ -292,21 +355,177 @@ public class RenderSection {
             this.rebuildTask = null;
         }
 
+        // The rebuild will sort the new geometry itself, so any pending sort of the old geometry is useless
+        this.cancelSortTask();
+
         this.rebuildTask = task;
         this.pendingUpdate = null;
     }
 
+    /**
+     * Returns true if the camera has moved far enough from the position which the translucent geometry of this
+     * section was last sorted against for the order of its quads to have possibly changed.
+     *
+     * @param threshold The distance the camera needs to move before the section is sorted again
+     */
+    public boolean needsTranslucencySort(double x, double y, double z, double threshold) {
+        if (this.sortTask != null && !this.sortTask.isDone()) {
+            return false;
+        }
+
+        double dx = x - this.sortX;
+        double dy = y - this.sortY;
+        double dz = z - this.sortZ;
+
+        // If the section has never been sorted, the position is NaN and the comparison will fail
+        return !((dx * dx) + (dy * dy) + (dz * dz) <= threshold * threshold);
+    }
+
+    /**
+     * Records the camera position which the translucent geometry of this section is being sorted against, either by
+     * a sort task or by a rebuild.
+     *
+     * @param task The sort task, or null if the sort is being done by a rebuild
+     */
+    public void onSortSubmitted(CompletableFuture<?> task, double x, double y, double z) {
+        if (task != null) {
+            this.cancelSortTask();
+            this.sortTask = task;
+        }
+
+        this.sortX = x;
+        this.sortY = y;
+        this.sortZ = z;
+    }
+
+    /**
+     * @return The graphics state of each render pass which contains sortable translucent geometry
+     */
+    public Map<BlockRenderPass, ChunkGraphicsState> getSortableGraphicsStates() {
+        Map<BlockRenderPass, ChunkGraphicsState> states = new EnumMap<>(BlockRenderPass.class);
+
+        for (Map.Entry<BlockRenderPass, ChunkGraphicsState> entry : this.graphicsStates.entrySet()) {
+            if (entry.getValue().getTranslucentQuads() != null) {
+                states.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return states;
+    }
+
+    /**
+     * @return True if any render pass of this section contains sortable translucent geometry
+     */
+    public boolean hasSortableGeometry() {
+        for (ChunkGraphicsState state : this.graphicsStates.values()) {
+            if (state.getTranslucentQuads() != null) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     public boolean isBuilt() {
         return this.data != ChunkRenderData.ABSENT;
     }
 
     public boolean canAcceptBuildResults(ChunkBuildResult result) {
+        if (result.isSortResult()) {
+            // Sort results are checked against the graphics state they were created for when they are uploaded
+            return !this.isDisposed();
+        }
+
         return !this.isDisposed() && result.buildTime > this.lastAcceptedBuildTime;
     }
 
     public void onBuildFinished(ChunkBuildResult result) {
         this.setData(result.data);
         this.lastAcceptedBuildTime = result.buildTime;
+
+        this.blockGeometry = result.geometry;
+
+        // If no blocks were invalidated while the task was running, then the result is completely up-to-date
+        if (result.blockUpdateVersion == this.blockUpdateVersion) {
+            this.dirtyBlocks = null;
+            this.dirtyAll = false;
+        }
+    }
+
+    /**
+     * Marks the blocks within the given region (in world coordinates) as needing to be rendered again. The region is
+     * clipped to the bounds of this section.
+     */
+    public void markBlocksDirty(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        this.blockUpdateVersion++;
+
+        if (this.dirtyAll) {
+            return;
+        }
+
+        int x1 = Math.max(minX - this.getOriginX(), 0);
+        int y1 = Math.max(minY - this.getOriginY(), 0);
+        int z1 = Math.max(minZ - this.getOriginZ(), 0);
+
+        int x2 = Math.min(maxX - this.getOriginX(), 15);
+        int y2 = Math.min(maxY - this.getOriginY(), 15);
+        int z2 = Math.min(maxZ - this.getOriginZ(), 15);
+
+        if (x1 > x2 || y1 > y2 || z1 > z2) {
+            return;
+        }
+
+        if (this.dirtyBlocks != null) {
+            x1 = Math.min(x1, this.dirtyBlocks.getMinX());
+            y1 = Math.min(y1, this.dirtyBlocks.getMinY());
+            z1 = Math.min(z1, this.dirtyBlocks.getMinZ());
+
+            x2 = Math.max(x2, this.dirtyBlocks.getMaxX());
+            y2 = Math.max(y2, this.dirtyBlocks.getMaxY());
+            z2 = Math.max(z2, this.dirtyBlocks.getMaxZ());
+        }
+
+        this.dirtyBlocks = new BlockBox(x1, y1, z1, x2, y2, z2);
+    }
+
+    /**
+     * Marks every block in this section as needing to be rendered again.
+     */
+    public void markAllBlocksDirty() {
+        this.blockUpdateVersion++;
+
+        this.dirtyBlocks = null;
+        this.dirtyAll = true;
+    }
+
+    /**
+     * Decides how much of this section the next rebuild needs to render. Sections are only rebuilt incrementally
+     * after they have received block updates, as keeping the geometry of every section around would double the memory
+     * needed for chunk meshes.
+     *
+     * @param allowIncremental True if incremental rebuilds are enabled
+     * @param maxDirtyBlocks The maximum number of changed blocks for which an incremental rebuild will be used
+     */
+    public ChunkRebuildScope createRebuildScope(boolean allowIncremental, int maxDirtyBlocks) {
+        if (!allowIncremental || this.dirtyAll) {
+            return ChunkRebuildScope.full(this.blockUpdateVersion, false);
+        }
+
+        BlockBox dirty = this.dirtyBlocks;
+
+        if (dirty == null || this.blockGeometry == null ||
+                dirty.getBlockCountX() * dirty.getBlockCountY() * dirty.getBlockCountZ() > maxDirtyBlocks) {
+            return ChunkRebuildScope.full(this.blockUpdateVersion, true);
+        }
+
+        return ChunkRebuildScope.incremental(this.blockUpdateVersion, this.blockGeometry, this.data, dirty);
+    }
+
+    /**
+     * @return The per-block geometry retained for incremental rebuilds, or null if none is retained
+     */
+    public ChunkBlockGeometry getBlockGeometry() {
+        return this.blockGeometry;
     }
 
     public int getChunkId() {
@@ -8,25 +8,39 @@ import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.objects.ObjectArrayFIFOQueue;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectList;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
 import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import me.jellysquid.mods.sodium.client.gl.device.CommandList;
 import me.jellysquid.mods.sodium.client.gl.device.RenderDevice;
+import me.jellysquid.mods.sodium.client.gui.SodiumGameOptions;
+import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
 import me.jellysquid.mods.sodium.client.render.SodiumWorldRenderer;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildResult;
+import me.jellysquid.mods.sodium.client.render.chunk.cache.ChunkMeshCache;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuilder;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkBlockGeometry;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
 import me.jellysquid.mods.sodium.client.render.chunk.format.ChunkModelVertexFormats;
-import me.jellysquid.mods.sodium.client.render.chunk.graph.ChunkGraphInfo;
+import me.jellysquid.mods.sodium.client.render.chunk.graph.ChunkGraph;
 import me.jellysquid.mods.sodium.client.render.chunk.graph.ChunkGraphIterationQueue;
+import me.jellysquid.mods.sodium.client.render.chunk.graph.ChunkGraphTraversalCache;
+import me.jellysquid.mods.sodium.client.render.chunk.metrics.ChunkRenderMetrics;
+import me.jellysquid.mods.sodium.client.render.chunk.metrics.GraphTraversalEvent;
+import me.jellysquid.mods.sodium.client.render.chunk.occlusion.SoftwareOcclusionCuller;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPassManager;
 import me.jellysquid.mods.sodium.client.render.chunk.region.RenderRegion;
 import me.jellysquid.mods.sodium.client.render.chunk.region.RenderRegionManager;
 import me.jellysquid.mods.sodium.client.render.chunk.region.RenderRegionVisibility;
+import me.jellysquid.mods.sodium.client.render.chunk.tasks.ChunkRebuildScope;
 import me.jellysquid.mods.sodium.client.render.chunk.tasks.ChunkRenderBuildTask;
 import me.jellysquid.mods.sodium.client.render.chunk.tasks.ChunkRenderEmptyBuildTask;
 import me.jellysquid.mods.sodium.client.render.chunk.tasks.ChunkRenderRebuildTask;
+import me.jellysquid.mods.sodium.client.render.chunk.tasks.ChunkRenderSortTask;
 import me.jellysquid.mods.sodium.client.util.MathUtil;
+import me.jellysquid.mods.sodium.client.util.math.AabbBatch;
+import me.jellysquid.mods.sodium.client.util.math.BatchFrustumCuller;
 import me.jellysquid.mods.sodium.client.util.math.FrustumExtended;
 import me.jellysquid.mods.sodium.client.world.ChunkStatusListener;
 import me.jellysquid.mods.sodium.client.world.ClientChunkManagerExtended;
@@ -67,22 +81,79 @@ public class RenderSectionManager implements ChunkStatusListener {
      */
     private static final float FOG_PLANE_OFFSET = 12.0f;
 
+    /**
+     * The maximum number of changed blocks for which a section will be rebuilt incrementally. Past this point, splicing
+     * the geometry of the changed blocks is no longer much cheaper than rendering the section again.
+     */
+    private static final int MAX_INCREMENTAL_DIRTY_BLOCKS = 512;
+
+    /**
+     * The minimum distance the camera needs to move before the translucent geometry of a section is sorted again.
+     */
+    private static final double MIN_SORT_DISTANCE = 1.0D;
+
+    /**
+     * The distance the camera needs to move before a section is sorted again grows with its distance from the camera,
+     * as the order of far away quads changes much more slowly.
+     */
+    private static final double SORT_DISTANCE_FACTOR = 1.0D / 8.0D;
+
+    /**
+     * The fraction of the device memory budget which meshes are evicted down to once the budget has been exceeded.
+     * This leaves room for new meshes to be uploaded before sections need to be evicted again.
+     */
+    private static final double MEMORY_BUDGET_EVICTION_TARGET = 0.75D;
+
+    /**
+     * The number of bytes of deferred results which are uploaded between checks of the upload time limit.
+     */
+    private static final long UPLOAD_BATCH_SIZE = 4L * 1024L * 1024L;
+
+    /**
+     * The maximum distance an opaque section can be from the camera in order to be rasterized as an occluder. Sections
+     * further away than this cover too few texels of the depth buffer to hide much behind them.
+     */
+    private static final double OCCLUDER_DISTANCE = Math.pow(96, 2.0);
+
     private final ChunkBuilder builder;
 
     private final RenderRegionManager regions;
     private final ClonedChunkSectionCache sectionCache;
 
+    // The on-disk cache of built meshes, or null if it is disabled
+    private final ChunkMeshCache meshCache;
+
+    private final ChunkRenderMetrics metrics;
+
     private final Long2ReferenceMap<RenderSection> sections = new Long2ReferenceOpenHashMap<>();
 
-    private final Map<ChunkUpdateType, PriorityQueue<RenderSection>> rebuildQueues = new EnumMap<>(ChunkUpdateType.class);
+    // The sections which have been visible, ordered from the least to the most recently visible
+    private final ReferenceLinkedOpenHashSet<RenderSection> recentlyVisibleSections = new ReferenceLinkedOpenHashSet<>();
+
+    private final ChunkRebuildQueue rebuildQueue = new ChunkRebuildQueue();
+
+    // The important rebuilds which have been submitted but not uploaded yet, in the order they were submitted
+    private final PriorityQueue<CompletableFuture<ChunkBuildResult>> importantBuilds = new ObjectArrayFIFOQueue<>();
 
     private final ChunkAdjacencyMap adjacencyMap = new ChunkAdjacencyMap();
 
     private final ChunkRenderList chunkRenderList = new ChunkRenderList();
+    private final ChunkGraph graph;
+
+    private final BatchFrustumCuller frustumCuller = BatchFrustumCuller.create();
+    private final AabbBatch sectionBounds = new AabbBatch(4096);
+    private boolean[] sectionVisibility = new boolean[0];
     private final ChunkGraphIterationQueue iterationQueue = new ChunkGraphIterationQueue();
 
+    // The sections which are reachable from the camera's section, or null if the graph is searched again every time
+    private final ChunkGraphTraversalCache traversalCache;
+
+    // Hides the sections behind nearby opaque sections, or null if software occlusion culling is disabled
+    private final SoftwareOcclusionCuller occlusionCuller;
+
     private final ObjectList<RenderSection> tickableChunks = new ObjectArrayList<>();
     private final ObjectList<BlockEntity> visibleBlockEntities = new ObjectArrayList<>();
+    private final ObjectList<RenderSection> sortableChunks = new ObjectArrayList<>();
 
     private final RegionChunkRenderer chunkRenderer;
 
@@ -91,6 +162,9 @@ public class RenderSectionManager implements ChunkStatusListener {
 
     private final int renderDistance;
 
+    private final boolean useIncrementalRebuilds;
+    private final boolean useTranslucencySorting;
+
     private float cameraX, cameraY, cameraZ;
     private int centerChunkX, centerChunkZ;
 
@@ -105,24 +179,42 @@ public class RenderSectionManager implements ChunkStatusListener {
 
     private int currentFrame = 0;
 
+    private int evictedSections;
+
     public RenderSectionManager(SodiumWorldRenderer worldRenderer, BlockRenderPassManager renderPassManager, ClientWorld world, int renderDistance, CommandList commandList) {
-        this.chunkRenderer = new RegionChunkRenderer(RenderDevice.INSTANCE, ChunkModelVertexFormats.DEFAULT);
+        ChunkVertexType vertexType = SodiumClientMod.options().advanced.useCompactVertexFormat ?
+                ChunkModelVertexFormats.COMPACT : ChunkModelVertexFormats.DEFAULT;
+
+        this.chunkRenderer = new RegionChunkRenderer(RenderDevice.INSTANCE, vertexType);
 
         this.worldRenderer = worldRenderer;
         this.world = world;
 
-        this.builder = new ChunkBuilder(ChunkModelVertexFormats.DEFAULT);
+        this.regions = new RenderRegionManager(commandList, vertexType);
+
+        this.metrics = new ChunkRenderMetrics(this.rebuildQueue, this.regions);
+
+        // Workers can write finished meshes straight into memory owned by the staging buffer, if it provides any
+        this.builder = new ChunkBuilder(vertexType, this.regions.getStagingBuffer().getMeshAllocator(), this.metrics);
         this.builder.init(world, renderPassManager);
 
         this.needsUpdate = true;
         this.renderDistance = renderDistance;
 
-        this.regions = new RenderRegionManager(commandList);
+        this.graph = new ChunkGraph(renderDistance, world.getBottomSectionCoord(),
+                world.getTopSectionCoord() - world.getBottomSectionCoord());
+
+        // Merged quads span multiple blocks, so the geometry of individual blocks can't be retained with greedy meshing
+        this.useIncrementalRebuilds = SodiumClientMod.options().advanced.useIncrementalChunkRebuilds &&
+                !SodiumClientMod.options().advanced.isGreedyMeshingEnabled();
+        this.useTranslucencySorting = SodiumClientMod.options().advanced.useTranslucentFaceSorting;
+
+        this.traversalCache = SodiumClientMod.options().advanced.useTraversalCache ? new ChunkGraphTraversalCache() : null;
+        this.occlusionCuller = SodiumClientMod.options().advanced.useSoftwareOcclusionCulling ? new SoftwareOcclusionCuller() : null;
+
         this.sectionCache = new ClonedChunkSectionCache(this.world);
 
-        for (ChunkUpdateType type : ChunkUpdateType.values()) {
-            this.rebuildQueues.put(type, new ObjectArrayFIFOQueue<>());
-        }
+        this.meshCache = SodiumClientMod.options().advanced.useMeshCache ? new ChunkMeshCache(world, vertexType) : null;
     }
 
     public void loadChunks() {
@@ -140,10 +232,31 @@ public class RenderSectionManager implements ChunkStatusListener {
     public void update(Camera camera, FrustumExtended frustum, int frame, boolean spectator) {
         this.resetLists();
 
-        this.regions.updateVisibility(frustum);
+        this.frustumCuller.setFrustum(frustum);
+        this.regions.updateVisibility(this.frustumCuller);
+
+        if (this.occlusionCuller != null) {
+            this.occlusionCuller.begin(frustum);
+        }
 
         this.setup(camera);
-        this.iterateChunks(camera, frustum, frame, spectator);
+
+        GraphTraversalEvent event = new GraphTraversalEvent();
+        event.begin();
+
+        long start = System.nanoTime();
+
+        if (this.traversalCache != null) {
+            this.iterateCachedChunks(camera, frustum, frame, spectator);
+        } else {
+            this.iterateChunks(camera, frustum, frame, spectator);
+        }
+
+        this.metrics.recordTraversal(System.nanoTime() - start);
+
+        event.commit(this.iterationQueue.size());
+
+        this.rebuildQueue.setCamera(camera, frame);
 
         this.needsUpdate = false;
     }
@@ -170,40 +283,173 @@ public class RenderSectionManager implements ChunkStatusListener {
     private void iterateChunks(Camera camera, FrustumExtended frustum, int frame, boolean spectator) {
         this.initSearch(camera, frustum, frame, spectator);
 
+        ChunkGraph graph = this.graph;
         ChunkGraphIterationQueue queue = this.iterationQueue;
 
         for (int i = 0; i < queue.size(); i++) {
-            RenderSection section = queue.getRender(i);
-            Direction flow = queue.getDirection(i);
+            int section = queue.getSection(i);
+            int flow = queue.getDirection(i);
 
-            this.schedulePendingUpdates(section);
+            this.schedulePendingUpdates(graph.getSection(section));
 
-            for (Direction dir : DirectionUtil.ALL_DIRECTIONS) {
-                if (this.isCulled(section.getGraphInfo(), flow, dir)) {
+            for (int dir = 0; dir < DirectionUtil.ALL_DIRECTIONS.length; dir++) {
+                if (this.isCulled(section, flow, dir)) {
                     continue;
                 }
 
-                RenderSection adj = section.getAdjacent(dir);
+                int adj = graph.getAdjacent(section, dir);
 
-                if (adj != null && this.isWithinRenderDistance(adj)) {
-                    this.bfsEnqueue(section, adj, DirectionUtil.getOpposite(dir));
+                if (adj >= 0 && this.isWithinRenderDistance(adj)) {
+                    this.bfsEnqueue(section, adj, getOpposite(dir));
                 }
             }
         }
     }
 
-    private void schedulePendingUpdates(RenderSection section) {
-        if (section.getPendingUpdate() == null || !this.adjacencyMap.hasNeighbors(section.getChunkX(), section.getChunkZ())) {
-            return;
+    /**
+     * Finds the visible sections by testing the sections which are reachable from the camera's section against the
+     * frustum. The graph is only searched again once the camera moves into another section, or the graph changes.
+     */
+    private void iterateCachedChunks(Camera camera, FrustumExtended frustum, int frame, boolean spectator) {
+        this.currentFrame = frame;
+        this.frustum = frustum;
+        this.useOcclusionCulling = this.shouldUseOcclusionCulling(camera, spectator);
+
+        this.iterationQueue.clear();
+
+        BlockPos origin = camera.getBlockPos();
+        long originSection = ChunkSectionPos.asLong(origin.getX() >> 4, origin.getY() >> 4, origin.getZ() >> 4);
+
+        if (!this.traversalCache.isValid(originSection, this.useOcclusionCulling)) {
+            this.searchReachableChunks(origin, this.traversalCache.begin(originSection, this.useOcclusionCulling));
         }
 
-        PriorityQueue<RenderSection> queue = this.rebuildQueues.get(section.getPendingUpdate());
+        ChunkGraph graph = this.graph;
+        ChunkGraphIterationQueue reachable = this.traversalCache.getSections();
+
+        // Sections in regions which are only partially visible need to be tested against the frustum themselves, which
+        // is done for all of them at once before the visible sections are collected
+        AabbBatch bounds = this.sectionBounds;
+        bounds.clear();
+
+        for (int i = 0; i < reachable.size(); i++) {
+            int section = reachable.getSection(i);
+
+            if (graph.getRegion(section).getVisibility() == RenderRegionVisibility.VISIBLE) {
+                float x = graph.getSectionX(section) << 4;
+                float y = graph.getSectionY(section) << 4;
+                float z = graph.getSectionZ(section) << 4;
+
+                bounds.add(x, y, z, x + 16.0f, y + 16.0f, z + 16.0f);
+            }
+        }
+
+        if (this.sectionVisibility.length < bounds.size()) {
+            this.sectionVisibility = new boolean[bounds.size() * 2];
+        }
+
+        this.frustumCuller.testIntersection(bounds, this.sectionVisibility);
+
+        int tested = 0;
+
+        for (int i = 0; i < reachable.size(); i++) {
+            int section = reachable.getSection(i);
+
+            RenderRegionVisibility visibility = graph.getRegion(section).getVisibility();
+
+            if (visibility == RenderRegionVisibility.CULLED) {
+                continue;
+            } else if (visibility == RenderRegionVisibility.VISIBLE && !this.sectionVisibility[tested++]) {
+                continue;
+            }
 
-        if (queue.size() >= 32) {
+            graph.setLastVisibleFrame(section, frame);
+
+            this.schedulePendingUpdates(graph.getSection(section));
+            this.addVisible(section, reachable.getDirection(i));
+        }
+    }
+
+    /**
+     * Searches the graph for every section which can be seen from the camera's section through the occlusion graph,
+     * ignoring the frustum, and stores them in the traversal cache.
+     */
+    private void searchReachableChunks(BlockPos origin, int search) {
+        ChunkGraph graph = this.graph;
+        ChunkGraphIterationQueue queue = this.traversalCache.getSections();
+
+        int chunkX = origin.getX() >> 4;
+        int chunkY = origin.getY() >> 4;
+        int chunkZ = origin.getZ() >> 4;
+
+        this.centerChunkX = chunkX;
+        this.centerChunkZ = chunkZ;
+
+        int root = graph.find(chunkX, chunkY, chunkZ);
+
+        if (root >= 0) {
+            graph.resetCullingState(root);
+            graph.setLastSearch(root, search);
+
+            queue.add(root, -1);
+        } else {
+            chunkY = MathHelper.clamp(chunkY, this.world.getBottomSectionCoord(), this.world.getTopSectionCoord() - 1);
+
+            List<RenderSection> sorted = new ArrayList<>();
+
+            for (int x2 = -this.renderDistance; x2 <= this.renderDistance; ++x2) {
+                for (int z2 = -this.renderDistance; z2 <= this.renderDistance; ++z2) {
+                    int section = graph.find(chunkX + x2, chunkY, chunkZ + z2);
+
+                    if (section < 0) {
+                        continue;
+                    }
+
+                    graph.resetCullingState(section);
+                    graph.setLastSearch(section, search);
+
+                    sorted.add(graph.getSection(section));
+                }
+            }
+
+            sorted.sort(Comparator.comparingDouble(node -> node.getSquaredDistance(origin)));
+
+            for (RenderSection render : sorted) {
+                queue.add(render.getGraphInfo().getIndex(), -1);
+            }
+        }
+
+        for (int i = 0; i < queue.size(); i++) {
+            int section = queue.getSection(i);
+            int flow = queue.getDirection(i);
+
+            for (int dir = 0; dir < DirectionUtil.ALL_DIRECTIONS.length; dir++) {
+                if (this.isCulled(section, flow, dir)) {
+                    continue;
+                }
+
+                int adj = graph.getAdjacent(section, dir);
+
+                if (adj < 0 || !this.isWithinRenderDistance(adj) || graph.getLastSearch(adj) == search) {
+                    continue;
+                }
+
+                int adjFlow = getOpposite(dir);
+
+                graph.setLastSearch(adj, search);
+                graph.setCullingState(adj, graph.getCullingState(section), adjFlow);
+
+                queue.add(adj, adjFlow);
+            }
+        }
+    }
+
+    private void schedulePendingUpdates(RenderSection section) {
+        if (section.getPendingUpdate() == null || !this.hasNeighbors(section)) {
             return;
         }
 
-        queue.enqueue(section);
+        this.rebuildQueue.enqueue(section);
     }
 
     private void addChunkToVisible(RenderSection render) {
@@ -212,6 +458,10 @@ public class RenderSectionManager implements ChunkStatusListener {
         if (render.isTickable()) {
             this.tickableChunks.add(render);
         }
+
+        if (this.useTranslucencySorting && render.hasSortableGeometry()) {
+            this.sortableChunks.add(render);
+        }
     }
 
     private void addEntitiesToRenderLists(RenderSection render) {
@@ -223,13 +473,10 @@ public class RenderSectionManager implements ChunkStatusListener {
     }
 
     private void resetLists() {
-        for (PriorityQueue<RenderSection> queue : this.rebuildQueues.values()) {
-            queue.clear();
-        }
-
         this.visibleBlockEntities.clear();
         this.chunkRenderList.clear();
         this.tickableChunks.clear();
+        this.sortableChunks.clear();
     }
 
     public Collection<BlockEntity> getVisibleBlockEntities() {
@@ -243,6 +490,8 @@ public class RenderSectionManager implements ChunkStatusListener {
         for (int y = this.world.getBottomSectionCoord(); y < this.world.getTopSectionCoord(); y++) {
             this.needsUpdate |= this.loadSection(x, y, z);
         }
+
+        this.invalidateTraversalCache();
     }
 
     @Override
@@ -252,12 +501,14 @@ public class RenderSectionManager implements ChunkStatusListener {
         for (int y = this.world.getBottomSectionCoord(); y < this.world.getTopSectionCoord(); y++) {
             this.needsUpdate |= this.unloadSection(x, y, z);
         }
+
+        this.invalidateTraversalCache();
     }
 
     private boolean loadSection(int x, int y, int z) {
         RenderRegion region = this.regions.createRegionForChunk(x, y, z);
 
-        RenderSection render = new RenderSection(this.worldRenderer, x, y, z, region);
+        RenderSection render = new RenderSection(this.worldRenderer, x, y, z, region, this.graph);
         region.addChunk(render);
 
         this.sections.put(ChunkSectionPos.asLong(x, y, z), render);
@@ -271,8 +522,6 @@ public class RenderSectionManager implements ChunkStatusListener {
             render.markForUpdate(ChunkUpdateType.INITIAL_BUILD);
         }
 
-        this.connectNeighborNodes(render);
-
         return true;
     }
 
@@ -285,7 +534,9 @@ public class RenderSectionManager implements ChunkStatusListener {
 
         chunk.delete();
 
-        this.disconnectNeighborNodes(chunk);
+        this.rebuildQueue.remove(chunk);
+        this.recentlyVisibleSections.remove(chunk);
+        this.graph.remove(chunk);
 
         RenderRegion region = chunk.getRegion();
         region.removeChunk(chunk);
@@ -320,72 +571,202 @@ public class RenderSectionManager implements ChunkStatusListener {
     }
 
     public void updateChunks() {
-        PriorityQueue<CompletableFuture<ChunkBuildResult>> blockingFutures = this.submitRebuildTasks(ChunkUpdateType.IMPORTANT_REBUILD);
+        this.builder.updateActiveWorkers(this.rebuildQueue.size(ChunkUpdateType.INITIAL_BUILD) +
+                this.rebuildQueue.size(ChunkUpdateType.REBUILD));
 
+        this.submitRebuildTasks(ChunkUpdateType.IMPORTANT_REBUILD);
         this.submitRebuildTasks(ChunkUpdateType.INITIAL_BUILD);
         this.submitRebuildTasks(ChunkUpdateType.REBUILD);
 
+        // Sorting is only done with whatever budget is left after rebuilds, since it only improves existing geometry
+        this.submitSortTasks();
+
+        SodiumGameOptions.AdvancedSettings options = SodiumClientMod.options().advanced;
+
+        long uploadTimeLimit = options.chunkUploadTimeLimit * 1_000_000L;
+        long uploadDeadline = System.nanoTime() + uploadTimeLimit;
+
+        long uploadByteLimit = options.chunkUploadLimit > 0 ? options.chunkUploadLimit * 1024L * 1024L : Long.MAX_VALUE;
+
         // Try to complete some other work on the main thread while we wait for rebuilds to complete
-        this.needsUpdate |= this.performPendingUploads();
+        boolean uploaded = this.performPendingUploads(uploadByteLimit, uploadTimeLimit > 0 ? uploadDeadline : Long.MAX_VALUE);
 
-        if (!blockingFutures.isEmpty()) {
+        if (uploaded) {
             this.needsUpdate = true;
-            this.regions.upload(RenderDevice.INSTANCE.createCommandList(), new FutureQueueDrainingIterator<>(blockingFutures));
         }
 
-        this.regions.cleanup();
-    }
+        if (!this.importantBuilds.isEmpty()) {
+            this.needsUpdate = true;
+            uploaded = true;
 
-    private PriorityQueue<CompletableFuture<ChunkBuildResult>> submitRebuildTasks(ChunkUpdateType filterType) {
-        int budget = filterType.isImportant() ? Integer.MAX_VALUE : this.builder.getSchedulingBudget();
+            // Important rebuilds are waited on for whatever time is left, and any which are still running afterwards
+            // are uploaded on a later frame instead
+            Iterator<ChunkBuildResult> it = uploadTimeLimit > 0 ?
+                    new FutureQueueDrainingIterator<>(this.importantBuilds, uploadDeadline) :
+                    new FutureQueueDrainingIterator<>(this.importantBuilds);
 
-        PriorityQueue<CompletableFuture<ChunkBuildResult>> immediateFutures = new ObjectArrayFIFOQueue<>();
-        PriorityQueue<RenderSection> queue = this.rebuildQueues.get(filterType);
+            this.regions.upload(RenderDevice.INSTANCE.createCommandList(), it);
+        }
 
-        while (budget > 0 && !queue.isEmpty()) {
-            RenderSection section = queue.dequeue();
+        this.enforceMemoryBudget(uploaded);
 
-            if (section.isDisposed()) {
-                continue;
-            }
+        this.regions.cleanup();
 
-            if (section.getPendingUpdate() != filterType) {
-                SodiumClientMod.logger().warn("{} changed update type to {} while in queue for {}, skipping",
-                        section, section.getPendingUpdate(), filterType);
+        this.metrics.update();
+    }
 
-                continue;
-            }
+    private void submitRebuildTasks(ChunkUpdateType filterType) {
+        int budget = filterType.isImportant() ? Integer.MAX_VALUE : this.builder.getSchedulingBudget();
 
+        // The neighbors of a section might have been unloaded since it was queued, in which case it will be picked up
+        // again by the graph once they are available. These are dropped before the budget is applied so that they
+        // don't take the place of sections which can be built.
+        for (RenderSection section : this.rebuildQueue.dequeue(filterType, budget, this::hasNeighbors)) {
             ChunkRenderBuildTask task = this.createRebuildTask(section);
             CompletableFuture<?> future;
 
             if (filterType.isImportant()) {
-                CompletableFuture<ChunkBuildResult> immediateFuture = this.builder.schedule(task);
-                immediateFutures.enqueue(immediateFuture);
+                CompletableFuture<ChunkBuildResult> importantFuture = this.builder.schedule(task);
+                this.importantBuilds.enqueue(importantFuture);
 
-                future = immediateFuture;
+                future = importantFuture;
             } else {
                 future = this.builder.scheduleDeferred(task);
             }
 
             section.onBuildSubmitted(future);
+        }
+    }
 
-            budget--;
+    private boolean hasNeighbors(RenderSection section) {
+        return this.adjacencyMap.hasNeighbors(section.getChunkX(), section.getChunkZ());
+    }
+
+    /**
+     * Evicts the meshes of the sections which have gone the longest without being visible once the device memory
+     * allocated for chunk meshes exceeds the configured budget. Evicted sections are rebuilt when they are next seen.
+     *
+     * @param uploaded True if any meshes were uploaded this frame, which is the only time more memory is allocated
+     */
+    private void enforceMemoryBudget(boolean uploaded) {
+        long budget = SodiumClientMod.options().advanced.deviceMemoryBudget * 1024L * 1024L;
+
+        if (budget <= 0 || !uploaded || this.regions.getDeviceAllocatedMemory() <= budget) {
+            return;
+        }
+
+        long target = (long) (budget * MEMORY_BUDGET_EVICTION_TARGET);
+        long used = this.regions.getDeviceUsedMemory();
+
+        if (used <= target) {
+            return;
         }
 
-        return immediateFutures;
+        Set<RenderRegion> evictedRegions = new ObjectOpenHashSet<>();
+        Iterator<RenderSection> it = this.recentlyVisibleSections.iterator();
+
+        while (used > target && it.hasNext()) {
+            RenderSection section = it.next();
+
+            // Sections are ordered by when they were last visible, so every section from here on is visible right
+            // now and is never evicted, even if that means staying over budget
+            if (section.getGraphInfo().getLastVisibleFrame() == this.currentFrame) {
+                break;
+            }
+
+            it.remove();
+
+            if (section.hasGraphicsState()) {
+                used -= section.evictGraphicsState();
+                evictedRegions.add(section.getRegion());
+
+                this.evictedSections++;
+            }
+        }
+
+        this.regions.releaseMemory(evictedRegions);
     }
 
-    private boolean performPendingUploads() {
-        Iterator<ChunkBuildResult> it = this.builder.createDeferredBuildResultDrain();
+    private void submitSortTasks() {
+        if (!this.useTranslucencySorting) {
+            return;
+        }
 
-        if (!it.hasNext()) {
-            return false;
+        int budget = this.builder.getSchedulingBudget();
+
+        // The visible sections are ordered from nearest to furthest, so the most noticeable sections are sorted first
+        for (RenderSection section : this.sortableChunks) {
+            if (budget <= 0) {
+                break;
+            }
+
+            // Any pending rebuild will sort the section's new geometry anyways
+            if (section.isDisposed() || section.getPendingUpdate() != null) {
+                continue;
+            }
+
+            double distance = Math.sqrt(section.getSquaredDistance(this.cameraX, this.cameraY, this.cameraZ));
+            double threshold = Math.max(MIN_SORT_DISTANCE, distance * SORT_DISTANCE_FACTOR);
+
+            if (!section.needsTranslucencySort(this.cameraX, this.cameraY, this.cameraZ, threshold)) {
+                continue;
+            }
+
+            Map<BlockRenderPass, ChunkGraphicsState> states = section.getSortableGraphicsStates();
+
+            if (states.isEmpty()) {
+                continue;
+            }
+
+            ChunkRenderSortTask task = new ChunkRenderSortTask(section, states,
+                    this.cameraX - section.getOriginX(), this.cameraY - section.getOriginY(), this.cameraZ - section.getOriginZ(),
+                    this.currentFrame);
+
+            section.onSortSubmitted(this.builder.scheduleDeferred(task), this.cameraX, this.cameraY, this.cameraZ);
+
+            budget--;
         }
+    }
 
-        this.regions.upload(RenderDevice.INSTANCE.createCommandList(), it);
+    /**
+     * Uploads the results of deferred rebuilds until either limit is reached. Any results which are left over stay in
+     * the queue and are uploaded on a later frame, which spreads the cost of uploading large numbers of sections (such
+     * as when entering a new area) over multiple frames.
+     *
+     * @param byteLimit The number of bytes which can be uploaded at most, though at least one result is always uploaded
+     * @param deadline The value of {@link System#nanoTime()} after which no more uploads are started, or
+     *                 {@link Long#MAX_VALUE} if there is no time limit
+     * @return True if any results were uploaded
+     */
+    private boolean performPendingUploads(long byteLimit, long deadline) {
+        // Without a time limit, everything can be uploaded at once, which lets each region's arena upload in one go
+        long batchSize = deadline != Long.MAX_VALUE ? UPLOAD_BATCH_SIZE : Long.MAX_VALUE;
 
-        return true;
+        long uploaded = 0;
+        boolean any = false;
+
+        while (uploaded < byteLimit) {
+            List<ChunkBuildResult> batch = this.builder.drainDeferredBuildResults(Math.min(byteLimit - uploaded, batchSize));
+
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            // The buffers of each result are released once it has been uploaded, so the size has to be counted first
+            for (ChunkBuildResult result : batch) {
+                uploaded += result.getUploadSize();
+            }
+
+            this.regions.upload(RenderDevice.INSTANCE.createCommandList(), batch.iterator());
+
+            any = true;
+
+            if (deadline != Long.MAX_VALUE && System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+
+        return any;
     }
 
     public ChunkRenderBuildTask createRebuildTask(RenderSection render) {
@@ -396,11 +777,35 @@ public class RenderSectionManager implements ChunkStatusListener {
             return new ChunkRenderEmptyBuildTask(render, frame);
         }
 
-        return new ChunkRenderRebuildTask(render, context, frame);
+        ChunkRebuildScope scope = render.createRebuildScope(this.useIncrementalRebuilds, MAX_INCREMENTAL_DIRTY_BLOCKS);
+        Vec3d camera = null;
+
+        if (this.useTranslucencySorting) {
+            camera = new Vec3d(this.cameraX, this.cameraY, this.cameraZ);
+
+            render.onSortSubmitted(null, camera.x, camera.y, camera.z);
+        }
+
+        return new ChunkRenderRebuildTask(render, context, frame, scope, camera, this.meshCache);
     }
 
     public void markGraphDirty() {
         this.needsUpdate = true;
+        this.invalidateTraversalCache();
+    }
+
+    /**
+     * Notifies the manager that the camera has moved, which requires the visible sections to be found again, but
+     * doesn't change the graph itself.
+     */
+    public void markCameraDirty() {
+        this.needsUpdate = true;
+    }
+
+    private void invalidateTraversalCache() {
+        if (this.traversalCache != null) {
+            this.traversalCache.invalidate();
+        }
     }
 
     public boolean isGraphDirty() {
@@ -411,15 +816,32 @@ public class RenderSectionManager implements ChunkStatusListener {
         return this.builder;
     }
 
+    public ChunkRenderMetrics getMetrics() {
+        return this.metrics;
+    }
+
     public void destroy() {
         this.resetLists();
+        this.rebuildQueue.clear();
+
+        // Release the buffers of any important rebuilds which will never be uploaded now
+        while (!this.importantBuilds.isEmpty()) {
+            this.importantBuilds.dequeue()
+                    .thenAccept(ChunkBuildResult::delete);
+        }
+
+        // The workers must be stopped first, as they might still be writing meshes into the staging buffer
+        this.builder.stopWorkers();
+
+        if (this.meshCache != null) {
+            this.meshCache.close();
+        }
 
         try (CommandList commandList = RenderDevice.INSTANCE.createCommandList()) {
             this.regions.delete(commandList);
         }
 
         this.chunkRenderer.delete();
-        this.builder.stopWorkers();
     }
 
     public int getTotalSections() {
@@ -437,11 +859,32 @@ public class RenderSectionManager implements ChunkStatusListener {
     }
 
     public void scheduleRebuild(int x, int y, int z, boolean important) {
+        this.scheduleRebuild(x, y, z, important, null);
+    }
+
+    /**
+     * Schedules a rebuild of the section at the given position.
+     *
+     * @param dirtyBlocks The region of blocks (in world coordinates) which have changed, or null if the whole section
+     *                    needs to be rendered again
+     */
+    public void scheduleRebuild(int x, int y, int z, boolean important, BlockBox dirtyBlocks) {
         this.sectionCache.invalidate(x, y, z);
 
         RenderSection section = this.sections.get(ChunkSectionPos.asLong(x, y, z));
 
         if (section != null && section.isBuilt()) {
+            if (dirtyBlocks != null) {
+                section.markBlocksDirty(dirtyBlocks.getMinX(), dirtyBlocks.getMinY(), dirtyBlocks.getMinZ(),
+                        dirtyBlocks.getMaxX(), dirtyBlocks.getMaxY(), dirtyBlocks.getMaxZ());
+            } else {
+                section.markAllBlocksDirty();
+            }
+
+            // The world snapshot of any build that is queued or running for this section is now out of date, so
+            // stop it early rather than meshing it only to have it replaced by the rebuild scheduled below
+            section.cancelRebuildTask();
+
             if (important || this.isChunkPrioritized(section)) {
                 section.markForUpdate(ChunkUpdateType.IMPORTANT_REBUILD);
             } else {
@@ -459,30 +902,37 @@ public class RenderSectionManager implements ChunkStatusListener {
     public void onChunkRenderUpdates(int x, int y, int z, ChunkRenderData data) {
         RenderSection node = this.getRenderSection(x, y, z);
 
-        if (node != null) {
-            node.setOcclusionData(data.getOcclusionData());
+        // Most rebuilds don't change which faces of the section can be seen through it, in which case the sections
+        // reachable from the camera are still the same
+        if (node != null && node.setOcclusionData(data.getOcclusionData())) {
+            this.invalidateTraversalCache();
         }
     }
 
-    private boolean isWithinRenderDistance(RenderSection adj) {
-        int x = Math.abs(adj.getChunkX() - this.centerChunkX);
-        int z = Math.abs(adj.getChunkZ() - this.centerChunkZ);
+    private boolean isWithinRenderDistance(int section) {
+        int x = Math.abs(this.graph.getSectionX(section) - this.centerChunkX);
+        int z = Math.abs(this.graph.getSectionZ(section) - this.centerChunkZ);
 
         return x <= this.renderDistance && z <= this.renderDistance;
     }
 
-    private boolean isCulled(ChunkGraphInfo node, Direction from, Direction to) {
-        if (node.canCull(to)) {
+    private boolean isCulled(int section, int from, int to) {
+        if (this.graph.canCull(section, to)) {
             return true;
         }
 
-        return this.useOcclusionCulling && from != null && !node.isVisibleThrough(from, to);
+        return this.useOcclusionCulling && from >= 0 && !this.graph.isVisibleThrough(section, from, to);
+    }
+
+    private static int getOpposite(int dir) {
+        // Opposite directions are next to each other in the order they are declared in
+        return dir ^ 1;
     }
 
     private void initSearch(Camera camera, FrustumExtended frustum, int frame, boolean spectator) {
         this.currentFrame = frame;
         this.frustum = frustum;
-        this.useOcclusionCulling = MinecraftClient.getInstance().chunkCullingEnabled;
+        this.useOcclusionCulling = this.shouldUseOcclusionCulling(camera, spectator);
 
         this.iterationQueue.clear();
 
@@ -495,18 +945,15 @@ public class RenderSectionManager implements ChunkStatusListener {
         this.centerChunkX = chunkX;
         this.centerChunkZ = chunkZ;
 
-        RenderSection rootRender = this.getRenderSection(chunkX, chunkY, chunkZ);
+        ChunkGraph graph = this.graph;
 
-        if (rootRender != null) {
-            ChunkGraphInfo rootInfo = rootRender.getGraphInfo();
-            rootInfo.resetCullingState();
-            rootInfo.setLastVisibleFrame(frame);
+        int root = graph.find(chunkX, chunkY, chunkZ);
 
-            if (spectator && this.world.getBlockState(origin).isOpaqueFullCube(this.world, origin)) {
-                this.useOcclusionCulling = false;
-            }
+        if (root >= 0) {
+            graph.resetCullingState(root);
+            graph.setLastVisibleFrame(root, frame);
 
-            this.addVisible(rootRender, null);
+            this.addVisible(root, -1);
         } else {
             chunkY = MathHelper.clamp(origin.getY() >> 4, this.world.getBottomSectionCoord(), this.world.getTopSectionCoord() - 1);
 
@@ -514,94 +961,117 @@ public class RenderSectionManager implements ChunkStatusListener {
 
             for (int x2 = -this.renderDistance; x2 <= this.renderDistance; ++x2) {
                 for (int z2 = -this.renderDistance; z2 <= this.renderDistance; ++z2) {
-                    RenderSection render = this.getRenderSection(chunkX + x2, chunkY, chunkZ + z2);
-
-                    if (render == null) {
-                        continue;
-                    }
-
-                    ChunkGraphInfo info = render.getGraphInfo();
+                    int section = graph.find(chunkX + x2, chunkY, chunkZ + z2);
 
-                    if (info.isCulledByFrustum(frustum)) {
+                    if (section < 0 || graph.isCulledByFrustum(section, frustum)) {
                         continue;
                     }
 
-                    info.resetCullingState();
-                    info.setLastVisibleFrame(frame);
+                    graph.resetCullingState(section);
+                    graph.setLastVisibleFrame(section, frame);
 
-                    sorted.add(render);
+                    sorted.add(graph.getSection(section));
                 }
             }
 
             sorted.sort(Comparator.comparingDouble(node -> node.getSquaredDistance(origin)));
 
             for (RenderSection render : sorted) {
-                this.addVisible(render, null);
+                this.addVisible(render.getGraphInfo().getIndex(), -1);
             }
         }
     }
 
+    private boolean shouldUseOcclusionCulling(Camera camera, boolean spectator) {
+        if (!MinecraftClient.getInstance().chunkCullingEnabled) {
+            return false;
+        }
+
+        // Spectators can see through the blocks they are inside of
+        BlockPos origin = camera.getBlockPos();
 
-    private void bfsEnqueue(RenderSection parent, RenderSection render, Direction flow) {
-        ChunkGraphInfo info = render.getGraphInfo();
+        return !spectator || !this.world.getBlockState(origin).isOpaqueFullCube(this.world, origin);
+    }
+
+    private void bfsEnqueue(int parent, int section, int flow) {
+        ChunkGraph graph = this.graph;
 
-        if (info.getLastVisibleFrame() == this.currentFrame) {
+        if (graph.getLastVisibleFrame(section) == this.currentFrame) {
             return;
         }
 
-        RenderRegionVisibility parentVisibility = parent.getRegion().getVisibility();
+        RenderRegionVisibility parentVisibility = graph.getRegion(parent).getVisibility();
 
         if (parentVisibility == RenderRegionVisibility.CULLED) {
             return;
-        } else if (parentVisibility == RenderRegionVisibility.VISIBLE && info.isCulledByFrustum(this.frustum)) {
+        } else if (parentVisibility == RenderRegionVisibility.VISIBLE && graph.isCulledByFrustum(section, this.frustum)) {
             return;
         }
 
-        info.setLastVisibleFrame(this.currentFrame);
-        info.setCullingState(parent.getGraphInfo().getCullingState(), flow);
+        graph.setLastVisibleFrame(section, this.currentFrame);
+        graph.setCullingState(section, graph.getCullingState(parent), flow);
 
-        this.addVisible(render, flow);
+        this.addVisible(section, flow);
     }
 
-    private void addVisible(RenderSection render, Direction flow) {
-        this.iterationQueue.add(render, flow);
+    private void addVisible(int section, int flow) {
+        this.iterationQueue.add(section, flow);
+
+        RenderSection render = this.graph.getSection(section);
+
+        if (!render.isEmpty()) {
+            this.recentlyVisibleSections.addAndMoveToLast(render);
+        }
 
-        if (this.useFogCulling && render.getSquaredDistanceXZ(this.cameraX, this.cameraZ) >= this.fogRenderCutoff) {
+        if (this.useFogCulling && this.getSquaredDistanceXZ(section) >= this.fogRenderCutoff) {
             return;
         }
 
+        if (this.occlusionCuller != null && this.useOcclusionCulling) {
+            // Sections which are hidden are still searched through, but there is no need to draw them, nor to
+            // rasterize them as occluders
+            if (!render.isEmpty() && this.isHiddenByOccluders(section)) {
+                return;
+            }
+
+            if (render.getData().isOpaque() && render.getSquaredDistance(this.cameraX, this.cameraY, this.cameraZ) <= OCCLUDER_DISTANCE) {
+                this.addOccluder(section);
+            }
+        }
+
         if (!render.isEmpty()) {
             this.addChunkToVisible(render);
             this.addEntitiesToRenderLists(render);
         }
     }
 
-    private void connectNeighborNodes(RenderSection render) {
-        for (Direction dir : DirectionUtil.ALL_DIRECTIONS) {
-            RenderSection adj = this.getRenderSection(render.getChunkX() + dir.getOffsetX(),
-                    render.getChunkY() + dir.getOffsetY(),
-                    render.getChunkZ() + dir.getOffsetZ());
+    private boolean isHiddenByOccluders(int section) {
+        float x = this.graph.getSectionX(section) << 4;
+        float y = this.graph.getSectionY(section) << 4;
+        float z = this.graph.getSectionZ(section) << 4;
 
-            if (adj != null) {
-                adj.setAdjacentNode(DirectionUtil.getOpposite(dir), render);
-                render.setAdjacentNode(dir, adj);
-            }
-        }
+        return this.occlusionCuller.isOccluded(x, y, z, x + 16.0f, y + 16.0f, z + 16.0f);
     }
 
-    private void disconnectNeighborNodes(RenderSection render) {
-        for (Direction dir : DirectionUtil.ALL_DIRECTIONS) {
-            RenderSection adj = render.getAdjacent(dir);
+    private void addOccluder(int section) {
+        float x = this.graph.getSectionX(section) << 4;
+        float y = this.graph.getSectionY(section) << 4;
+        float z = this.graph.getSectionZ(section) << 4;
 
-            if (adj != null) {
-                adj.setAdjacentNode(DirectionUtil.getOpposite(dir), null);
-                render.setAdjacentNode(dir, null);
-            }
-        }
+        this.occlusionCuller.addOccluder(x, y, z, x + 16.0f, y + 16.0f, z + 16.0f);
+    }
+
+    private float getSquaredDistanceXZ(int section) {
+        float xDist = this.cameraX - ((this.graph.getSectionX(section) << 4) + 8.0f);
+        float zDist = this.cameraZ - ((this.graph.getSectionZ(section) << 4) + 8.0f);
+
+        return (xDist * xDist) + (zDist * zDist);
     }
 
     private RenderSection getRenderSection(int x, int y, int z) {
-        return this.sections.get(ChunkSectionPos.asLong(x, y, z));
+        int section = this.graph.find(x, y, z);
+
+        return section >= 0 ? this.graph.getSection(section) : null;
     }
 
     public Collection<String> getDebugStrings() {
@@ -629,7 +1099,68 @@ public class RenderSectionManager implements ChunkStatusListener {
         list.add(String.format("Chunk arena allocator: %s", SodiumClientMod.options().advanced.arenaMemoryAllocator.name()));
         list.add(String.format("Device buffer objects: %d", count));
         list.add(String.format("Device memory: %d/%d MiB", MathUtil.toMib(deviceUsed), MathUtil.toMib(deviceAllocated)));
+
+        int deviceMemoryBudget = SodiumClientMod.options().advanced.deviceMemoryBudget;
+
+        if (deviceMemoryBudget > 0) {
+            list.add(String.format("Device memory budget: %d MiB, %d evictions", deviceMemoryBudget, this.evictedSections));
+        }
         list.add(String.format("Staging buffer: %s", this.regions.getStagingBuffer().toString()));
+        list.addAll(this.regions.getStagingBuffer().getDebugStrings());
+
+        if (this.meshCache != null) {
+            list.add(String.format("Mesh cache: %d hits, %d misses, %d writes, %d MiB", this.meshCache.getHitCount(),
+                    this.meshCache.getMissCount(), this.meshCache.getWriteCount(), MathUtil.toMib(this.meshCache.getDiskBytes())));
+        }
+        list.add(String.format("Pending uploads: %d deferred, %d important", this.builder.getDeferredResultCount(),
+                this.importantBuilds.size()));
+        list.add(String.format("Unchanged meshes: %d (%d MiB not uploaded)", this.regions.getUnchangedMeshCount(),
+                MathUtil.toMib(this.regions.getUnchangedBytes())));
+        list.add(String.format("Rebuild queue: %d important, %d initial, %d other",
+                this.rebuildQueue.size(ChunkUpdateType.IMPORTANT_REBUILD),
+                this.rebuildQueue.size(ChunkUpdateType.INITIAL_BUILD),
+                this.rebuildQueue.size(ChunkUpdateType.REBUILD)));
+
+        int workers = this.builder.getWorkerCount();
+
+        StringBuilder depths = new StringBuilder();
+        long steals = 0;
+
+        for (int i = 0; i < workers; i++) {
+            if (i > 0) {
+                depths.append(' ');
+            }
+
+            depths.append(this.builder.getWorkerQueueDepth(i));
+            steals += this.builder.getWorkerStealCount(i);
+        }
+
+        list.add(String.format("Chunk builder: %d/%d workers, %d steals", this.builder.getActiveWorkerCount(), workers, steals));
+        list.add(String.format("Worker queues: %s", depths));
+
+        int retainedSections = 0;
+        long retainedBytes = 0;
+
+        for (RenderSection section : this.sections.values()) {
+            ChunkBlockGeometry geometry = section.getBlockGeometry();
+
+            if (geometry != null) {
+                retainedSections++;
+                retainedBytes += geometry.getByteSize();
+            }
+        }
+
+        list.add(String.format("Retained geometry: %d sections, %d KiB", retainedSections, retainedBytes / 1024));
+
+        if (this.useTranslucencySorting) {
+            list.add(String.format("Sorted translucent sections: %d visible", this.sortableChunks.size()));
+        }
+
+        if (this.occlusionCuller != null) {
+            list.add(String.format("Occlusion culling: %d occluders, %d sections hidden",
+                    this.occlusionCuller.getOccluderCount(), this.occlusionCuller.getCulledCount()));
+        }
+
         return list;
     }
 
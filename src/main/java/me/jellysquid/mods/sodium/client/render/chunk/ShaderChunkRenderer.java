@@ -1,6 +1,7 @@
 package me.jellysquid.mods.sodium.client.render.chunk;
 
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import me.jellysquid.mods.sodium.client.gl.attribute.GlVertexFormat;
 import me.jellysquid.mods.sodium.client.gl.shader.*;
 import me.jellysquid.mods.sodium.client.gl.device.RenderDevice;
@@ -23,6 +24,8 @@ public abstract class ShaderChunkRenderer implements ChunkRenderer {
 
     protected final RenderDevice device;
 
+    private final boolean useGreedyMeshing = SodiumClientMod.options().advanced.isGreedyMeshingEnabled();
+
     protected GlProgram<ChunkShaderInterface> activeProgram;
 
     public ShaderChunkRenderer(RenderDevice device, ChunkVertexType vertexType) {
@@ -67,7 +70,9 @@ public abstract class ShaderChunkRenderer implements ChunkRenderer {
     }
 
     protected void begin(BlockRenderPass pass) {
-        ChunkShaderOptions options = new ChunkShaderOptions(ChunkFogMode.SMOOTH, pass);
+        // Only the solid pass contains merged quads, so the other passes don't need to pay for unpacking them
+        ChunkShaderOptions options = new ChunkShaderOptions(ChunkFogMode.SMOOTH, pass, this.vertexType,
+                this.useGreedyMeshing && pass == BlockRenderPass.SOLID);
 
         this.activeProgram = this.compileProgram(options);
         this.activeProgram.bind();
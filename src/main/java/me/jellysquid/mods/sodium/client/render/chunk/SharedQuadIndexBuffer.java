@@ -0,0 +1,85 @@
+package me.jellysquid.mods.sodium.client.render.chunk;
+
+import me.jellysquid.mods.sodium.client.gl.buffer.GlBuffer;
+import me.jellysquid.mods.sodium.client.gl.buffer.GlBufferUsage;
+import me.jellysquid.mods.sodium.client.gl.buffer.GlMutableBuffer;
+import me.jellysquid.mods.sodium.client.gl.device.CommandList;
+import me.jellysquid.mods.sodium.client.gl.tessellation.GlIndexType;
+import me.jellysquid.mods.sodium.client.model.quad.properties.ModelQuadWinding;
+import me.jellysquid.mods.sodium.client.util.NativeBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An index buffer containing a sequence of quads, each of which uses four consecutive vertices with the same winding
+ * order. Since the indices of every mesh laid out this way are identical, a single buffer can be shared by all draw
+ * calls, which only need to specify the first vertex of each range with their base vertex.
+ */
+public class SharedQuadIndexBuffer {
+    public static final GlIndexType INDEX_TYPE = GlIndexType.UNSIGNED_INT;
+
+    public static final int VERTICES_PER_QUAD = 4;
+    public static final int ELEMENTS_PER_QUAD = 6;
+
+    private final GlMutableBuffer buffer;
+
+    private int maxQuads;
+
+    public SharedQuadIndexBuffer(CommandList commandList, int initialQuads) {
+        this.buffer = commandList.createMutableBuffer();
+
+        this.grow(commandList, initialQuads);
+    }
+
+    /**
+     * Makes sure the buffer contains enough quads for a draw call with the given number of elements. The buffer object
+     * stays the same when the buffer grows, so tessellations referencing it do not need to be re-created.
+     */
+    public void ensureCapacity(CommandList commandList, int elementCount) {
+        int quads = elementCount / ELEMENTS_PER_QUAD;
+
+        if (quads > this.maxQuads) {
+            this.grow(commandList, Math.max(quads, this.maxQuads * 2));
+        }
+    }
+
+    private void grow(CommandList commandList, int quads) {
+        NativeBuffer data = createIndexData(quads);
+
+        try {
+            commandList.uploadData(this.buffer, data.getDirectBuffer(), GlBufferUsage.STATIC_DRAW);
+        } finally {
+            data.free();
+        }
+
+        this.maxQuads = quads;
+    }
+
+    private static NativeBuffer createIndexData(int quads) {
+        int[] winding = ModelQuadWinding.CLOCKWISE.getIndices();
+
+        NativeBuffer buffer = new NativeBuffer(quads * ELEMENTS_PER_QUAD * INDEX_TYPE.getStride());
+        ByteBuffer data = buffer.getDirectBuffer();
+
+        int pointer = 0;
+
+        for (int quad = 0; quad < quads; quad++) {
+            int vertex = quad * VERTICES_PER_QUAD;
+
+            for (int index : winding) {
+                data.putInt(pointer, vertex + index);
+                pointer += 4;
+            }
+        }
+
+        return buffer;
+    }
+
+    public GlBuffer getBufferObject() {
+        return this.buffer;
+    }
+
+    public void delete(CommandList commandList) {
+        commandList.deleteBuffer(this.buffer);
+    }
+}
@@ -0,0 +1,453 @@
+package me.jellysquid.mods.sodium.client.render.chunk.cache;
+
+import me.jellysquid.mods.sodium.client.SodiumClientMod;
+import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildBuffers;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
+import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+import me.jellysquid.mods.sodium.client.world.WorldSlice;
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.ModContainer;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.LightType;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.Biome;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk cache of built section meshes, which allows sections to be loaded again without being rendered when they
+ * haven't changed since they were last built, such as after re-joining a server or reloading the renderer.
+ *
+ * Entries are keyed by a hash of everything which the mesh of a section is built from: the block states and light
+ * levels of the section and the blocks around it, the biomes used for color blending, and the position of the section.
+ * Every key is also salted with the settings, resource packs and mods which can change how blocks are rendered. Each
+ * entry is stored in a file of its own, which is read into memory when loaded rather than mapped, as a mapped file
+ * can't be deleted or replaced on some platforms while it is still mapped.
+ */
+public class ChunkMeshCache {
+    private static final Logger LOGGER = LogManager.getLogger(ChunkMeshCache.class);
+
+    private static final String DIRECTORY_NAME = "sodium-mesh-cache";
+
+    /**
+     * The number of bytes which the cache can use on disk, past which the least recently used entries are deleted.
+     */
+    private static final long MAX_DISK_BYTES = 512L * 1024L * 1024L;
+
+    /**
+     * The number of bytes which can be waiting to be written at once, past which new entries are dropped.
+     */
+    private static final long MAX_PENDING_BYTES = 32L * 1024L * 1024L;
+
+    // The number of blocks around a section which can affect its mesh, see WorldSlice
+    private static final int NEIGHBOR_BLOCK_RADIUS = 2;
+
+    // The number of blocks around a section which biome colors can be blended from
+    private static final int NEIGHBOR_BIOME_RADIUS = 16;
+
+    private final Path directory;
+    private final ChunkVertexType vertexType;
+    private final Registry<Biome> biomeRegistry;
+
+    private final long salt;
+
+    // The stable hash of each block state by its raw ID, or zero if it hasn't been computed yet. Raw IDs can change
+    // between sessions, so the hashes are computed from the names of the block and its properties instead.
+    private final long[] stateHashes = new long[Block.STATE_IDS.size()];
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Sodium Mesh Cache Writer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+
+        return thread;
+    });
+
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final AtomicBoolean trimQueued = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+
+    public ChunkMeshCache(World world, ChunkVertexType vertexType) {
+        this.directory = FabricLoader.getInstance()
+                .getGameDir()
+                .resolve(DIRECTORY_NAME);
+        this.vertexType = vertexType;
+        this.biomeRegistry = world.getRegistryManager()
+                .get(Registry.BIOME_KEY);
+        this.salt = createSalt();
+
+        this.writer.execute(this::trim);
+    }
+
+    /**
+     * Creates a key from the contents of the slice around a section.
+     *
+     * @return The key of the section, or null if the section contains something which isn't captured by a key and can't
+     * be cached
+     */
+    public Key createKey(WorldSlice slice, ChunkSectionPos origin) {
+        long h1 = this.salt;
+        long h2 = ~this.salt;
+
+        long pos = origin.asLong();
+        h1 = mix1(h1, pos);
+        h2 = mix2(h2, pos);
+
+        BlockPos.Mutable blockPos = new BlockPos.Mutable();
+
+        for (int y = origin.getMinY() - NEIGHBOR_BLOCK_RADIUS; y <= origin.getMaxY() + NEIGHBOR_BLOCK_RADIUS; y++) {
+            for (int z = origin.getMinZ() - NEIGHBOR_BLOCK_RADIUS; z <= origin.getMaxZ() + NEIGHBOR_BLOCK_RADIUS; z++) {
+                for (int x = origin.getMinX() - NEIGHBOR_BLOCK_RADIUS; x <= origin.getMaxX() + NEIGHBOR_BLOCK_RADIUS; x++) {
+                    BlockState state = slice.getBlockState(x, y, z);
+                    blockPos.set(x, y, z);
+
+                    // Render attachments can change how a block is rendered without changing its state
+                    if (state.hasBlockEntity() && slice.getBlockEntityRenderAttachment(blockPos) != null) {
+                        return null;
+                    }
+
+                    long light = ((long) slice.getLightLevel(LightType.BLOCK, blockPos) << 4) |
+                            slice.getLightLevel(LightType.SKY, blockPos);
+                    long value = this.getStateHash(state) ^ (light << 56);
+
+                    h1 = mix1(h1, value);
+                    h2 = mix2(h2, value);
+                }
+            }
+        }
+
+        // Biomes are stored at a resolution of 4x4x4 blocks
+        for (int y = origin.getMinY() - 4; y <= origin.getMaxY() + 4; y += 4) {
+            for (int z = origin.getMinZ() - NEIGHBOR_BIOME_RADIUS; z <= origin.getMaxZ() + NEIGHBOR_BIOME_RADIUS; z += 4) {
+                for (int x = origin.getMinX() - NEIGHBOR_BIOME_RADIUS; x <= origin.getMaxX() + NEIGHBOR_BIOME_RADIUS; x += 4) {
+                    Identifier id = this.biomeRegistry.getId(slice.getBiomeForNoiseGen(x >> 2, y >> 2, z >> 2));
+
+                    if (id == null) {
+                        return null;
+                    }
+
+                    long value = id.hashCode();
+
+                    h1 = mix1(h1, value);
+                    h2 = mix2(h2, value);
+                }
+            }
+        }
+
+        return new Key(h1, h2);
+    }
+
+    private long getStateHash(BlockState state) {
+        int id = Block.getRawIdFromState(state);
+
+        if (id < 0 || id >= this.stateHashes.length) {
+            return id;
+        }
+
+        long hash = this.stateHashes[id];
+
+        if (hash == 0) {
+            // Races between workers are harmless here, as they will always compute the same value
+            this.stateHashes[id] = hash = hashString(state.toString()) | 1L;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Loads the entry with the given key, if one exists.
+     *
+     * @param slice The slice of the world which the section is being built from, used to look up block entities
+     * @param buffers The buffers of the worker which the entry is being loaded on
+     * @param sortOrigin The position of the camera relative to the section which translucent meshes should be sorted
+     *                   against, or null if they should not be sorted
+     * @return The contents of the entry, or null if it doesn't exist or can't be used
+     */
+    public Entry load(Key key, WorldSlice slice, ChunkBuildBuffers buffers, Vec3d sortOrigin) {
+        Path path = this.getPath(key);
+        Entry entry = null;
+
+        // Entries are read into memory rather than mapped, as a mapped file can't be moved or deleted on some platforms
+        // until the mapping is collected, which would break trimming and rewriting entries. The buffer must be direct,
+        // as the meshes are copied and hashed straight out of it.
+        ByteBuffer data = null;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            data = MemoryUtil.memAlloc(Math.toIntExact(channel.size()));
+
+            while (data.hasRemaining()) {
+                if (channel.read(data) < 0) {
+                    throw new EOFException("Cached mesh was truncated while being read");
+                }
+            }
+
+            // Entries are written with the default byte order of heap buffers, rather than the native byte order
+            data.flip()
+                    .order(ByteOrder.BIG_ENDIAN);
+
+            entry = ChunkMeshSerializer.read(data, key.check(), this.vertexType, slice, buffers.getMeshAllocator(), sortOrigin);
+        } catch (NoSuchFileException e) {
+            // The section hasn't been cached yet
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Couldn't read cached mesh from {}, it will be rebuilt", path, e);
+        } finally {
+            if (data != null) {
+                MemoryUtil.memFree(data);
+            }
+        }
+
+        if (entry == null) {
+            this.misses.increment();
+
+            return null;
+        }
+
+        this.hits.increment();
+
+        // Keep track of which entries were used recently, so that old ones are the first to be deleted when trimming
+        this.writer.execute(() -> touch(path));
+
+        return entry;
+    }
+
+    /**
+     * Stores the result of building a section so that it can be loaded later. The entry is written to disk in the
+     * background, and the meshes can be freed as soon as this returns.
+     */
+    public void store(Key key, ChunkRenderData data, Map<BlockRenderPass, ChunkMeshData> meshes) {
+        int size = ChunkMeshSerializer.getSerializedSize(data, meshes);
+
+        if (this.pendingBytes.addAndGet(size) > MAX_PENDING_BYTES) {
+            this.pendingBytes.addAndGet(-size);
+
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        ChunkMeshSerializer.write(buffer, key.check(), data, meshes);
+        buffer.flip();
+
+        this.writer.execute(() -> {
+            try {
+                this.write(this.getPath(key), buffer);
+            } finally {
+                this.pendingBytes.addAndGet(-size);
+            }
+        });
+    }
+
+    private void write(Path path, ByteBuffer buffer) {
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try {
+            Files.createDirectories(path.getParent());
+
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+
+            // Workers may be reading the entry at the same time, so it must never be visible while partially written
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't write cached mesh to {}", path, e);
+
+            return;
+        }
+
+        this.writes.increment();
+
+        if (this.diskBytes.addAndGet(buffer.limit()) > MAX_DISK_BYTES && this.trimQueued.compareAndSet(false, true)) {
+            this.writer.execute(this::trim);
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is well below its size limit.
+     */
+    private void trim() {
+        this.trimQueued.set(false);
+
+        if (!Files.isDirectory(this.directory)) {
+            return;
+        }
+
+        List<CachedFile> files = new ArrayList<>();
+        long totalBytes = 0;
+
+        try (Stream<Path> stream = Files.walk(this.directory)) {
+            for (Path path : (Iterable<Path>) stream::iterator) {
+                if (!Files.isRegularFile(path)) {
+                    continue;
+                }
+
+                long size = Files.size(path);
+                FileTime time = Files.getLastModifiedTime(path);
+
+                files.add(new CachedFile(path, size, time));
+                totalBytes += size;
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warn("Couldn't scan the mesh cache directory", e);
+
+            return;
+        }
+
+        if (totalBytes > MAX_DISK_BYTES) {
+            files.sort(Comparator.comparing(CachedFile::time));
+
+            long targetBytes = MAX_DISK_BYTES - (MAX_DISK_BYTES / 4);
+
+            for (CachedFile file : files) {
+                if (totalBytes <= targetBytes) {
+                    break;
+                }
+
+                try {
+                    Files.deleteIfExists(file.path());
+                    totalBytes -= file.size();
+                } catch (IOException e) {
+                    LOGGER.warn("Couldn't delete cached mesh {}", file.path(), e);
+                }
+            }
+        }
+
+        this.diskBytes.set(totalBytes);
+    }
+
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // The entry might have been deleted or replaced in the meantime
+        }
+    }
+
+    private Path getPath(Key key) {
+        String name = String.format("%016x", key.name());
+
+        return this.directory.resolve(name.substring(0, 2))
+                .resolve(name + ".bin");
+    }
+
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    public long getWriteCount() {
+        return this.writes.sum();
+    }
+
+    public long getDiskBytes() {
+        return this.diskBytes.get();
+    }
+
+    /**
+     * Stops accepting new entries. Any entries which are still waiting to be written will be written in the background.
+     */
+    public void close() {
+        this.writer.shutdown();
+    }
+
+    /**
+     * Creates a hash of everything other than the contents of the world which can change how a section is meshed.
+     */
+    private static long createSalt() {
+        MinecraftClient client = MinecraftClient.getInstance();
+        StringBuilder str = new StringBuilder();
+
+        str.append(ChunkMeshSerializer.VERSION).append(';');
+
+        var options = SodiumClientMod.options();
+        str.append(options.advanced.useCompactVertexFormat).append(';');
+        str.append(options.advanced.isGreedyMeshingEnabled()).append(';');
+        str.append(options.advanced.useTranslucentFaceSorting).append(';');
+        str.append(options.quality.leavesQuality.isFancy(client.options.graphicsMode)).append(';');
+
+        str.append(client.options.ao).append(';');
+        str.append(client.options.biomeBlendRadius).append(';');
+
+        for (String pack : client.getResourcePackManager().getEnabledNames()) {
+            str.append(pack).append(';');
+        }
+
+        for (ModContainer mod : FabricLoader.getInstance().getAllMods()) {
+            str.append(mod.getMetadata().getId()).append('@')
+                    .append(mod.getMetadata().getVersion().getFriendlyString()).append(';');
+        }
+
+        return hashString(str.toString());
+    }
+
+    private static long hashString(String str) {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < str.length(); i++) {
+            hash = (hash ^ str.charAt(i)) * 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
+    private static long mix1(long hash, long value) {
+        return Long.rotateLeft(hash ^ (value * 0x9E3779B97F4A7C15L), 27) * 0xC2B2AE3D27D4EB4FL;
+    }
+
+    private static long mix2(long hash, long value) {
+        return Long.rotateLeft(hash + (value * 0x165667B19E3779F9L), 31) * 0x27D4EB2F165667C5L;
+    }
+
+    /**
+     * @param name The hash which the entry is found by
+     * @param check An independent hash stored within the entry, which guards against two sections sharing a name
+     */
+    public record Key(long name, long check) {
+
+    }
+
+    public record Entry(ChunkRenderData data, Map<BlockRenderPass, ChunkMeshData> meshes) {
+
+    }
+
+    private record CachedFile(Path path, long size, FileTime time) {
+
+    }
+}
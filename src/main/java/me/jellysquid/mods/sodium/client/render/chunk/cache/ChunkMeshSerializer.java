@@ -0,0 +1,306 @@
+package me.jellysquid.mods.sodium.client.render.chunk.cache;
+
+import me.jellysquid.mods.sodium.client.gl.buffer.IndexedVertexData;
+import me.jellysquid.mods.sodium.client.gl.tessellation.GlIndexType;
+import me.jellysquid.mods.sodium.client.gl.util.ElementRange;
+import me.jellysquid.mods.sodium.client.model.quad.properties.ModelQuadFacing;
+import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderBounds;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
+import me.jellysquid.mods.sodium.client.render.chunk.data.TranslucentQuadData;
+import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+import me.jellysquid.mods.sodium.client.util.NativeBuffer;
+import me.jellysquid.mods.sodium.client.util.NativeBufferAllocator;
+import me.jellysquid.mods.sodium.client.world.WorldSlice;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.chunk.ChunkOcclusionData;
+import net.minecraft.client.texture.Sprite;
+import net.minecraft.client.texture.SpriteAtlasTexture;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3d;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Reads and writes the entries of a {@link ChunkMeshCache}. Block entities are stored by their position and looked up
+ * again from the world when an entry is read, and animated sprites are stored by their name.
+ */
+class ChunkMeshSerializer {
+    private static final int MAGIC = 0x534D4348; // "SMCH"
+
+    /**
+     * The version of the format, which must be changed whenever the format or the meshes produced by the chunk builder
+     * change, as older entries would otherwise be read incorrectly.
+     */
+    static final int VERSION = 2;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private static final GlIndexType[] INDEX_TYPES = GlIndexType.values();
+
+    private static final int HEADER_SIZE = 16;
+    private static final int BOUNDS_SIZE = 6 * 4;
+    private static final int OCCLUSION_SIZE = 8 + 1;
+    private static final int BLOCK_ENTITY_SIZE = 4;
+    private static final int PART_SIZE = 14;
+
+    static int getSerializedSize(ChunkRenderData data, Map<BlockRenderPass, ChunkMeshData> meshes) {
+        int size = HEADER_SIZE + BOUNDS_SIZE + OCCLUSION_SIZE;
+
+        size += 4 + ((data.getBlockEntities().size() + data.getGlobalBlockEntities().size()) * BLOCK_ENTITY_SIZE);
+        size += 4;
+
+        for (Sprite sprite : data.getAnimatedSprites()) {
+            size += 2 + getBytes(sprite.getId()).length;
+        }
+
+        size += 4;
+
+        for (ChunkMeshData mesh : meshes.values()) {
+            IndexedVertexData vertexData = mesh.getVertexData();
+
+            size += 1 + 4 + (mesh.getParts().size() * PART_SIZE);
+            size += 4 + vertexData.vertexBuffer().getLength();
+            size += 4 + (vertexData.indexBuffer() != null ? vertexData.indexBuffer().getLength() : 0);
+            size += 1 + (mesh.getTranslucentQuads() != null ? mesh.getTranslucentQuads().getSerializedSize() : 0);
+        }
+
+        return size;
+    }
+
+    static void write(ByteBuffer buffer, long check, ChunkRenderData data, Map<BlockRenderPass, ChunkMeshData> meshes) {
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(check);
+
+        ChunkRenderBounds bounds = data.getBounds();
+        buffer.putFloat(bounds.x1);
+        buffer.putFloat(bounds.y1);
+        buffer.putFloat(bounds.z1);
+        buffer.putFloat(bounds.x2);
+        buffer.putFloat(bounds.y2);
+        buffer.putFloat(bounds.z2);
+
+        buffer.putLong(encodeOcclusionData(data.getOcclusionData()));
+        buffer.put((byte) (data.isOpaque() ? 1 : 0));
+
+        buffer.putInt(data.getBlockEntities().size() + data.getGlobalBlockEntities().size());
+
+        for (BlockEntity entity : data.getBlockEntities()) {
+            writeBlockEntity(buffer, entity, true);
+        }
+
+        for (BlockEntity entity : data.getGlobalBlockEntities()) {
+            writeBlockEntity(buffer, entity, false);
+        }
+
+        buffer.putInt(data.getAnimatedSprites().size());
+
+        for (Sprite sprite : data.getAnimatedSprites()) {
+            byte[] name = getBytes(sprite.getId());
+
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+        }
+
+        buffer.putInt(meshes.size());
+
+        for (Map.Entry<BlockRenderPass, ChunkMeshData> entry : meshes.entrySet()) {
+            ChunkMeshData mesh = entry.getValue();
+
+            buffer.put((byte) entry.getKey().ordinal());
+            buffer.putInt(mesh.getParts().size());
+
+            for (Map.Entry<ModelQuadFacing, ElementRange> part : mesh.getParts().entrySet()) {
+                ElementRange range = part.getValue();
+
+                buffer.put((byte) part.getKey().ordinal());
+                buffer.putInt(range.elementPointer());
+                buffer.putInt(range.elementCount());
+                buffer.put((byte) range.indexType().ordinal());
+                buffer.putInt(range.baseVertex());
+            }
+
+            IndexedVertexData vertexData = mesh.getVertexData();
+            writeBuffer(buffer, vertexData.vertexBuffer());
+            writeBuffer(buffer, vertexData.indexBuffer());
+
+            TranslucentQuadData quads = mesh.getTranslucentQuads();
+            buffer.put((byte) (quads != null ? 1 : 0));
+
+            if (quads != null) {
+                quads.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * @return The contents of the entry, or null if the entry was written for a different key or a block entity it
+     * refers to no longer exists
+     */
+    static ChunkMeshCache.Entry read(ByteBuffer buffer, long check, ChunkVertexType vertexType, WorldSlice slice,
+                                     NativeBufferAllocator allocator, Vec3d sortOrigin) {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != check) {
+            return null;
+        }
+
+        ChunkRenderData.Builder renderData = new ChunkRenderData.Builder();
+        renderData.setBounds(new ChunkRenderBounds(buffer.getFloat(), buffer.getFloat(), buffer.getFloat(),
+                buffer.getFloat(), buffer.getFloat(), buffer.getFloat()));
+        renderData.setOcclusionData(decodeOcclusionData(buffer.getLong()));
+        renderData.setOpaque(buffer.get() != 0);
+
+        ChunkSectionPos origin = slice.getOrigin();
+        int blockEntityCount = buffer.getInt();
+
+        for (int i = 0; i < blockEntityCount; i++) {
+            BlockPos pos = new BlockPos(origin.getMinX() + buffer.get(), origin.getMinY() + buffer.get(), origin.getMinZ() + buffer.get());
+            boolean cull = buffer.get() != 0;
+
+            BlockEntity entity = slice.getBlockEntity(pos);
+
+            // The block entity must still exist and be rendered for the entry to be used
+            if (entity == null || MinecraftClient.getInstance().getBlockEntityRenderDispatcher().get(entity) == null) {
+                return null;
+            }
+
+            renderData.addBlockEntity(entity, cull);
+        }
+
+        Function<Identifier, Sprite> atlas = MinecraftClient.getInstance()
+                .getSpriteAtlas(SpriteAtlasTexture.BLOCK_ATLAS_TEXTURE);
+        int spriteCount = buffer.getInt();
+
+        for (int i = 0; i < spriteCount; i++) {
+            byte[] name = new byte[Short.toUnsignedInt(buffer.getShort())];
+            buffer.get(name);
+
+            renderData.addSprite(atlas.apply(new Identifier(new String(name, StandardCharsets.UTF_8))));
+        }
+
+        Map<BlockRenderPass, ChunkMeshData> meshes = new EnumMap<>(BlockRenderPass.class);
+
+        try {
+            int meshCount = buffer.getInt();
+
+            for (int i = 0; i < meshCount; i++) {
+                BlockRenderPass pass = BlockRenderPass.VALUES[buffer.get()];
+                meshes.put(pass, readMesh(buffer, vertexType, allocator, pass.isTranslucent() ? sortOrigin : null));
+            }
+        } catch (RuntimeException e) {
+            for (ChunkMeshData mesh : meshes.values()) {
+                mesh.getVertexData()
+                        .delete();
+            }
+
+            throw e;
+        }
+
+        return new ChunkMeshCache.Entry(renderData.build(), meshes);
+    }
+
+    private static ChunkMeshData readMesh(ByteBuffer buffer, ChunkVertexType vertexType, NativeBufferAllocator allocator, Vec3d sortOrigin) {
+        Map<ModelQuadFacing, ElementRange> parts = new EnumMap<>(ModelQuadFacing.class);
+        int partCount = buffer.getInt();
+
+        for (int i = 0; i < partCount; i++) {
+            ModelQuadFacing facing = ModelQuadFacing.VALUES[buffer.get()];
+            parts.put(facing, new ElementRange(buffer.getInt(), buffer.getInt(), INDEX_TYPES[buffer.get()], buffer.getInt()));
+        }
+
+        // Find where each buffer is stored first, so that nothing needs to be freed if the entry is truncated
+        int vertexLength = buffer.getInt();
+        int vertexPosition = skip(buffer, vertexLength);
+
+        int indexLength = buffer.getInt();
+        int indexPosition = skip(buffer, Math.max(0, indexLength));
+
+        TranslucentQuadData quads = buffer.get() != 0 ? TranslucentQuadData.read(buffer) : null;
+
+        NativeBuffer vertexBuffer = copy(buffer, vertexPosition, vertexLength, allocator);
+        NativeBuffer indexBuffer;
+
+        if (quads != null && sortOrigin != null) {
+            // The stored indices were sorted for wherever the camera was when the mesh was built
+            indexBuffer = quads.sort((float) sortOrigin.x, (float) sortOrigin.y, (float) sortOrigin.z, allocator);
+
+            parts.clear();
+            parts.put(ModelQuadFacing.UNASSIGNED, quads.getElementRange());
+        } else {
+            indexBuffer = indexLength >= 0 ? copy(buffer, indexPosition, indexLength, allocator) : null;
+        }
+
+        IndexedVertexData vertexData = new IndexedVertexData(vertexType.getCustomVertexFormat(), vertexBuffer, indexBuffer);
+
+        return new ChunkMeshData(vertexData, parts, quads);
+    }
+
+    private static int skip(ByteBuffer buffer, int length) {
+        int position = buffer.position();
+        buffer.position(position + length);
+
+        return position;
+    }
+
+    private static NativeBuffer copy(ByteBuffer buffer, int position, int length, NativeBufferAllocator allocator) {
+        return NativeBuffer.copy(buffer.slice(position, length), allocator);
+    }
+
+    private static void writeBuffer(ByteBuffer buffer, NativeBuffer src) {
+        if (src == null) {
+            buffer.putInt(-1);
+
+            return;
+        }
+
+        buffer.putInt(src.getLength());
+        buffer.put(src.getDirectBuffer());
+    }
+
+    private static void writeBlockEntity(ByteBuffer buffer, BlockEntity entity, boolean cull) {
+        BlockPos pos = entity.getPos();
+
+        buffer.put((byte) (pos.getX() & 15));
+        buffer.put((byte) (pos.getY() & 15));
+        buffer.put((byte) (pos.getZ() & 15));
+        buffer.put((byte) (cull ? 1 : 0));
+    }
+
+    private static long encodeOcclusionData(ChunkOcclusionData data) {
+        long bits = 0;
+
+        for (Direction from : DIRECTIONS) {
+            for (Direction to : DIRECTIONS) {
+                if (data.isVisibleThrough(from, to)) {
+                    bits |= 1L << ((from.ordinal() * DIRECTIONS.length) + to.ordinal());
+                }
+            }
+        }
+
+        return bits;
+    }
+
+    private static ChunkOcclusionData decodeOcclusionData(long bits) {
+        ChunkOcclusionData data = new ChunkOcclusionData();
+
+        for (Direction from : DIRECTIONS) {
+            for (Direction to : DIRECTIONS) {
+                data.setVisibleThrough(from, to, (bits & (1L << ((from.ordinal() * DIRECTIONS.length) + to.ordinal()))) != 0);
+            }
+        }
+
+        return data;
+    }
+
+    private static byte[] getBytes(Identifier id) {
+        return id.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
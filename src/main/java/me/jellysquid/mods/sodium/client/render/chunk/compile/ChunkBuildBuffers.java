@@ -6,16 +6,23 @@ import me.jellysquid.mods.sodium.client.model.IndexBufferBuilder;
 import me.jellysquid.mods.sodium.client.model.quad.properties.ModelQuadFacing;
 import me.jellysquid.mods.sodium.client.model.vertex.buffer.VertexBufferBuilder;
 import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
+import me.jellysquid.mods.sodium.client.render.chunk.SharedQuadIndexBuffer;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.buffers.BakedChunkModelBuilder;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.buffers.ChunkModelBuilder;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkBlockGeometry;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
+import me.jellysquid.mods.sodium.client.render.chunk.data.TranslucentQuadData;
 import me.jellysquid.mods.sodium.client.render.chunk.format.ModelVertexSink;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPassManager;
+import me.jellysquid.mods.sodium.client.util.ContentHasher;
 import me.jellysquid.mods.sodium.client.util.NativeBuffer;
+import me.jellysquid.mods.sodium.client.util.NativeBufferAllocator;
 import net.minecraft.client.render.RenderLayer;
+import net.minecraft.util.math.Vec3d;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.Map;
@@ -36,9 +43,21 @@ public class ChunkBuildBuffers {
 
     private final BlockRenderPassManager renderPassManager;
 
+    // Provides the memory for the buffers of finished meshes, which are handed off to the main thread for uploading
+    private final NativeBufferAllocator meshAllocator;
+
+    // The size of each scratch buffer when the current block started rendering, used to record per-block geometry
+    private final int[] vertexMarks = new int[BlockRenderPass.COUNT];
+    private final int[][] indexMarks = new int[BlockRenderPass.COUNT][ModelQuadFacing.COUNT];
+
     public ChunkBuildBuffers(ChunkVertexType vertexType, BlockRenderPassManager renderPassManager) {
+        this(vertexType, renderPassManager, NativeBufferAllocator.DEFAULT);
+    }
+
+    public ChunkBuildBuffers(ChunkVertexType vertexType, BlockRenderPassManager renderPassManager, NativeBufferAllocator meshAllocator) {
         this.vertexType = vertexType;
         this.renderPassManager = renderPassManager;
+        this.meshAllocator = meshAllocator;
 
         this.delegates = new ChunkModelBuilder[BlockRenderPass.COUNT];
 
@@ -84,29 +103,149 @@ public class ChunkBuildBuffers {
         return this.delegates[this.renderPassManager.getRenderPassId(layer)];
     }
 
+    /**
+     * Remembers the current size of all scratch buffers. This should be called before rendering a block whose
+     * geometry will be recorded with {@link ChunkBuildBuffers#recordBlock(int, ChunkBlockGeometry.Builder)}.
+     */
+    public void markBlockStart() {
+        for (int i = 0; i < BlockRenderPass.COUNT; i++) {
+            this.vertexMarks[i] = this.vertexBuffers[i].getCount();
+
+            IndexBufferBuilder[] indexBuffers = this.indexBuffers[i];
+            int[] indexMarks = this.indexMarks[i];
+
+            for (int facing = 0; facing < ModelQuadFacing.COUNT; facing++) {
+                indexMarks[facing] = indexBuffers[facing].getCount();
+            }
+        }
+    }
+
+    /**
+     * Copies all the geometry which was rendered since the last call to {@link ChunkBuildBuffers#markBlockStart()}
+     * into the given builder as the geometry of a single block.
+     */
+    public void recordBlock(int block, ChunkBlockGeometry.Builder geometry) {
+        for (BlockRenderPass pass : BlockRenderPass.VALUES) {
+            VertexBufferBuilder vertexBuffer = this.vertexBuffers[pass.ordinal()];
+
+            int vertexStart = this.vertexMarks[pass.ordinal()];
+            int vertexCount = vertexBuffer.getCount() - vertexStart;
+
+            if (vertexCount > 0) {
+                geometry.addBlock(pass, block, vertexBuffer.getDirectBuffer(), vertexStart, vertexCount,
+                        this.indexBuffers[pass.ordinal()], this.indexMarks[pass.ordinal()]);
+            }
+        }
+    }
+
+    /**
+     * @return The size of each vertex in the scratch buffers, in bytes
+     */
+    public int getVertexStride() {
+        return this.vertexType.getBufferVertexFormat().getStride();
+    }
+
     /**
      * Creates immutable baked chunk meshes from all non-empty scratch buffers. This is used after all blocks
      * have been rendered to pass the finished meshes over to the graphics card. This function can be called multiple
      * times to return multiple copies.
      */
     public ChunkMeshData createMesh(BlockRenderPass pass) {
-        NativeBuffer vertexBuffer = this.vertexBuffers[pass.ordinal()].pop();
+        return this.createMesh(pass, (Vec3d) null);
+    }
+
+    /**
+     * Creates an immutable baked chunk mesh from the scratch buffers of the given pass. If a sort origin is given, the
+     * quads of the mesh are ordered back-to-front relative to it and kept so that the mesh can be sorted again.
+     *
+     * @param sortOrigin The position of the camera relative to the section's origin, or null if the mesh should
+     *                   not be sorted
+     */
+    public ChunkMeshData createMesh(BlockRenderPass pass, Vec3d sortOrigin) {
+        VertexBufferBuilder vertices = this.vertexBuffers[pass.ordinal()];
+
+        if (vertices.isEmpty()) {
+            return null;
+        }
+
+        IndexBufferBuilder[] indices = this.indexBuffers[pass.ordinal()];
+
+        // The vertices are re-ordered anyways, so they can be read straight out of the scratch buffer
+        if (sortOrigin == null && !pass.isTranslucent()) {
+            return this.createSharedIndexMesh(vertices.getWrittenBuffer(), indices);
+        }
+
+        return this.createIndexedMesh(vertices.getWrittenBuffer(), indices, sortOrigin);
+    }
+
+    /**
+     * Creates an immutable baked chunk mesh from the retained geometry of a section rather than the scratch buffers.
+     * The index scratch buffers of the render pass will be overwritten.
+     */
+    public ChunkMeshData createMesh(BlockRenderPass pass, ChunkBlockGeometry geometry) {
+        return this.createMesh(pass, geometry, null);
+    }
+
+    /**
+     * Creates an immutable baked chunk mesh from the retained geometry of a section, optionally sorting its quads.
+     * @see ChunkBuildBuffers#createMesh(BlockRenderPass, Vec3d)
+     */
+    public ChunkMeshData createMesh(BlockRenderPass pass, ChunkBlockGeometry geometry, Vec3d sortOrigin) {
+        ChunkBlockGeometry.Pass data = geometry.getPass(pass);
 
-        if (vertexBuffer == null) {
+        if (data == null) {
             return null;
         }
 
-        IndexBufferBuilder.Result[] indexBuffers = Arrays.stream(this.indexBuffers[pass.ordinal()])
+        IndexBufferBuilder[] indexBuffers = this.indexBuffers[pass.ordinal()];
+
+        for (ModelQuadFacing facing : ModelQuadFacing.VALUES) {
+            IndexBufferBuilder indices = indexBuffers[facing.ordinal()];
+            indices.start();
+
+            data.writeIndices(facing, indices);
+        }
+
+        // The vertices are only needed until they have been copied into the mesh. They can't be written into the
+        // mesh's buffer directly, as it may be write-only memory which the mesh's hash can't be computed from.
+        NativeBuffer vertexBuffer = new NativeBuffer(data.getVertexCount() * this.getVertexStride());
+
+        try {
+            data.writeVertices(vertexBuffer.getDirectBuffer());
+
+            if (sortOrigin == null && !pass.isTranslucent()) {
+                return this.createSharedIndexMesh(vertexBuffer.getDirectBuffer(), indexBuffers);
+            }
+
+            return this.createIndexedMesh(vertexBuffer.getDirectBuffer(), indexBuffers, sortOrigin);
+        } finally {
+            vertexBuffer.free();
+        }
+    }
+
+    /**
+     * Creates a mesh which has index data of its own, either because it is sorted or because it belongs to a
+     * translucent render pass.
+     *
+     * @param vertices The vertices of the mesh, which are copied into a new buffer
+     */
+    private ChunkMeshData createIndexedMesh(ByteBuffer vertices, IndexBufferBuilder[] builders, Vec3d sortOrigin) {
+        if (sortOrigin != null) {
+            return this.createSortedMesh(vertices, builders, sortOrigin);
+        }
+
+        IndexBufferBuilder.Result[] indexBuffers = Arrays.stream(builders)
                 .map(IndexBufferBuilder::pop)
                 .toArray(IndexBufferBuilder.Result[]::new);
 
-        NativeBuffer indexBuffer = new NativeBuffer(Arrays.stream(indexBuffers)
+        NativeBuffer indexBuffer = this.meshAllocator.allocate(Arrays.stream(indexBuffers)
                 .filter(Objects::nonNull)
                 .mapToInt(IndexBufferBuilder.Result::getByteSize)
                 .sum());
 
         int indexPointer = 0;
 
+        ContentHasher hasher = new ContentHasher();
         Map<ModelQuadFacing, ElementRange> ranges = new EnumMap<>(ModelQuadFacing.class);
 
         for (ModelQuadFacing facing : ModelQuadFacing.VALUES) {
@@ -119,15 +258,149 @@ public class ChunkBuildBuffers {
             ranges.put(facing,
                     new ElementRange(indexPointer, indices.getCount(), indices.getFormat(), indices.getBaseVertex()));
 
-            indexPointer = indices.writeTo(indexPointer, indexBuffer.getDirectBuffer());
+            indexPointer = indices.writeTo(indexPointer, indexBuffer.getDirectBuffer(), hasher);
+        }
+
+        indexBuffer.setContentHash(hasher.finish());
+
+        IndexedVertexData vertexData = new IndexedVertexData(this.vertexType.getCustomVertexFormat(),
+                NativeBuffer.copy(vertices, this.meshAllocator), indexBuffer);
+
+        return new ChunkMeshData(vertexData, ranges);
+    }
+
+    /**
+     * Meshes which are drawn with the {@link SharedQuadIndexBuffer} don't have any index data of their own. Instead,
+     * the vertices of each quad are copied into the order expected by the shared buffer, with the quads of each facing
+     * placed next to each other so that every facing can still be drawn as a single range.
+     */
+    private ChunkMeshData createSharedIndexMesh(ByteBuffer src, IndexBufferBuilder[] builders) {
+        int quadCount = 0;
+
+        for (IndexBufferBuilder builder : builders) {
+            quadCount += builder.getCount() / SharedQuadIndexBuffer.ELEMENTS_PER_QUAD;
+        }
+
+        if (quadCount == 0) {
+            return null;
+        }
+
+        int stride = this.getVertexStride();
+
+        NativeBuffer outputBuffer = this.meshAllocator.allocate(quadCount * SharedQuadIndexBuffer.VERTICES_PER_QUAD * stride);
+        ByteBuffer dst = outputBuffer.getDirectBuffer();
+
+        Map<ModelQuadFacing, ElementRange> ranges = new EnumMap<>(ModelQuadFacing.class);
+
+        int[] quad = new int[SharedQuadIndexBuffer.VERTICES_PER_QUAD];
+        int vertexCount = 0;
+
+        // The output is a re-ordering of the source vertices, so the hash covers the source data and the order
+        ContentHasher hasher = new ContentHasher();
+        hasher.putLong(ContentHasher.hash(src));
+
+        for (ModelQuadFacing facing : ModelQuadFacing.VALUES) {
+            IndexBufferBuilder indices = builders[facing.ordinal()];
+            int firstVertex = vertexCount;
+
+            for (int i = 0; i + SharedQuadIndexBuffer.ELEMENTS_PER_QUAD <= indices.getCount(); i += SharedQuadIndexBuffer.ELEMENTS_PER_QUAD) {
+                getQuadVertices(indices, i, quad);
+
+                for (int vertex : quad) {
+                    dst.put(vertexCount * stride, src, vertex * stride, stride);
+                    hasher.putInt(vertex);
+                    vertexCount++;
+                }
+            }
+
+            if (vertexCount != firstVertex) {
+                int elementCount = ((vertexCount - firstVertex) / SharedQuadIndexBuffer.VERTICES_PER_QUAD) * SharedQuadIndexBuffer.ELEMENTS_PER_QUAD;
+
+                ranges.put(facing, new ElementRange(0, elementCount, SharedQuadIndexBuffer.INDEX_TYPE, firstVertex));
+            }
         }
 
+        outputBuffer.setContentHash(hasher.finish());
+
         IndexedVertexData vertexData = new IndexedVertexData(this.vertexType.getCustomVertexFormat(),
-                vertexBuffer, indexBuffer);
+                outputBuffer, null);
 
         return new ChunkMeshData(vertexData, ranges);
     }
 
+    /**
+     * Finds the vertices of the quad made up by the two triangles starting at the given index, in the order which
+     * produces the same triangles with the winding used by the {@link SharedQuadIndexBuffer}. Quads are not always
+     * split along the same diagonal (e.g. the back faces of fluids), so the order is derived from the triangles.
+     */
+    private static void getQuadVertices(IndexBufferBuilder indices, int start, int[] quad) {
+        int a = indices.get(start + 0);
+        int b = indices.get(start + 1);
+        int c = indices.get(start + 2);
+
+        int d = indices.get(start + 3);
+        int e = indices.get(start + 4);
+        int f = indices.get(start + 5);
+
+        // The vertex of the first triangle which isn't shared with the second triangle must come second, which
+        // places the shared diagonal between the first and third vertices
+        if (!containsIndex(d, e, f, a)) {
+            quad[0] = c;
+            quad[1] = a;
+            quad[2] = b;
+        } else if (!containsIndex(d, e, f, c)) {
+            quad[0] = b;
+            quad[1] = c;
+            quad[2] = a;
+        } else {
+            quad[0] = a;
+            quad[1] = b;
+            quad[2] = c;
+        }
+
+        // The remaining vertex is the one in the second triangle which isn't part of the first
+        if (!containsIndex(a, b, c, d)) {
+            quad[3] = d;
+        } else if (!containsIndex(a, b, c, e)) {
+            quad[3] = e;
+        } else {
+            quad[3] = f;
+        }
+    }
+
+    private static boolean containsIndex(int x, int y, int z, int index) {
+        return x == index || y == index || z == index;
+    }
+
+    /**
+     * Quads of different facings can overlap each other in any order, so sorted meshes place all of their quads into
+     * a single range. This gives up block face culling for the mesh, but it's required for the sort to be correct.
+     */
+    private ChunkMeshData createSortedMesh(ByteBuffer vertices, IndexBufferBuilder[] builders, Vec3d sortOrigin) {
+        TranslucentQuadData quads = TranslucentQuadData.create(vertices, this.vertexType, builders);
+
+        if (quads == null) {
+            return null;
+        }
+
+        NativeBuffer indexBuffer = quads.sort((float) sortOrigin.x, (float) sortOrigin.y, (float) sortOrigin.z, this.meshAllocator);
+
+        Map<ModelQuadFacing, ElementRange> ranges = new EnumMap<>(ModelQuadFacing.class);
+        ranges.put(ModelQuadFacing.UNASSIGNED, quads.getElementRange());
+
+        IndexedVertexData vertexData = new IndexedVertexData(this.vertexType.getCustomVertexFormat(),
+                NativeBuffer.copy(vertices, this.meshAllocator), indexBuffer);
+
+        return new ChunkMeshData(vertexData, ranges, quads);
+    }
+
+    /**
+     * @return The allocator which the buffers of finished meshes are created with
+     */
+    public NativeBufferAllocator getMeshAllocator() {
+        return this.meshAllocator;
+    }
+
     public void destroy() {
         for (VertexBufferBuilder builder : this.vertexBuffers) {
             builder.destroy();
@@ -1,10 +1,15 @@
 package me.jellysquid.mods.sodium.client.render.chunk.compile;
 
+import me.jellysquid.mods.sodium.client.gl.buffer.IndexedVertexData;
+import me.jellysquid.mods.sodium.client.render.chunk.ChunkGraphicsState;
 import me.jellysquid.mods.sodium.client.render.chunk.RenderSection;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkBlockGeometry;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+import me.jellysquid.mods.sodium.client.util.NativeBuffer;
 
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -18,21 +23,99 @@ public class ChunkBuildResult {
     public final Map<BlockRenderPass, ChunkMeshData> meshes;
     public final int buildTime;
 
+    // The per-block geometry of the section, if it was retained for incremental rebuilds
+    public final ChunkBlockGeometry geometry;
+
+    // The block update version of the section at the time the task was created
+    public final int blockUpdateVersion;
+
+    // The re-sorted index buffers of each translucent pass if this is the result of a sort task, otherwise null
+    public final Map<BlockRenderPass, SortedIndexData> sortedIndices;
+
     public ChunkBuildResult(RenderSection render, ChunkRenderData data, Map<BlockRenderPass, ChunkMeshData> meshes, int buildTime) {
+        this(render, data, meshes, buildTime, null, -1);
+    }
+
+    public ChunkBuildResult(RenderSection render, ChunkRenderData data, Map<BlockRenderPass, ChunkMeshData> meshes, int buildTime,
+                            ChunkBlockGeometry geometry, int blockUpdateVersion) {
+        this(render, data, meshes, buildTime, geometry, blockUpdateVersion, null);
+    }
+
+    private ChunkBuildResult(RenderSection render, ChunkRenderData data, Map<BlockRenderPass, ChunkMeshData> meshes, int buildTime,
+                             ChunkBlockGeometry geometry, int blockUpdateVersion, Map<BlockRenderPass, SortedIndexData> sortedIndices) {
         this.render = render;
         this.data = data;
         this.meshes = meshes;
         this.buildTime = buildTime;
+        this.geometry = geometry;
+        this.blockUpdateVersion = blockUpdateVersion;
+        this.sortedIndices = sortedIndices;
+    }
+
+    /**
+     * Creates the result of a sort task, which only replaces the index data of the section's translucent meshes and
+     * leaves everything else untouched.
+     */
+    public static ChunkBuildResult sorted(RenderSection render, Map<BlockRenderPass, SortedIndexData> sortedIndices, int buildTime) {
+        return new ChunkBuildResult(render, null, Collections.emptyMap(), buildTime, null, -1, sortedIndices);
+    }
+
+    /**
+     * @return True if this is the result of a sort task rather than a rebuild
+     */
+    public boolean isSortResult() {
+        return this.sortedIndices != null;
     }
 
     public ChunkMeshData getMesh(BlockRenderPass pass) {
         return this.meshes.get(pass);
     }
 
+    /**
+     * @return The number of bytes which need to be uploaded to the device for this result
+     */
+    public long getUploadSize() {
+        long bytes = 0;
+
+        for (ChunkMeshData data : this.meshes.values()) {
+            IndexedVertexData vertexData = data.getVertexData();
+            bytes += vertexData.vertexBuffer().getLength();
+
+            if (vertexData.indexBuffer() != null) {
+                bytes += vertexData.indexBuffer().getLength();
+            }
+        }
+
+        if (this.sortedIndices != null) {
+            for (SortedIndexData data : this.sortedIndices.values()) {
+                bytes += data.indexBuffer().getLength();
+            }
+        }
+
+        return bytes;
+    }
+
     public void delete() {
         for (ChunkMeshData data : this.meshes.values()) {
             data.getVertexData()
                     .delete();
         }
+
+        if (this.sortedIndices != null) {
+            for (SortedIndexData data : this.sortedIndices.values()) {
+                data.indexBuffer()
+                        .free();
+            }
+        }
+    }
+
+    /**
+     * A re-sorted index buffer, along with the graphics state it was sorted for. If the state has been replaced by the
+     * time the result is processed, the indices no longer match the vertex data and must be discarded.
+     */
+    public record SortedIndexData(ChunkGraphicsState state, NativeBuffer indexBuffer, long indexHash) {
+        public SortedIndexData(ChunkGraphicsState state, NativeBuffer indexBuffer) {
+            this(state, indexBuffer, indexBuffer.getContentHash());
+        }
     }
 }
@@ -1,11 +1,15 @@
 package me.jellysquid.mods.sodium.client.render.chunk.compile;
 
+import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
+import me.jellysquid.mods.sodium.client.render.chunk.metrics.ChunkBuildEvent;
+import me.jellysquid.mods.sodium.client.render.chunk.metrics.ChunkRenderMetrics;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPassManager;
 import me.jellysquid.mods.sodium.client.render.chunk.tasks.ChunkRenderBuildTask;
 import me.jellysquid.mods.sodium.client.render.pipeline.context.ChunkRenderCacheLocal;
+import me.jellysquid.mods.sodium.client.util.NativeBufferAllocator;
+import me.jellysquid.mods.sodium.client.util.NativeMemoryPool;
 import me.jellysquid.mods.sodium.client.util.task.CancellationSource;
-import me.jellysquid.mods.sodium.common.util.collections.QueueDrainingIterator;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.world.ClientWorld;
 import net.minecraft.world.World;
@@ -16,6 +20,9 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 public class ChunkBuilder {
     /**
@@ -25,24 +32,60 @@ public class ChunkBuilder {
 
     private static final Logger LOGGER = LogManager.getLogger("ChunkBuilder");
 
-    private final Deque<WrappedTask> buildQueue = new ConcurrentLinkedDeque<>();
-
-    private final Object jobNotifier = new Object();
-
     private final AtomicBoolean running = new AtomicBoolean(false);
     private final List<Thread> threads = new ArrayList<>();
 
+    // The workers which are currently running, in the same order as their threads. Each worker owns a task queue
+    // which other workers can steal from when they run out of work.
+    private volatile WorkerRunnable[] workers = new WorkerRunnable[0];
+
+    // The total number of tasks waiting in the queues of all workers
+    private final AtomicInteger queuedTaskCount = new AtomicInteger();
+
+    // Used to distribute newly scheduled tasks between workers
+    private int nextWorker;
+
     private World world;
     private BlockRenderPassManager renderPassManager;
 
     private final int limitThreads;
     private final ChunkVertexType vertexType;
 
+    // The controller used to pick the number of active workers, or null if all workers are always active
+    private final WorkerCountController workerCountController;
+
+    // The number of workers which are accepting tasks. Workers with an index greater than or equal to this will
+    // park until they are activated again, and any tasks left in their queues will be stolen by the active workers.
+    private volatile int activeWorkers;
+
+    private final NativeBufferAllocator meshAllocator;
+
+    // The metrics which finished builds are recorded into, or null if they aren't being tracked
+    private final ChunkRenderMetrics metrics;
+
     private final Queue<ChunkBuildResult> deferredResultQueue = new ConcurrentLinkedDeque<>();
 
     public ChunkBuilder(ChunkVertexType vertexType) {
+        this(vertexType, NativeBufferAllocator.DEFAULT, null);
+    }
+
+    /**
+     * @param meshAllocator The allocator which the buffers of finished meshes will be created with
+     * @param metrics The metrics to record finished builds into, or null
+     */
+    public ChunkBuilder(ChunkVertexType vertexType, NativeBufferAllocator meshAllocator, ChunkRenderMetrics metrics) {
         this.vertexType = vertexType;
+        this.meshAllocator = meshAllocator;
+        this.metrics = metrics;
         this.limitThreads = getOptimalThreadCount();
+
+        if (SodiumClientMod.options().advanced.useAdaptiveChunkBuilderThreads) {
+            this.workerCountController = new WorkerCountController(this.limitThreads, getReservedThreadCount());
+            this.activeWorkers = this.workerCountController.getInitialWorkerCount();
+        } else {
+            this.workerCountController = null;
+            this.activeWorkers = this.limitThreads;
+        }
     }
 
     /**
@@ -50,7 +93,49 @@ public class ChunkBuilder {
      * spawn more tasks than the budget allows, it will block until resources become available.
      */
     public int getSchedulingBudget() {
-        return Math.max(0, (this.limitThreads * TASK_QUEUE_LIMIT_PER_WORKER) - this.buildQueue.size() - this.deferredResultQueue.size());
+        return Math.max(0, (this.activeWorkers * TASK_QUEUE_LIMIT_PER_WORKER) - this.queuedTaskCount.get() - this.deferredResultQueue.size());
+    }
+
+    /**
+     * Updates the number of active workers when the adaptive thread count is enabled. This should be called once
+     * per frame from the main thread.
+     * @param backlog The number of sections which are waiting to be scheduled
+     */
+    public void updateActiveWorkers(int backlog) {
+        if (this.workerCountController == null || !this.running.get()) {
+            return;
+        }
+
+        int prev = this.activeWorkers;
+        int next = this.workerCountController.update(prev, backlog + this.queuedTaskCount.get());
+
+        if (prev == next) {
+            return;
+        }
+
+        this.activeWorkers = next;
+
+        WorkerRunnable[] workers = this.workers;
+
+        if (next > prev) {
+            // Wake up any newly activated workers so that they can start stealing work
+            for (int i = prev; i < next; i++) {
+                workers[i].wake();
+            }
+        } else {
+            // Tasks might still be sitting in the queues of the workers we just deactivated, so make sure the
+            // remaining workers are awake to steal them
+            for (int i = 0; i < next; i++) {
+                workers[i].wake();
+            }
+        }
+    }
+
+    /**
+     * @return The number of workers which are currently accepting tasks
+     */
+    public int getActiveWorkerCount() {
+        return this.activeWorkers;
     }
 
     /**
@@ -68,19 +153,36 @@ public class ChunkBuilder {
 
         MinecraftClient client = MinecraftClient.getInstance();
 
-        for (int i = 0; i < this.limitThreads; i++) {
-            ChunkBuildBuffers buffers = new ChunkBuildBuffers(this.vertexType, this.renderPassManager);
+        WorkerRunnable[] workers = new WorkerRunnable[this.limitThreads];
+
+        for (int i = 0; i < workers.length; i++) {
+            ChunkBuildBuffers buffers = new ChunkBuildBuffers(this.vertexType, this.renderPassManager, this.meshAllocator);
             ChunkRenderCacheLocal pipeline = new ChunkRenderCacheLocal(client, this.world);
 
-            WorkerRunnable worker = new WorkerRunnable(buffers, pipeline);
+            workers[i] = new WorkerRunnable(i, buffers, pipeline);
+        }
 
-            Thread thread = new Thread(worker, "Chunk Render Task Executor #" + i);
-            thread.setPriority(Math.max(0, Thread.NORM_PRIORITY - 2));
-            thread.start();
+        // The worker array must be published before any thread starts, as workers will try to steal from each other
+        this.workers = workers;
+
+        int reservedThreads = getReservedThreadCount();
+
+        for (WorkerRunnable worker : workers) {
+            Thread thread = new Thread(worker, "Chunk Render Task Executor #" + worker.id);
+
+            // Workers beyond the number of cores we can use freely will compete with the render and server threads,
+            // so run them at the lowest priority to give the OS scheduler a hint
+            thread.setPriority(worker.id < reservedThreads ? Math.max(0, Thread.NORM_PRIORITY - 2) : Thread.MIN_PRIORITY);
+
+            worker.thread = thread;
 
             this.threads.add(thread);
         }
 
+        for (Thread thread : this.threads) {
+            thread.start();
+        }
+
         LOGGER.info("Started {} worker threads", this.threads.size());
     }
 
@@ -100,9 +202,9 @@ public class ChunkBuilder {
 
         LOGGER.info("Stopping worker threads");
 
-        // Notify all worker threads to wake up, where they will then terminate
-        synchronized (this.jobNotifier) {
-            this.jobNotifier.notifyAll();
+        // Wake up all worker threads, where they will then terminate
+        for (Thread thread : this.threads) {
+            LockSupport.unpark(thread);
         }
 
         // Wait for every remaining thread to terminate
@@ -116,9 +218,13 @@ public class ChunkBuilder {
         this.threads.clear();
 
         // Delete any queued tasks and resources attached to them
-        for (WrappedTask job : this.buildQueue) {
-            job.future.cancel(true);
-            job.task.releaseResources();
+        for (WorkerRunnable worker : this.workers) {
+            WrappedTask job;
+
+            while ((job = worker.queue.poll()) != null) {
+                job.future.cancel(true);
+                job.task.releaseResources();
+            }
         }
 
         // Delete any results in the deferred queue
@@ -127,7 +233,8 @@ public class ChunkBuilder {
                     .delete();
         }
 
-        this.buildQueue.clear();
+        this.workers = new WorkerRunnable[0];
+        this.queuedTaskCount.set(0);
 
         this.world = null;
     }
@@ -139,20 +246,84 @@ public class ChunkBuilder {
 
         WrappedTask job = new WrappedTask(task);
 
-        this.buildQueue.add(job);
+        WorkerRunnable[] workers = this.workers;
+        int active = this.activeWorkers;
+
+        WorkerRunnable worker = workers[this.nextWorker % active];
 
-        synchronized (this.jobNotifier) {
-            this.jobNotifier.notify();
+        this.nextWorker = (this.nextWorker + 1) % active;
+
+        this.queuedTaskCount.incrementAndGet();
+
+        worker.queue.add(job);
+        worker.wake();
+
+        // If the worker we handed the task to is busy, wake up an idle worker so that it can steal the task
+        if (!worker.idle) {
+            wakeIdleWorker(workers, active);
         }
 
+        // When a task is superseded by a newer one before a worker picks it up, drop it from the queue right away
+        // so that it doesn't hold onto its world snapshot or take up space in the scheduling budget
+        job.future.whenComplete((result, throwable) -> {
+            if (job.isCancelled()) {
+                this.removeCancelledJob(job);
+            }
+        });
+
         return job.future;
     }
 
+    private void removeCancelledJob(WrappedTask job) {
+        for (WorkerRunnable worker : this.workers) {
+            // If a worker has already taken the job, it will notice the cancellation and release the task itself
+            if (worker.queue.remove(job)) {
+                this.queuedTaskCount.decrementAndGet();
+
+                job.task.releaseResources();
+
+                break;
+            }
+        }
+    }
+
+    private static void wakeIdleWorker(WorkerRunnable[] workers, int active) {
+        for (int i = 0; i < active; i++) {
+            WorkerRunnable worker = workers[i];
+
+            if (worker.idle) {
+                worker.wake();
+                break;
+            }
+        }
+    }
+
     /**
      * @return True if the build queue is empty
      */
     public boolean isBuildQueueEmpty() {
-        return this.buildQueue.isEmpty();
+        return this.queuedTaskCount.get() <= 0;
+    }
+
+    /**
+     * @return The number of worker threads which are currently running
+     */
+    public int getWorkerCount() {
+        return this.workers.length;
+    }
+
+    /**
+     * @return The number of tasks waiting in the queue of the given worker
+     */
+    public int getWorkerQueueDepth(int worker) {
+        return this.workers[worker].queue.size();
+    }
+
+    /**
+     * @return The number of tasks the given worker has stolen from the queues of other workers
+     */
+    public long getWorkerStealCount(int worker) {
+        return this.workers[worker].stolenTasks.get();
     }
 
     /**
@@ -177,24 +348,79 @@ public class ChunkBuilder {
 
     /**
      * Returns the "optimal" number of threads to be used for chunk build tasks. This is always at least one thread,
-     * but can be up to the number of available processor threads on the system.
+     * but can be up to the number of available processor threads on the system, or the limit configured by the user.
      */
     private static int getOptimalThreadCount() {
-        return Math.max(1, Runtime.getRuntime().availableProcessors());
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int limit = SodiumClientMod.options().advanced.chunkBuilderThreadLimit;
+
+        return limit > 0 ? Math.min(threads, limit) : threads;
+    }
+
+    /**
+     * Returns the number of threads which can be used for chunk build tasks without competing with the render
+     * thread, and the server thread when playing in single-player.
+     */
+    private static int getReservedThreadCount() {
+        int reserved = MinecraftClient.getInstance().isIntegratedServerRunning() ? 2 : 1;
+
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - reserved);
     }
 
-    public CompletableFuture<Void> scheduleDeferred(ChunkRenderBuildTask task) {
-        return this.schedule(task)
-                .thenAccept(this.deferredResultQueue::add);
+    /**
+     * Schedules a task whose result will be placed into the deferred result queue once available. The returned future
+     * is the task's own future, so cancelling it will prevent the task from running if it hasn't started yet, or
+     * cause it to exit early if it is already running.
+     */
+    public CompletableFuture<ChunkBuildResult> scheduleDeferred(ChunkRenderBuildTask task) {
+        CompletableFuture<ChunkBuildResult> future = this.schedule(task);
+        future.thenAccept(this.deferredResultQueue::add);
+
+        return future;
     }
 
-    public Iterator<ChunkBuildResult> createDeferredBuildResultDrain() {
-        return new QueueDrainingIterator<>(this.deferredResultQueue);
+    /**
+     * Removes finished results from the deferred result queue until the total number of bytes they need to upload
+     * reaches the given limit. The first result is always removed if there is one, so that results which are larger
+     * than the limit can still be uploaded.
+     */
+    public List<ChunkBuildResult> drainDeferredBuildResults(long maxBytes) {
+        List<ChunkBuildResult> results = new ArrayList<>();
+        long bytes = 0;
+
+        ChunkBuildResult result;
+
+        while (bytes < maxBytes && (result = this.deferredResultQueue.poll()) != null) {
+            results.add(result);
+            bytes += result.getUploadSize();
+        }
+
+        return results;
+    }
+
+    /**
+     * @return The number of finished results which are waiting to be uploaded
+     */
+    public int getDeferredResultCount() {
+        return this.deferredResultQueue.size();
     }
 
     private class WorkerRunnable implements Runnable {
         private final AtomicBoolean running = ChunkBuilder.this.running;
 
+        private final int id;
+
+        // The tasks which have been scheduled on this worker. The owner takes tasks from the head of the queue while
+        // other workers steal from the tail.
+        private final Deque<WrappedTask> queue = new ConcurrentLinkedDeque<>();
+
+        private final AtomicLong stolenTasks = new AtomicLong();
+
+        private Thread thread;
+
+        // True if the worker has found no work and is about to park (or is already parked)
+        private volatile boolean idle;
+
         // The re-useable build buffers used by this worker for building chunk meshes
         private final ChunkBuildBuffers bufferCache;
 
@@ -202,13 +428,17 @@ public class ChunkBuilder {
         // caches between different CPU cores
         private final ChunkRenderCacheLocal cache;
 
-        public WorkerRunnable(ChunkBuildBuffers bufferCache, ChunkRenderCacheLocal cache) {
+        public WorkerRunnable(int id, ChunkBuildBuffers bufferCache, ChunkRenderCacheLocal cache) {
+            this.id = id;
             this.bufferCache = bufferCache;
             this.cache = cache;
         }
 
         @Override
         public void run() {
+            // Workers allocate and free their own temporary buffers, which the thread cache can hand back quickly
+            NativeMemoryPool.enableThreadCache();
+
             // Run until the chunk builder shuts down
             while (this.running.get()) {
                 WrappedTask job = this.getNextJob();
@@ -221,18 +451,28 @@ public class ChunkBuilder {
             }
 
             this.bufferCache.destroy();
+
+            // Hand the pooled memory kept by this thread back before it exits
+            NativeMemoryPool.releaseThreadCache();
         }
 
         private void processJob(WrappedTask job) {
             ChunkBuildResult result;
 
+            ChunkBuildEvent event = new ChunkBuildEvent();
+            long startTime = System.nanoTime();
+
             try {
                 if (job.isCancelled()) {
                     return;
                 }
 
+                event.begin();
+
                 // Perform the build task with this worker's local resources and obtain the result
                 result = job.task.performBuild(this.cache, this.bufferCache, job);
+
+                event.commit(job.task.getClass().getSimpleName(), startTime - job.scheduleTime);
             } catch (Exception e) {
                 // Propagate any exception from chunk building
                 job.future.completeExceptionally(e);
@@ -243,8 +483,15 @@ public class ChunkBuilder {
 
             // The result can be null if the task is cancelled
             if (result != null) {
-                // Notify the future that the result is now available
-                job.future.complete(result);
+                if (ChunkBuilder.this.metrics != null) {
+                    ChunkBuilder.this.metrics.recordBuild(job.scheduleTime, startTime, System.nanoTime());
+                }
+
+                // Notify the future that the result is now available. If the task was cancelled after it finished
+                // building, nobody will ever see the result, so release its memory now.
+                if (!job.future.complete(result)) {
+                    result.delete();
+                }
             } else if (!job.isCancelled()) {
                 // If the job wasn't cancelled and no result was produced, we've hit a bug
                 job.future.completeExceptionally(new RuntimeException("No result was produced by the task"));
@@ -252,32 +499,81 @@ public class ChunkBuilder {
         }
 
         /**
-         * Returns the next task which this worker can work on or blocks until one becomes available. If no tasks are
-         * currently available, it will wait on {@link ChunkBuilder#jobNotifier} field until notified.
+         * Returns the next task which this worker can work on, stealing from other workers if its own queue is empty.
+         * If no tasks are available anywhere, the thread parks until {@link WorkerRunnable#wake()} is called and
+         * null is returned.
          */
         private WrappedTask getNextJob() {
-            WrappedTask job = ChunkBuilder.this.buildQueue.poll();
+            // Inactive workers don't take any work, and instead leave their queues to be stolen by the active workers
+            WrappedTask job = this.isActive() ? this.findJob() : null;
 
             if (job == null) {
-                synchronized (ChunkBuilder.this.jobNotifier) {
-                    try {
-                        ChunkBuilder.this.jobNotifier.wait();
-                    } catch (InterruptedException ignored) {
-                    }
+                this.idle = true;
+
+                // Check again after advertising that we're idle, since a task could have been added between our
+                // last check and now. Any wake-up after this point will leave a permit which prevents the park below
+                // from blocking.
+                job = this.isActive() ? this.findJob() : null;
+
+                if (job == null && this.running.get()) {
+                    LockSupport.park(this);
                 }
+
+                this.idle = false;
+            }
+
+            if (job != null) {
+                ChunkBuilder.this.queuedTaskCount.decrementAndGet();
             }
 
             return job;
         }
+
+        private WrappedTask findJob() {
+            WrappedTask job = this.queue.pollFirst();
+
+            if (job != null) {
+                return job;
+            }
+
+            WorkerRunnable[] workers = ChunkBuilder.this.workers;
+
+            // Start with the next worker over so that idle workers don't all try to steal from the same victim
+            for (int i = 1; i < workers.length; i++) {
+                WorkerRunnable victim = workers[(this.id + i) % workers.length];
+
+                job = victim.queue.pollLast();
+
+                if (job != null) {
+                    this.stolenTasks.incrementAndGet();
+
+                    return job;
+                }
+            }
+
+            return null;
+        }
+
+        private boolean isActive() {
+            return this.id < ChunkBuilder.this.activeWorkers;
+        }
+
+        private void wake() {
+            LockSupport.unpark(this.thread);
+        }
     }
 
     private static class WrappedTask implements CancellationSource {
         private final ChunkRenderBuildTask task;
         private final CompletableFuture<ChunkBuildResult> future;
 
+        // The time at which the task was scheduled, used to measure how long it waited for a worker
+        private final long scheduleTime;
+
         private WrappedTask(ChunkRenderBuildTask task) {
             this.task = task;
             this.future = new CompletableFuture<>();
+            this.scheduleTime = System.nanoTime();
         }
 
         @Override
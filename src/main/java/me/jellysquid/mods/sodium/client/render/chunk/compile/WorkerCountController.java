@@ -0,0 +1,128 @@
+package me.jellysquid.mods.sodium.client.render.chunk.compile;
+
+/**
+ * Decides how many of the chunk builder's worker threads should be accepting work. The controller is sampled once
+ * per frame on the main thread and grows the number of active workers while there is a backlog of sections waiting
+ * to be built (such as when loading into a world), and shrinks it again when the backlog is gone or when the main
+ * thread's frame times begin to suffer.
+ */
+class WorkerCountController {
+    /**
+     * The minimum amount of time between changes to the active worker count.
+     */
+    private static final long ADJUST_INTERVAL_NANOS = 250_000_000L;
+
+    /**
+     * The number of pending sections per active worker above which we consider the builder to be falling behind.
+     */
+    private static final int BACKLOG_PER_WORKER = 8;
+
+    /**
+     * The factor by which the average frame time can exceed the frame time measured while the builder is idle before
+     * we consider the workers to be competing with the main thread.
+     */
+    private static final float FRAME_TIME_PRESSURE_FACTOR = 1.5f;
+
+    /**
+     * Frame times below this threshold are never considered to be under pressure, as shedding workers at very high
+     * frame rates would only slow down chunk loading for no visible benefit.
+     */
+    private static final long MIN_PRESSURE_FRAME_TIME_NANOS = 1_000_000_000L / 60;
+
+    private final int maxWorkers;
+    private final int reservedWorkers;
+
+    private long lastFrameTime = -1L;
+    private long lastAdjustTime;
+
+    private float averageFrameTime;
+    private float idleFrameTime;
+
+    /**
+     * @param maxWorkers The total number of worker threads which exist
+     * @param reservedWorkers The number of workers which can be used without competing with the render and server
+     *                        threads for processor time
+     */
+    WorkerCountController(int maxWorkers, int reservedWorkers) {
+        this.maxWorkers = maxWorkers;
+        this.reservedWorkers = Math.max(1, Math.min(maxWorkers, reservedWorkers));
+    }
+
+    /**
+     * @return The number of workers which should be active when the builder first starts
+     */
+    int getInitialWorkerCount() {
+        return this.reservedWorkers;
+    }
+
+    /**
+     * @param active The number of workers which are currently active
+     * @param backlog The number of sections which are waiting to be scheduled or built
+     * @return The number of workers which should be active
+     */
+    int update(int active, int backlog) {
+        long now = System.nanoTime();
+
+        if (this.lastFrameTime < 0L) {
+            this.lastFrameTime = now;
+            this.lastAdjustTime = now;
+
+            return active;
+        }
+
+        float frameTime = now - this.lastFrameTime;
+        this.lastFrameTime = now;
+
+        this.averageFrameTime = smooth(this.averageFrameTime, frameTime, 0.1f);
+
+        if (backlog == 0) {
+            this.idleFrameTime = smooth(this.idleFrameTime, frameTime, 0.05f);
+        }
+
+        if (now - this.lastAdjustTime < ADJUST_INTERVAL_NANOS) {
+            return active;
+        }
+
+        int target = this.getTargetWorkerCount(active, backlog);
+
+        if (target != active) {
+            this.lastAdjustTime = now;
+        }
+
+        return target;
+    }
+
+    private int getTargetWorkerCount(int active, int backlog) {
+        if (this.isUnderPressure()) {
+            // The main thread is struggling, so give back a core if we're using more than our fair share
+            return active > this.reservedWorkers ? active - 1 : active;
+        }
+
+        if (backlog > active * BACKLOG_PER_WORKER) {
+            // Grow quickly while loading, as every frame spent with a large backlog is visible to the player
+            return Math.min(this.maxWorkers, active + Math.max(1, (this.maxWorkers - active) / 2));
+        }
+
+        if (backlog == 0 && active > this.reservedWorkers) {
+            return active - 1;
+        }
+
+        return active;
+    }
+
+    private boolean isUnderPressure() {
+        if (this.idleFrameTime <= 0.0f || this.averageFrameTime < MIN_PRESSURE_FRAME_TIME_NANOS) {
+            return false;
+        }
+
+        return this.averageFrameTime > this.idleFrameTime * FRAME_TIME_PRESSURE_FACTOR;
+    }
+
+    private static float smooth(float average, float sample, float factor) {
+        if (average <= 0.0f) {
+            return sample;
+        }
+
+        return average + ((sample - average) * factor);
+    }
+}
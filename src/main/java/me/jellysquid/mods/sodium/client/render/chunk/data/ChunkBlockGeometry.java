@@ -0,0 +1,415 @@
+package me.jellysquid.mods.sodium.client.render.chunk.data;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.bytes.ByteArrays;
+import me.jellysquid.mods.sodium.client.model.IndexBufferBuilder;
+import me.jellysquid.mods.sodium.client.model.quad.properties.ModelQuadFacing;
+import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+import net.minecraft.util.math.BlockBox;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The geometry of a chunk section's meshes, grouped by the block which produced it. This is retained on the CPU for
+ * sections which receive block updates so that a later rebuild only needs to render the blocks around the change and
+ * can splice the result into the existing geometry, rather than rendering every block in the section again.
+ *
+ * Instances are immutable once built and are safe to share between the main thread and the chunk builder.
+ */
+public class ChunkBlockGeometry {
+    public static final int BLOCK_COUNT = 16 * 16 * 16;
+
+    private final Pass[] passes;
+
+    // Bit sets of the blocks which are opaque full cubes (for occlusion data) and which rendered anything (for bounds)
+    private final long[] closedBlocks;
+    private final long[] renderedBlocks;
+
+    private ChunkBlockGeometry(Pass[] passes, long[] closedBlocks, long[] renderedBlocks) {
+        this.passes = passes;
+        this.closedBlocks = closedBlocks;
+        this.renderedBlocks = renderedBlocks;
+    }
+
+    /**
+     * @return The geometry for the given render pass, or null if the pass has no geometry
+     */
+    public Pass getPass(BlockRenderPass pass) {
+        return this.passes[pass.ordinal()];
+    }
+
+    public boolean isClosed(int block) {
+        return isSet(this.closedBlocks, block);
+    }
+
+    public boolean isRendered(int block) {
+        return isSet(this.renderedBlocks, block);
+    }
+
+    /**
+     * @return The approximate number of bytes of heap memory used to store this geometry
+     */
+    public long getByteSize() {
+        long size = (this.closedBlocks.length + this.renderedBlocks.length) * 8L;
+
+        for (Pass pass : this.passes) {
+            if (pass != null) {
+                size += pass.getByteSize();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * @return The index of the block at the given section-local coordinates, which orders blocks in the same way the
+     * section is iterated when building
+     */
+    public static int getBlockIndex(int x, int y, int z) {
+        return (y << 8) | (z << 4) | x;
+    }
+
+    private static boolean contains(BlockBox box, int block) {
+        int x = block & 15;
+        int y = (block >> 8) & 15;
+        int z = (block >> 4) & 15;
+
+        return x >= box.getMinX() && x <= box.getMaxX() &&
+                y >= box.getMinY() && y <= box.getMaxY() &&
+                z >= box.getMinZ() && z <= box.getMaxZ();
+    }
+
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >> 6] & (1L << index)) != 0;
+    }
+
+    private static void set(long[] bits, int index, boolean value) {
+        if (value) {
+            bits[index >> 6] |= 1L << index;
+        } else {
+            bits[index >> 6] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * The geometry of a single render pass. Each entry holds the vertices and indices of one block, with entries sorted
+     * by their block index. Indices are stored relative to the first vertex of their entry, so that entries can be
+     * moved around freely when splicing.
+     */
+    public static class Pass {
+        private final int stride;
+        private final int count;
+
+        private final int[] blocks;
+        private final int[] vertexOffsets;
+        private final byte[] vertexData;
+
+        private final int[][] indexOffsets;
+        private final int[][] indices;
+
+        private Pass(int stride, int count, int[] blocks, int[] vertexOffsets, byte[] vertexData,
+                     int[][] indexOffsets, int[][] indices) {
+            this.stride = stride;
+            this.count = count;
+            this.blocks = blocks;
+            this.vertexOffsets = vertexOffsets;
+            this.vertexData = vertexData;
+            this.indexOffsets = indexOffsets;
+            this.indices = indices;
+        }
+
+        public int getVertexCount() {
+            return this.vertexOffsets[this.count];
+        }
+
+        /**
+         * Copies the vertex data of every block into the given buffer at its current position.
+         */
+        public void writeVertices(ByteBuffer buffer) {
+            buffer.put(this.vertexData, 0, this.getVertexCount() * this.stride);
+        }
+
+        /**
+         * Adds the indices of every block with the given facing to the index buffer, offset by the position of each
+         * block's vertices in the buffer written by {@link Pass#writeVertices(ByteBuffer)}.
+         */
+        public void writeIndices(ModelQuadFacing facing, IndexBufferBuilder builder) {
+            int[] offsets = this.indexOffsets[facing.ordinal()];
+            int[] indices = this.indices[facing.ordinal()];
+
+            for (int i = 0; i < this.count; i++) {
+                builder.add(indices, offsets[i], offsets[i + 1], this.vertexOffsets[i]);
+            }
+        }
+
+        private long getByteSize() {
+            long size = this.vertexData.length + ((this.blocks.length + this.vertexOffsets.length) * 4L);
+
+            for (int facing = 0; facing < ModelQuadFacing.COUNT; facing++) {
+                size += (this.indexOffsets[facing].length + this.indices[facing].length) * 4L;
+            }
+
+            return size;
+        }
+    }
+
+    public static class Builder {
+        private final int stride;
+        private final Pass[] previous;
+        private final PassBuilder[] passes = new PassBuilder[BlockRenderPass.COUNT];
+
+        private final long[] closedBlocks;
+        private final long[] renderedBlocks;
+
+        /**
+         * Creates a builder for the geometry of a section which is being rendered from scratch.
+         * @param stride The size of each vertex in bytes
+         */
+        public Builder(int stride) {
+            this.stride = stride;
+            this.previous = new Pass[BlockRenderPass.COUNT];
+            this.closedBlocks = new long[BLOCK_COUNT / 64];
+            this.renderedBlocks = new long[BLOCK_COUNT / 64];
+        }
+
+        /**
+         * Creates a builder for the geometry of a section in which only the blocks inside {@param dirty} are being
+         * rendered again. The geometry of all other blocks will be copied from {@param previous}.
+         */
+        public Builder(int stride, ChunkBlockGeometry previous, BlockBox dirty) {
+            this.stride = stride;
+            this.previous = previous.passes;
+            this.closedBlocks = previous.closedBlocks.clone();
+            this.renderedBlocks = previous.renderedBlocks.clone();
+
+            for (int block = 0; block < BLOCK_COUNT; block++) {
+                if (contains(dirty, block)) {
+                    set(this.closedBlocks, block, false);
+                    set(this.renderedBlocks, block, false);
+                }
+            }
+        }
+
+        public void setClosed(int block) {
+            set(this.closedBlocks, block, true);
+        }
+
+        public void setRendered(int block) {
+            set(this.renderedBlocks, block, true);
+        }
+
+        /**
+         * Records the geometry which was rendered for a block.
+         *
+         * @param pass The render pass which the geometry was rendered into
+         * @param block The index of the block which rendered the geometry
+         * @param vertexBuffer The scratch buffer containing the vertex data for the render pass
+         * @param vertexStart The index of the block's first vertex in the scratch buffer
+         * @param vertexCount The number of vertices which the block rendered
+         * @param indexBuffers The scratch index buffers for each facing of the render pass
+         * @param indexStarts The number of indices in each of the scratch index buffers before the block was rendered
+         */
+        public void addBlock(BlockRenderPass pass, int block, ByteBuffer vertexBuffer, int vertexStart, int vertexCount,
+                             IndexBufferBuilder[] indexBuffers, int[] indexStarts) {
+            PassBuilder builder = this.passes[pass.ordinal()];
+
+            if (builder == null) {
+                builder = this.passes[pass.ordinal()] = new PassBuilder(this.stride);
+            }
+
+            builder.beginBlock(block);
+            builder.addVertices(vertexBuffer, vertexStart * builder.stride, vertexCount);
+
+            for (int facing = 0; facing < ModelQuadFacing.COUNT; facing++) {
+                IndexBufferBuilder indices = indexBuffers[facing];
+
+                for (int i = indexStarts[facing], end = indices.getCount(); i < end; i++) {
+                    builder.addIndex(facing, indices.get(i) - vertexStart);
+                }
+            }
+
+            builder.endBlock();
+        }
+
+        /**
+         * Merges the blocks which were rendered again with the previous geometry of all blocks outside the dirty
+         * region, and returns the resulting geometry.
+         *
+         * @param dirty The region of blocks which were rendered again, or null if all blocks were rendered
+         */
+        public ChunkBlockGeometry build(BlockBox dirty) {
+            Pass[] passes = new Pass[BlockRenderPass.COUNT];
+
+            for (int i = 0; i < BlockRenderPass.COUNT; i++) {
+                PassBuilder updated = this.passes[i];
+                Pass previous = this.previous[i];
+
+                Pass pass;
+
+                if (previous == null || dirty == null) {
+                    pass = updated != null ? updated.build() : null;
+                } else {
+                    pass = merge(previous, updated, dirty);
+                }
+
+                passes[i] = pass;
+            }
+
+            return new ChunkBlockGeometry(passes, this.closedBlocks, this.renderedBlocks);
+        }
+
+        private static Pass merge(Pass previous, PassBuilder updated, BlockBox dirty) {
+            Pass next = updated != null ? updated.build() : null;
+            PassBuilder merged = new PassBuilder(previous.stride);
+
+            int i = 0;
+            int j = 0;
+
+            int nextCount = next != null ? next.count : 0;
+
+            while (i < previous.count || j < nextCount) {
+                int a = i < previous.count ? previous.blocks[i] : Integer.MAX_VALUE;
+                int b = j < nextCount ? next.blocks[j] : Integer.MAX_VALUE;
+
+                if (a < b) {
+                    // The geometry of blocks inside the dirty region is replaced by whatever was rendered for them now
+                    if (!contains(dirty, a)) {
+                        merged.copyBlock(previous, i);
+                    }
+
+                    i++;
+                } else {
+                    merged.copyBlock(next, j);
+
+                    // A block in the dirty region always replaces its previous geometry
+                    if (a == b) {
+                        i++;
+                    }
+
+                    j++;
+                }
+            }
+
+            return merged.build();
+        }
+    }
+
+    private static class PassBuilder {
+        private final int stride;
+
+        private int count;
+        private int[] blocks = new int[64];
+        private int[] vertexOffsets = new int[65];
+
+        private byte[] vertexData;
+        private int vertexCount;
+
+        private final int[][] indexOffsets = new int[ModelQuadFacing.COUNT][65];
+        private final int[][] indices = new int[ModelQuadFacing.COUNT][];
+        private final int[] indexCounts = new int[ModelQuadFacing.COUNT];
+
+        private PassBuilder(int stride) {
+            this.stride = stride;
+            this.vertexData = new byte[stride * 256];
+
+            for (int facing = 0; facing < ModelQuadFacing.COUNT; facing++) {
+                this.indices[facing] = new int[64];
+            }
+        }
+
+        private void beginBlock(int block) {
+            if (this.count + 1 >= this.blocks.length) {
+                int capacity = this.blocks.length * 2;
+
+                this.blocks = IntArrays.forceCapacity(this.blocks, capacity, this.count);
+                this.vertexOffsets = IntArrays.forceCapacity(this.vertexOffsets, capacity + 1, this.count + 1);
+
+                for (int facing = 0; facing < ModelQuadFacing.COUNT; facing++) {
+                    this.indexOffsets[facing] = IntArrays.forceCapacity(this.indexOffsets[facing], capacity + 1, this.count + 1);
+                }
+            }
+
+            this.blocks[this.count] = block;
+        }
+
+        private void endBlock() {
+            this.count++;
+            this.vertexOffsets[this.count] = this.vertexCount;
+
+            for (int facing = 0; facing < ModelQuadFacing.COUNT; facing++) {
+                this.indexOffsets[facing][this.count] = this.indexCounts[facing];
+            }
+        }
+
+        private void addVertices(ByteBuffer src, int byteOffset, int vertexCount) {
+            int bytes = vertexCount * this.stride;
+            int position = this.vertexCount * this.stride;
+
+            this.vertexData = ByteArrays.grow(this.vertexData, position + bytes, position);
+
+            src.get(byteOffset, this.vertexData, position, bytes);
+
+            this.vertexCount += vertexCount;
+        }
+
+        private void addIndex(int facing, int index) {
+            int count = this.indexCounts[facing];
+
+            this.indices[facing] = IntArrays.grow(this.indices[facing], count + 1, count);
+            this.indices[facing][count] = index;
+            this.indexCounts[facing] = count + 1;
+        }
+
+        private void copyBlock(Pass src, int entry) {
+            this.beginBlock(src.blocks[entry]);
+
+            int vertexStart = src.vertexOffsets[entry];
+            int vertexCount = src.vertexOffsets[entry + 1] - vertexStart;
+
+            int bytes = vertexCount * this.stride;
+            int position = this.vertexCount * this.stride;
+
+            this.vertexData = ByteArrays.grow(this.vertexData, position + bytes, position);
+
+            System.arraycopy(src.vertexData, vertexStart * this.stride, this.vertexData, position, bytes);
+
+            this.vertexCount += vertexCount;
+
+            for (int facing = 0; facing < ModelQuadFacing.COUNT; facing++) {
+                int from = src.indexOffsets[facing][entry];
+                int to = src.indexOffsets[facing][entry + 1];
+
+                int count = this.indexCounts[facing];
+                int length = to - from;
+
+                this.indices[facing] = IntArrays.grow(this.indices[facing], count + length, count);
+
+                System.arraycopy(src.indices[facing], from, this.indices[facing], count, length);
+
+                this.indexCounts[facing] = count + length;
+            }
+
+            this.endBlock();
+        }
+
+        private Pass build() {
+            if (this.count == 0) {
+                return null;
+            }
+
+            int[][] indices = new int[ModelQuadFacing.COUNT][];
+            int[][] indexOffsets = new int[ModelQuadFacing.COUNT][];
+
+            for (int facing = 0; facing < ModelQuadFacing.COUNT; facing++) {
+                indices[facing] = IntArrays.trim(this.indices[facing], this.indexCounts[facing]);
+                indexOffsets[facing] = IntArrays.trim(this.indexOffsets[facing], this.count + 1);
+            }
+
+            return new Pass(this.stride, this.count,
+                    IntArrays.trim(this.blocks, this.count),
+                    IntArrays.trim(this.vertexOffsets, this.count + 1),
+                    ByteArrays.trim(this.vertexData, this.vertexCount * this.stride),
+                    indexOffsets, indices);
+        }
+    }
+}
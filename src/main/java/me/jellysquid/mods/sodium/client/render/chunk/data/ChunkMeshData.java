@@ -10,9 +10,25 @@ public class ChunkMeshData {
     private final Map<ModelQuadFacing, ElementRange> parts;
     private final IndexedVertexData vertexData;
 
+    // The quads of the mesh if its index buffer has been sorted and can be sorted again later, otherwise null
+    private final TranslucentQuadData translucentQuads;
+
+    // Hashes of the mesh's contents, computed on the thread which built the mesh so that the main thread can cheaply
+    // check whether it is identical to the mesh already on the device
+    private final long vertexHash;
+    private final long indexHash;
+
     public ChunkMeshData(IndexedVertexData vertexData, Map<ModelQuadFacing, ElementRange> parts) {
+        this(vertexData, parts, null);
+    }
+
+    public ChunkMeshData(IndexedVertexData vertexData, Map<ModelQuadFacing, ElementRange> parts, TranslucentQuadData translucentQuads) {
         this.parts = parts;
         this.vertexData = vertexData;
+        this.translucentQuads = translucentQuads;
+
+        this.vertexHash = (vertexData.vertexBuffer().getContentHash() * 31) + parts.hashCode();
+        this.indexHash = vertexData.indexBuffer() != null ? vertexData.indexBuffer().getContentHash() : 0;
     }
 
     public Map<ModelQuadFacing, ElementRange> getParts() {
@@ -22,4 +38,22 @@ public class ChunkMeshData {
     public IndexedVertexData getVertexData() {
         return this.vertexData;
     }
+
+    public TranslucentQuadData getTranslucentQuads() {
+        return this.translucentQuads;
+    }
+
+    /**
+     * @return A hash of the vertex data and element ranges of the mesh
+     */
+    public long getVertexHash() {
+        return this.vertexHash;
+    }
+
+    /**
+     * @return A hash of the index data of the mesh, or zero if it is drawn using the shared index buffer
+     */
+    public long getIndexHash() {
+        return this.indexHash;
+    }
 }
@@ -27,6 +27,7 @@ public class ChunkRenderData {
     private List<Sprite> animatedSprites;
 
     private boolean isEmpty;
+    private boolean isOpaque;
 
     /**
      * @return True if the chunk has no renderables, otherwise false
@@ -35,6 +36,14 @@ public class ChunkRenderData {
         return this.isEmpty;
     }
 
+    /**
+     * @return True if every block of the chunk is an opaque full cube, so that nothing behind it can be seen through
+     * its volume, otherwise false
+     */
+    public boolean isOpaque() {
+        return this.isOpaque;
+    }
+
     public ChunkRenderBounds getBounds() {
         return this.bounds;
     }
@@ -69,6 +78,7 @@ public class ChunkRenderData {
 
         private ChunkOcclusionData occlusionData;
         private ChunkRenderBounds bounds = ChunkRenderBounds.ALWAYS_FALSE;
+        private boolean opaque;
 
         public void setBounds(ChunkRenderBounds bounds) {
             this.bounds = bounds;
@@ -78,6 +88,10 @@ public class ChunkRenderData {
             this.occlusionData = data;
         }
 
+        public void setOpaque(boolean opaque) {
+            this.opaque = opaque;
+        }
+
         /**
          * Adds a sprite to this data container for tracking. If the sprite is tickable, it will be ticked every frame
          * before rendering as necessary.
@@ -106,6 +120,7 @@ public class ChunkRenderData {
             data.bounds = this.bounds;
             data.animatedSprites = new ObjectArrayList<>(this.animatedSprites);
             data.isEmpty = this.globalBlockEntities.isEmpty() && this.blockEntities.isEmpty();
+            data.isOpaque = this.opaque;
 
             return data;
         }
@@ -0,0 +1,260 @@
+package me.jellysquid.mods.sodium.client.render.chunk.data;
+
+import me.jellysquid.mods.sodium.client.gl.tessellation.GlIndexType;
+import me.jellysquid.mods.sodium.client.gl.util.ElementRange;
+import me.jellysquid.mods.sodium.client.model.IndexBufferBuilder;
+import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ChunkMeshAttribute;
+import me.jellysquid.mods.sodium.client.util.ContentHasher;
+import me.jellysquid.mods.sodium.client.util.NativeBuffer;
+import me.jellysquid.mods.sodium.client.util.NativeBufferAllocator;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The centroids and indices of every quad in a translucent mesh, kept after the mesh has been built so that its index
+ * buffer can be sorted again when the camera moves without needing to re-render the section. This is immutable once
+ * created, and as such, it can be safely shared between the main thread and chunk builder threads.
+ */
+public class TranslucentQuadData {
+    private static final int INDICES_PER_QUAD = 6;
+
+    private final int quadCount;
+
+    // The section-local position of the center of each quad, as (x, y, z) triplets
+    private final float[] centroids;
+
+    // The indices of the two triangles making up each quad, relative to the start of the section's vertex data
+    private final int[] indices;
+
+    private final int minIndex;
+    private final GlIndexType indexType;
+
+    private TranslucentQuadData(int quadCount, float[] centroids, int[] indices, int minIndex, int maxIndex) {
+        this.quadCount = quadCount;
+        this.centroids = centroids;
+        this.indices = indices;
+        this.minIndex = minIndex;
+        this.indexType = IndexBufferBuilder.getOptimalIndexType(maxIndex - minIndex);
+    }
+
+    /**
+     * Collects the quads of a mesh from its index scratch buffers. The positions of each quad's vertices are read back
+     * from the vertex data in order to find its centroid.
+     *
+     * @return The quad data of the mesh, or null if the mesh contains no quads
+     */
+    public static TranslucentQuadData create(ByteBuffer vertices, ChunkVertexType vertexType, IndexBufferBuilder[] builders) {
+        int indexCount = 0;
+
+        for (IndexBufferBuilder builder : builders) {
+            indexCount += builder.getCount();
+        }
+
+        if (indexCount == 0) {
+            return null;
+        }
+
+        int quadCount = indexCount / INDICES_PER_QUAD;
+
+        float[] centroids = new float[quadCount * 3];
+        int[] indices = new int[quadCount * INDICES_PER_QUAD];
+
+        int stride = vertexType.getBufferVertexFormat().getStride();
+        int positionOffset = vertexType.getCustomVertexFormat()
+                .getAttribute(ChunkMeshAttribute.POSITION_ID)
+                .getPointer();
+
+        float scale = vertexType.getModelScale();
+        float offset = vertexType.getModelOffset();
+
+        int minIndex = Integer.MAX_VALUE;
+        int maxIndex = Integer.MIN_VALUE;
+
+        int quad = 0;
+
+        for (IndexBufferBuilder builder : builders) {
+            for (int i = 0; i + INDICES_PER_QUAD <= builder.getCount(); i += INDICES_PER_QUAD) {
+                int base = quad * INDICES_PER_QUAD;
+
+                for (int j = 0; j < INDICES_PER_QUAD; j++) {
+                    int index = builder.get(i + j);
+
+                    indices[base + j] = index;
+
+                    minIndex = Math.min(minIndex, index);
+                    maxIndex = Math.max(maxIndex, index);
+                }
+
+                float x = 0.0f, y = 0.0f, z = 0.0f;
+                int corners = 0;
+
+                // Both triangles share two vertices, so only count each of the quad's four corners once
+                for (int j = 0; j < INDICES_PER_QUAD; j++) {
+                    int index = indices[base + j];
+
+                    if (isRepeated(indices, base, j, index)) {
+                        continue;
+                    }
+
+                    int pointer = (index * stride) + positionOffset;
+
+                    x += decodePosition(vertices.getShort(pointer), scale, offset);
+                    y += decodePosition(vertices.getShort(pointer + 2), scale, offset);
+                    z += decodePosition(vertices.getShort(pointer + 4), scale, offset);
+
+                    corners++;
+                }
+
+                centroids[(quad * 3) + 0] = x / corners;
+                centroids[(quad * 3) + 1] = y / corners;
+                centroids[(quad * 3) + 2] = z / corners;
+
+                quad++;
+            }
+        }
+
+        return new TranslucentQuadData(quadCount, centroids, indices, minIndex, maxIndex);
+    }
+
+    /**
+     * Creates an index buffer containing every quad ordered from back to front relative to the given position.
+     *
+     * @param x The x-coordinate of the camera, relative to the origin of the section
+     * @param y The y-coordinate of the camera, relative to the origin of the section
+     * @param z The z-coordinate of the camera, relative to the origin of the section
+     * @param allocator The allocator which the index buffer is created with
+     * @return The sorted index buffer, which should be drawn using {@link TranslucentQuadData#getElementRange()}
+     */
+    public NativeBuffer sort(float x, float y, float z, NativeBufferAllocator allocator) {
+        long[] keys = new long[this.quadCount];
+
+        float[] centroids = this.centroids;
+
+        for (int quad = 0; quad < this.quadCount; quad++) {
+            float dx = centroids[(quad * 3) + 0] - x;
+            float dy = centroids[(quad * 3) + 1] - y;
+            float dz = centroids[(quad * 3) + 2] - z;
+
+            float distance = (dx * dx) + (dy * dy) + (dz * dz);
+
+            // The bit patterns of positive floats have the same ordering as their values, so the distance and quad
+            // index can be packed together and sorted as a single primitive
+            keys[quad] = ((long) Float.floatToRawIntBits(distance) << 32) | quad;
+        }
+
+        Arrays.sort(keys);
+
+        int stride = this.indexType.getStride();
+
+        NativeBuffer buffer = allocator.allocate(this.quadCount * INDICES_PER_QUAD * stride);
+        ByteBuffer data = buffer.getDirectBuffer();
+
+        ContentHasher hasher = new ContentHasher();
+        int pointer = 0;
+
+        // Iterate in reverse so that the furthest quads are drawn first
+        for (int i = this.quadCount - 1; i >= 0; i--) {
+            int base = ((int) keys[i]) * INDICES_PER_QUAD;
+
+            for (int j = 0; j < INDICES_PER_QUAD; j++) {
+                int value = this.indices[base + j] - this.minIndex;
+                hasher.putInt(value);
+
+                switch (this.indexType) {
+                    case UNSIGNED_BYTE -> data.put(pointer, (byte) value);
+                    case UNSIGNED_SHORT -> data.putShort(pointer, (short) value);
+                    case UNSIGNED_INT -> data.putInt(pointer, value);
+                }
+
+                pointer += stride;
+            }
+        }
+
+        buffer.setContentHash(hasher.finish());
+
+        return buffer;
+    }
+
+    /**
+     * @return The range of elements covered by a sorted index buffer, which is the same regardless of the sort order
+     */
+    public ElementRange getElementRange() {
+        return new ElementRange(0, this.quadCount * INDICES_PER_QUAD, this.indexType, this.minIndex);
+    }
+
+    public int getQuadCount() {
+        return this.quadCount;
+    }
+
+    /**
+     * @return The number of bytes needed to write this data with {@link TranslucentQuadData#write(ByteBuffer)}
+     */
+    public int getSerializedSize() {
+        return 12 + (this.centroids.length * 4) + (this.indices.length * 4);
+    }
+
+    /**
+     * Writes the quads into the buffer, so that they can be read back later with {@link TranslucentQuadData#read(ByteBuffer)}.
+     */
+    public void write(ByteBuffer buffer) {
+        int maxIndex = this.minIndex;
+
+        for (int index : this.indices) {
+            maxIndex = Math.max(maxIndex, index);
+        }
+
+        buffer.putInt(this.quadCount);
+        buffer.putInt(this.minIndex);
+        buffer.putInt(maxIndex);
+
+        for (float centroid : this.centroids) {
+            buffer.putFloat(centroid);
+        }
+
+        for (int index : this.indices) {
+            buffer.putInt(index);
+        }
+    }
+
+    public static TranslucentQuadData read(ByteBuffer buffer) {
+        int quadCount = buffer.getInt();
+        int minIndex = buffer.getInt();
+        int maxIndex = buffer.getInt();
+
+        float[] centroids = new float[quadCount * 3];
+        int[] indices = new int[quadCount * INDICES_PER_QUAD];
+
+        for (int i = 0; i < centroids.length; i++) {
+            centroids[i] = buffer.getFloat();
+        }
+
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = buffer.getInt();
+        }
+
+        return new TranslucentQuadData(quadCount, centroids, indices, minIndex, maxIndex);
+    }
+
+    /**
+     * @return The approximate number of bytes used to store this data on the heap
+     */
+    public long getByteSize() {
+        return (this.centroids.length * 4L) + (this.indices.length * 4L);
+    }
+
+    private static boolean isRepeated(int[] indices, int base, int j, int index) {
+        for (int k = 0; k < j; k++) {
+            if (indices[base + k] == index) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static float decodePosition(short value, float scale, float offset) {
+        return (Short.toUnsignedInt(value) * scale) + offset;
+    }
+}
@@ -0,0 +1,32 @@
+package me.jellysquid.mods.sodium.client.render.chunk.format.compact;
+
+import me.jellysquid.mods.sodium.client.model.vertex.buffer.VertexBufferView;
+import me.jellysquid.mods.sodium.client.model.vertex.buffer.VertexBufferWriterNio;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ChunkModelVertexFormats;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ModelVertexSink;
+
+import java.nio.ByteBuffer;
+
+public class CompactModelVertexBufferWriterNio extends VertexBufferWriterNio implements ModelVertexSink {
+    public CompactModelVertexBufferWriterNio(VertexBufferView backingBuffer) {
+        super(backingBuffer, ChunkModelVertexFormats.COMPACT);
+    }
+
+    @Override
+    public void writeVertex(float posX, float posY, float posZ, int color, float u, float v, int light, int chunkId) {
+        int i = this.writeOffset;
+
+        ByteBuffer buffer = this.byteBuffer;
+        buffer.putShort(i + 0, CompactModelVertexType.encodePosition(posX));
+        buffer.putShort(i + 2, CompactModelVertexType.encodePosition(posY));
+        buffer.putShort(i + 4, CompactModelVertexType.encodePosition(posZ));
+        buffer.putShort(i + 6, CompactModelVertexType.encodeLightMapTexCoord(light));
+
+        buffer.putShort(i + 8, CompactModelVertexType.encodeBlockTexture(u));
+        buffer.putShort(i + 10, CompactModelVertexType.encodeBlockTexture(v));
+
+        buffer.putInt(i + 12, CompactModelVertexType.encodeColorAndId(color, chunkId));
+
+        this.advance();
+    }
+}
@@ -0,0 +1,30 @@
+package me.jellysquid.mods.sodium.client.render.chunk.format.compact;
+
+import me.jellysquid.mods.sodium.client.model.vertex.buffer.VertexBufferView;
+import me.jellysquid.mods.sodium.client.model.vertex.buffer.VertexBufferWriterUnsafe;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ChunkModelVertexFormats;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ModelVertexSink;
+import org.lwjgl.system.MemoryUtil;
+
+public class CompactModelVertexBufferWriterUnsafe extends VertexBufferWriterUnsafe implements ModelVertexSink {
+    public CompactModelVertexBufferWriterUnsafe(VertexBufferView backingBuffer) {
+        super(backingBuffer, ChunkModelVertexFormats.COMPACT);
+    }
+
+    @Override
+    public void writeVertex(float posX, float posY, float posZ, int color, float u, float v, int light, int chunkId) {
+        long i = this.writePointer;
+
+        MemoryUtil.memPutShort(i + 0, CompactModelVertexType.encodePosition(posX));
+        MemoryUtil.memPutShort(i + 2, CompactModelVertexType.encodePosition(posY));
+        MemoryUtil.memPutShort(i + 4, CompactModelVertexType.encodePosition(posZ));
+        MemoryUtil.memPutShort(i + 6, CompactModelVertexType.encodeLightMapTexCoord(light));
+
+        MemoryUtil.memPutShort(i + 8, CompactModelVertexType.encodeBlockTexture(u));
+        MemoryUtil.memPutShort(i + 10, CompactModelVertexType.encodeBlockTexture(v));
+
+        MemoryUtil.memPutInt(i + 12, CompactModelVertexType.encodeColorAndId(color, chunkId));
+
+        this.advance();
+    }
+}
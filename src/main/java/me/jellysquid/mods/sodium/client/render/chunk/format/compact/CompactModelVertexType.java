@@ -0,0 +1,99 @@
+package me.jellysquid.mods.sodium.client.render.chunk.format.compact;
+
+import me.jellysquid.mods.sodium.client.gl.attribute.GlVertexAttributeFormat;
+import me.jellysquid.mods.sodium.client.gl.attribute.GlVertexFormat;
+import me.jellysquid.mods.sodium.client.model.vertex.buffer.VertexBufferView;
+import me.jellysquid.mods.sodium.client.model.vertex.type.BlittableVertexType;
+import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ChunkMeshAttribute;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ModelVertexSink;
+import net.minecraft.client.render.VertexConsumer;
+
+import java.util.List;
+
+/**
+ * A 16-byte vertex format which trades the vertex alpha channel for a smaller vertex. The chunk ID is stored in the
+ * alpha component of the color instead of the position, and the light map coordinates are stored as bytes since they
+ * never exceed the range of 0..255. Block models never use translucent vertex colors (translucency comes
+ * from the block texture), so nothing is lost for chunk geometry.
+ *
+ * The position and texture coordinates are encoded with the same precision as the default format. Greedy meshing is
+ * not supported, as there is no spare space for the tiling coordinates of merged quads.
+ */
+public class CompactModelVertexType implements ChunkVertexType {
+    public static final GlVertexFormat<ChunkMeshAttribute> VERTEX_FORMAT = GlVertexFormat.builder(ChunkMeshAttribute.class, 16)
+            .addElement(ChunkMeshAttribute.POSITION_ID, 0, GlVertexAttributeFormat.UNSIGNED_SHORT, 3, false)
+            .addElement(ChunkMeshAttribute.LIGHT_TEXTURE, 6, GlVertexAttributeFormat.UNSIGNED_BYTE, 2, true)
+            .addElement(ChunkMeshAttribute.BLOCK_TEXTURE, 8, GlVertexAttributeFormat.UNSIGNED_SHORT, 2, false)
+            .addElement(ChunkMeshAttribute.COLOR, 12, GlVertexAttributeFormat.UNSIGNED_BYTE, 4, true)
+            .build();
+
+    private static final int POSITION_MAX_VALUE = 32768;
+    private static final int TEXTURE_MAX_VALUE = 32768;
+
+    private static final float MODEL_ORIGIN = 8.0f;
+    private static final float MODEL_RANGE = 32.0f;
+    private static final float MODEL_SCALE = MODEL_RANGE / POSITION_MAX_VALUE;
+
+    private static final float MODEL_SCALE_INV = POSITION_MAX_VALUE / MODEL_RANGE;
+
+    private static final float TEXTURE_SCALE = (1.0f / TEXTURE_MAX_VALUE);
+
+    @Override
+    public ModelVertexSink createFallbackWriter(VertexConsumer consumer) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ModelVertexSink createBufferWriter(VertexBufferView buffer, boolean direct) {
+        return direct ? new CompactModelVertexBufferWriterUnsafe(buffer) : new CompactModelVertexBufferWriterNio(buffer);
+    }
+
+    @Override
+    public BlittableVertexType<ModelVertexSink> asBlittable() {
+        return this;
+    }
+
+    @Override
+    public GlVertexFormat<ChunkMeshAttribute> getCustomVertexFormat() {
+        return VERTEX_FORMAT;
+    }
+
+    @Override
+    public float getTextureScale() {
+        return TEXTURE_SCALE;
+    }
+
+    @Override
+    public float getModelScale() {
+        return MODEL_SCALE;
+    }
+
+    @Override
+    public float getModelOffset() {
+        return -MODEL_ORIGIN;
+    }
+
+    @Override
+    public List<String> getShaderDefines() {
+        return List.of("USE_COMPACT_VERTEX_FORMAT");
+    }
+
+    static short encodeBlockTexture(float value) {
+        return (short) (value * TEXTURE_MAX_VALUE);
+    }
+
+    static short encodePosition(float v) {
+        return (short) ((MODEL_ORIGIN + v) * MODEL_SCALE_INV);
+    }
+
+    static short encodeLightMapTexCoord(int light) {
+        // Pack the block light (lower 16 bits) and sky light (upper 16 bits) coordinates into one byte each
+        return (short) ((light & 0xFF) | ((light >>> 8) & 0xFF00));
+    }
+
+    static int encodeColorAndId(int color, int chunkId) {
+        // The alpha component is replaced with the chunk ID, which always fits within a byte
+        return (color & 0x00FF_FFFF) | ((chunkId & 0xFF) << 24);
+    }
+}
@@ -88,6 +88,10 @@ public class ModelVertexType implements ChunkVertexType {
         // Add a half-texel offset to each coordinate so we sample from the center of each texel
         r += 0x0800_0800;
 
+        // The low byte of each coordinate is below the precision of the light map, so it carries the tiling
+        // coordinates of greedy-meshed quads (stored in the upper byte of each input value)
+        r |= (light >>> 8) & 0x00FF_00FF;
+
         return r;
     }
 }
@@ -0,0 +1,263 @@
+package me.jellysquid.mods.sodium.client.render.chunk.graph;
+
+import me.jellysquid.mods.sodium.client.render.chunk.RenderSection;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
+import me.jellysquid.mods.sodium.client.render.chunk.region.RenderRegion;
+import me.jellysquid.mods.sodium.client.util.math.FrustumExtended;
+import me.jellysquid.mods.sodium.common.util.DirectionUtil;
+import net.minecraft.client.render.chunk.ChunkOcclusionData;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.Arrays;
+
+/**
+ * Stores the state of the visibility graph in flat arrays which are indexed by the position of each section. The
+ * horizontal axes wrap around in the same way as the client's chunk map, so the arrays follow the camera without ever
+ * needing to be moved, and the neighbors of a section can be found with a bit of index arithmetic. The state which is
+ * touched by every step of a search (visibility, culling state, and the frame/search the section was last seen in) is
+ * kept in parallel primitive arrays, so that searching the graph doesn't need to visit the section objects at all.
+ *
+ * Directions are passed around as their ordinals, with -1 standing in for no direction.
+ */
+public class ChunkGraph {
+    private static final long DEFAULT_VISIBILITY_DATA = calculateVisibilityData(ChunkRenderData.EMPTY.getOcclusionData());
+
+    private static final int[] OFFSET_X = new int[DirectionUtil.ALL_DIRECTIONS.length];
+    private static final int[] OFFSET_Y = new int[DirectionUtil.ALL_DIRECTIONS.length];
+    private static final int[] OFFSET_Z = new int[DirectionUtil.ALL_DIRECTIONS.length];
+
+    static {
+        for (Direction dir : DirectionUtil.ALL_DIRECTIONS) {
+            OFFSET_X[dir.ordinal()] = dir.getOffsetX();
+            OFFSET_Y[dir.ordinal()] = dir.getOffsetY();
+            OFFSET_Z[dir.ordinal()] = dir.getOffsetZ();
+        }
+    }
+
+    private final int widthBits, widthMask;
+    private final int bottomSectionCoord, height;
+
+    private final RenderSection[] sections;
+    private final RenderRegion[] regions;
+
+    private final int[] sectionX, sectionY, sectionZ;
+
+    private final long[] visibilityData;
+    private final byte[] cullingState;
+    private final int[] lastVisibleFrame;
+    private final int[] lastSearch;
+
+    /**
+     * @param renderDistance The render distance in chunks, which decides how many columns of sections can be loaded
+     * @param bottomSectionCoord The lowest section coordinate of the world
+     * @param height The number of sections in each column
+     */
+    public ChunkGraph(int renderDistance, int bottomSectionCoord, int height) {
+        // The client keeps chunks loaded for a few more chunks than the render distance. The width is picked so that
+        // the sections of any two chunks which can be loaded at the same time never share a slot, and so that a
+        // section at the edge can't be mistaken for the neighbor of a section at the opposite edge.
+        int diameter = ((Math.max(2, renderDistance) + 3) * 2) + 1;
+        int width = MathHelper.smallestEncompassingPowerOfTwo(diameter + 1);
+
+        this.widthBits = Integer.numberOfTrailingZeros(width);
+        this.widthMask = width - 1;
+
+        this.bottomSectionCoord = bottomSectionCoord;
+        this.height = height;
+
+        int capacity = width * width * height;
+
+        this.sections = new RenderSection[capacity];
+        this.regions = new RenderRegion[capacity];
+
+        this.sectionX = new int[capacity];
+        this.sectionY = new int[capacity];
+        this.sectionZ = new int[capacity];
+
+        this.visibilityData = new long[capacity];
+        this.cullingState = new byte[capacity];
+        this.lastVisibleFrame = new int[capacity];
+        this.lastSearch = new int[capacity];
+    }
+
+    /**
+     * @return The index of the slot for the section at the given position, or -1 if it is outside the world
+     */
+    public int getIndex(int x, int y, int z) {
+        int localY = y - this.bottomSectionCoord;
+
+        if (localY < 0 || localY >= this.height) {
+            return -1;
+        }
+
+        return (((localY << this.widthBits) | (z & this.widthMask)) << this.widthBits) | (x & this.widthMask);
+    }
+
+    /**
+     * @return The index of the section at the given position, or -1 if it is not loaded
+     */
+    public int find(int x, int y, int z) {
+        int index = this.getIndex(x, y, z);
+
+        if (index < 0 || !this.isAt(index, x, y, z)) {
+            return -1;
+        }
+
+        return index;
+    }
+
+    /**
+     * Adds a section to the graph. Its graph state is reset to that of a section with no render data.
+     *
+     * @return The index of the section
+     */
+    public int add(RenderSection section) {
+        int x = section.getChunkX();
+        int y = section.getChunkY();
+        int z = section.getChunkZ();
+
+        int index = this.getIndex(x, y, z);
+
+        if (index < 0) {
+            throw new IllegalArgumentException("Section is outside the world: " + x + ", " + y + ", " + z);
+        }
+
+        this.sections[index] = section;
+        this.regions[index] = section.getRegion();
+
+        this.sectionX[index] = x;
+        this.sectionY[index] = y;
+        this.sectionZ[index] = z;
+
+        this.visibilityData[index] = DEFAULT_VISIBILITY_DATA;
+        this.cullingState[index] = 0;
+        this.lastVisibleFrame[index] = -1;
+        this.lastSearch[index] = -1;
+
+        return index;
+    }
+
+    /**
+     * Removes a section from the graph. If the slot has since been taken by another section, nothing is removed.
+     */
+    public void remove(RenderSection section) {
+        int index = this.getIndex(section.getChunkX(), section.getChunkY(), section.getChunkZ());
+
+        if (index >= 0 && this.sections[index] == section) {
+            this.sections[index] = null;
+            this.regions[index] = null;
+        }
+    }
+
+    public RenderSection getSection(int index) {
+        return this.sections[index];
+    }
+
+    public RenderRegion getRegion(int index) {
+        return this.regions[index];
+    }
+
+    /**
+     * @return The index of the section next to the given one in the given direction, or -1 if it is not loaded
+     */
+    public int getAdjacent(int index, int direction) {
+        return this.find(this.sectionX[index] + OFFSET_X[direction],
+                this.sectionY[index] + OFFSET_Y[direction],
+                this.sectionZ[index] + OFFSET_Z[direction]);
+    }
+
+    private boolean isAt(int index, int x, int y, int z) {
+        return this.sections[index] != null && this.sectionX[index] == x && this.sectionY[index] == y && this.sectionZ[index] == z;
+    }
+
+    public int getSectionX(int index) {
+        return this.sectionX[index];
+    }
+
+    public int getSectionY(int index) {
+        return this.sectionY[index];
+    }
+
+    public int getSectionZ(int index) {
+        return this.sectionZ[index];
+    }
+
+    /**
+     * @return True if the visibility of the section changed
+     */
+    public boolean setOcclusionData(int index, ChunkOcclusionData occlusionData) {
+        long visibilityData = calculateVisibilityData(occlusionData);
+
+        if (this.visibilityData[index] == visibilityData) {
+            return false;
+        }
+
+        this.visibilityData[index] = visibilityData;
+
+        return true;
+    }
+
+    private static long calculateVisibilityData(ChunkOcclusionData occlusionData) {
+        long visibilityData = 0;
+
+        for (Direction from : DirectionUtil.ALL_DIRECTIONS) {
+            for (Direction to : DirectionUtil.ALL_DIRECTIONS) {
+                if (occlusionData == null || occlusionData.isVisibleThrough(from, to)) {
+                    visibilityData |= (1L << ((from.ordinal() << 3) + to.ordinal()));
+                }
+            }
+        }
+
+        return visibilityData;
+    }
+
+    public boolean isVisibleThrough(int index, int from, int to) {
+        return ((this.visibilityData[index] & (1L << ((from << 3) + to))) != 0L);
+    }
+
+    public void setCullingState(int index, byte parent, int dir) {
+        this.cullingState[index] = (byte) (parent | (1 << dir));
+    }
+
+    public boolean canCull(int index, int dir) {
+        return (this.cullingState[index] & 1 << dir) != 0;
+    }
+
+    public byte getCullingState(int index) {
+        return this.cullingState[index];
+    }
+
+    public void resetCullingState(int index) {
+        this.cullingState[index] = 0;
+    }
+
+    public void setLastVisibleFrame(int index, int frame) {
+        this.lastVisibleFrame[index] = frame;
+    }
+
+    public int getLastVisibleFrame(int index) {
+        return this.lastVisibleFrame[index];
+    }
+
+    public void setLastSearch(int index, int search) {
+        this.lastSearch[index] = search;
+    }
+
+    public int getLastSearch(int index) {
+        return this.lastSearch[index];
+    }
+
+    public boolean isCulledByFrustum(int index, FrustumExtended frustum) {
+        float x = this.sectionX[index] << 4;
+        float y = this.sectionY[index] << 4;
+        float z = this.sectionZ[index] << 4;
+
+        return !frustum.fastAabbTest(x, y, z, x + 16.0f, y + 16.0f, z + 16.0f);
+    }
+
+    public void clear() {
+        Arrays.fill(this.sections, null);
+        Arrays.fill(this.regions, null);
+    }
+}
@@ -1,99 +1,79 @@
 package me.jellysquid.mods.sodium.client.render.chunk.graph;
 
-import me.jellysquid.mods.sodium.client.render.chunk.RenderSection;
-import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
 import me.jellysquid.mods.sodium.client.util.math.FrustumExtended;
-import me.jellysquid.mods.sodium.common.util.DirectionUtil;
 import net.minecraft.client.render.chunk.ChunkOcclusionData;
 import net.minecraft.util.math.Direction;
 
+/**
+ * A view of the state of a single section in the {@link ChunkGraph}. Searches of the graph work on the graph's arrays
+ * directly, while this is used by everything else which needs to look at a section's graph state.
+ */
 public class ChunkGraphInfo {
-    private static final long DEFAULT_VISIBILITY_DATA = calculateVisibilityData(ChunkRenderData.EMPTY.getOcclusionData());
+    private final ChunkGraph graph;
+    private final int index;
 
-    private final RenderSection parent;
-
-    private int lastVisibleFrame = -1;
-
-    private long visibilityData;
-    private byte cullingState;
+    public ChunkGraphInfo(ChunkGraph graph, int index) {
+        this.graph = graph;
+        this.index = index;
+    }
 
-    public ChunkGraphInfo(RenderSection parent) {
-        this.parent = parent;
-        this.visibilityData = DEFAULT_VISIBILITY_DATA;
+    /**
+     * @return The index of the section within the graph
+     */
+    public int getIndex() {
+        return this.index;
     }
 
     public void setLastVisibleFrame(int frame) {
-        this.lastVisibleFrame = frame;
+        this.graph.setLastVisibleFrame(this.index, frame);
     }
 
     public int getLastVisibleFrame() {
-        return this.lastVisibleFrame;
-    }
-
-    public void setOcclusionData(ChunkOcclusionData occlusionData) {
-        this.visibilityData = calculateVisibilityData(occlusionData);
+        return this.graph.getLastVisibleFrame(this.index);
     }
 
-    private static long calculateVisibilityData(ChunkOcclusionData occlusionData) {
-        long visibilityData = 0;
-
-        for (Direction from : DirectionUtil.ALL_DIRECTIONS) {
-            for (Direction to : DirectionUtil.ALL_DIRECTIONS) {
-                if (occlusionData == null || occlusionData.isVisibleThrough(from, to)) {
-                    visibilityData |= (1L << ((from.ordinal() << 3) + to.ordinal()));
-                }
-            }
-        }
-
-        return visibilityData;
+    public boolean setOcclusionData(ChunkOcclusionData occlusionData) {
+        return this.graph.setOcclusionData(this.index, occlusionData);
     }
 
     public boolean isVisibleThrough(Direction from, Direction to) {
-        return ((this.visibilityData & (1L << ((from.ordinal() << 3) + to.ordinal()))) != 0L);
-    }
-
-    public void setCullingState(byte parent, Direction dir) {
-        this.cullingState = (byte) (parent | (1 << dir.ordinal()));
+        return this.graph.isVisibleThrough(this.index, from.ordinal(), to.ordinal());
     }
 
     public boolean canCull(Direction dir) {
-        return (this.cullingState & 1 << dir.ordinal()) != 0;
+        return this.graph.canCull(this.index, dir.ordinal());
     }
 
     public byte getCullingState() {
-        return this.cullingState;
+        return this.graph.getCullingState(this.index);
     }
 
     public void resetCullingState() {
-        this.cullingState = 0;
+        this.graph.resetCullingState(this.index);
     }
 
     public boolean isCulledByFrustum(FrustumExtended frustum) {
-        float x = this.getOriginX();
-        float y = this.getOriginY();
-        float z = this.getOriginZ();
-
-        return !frustum.fastAabbTest(x, y, z, x + 16.0f, y + 16.0f, z + 16.0f);
+        return this.graph.isCulledByFrustum(this.index, frustum);
     }
 
     /**
      * @return The x-coordinate of the origin position of this chunk render
      */
     public int getOriginX() {
-        return this.parent.getChunkX() << 4;
+        return this.graph.getSectionX(this.index) << 4;
     }
 
     /**
      * @return The y-coordinate of the origin position of this chunk render
      */
     public int getOriginY() {
-        return this.parent.getChunkY() << 4;
+        return this.graph.getSectionY(this.index) << 4;
     }
 
     /**
      * @return The z-coordinate of the origin position of this chunk render
      */
     public int getOriginZ() {
-        return this.parent.getChunkZ() << 4;
+        return this.graph.getSectionZ(this.index) << 4;
     }
 }
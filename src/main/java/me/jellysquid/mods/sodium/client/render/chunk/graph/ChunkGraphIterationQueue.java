@@ -1,13 +1,14 @@
 package me.jellysquid.mods.sodium.client.render.chunk.graph;
 
-import me.jellysquid.mods.sodium.client.render.chunk.RenderSection;
-import net.minecraft.util.math.Direction;
-
 import java.util.Arrays;
 
+/**
+ * The queue of a breadth-first search over the {@link ChunkGraph}. Each entry is the index of a section in the graph,
+ * along with the ordinal of the direction it was entered from (or -1 if it is where the search started).
+ */
 public class ChunkGraphIterationQueue {
-    private RenderSection[] renders;
-    private Direction[] directions;
+    private int[] sections;
+    private byte[] directions;
 
     private int pos;
     private int capacity;
@@ -17,35 +18,35 @@ public class ChunkGraphIterationQueue {
     }
 
     public ChunkGraphIterationQueue(int capacity) {
-        this.renders = new RenderSection[capacity];
-        this.directions = new Direction[capacity];
+        this.sections = new int[capacity];
+        this.directions = new byte[capacity];
 
         this.capacity = capacity;
     }
 
-    public void add(RenderSection render, Direction direction) {
+    public void add(int section, int direction) {
         int i = this.pos++;
 
         if (i == this.capacity) {
             this.resize();
         }
 
-        this.renders[i] = render;
-        this.directions[i] = direction;
+        this.sections[i] = section;
+        this.directions[i] = (byte) direction;
     }
 
     private void resize() {
         this.capacity *= 2;
 
-        this.renders = Arrays.copyOf(this.renders, this.capacity);
+        this.sections = Arrays.copyOf(this.sections, this.capacity);
         this.directions = Arrays.copyOf(this.directions, this.capacity);
     }
 
-    public RenderSection getRender(int i) {
-        return this.renders[i];
+    public int getSection(int i) {
+        return this.sections[i];
     }
 
-    public Direction getDirection(int i) {
+    public int getDirection(int i) {
         return this.directions[i];
     }
 
@@ -0,0 +1,57 @@
+package me.jellysquid.mods.sodium.client.render.chunk.graph;
+
+/**
+ * Holds the sections which can be reached from the camera's section through the occlusion graph, without considering
+ * the frustum. Which sections can be reached only depends on the section the camera is in, so while the camera stays
+ * within the same section and the graph doesn't change, the visible sections can be found by testing each of these
+ * against the frustum instead of searching the graph again.
+ */
+public class ChunkGraphTraversalCache {
+    private final ChunkGraphIterationQueue sections = new ChunkGraphIterationQueue();
+
+    private long origin;
+    private boolean useOcclusionCulling;
+
+    private boolean valid;
+
+    // Identifies the current search, so that sections can be marked as visited without clearing the marks of the
+    // previous search
+    private int search;
+
+    /**
+     * @return True if the cached sections were found from the given section with the same culling settings
+     */
+    public boolean isValid(long origin, boolean useOcclusionCulling) {
+        return this.valid && this.origin == origin && this.useOcclusionCulling == useOcclusionCulling;
+    }
+
+    /**
+     * Clears the cached sections so that they can be searched for again from the given section.
+     *
+     * @return The identifier of the new search
+     */
+    public int begin(long origin, boolean useOcclusionCulling) {
+        this.sections.clear();
+
+        this.origin = origin;
+        this.useOcclusionCulling = useOcclusionCulling;
+        this.valid = true;
+
+        return ++this.search;
+    }
+
+    /**
+     * Marks the cached sections as out of date, which should be done whenever a section is loaded or unloaded, or the
+     * occlusion data of a section changes.
+     */
+    public void invalidate() {
+        this.valid = false;
+    }
+
+    /**
+     * @return The sections which can be reached from the origin, in the order they were found
+     */
+    public ChunkGraphIterationQueue getSections() {
+        return this.sections;
+    }
+}
@@ -0,0 +1,28 @@
+package me.jellysquid.mods.sodium.client.render.chunk.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * Recorded when a chunk builder worker runs a build task.
+ */
+@Name("sodium.ChunkBuild")
+@Label("Chunk Build")
+@Category({ "Sodium", "Chunk Rendering" })
+@StackTrace(false)
+public class ChunkBuildEvent extends Event {
+    @Label("Task")
+    public String task;
+
+    @Label("Queue Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long queueTime;
+
+    public void commit(String task, long queueTime) {
+        if (this.shouldCommit()) {
+            this.task = task;
+            this.queueTime = queueTime;
+
+            this.commit();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package me.jellysquid.mods.sodium.client.render.chunk.metrics;
+
+import me.jellysquid.mods.sodium.client.render.chunk.ChunkRebuildQueue;
+import me.jellysquid.mods.sodium.client.render.chunk.ChunkUpdateType;
+import me.jellysquid.mods.sodium.client.render.chunk.region.RenderRegionManager;
+import me.jellysquid.mods.sodium.client.util.MathUtil;
+
+import java.util.List;
+
+/**
+ * The metrics which describe how well the chunk renderer is keeping up, such as how long sections take to build and
+ * how much is uploaded each frame. Build metrics are recorded by the chunk builder workers, while everything else is
+ * recorded on the main thread.
+ */
+public class ChunkRenderMetrics {
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    private final RateMeter builds;
+    private final Histogram buildTime;
+    private final Histogram buildLatency;
+    private final Histogram uploadBytes;
+    private final Histogram traversalTime;
+
+    private final ChunkRebuildQueue rebuildQueue;
+    private final RenderRegionManager regions;
+
+    private long lastUploadedBytes;
+
+    public ChunkRenderMetrics(ChunkRebuildQueue rebuildQueue, RenderRegionManager regions) {
+        this.rebuildQueue = rebuildQueue;
+        this.regions = regions;
+
+        this.builds = this.registry.register("Builds", new RateMeter());
+        this.buildTime = this.registry.register("Build time", new Histogram(Histogram.Unit.NANOSECONDS));
+        this.buildLatency = this.registry.register("Build latency", new Histogram(Histogram.Unit.NANOSECONDS));
+        this.uploadBytes = this.registry.register("Uploads/frame", new Histogram(Histogram.Unit.BYTES));
+        this.traversalTime = this.registry.register("Graph traversal", new Histogram(Histogram.Unit.NANOSECONDS));
+
+        this.registry.register("Queued", () -> String.format("%d important, %d initial, %d rebuild",
+                rebuildQueue.size(ChunkUpdateType.IMPORTANT_REBUILD),
+                rebuildQueue.size(ChunkUpdateType.INITIAL_BUILD),
+                rebuildQueue.size(ChunkUpdateType.REBUILD)));
+
+        this.registry.register("Arena fragmentation", () -> {
+            long allocated = regions.getDeviceAllocatedMemory();
+            long fragmented = regions.getDeviceFragmentedMemory();
+
+            return String.format("%d%% (%d MiB)", allocated > 0 ? fragmented * 100 / allocated : 0, MathUtil.toMib(fragmented));
+        });
+
+        this.registry.register("Staging fallbacks", new Metric() {
+            private long last;
+            private double rate;
+
+            @Override
+            public void roll(double seconds) {
+                long total = regions.getStagingBuffer().getTotalFallbackBytes();
+
+                this.rate = (total - this.last) / seconds;
+                this.last = total;
+            }
+
+            @Override
+            public String describe() {
+                return String.format("%.1f KiB/s", this.rate / 1024.0D);
+            }
+        });
+    }
+
+    /**
+     * Records a finished build task. This can be called from any thread.
+     *
+     * @param scheduleTime The time at which the task was scheduled
+     * @param startTime The time at which a worker started the task
+     * @param endTime The time at which the task finished
+     */
+    public void recordBuild(long scheduleTime, long startTime, long endTime) {
+        this.builds.mark();
+        this.buildTime.record(endTime - startTime);
+        this.buildLatency.record(endTime - scheduleTime);
+    }
+
+    public void recordTraversal(long nanos) {
+        this.traversalTime.record(nanos);
+    }
+
+    /**
+     * Records the per-frame metrics and closes the current window if needed. This should be called once per frame
+     * after uploads have been performed.
+     */
+    public void update() {
+        long uploadedBytes = this.regions.getUploadedBytes();
+
+        this.uploadBytes.record(uploadedBytes - this.lastUploadedBytes);
+        this.lastUploadedBytes = uploadedBytes;
+
+        if (this.registry.update()) {
+            this.commitSnapshot();
+        }
+    }
+
+    private void commitSnapshot() {
+        RenderMetricsEvent event = new RenderMetricsEvent();
+
+        if (!event.shouldCommit()) {
+            return;
+        }
+
+        event.buildRate = this.builds.getRate();
+        event.buildTimeMedian = this.buildTime.getMedian();
+        event.buildTime99 = this.buildTime.get99thPercentile();
+        event.buildLatency99 = this.buildLatency.get99thPercentile();
+        event.uploadBytes99 = this.uploadBytes.get99thPercentile();
+        event.traversalTime99 = this.traversalTime.get99thPercentile();
+        event.queuedSections = this.rebuildQueue.size(ChunkUpdateType.IMPORTANT_REBUILD) +
+                this.rebuildQueue.size(ChunkUpdateType.INITIAL_BUILD) +
+                this.rebuildQueue.size(ChunkUpdateType.REBUILD);
+        event.fragmentedBytes = this.regions.getDeviceFragmentedMemory();
+        event.commit();
+    }
+
+    public List<String> getDebugStrings() {
+        return this.registry.getDebugStrings();
+    }
+}
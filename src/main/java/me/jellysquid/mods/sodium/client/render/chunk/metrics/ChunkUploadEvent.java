@@ -0,0 +1,28 @@
+package me.jellysquid.mods.sodium.client.render.chunk.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * Recorded when the meshes of a batch of sections are uploaded into the arenas of a render region.
+ */
+@Name("sodium.ChunkUpload")
+@Label("Chunk Upload")
+@Category({ "Sodium", "Chunk Rendering" })
+@StackTrace(false)
+public class ChunkUploadEvent extends Event {
+    @Label("Sections")
+    public int sections;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    public void commit(int sections, long bytes) {
+        if (this.shouldCommit()) {
+            this.sections = sections;
+            this.bytes = bytes;
+
+            this.commit();
+        }
+    }
+}
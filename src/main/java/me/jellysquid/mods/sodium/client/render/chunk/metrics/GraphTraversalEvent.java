@@ -0,0 +1,23 @@
+package me.jellysquid.mods.sodium.client.render.chunk.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * Recorded when the section graph is searched for the sections which are visible from the camera.
+ */
+@Name("sodium.GraphTraversal")
+@Label("Graph Traversal")
+@Category({ "Sodium", "Chunk Rendering" })
+@StackTrace(false)
+public class GraphTraversalEvent extends Event {
+    @Label("Visited Sections")
+    public int visitedSections;
+
+    public void commit(int visitedSections) {
+        if (this.shouldCommit()) {
+            this.visitedSections = visitedSections;
+
+            this.commit();
+        }
+    }
+}
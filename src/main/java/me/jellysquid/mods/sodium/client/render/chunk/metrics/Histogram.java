@@ -0,0 +1,125 @@
+package me.jellysquid.mods.sodium.client.render.chunk.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records the distribution of a value, such as a duration or a number of bytes. Values are counted into buckets which
+ * are spaced logarithmically, with each power of two split into a few linear sub-buckets, so percentiles are accurate
+ * to within 25% regardless of magnitude. Values can be recorded from any thread without locking.
+ */
+public class Histogram implements Metric {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKET_COUNT = getBucket(Long.MAX_VALUE) + 1;
+
+    private final Unit unit;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong max = new AtomicLong();
+
+    // The summary of the last window
+    private long count;
+    private long p50, p99, windowMax;
+
+    public Histogram(Unit unit) {
+        this.unit = unit;
+    }
+
+    public void record(long value) {
+        this.buckets.incrementAndGet(getBucket(Math.max(0, value)));
+        this.max.accumulateAndGet(value, Math::max);
+    }
+
+    @Override
+    public void roll(double seconds) {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = this.buckets.getAndSet(i, 0);
+            count += counts[i];
+        }
+
+        this.count = count;
+        this.p50 = getPercentile(counts, count, 0.50D);
+        this.p99 = getPercentile(counts, count, 0.99D);
+        this.windowMax = this.max.getAndSet(0);
+    }
+
+    private static long getPercentile(long[] counts, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(total * percentile);
+        long seen = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+
+            if (seen >= target) {
+                return getBucketUpperBound(i);
+            }
+        }
+
+        return getBucketUpperBound(counts.length - 1);
+    }
+
+    private static int getBucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) | sub;
+    }
+
+    private static long getBucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int exponent = (bucket >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+        int sub = bucket & (SUB_BUCKETS - 1);
+
+        return (((long) (SUB_BUCKETS | sub) + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public long getMedian() {
+        return this.p50;
+    }
+
+    public long get99thPercentile() {
+        return this.p99;
+    }
+
+    public long getMax() {
+        return this.windowMax;
+    }
+
+    @Override
+    public String describe() {
+        return String.format("p50 %s, p99 %s, max %s (%d)", this.unit.format(this.p50), this.unit.format(this.p99),
+                this.unit.format(this.windowMax), this.count);
+    }
+
+    public enum Unit {
+        NANOSECONDS,
+        BYTES;
+
+        public String format(long value) {
+            return switch (this) {
+                case NANOSECONDS -> String.format("%.2fms", value / 1_000_000.0D);
+                case BYTES -> String.format("%dKiB", value / 1024);
+            };
+        }
+    }
+}
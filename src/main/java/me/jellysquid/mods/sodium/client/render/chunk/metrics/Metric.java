@@ -0,0 +1,23 @@
+package me.jellysquid.mods.sodium.client.render.chunk.metrics;
+
+/**
+ * A value which is tracked by a {@link MetricsRegistry}. Metrics which measure something over time (such as rates and
+ * distributions) are summarized over fixed windows, so that the debug screen shows recent behavior rather than
+ * everything since the renderer was created.
+ */
+@FunctionalInterface
+public interface Metric {
+    /**
+     * Closes the current window and starts a new one.
+     *
+     * @param seconds The length of the window which was closed
+     */
+    default void roll(double seconds) {
+
+    }
+
+    /**
+     * @return The value of the metric over the last window, formatted for the debug screen
+     */
+    String describe();
+}
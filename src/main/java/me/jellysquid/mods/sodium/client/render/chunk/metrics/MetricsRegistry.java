@@ -0,0 +1,60 @@
+package me.jellysquid.mods.sodium.client.render.chunk.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A named collection of metrics, which closes the windows of all of them at the same time.
+ */
+public class MetricsRegistry {
+    private static final long WINDOW_LENGTH = 1_000_000_000L;
+
+    private final Map<String, Metric> metrics = new LinkedHashMap<>();
+
+    private long windowStart = System.nanoTime();
+
+    public <T extends Metric> T register(String name, T metric) {
+        if (this.metrics.putIfAbsent(name, metric) != null) {
+            throw new IllegalArgumentException("Metric already registered: " + name);
+        }
+
+        return metric;
+    }
+
+    /**
+     * Closes the current window of every metric if it has been open for long enough. This should be called once per
+     * frame.
+     *
+     * @return True if the window was closed
+     */
+    public boolean update() {
+        long now = System.nanoTime();
+        long elapsed = now - this.windowStart;
+
+        if (elapsed < WINDOW_LENGTH) {
+            return false;
+        }
+
+        double seconds = elapsed / 1_000_000_000.0D;
+
+        for (Metric metric : this.metrics.values()) {
+            metric.roll(seconds);
+        }
+
+        this.windowStart = now;
+
+        return true;
+    }
+
+    public List<String> getDebugStrings() {
+        List<String> list = new ArrayList<>();
+
+        for (Map.Entry<String, Metric> entry : this.metrics.entrySet()) {
+            list.add(entry.getKey() + ": " + entry.getValue().describe());
+        }
+
+        return list;
+    }
+}
@@ -0,0 +1,34 @@
+package me.jellysquid.mods.sodium.client.render.chunk.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how many times something happens each second. Events can be recorded from any thread.
+ */
+public class RateMeter implements Metric {
+    private final LongAdder events = new LongAdder();
+
+    private long total;
+    private double rate;
+
+    public void mark() {
+        this.events.increment();
+    }
+
+    @Override
+    public void roll(double seconds) {
+        long events = this.events.sumThenReset();
+
+        this.total += events;
+        this.rate = events / seconds;
+    }
+
+    public double getRate() {
+        return this.rate;
+    }
+
+    @Override
+    public String describe() {
+        return String.format("%.1f/s (%d total)", this.rate, this.total);
+    }
+}
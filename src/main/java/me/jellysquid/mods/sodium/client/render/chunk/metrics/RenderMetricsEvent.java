@@ -0,0 +1,42 @@
+package me.jellysquid.mods.sodium.client.render.chunk.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * A periodic snapshot of the chunk render metrics, recorded whenever a metrics window is closed.
+ */
+@Name("sodium.RenderMetrics")
+@Label("Chunk Render Metrics")
+@Category({ "Sodium", "Chunk Rendering" })
+@StackTrace(false)
+public class RenderMetricsEvent extends Event {
+    @Label("Builds Per Second")
+    public double buildRate;
+
+    @Label("Build Time (p50)")
+    @Timespan(Timespan.NANOSECONDS)
+    public long buildTimeMedian;
+
+    @Label("Build Time (p99)")
+    @Timespan(Timespan.NANOSECONDS)
+    public long buildTime99;
+
+    @Label("Build Latency (p99)")
+    @Timespan(Timespan.NANOSECONDS)
+    public long buildLatency99;
+
+    @Label("Upload Bytes Per Frame (p99)")
+    @DataAmount
+    public long uploadBytes99;
+
+    @Label("Traversal Time (p99)")
+    @Timespan(Timespan.NANOSECONDS)
+    public long traversalTime99;
+
+    @Label("Queued Sections")
+    public int queuedSections;
+
+    @Label("Fragmented Arena Memory")
+    @DataAmount
+    public long fragmentedBytes;
+}
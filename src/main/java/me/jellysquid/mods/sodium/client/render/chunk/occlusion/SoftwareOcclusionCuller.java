@@ -0,0 +1,355 @@
+package me.jellysquid.mods.sodium.client.render.chunk.occlusion;
+
+import me.jellysquid.mods.sodium.client.util.math.FrustumExtended;
+
+import java.util.Arrays;
+
+/**
+ * Culls boxes which are hidden behind other boxes by rasterizing the occluders into a small depth buffer on the CPU,
+ * and then testing the screen-space bounds of each box against it. This catches what the occlusion graph can't, such
+ * as sections which are hidden behind a mountain while there is still a path of air around it.
+ *
+ * The depth buffer holds the distance of each texel along the view direction. Occluders are written with the depth
+ * of their farthest corner and boxes are tested with the depth of their nearest corner, so a box is only culled when
+ * every texel it could touch is covered by something in front of all of it. Coverage is sampled at the center of each
+ * texel, and the bounds of a tested box are widened by a texel on every side to make up for this.
+ *
+ * Occluders which are rasterized first can hide the boxes which are tested after them, so occluders and boxes should
+ * be passed in roughly front-to-back order. The results are correct for any order.
+ */
+public class SoftwareOcclusionCuller {
+    public static final int WIDTH = 256;
+    public static final int HEIGHT = 128;
+
+    private static final int TILE_SIZE_SH = 3;
+    private static final int TILE_SIZE = 1 << TILE_SIZE_SH;
+
+    private static final int TILES_X = WIDTH >> TILE_SIZE_SH;
+    private static final int TILES_Y = HEIGHT >> TILE_SIZE_SH;
+
+    /**
+     * Boxes with a corner closer to the camera than this are never culled, and faces with a corner closer than this
+     * are not rasterized, as they would need to be clipped against the near plane first.
+     */
+    private static final float NEAR_DEPTH = 0.1f;
+
+    private final float[] depth = new float[WIDTH * HEIGHT];
+
+    // The farthest depth within each tile of texels, which lets most hidden boxes be culled without visiting each of
+    // the texels they cover. Tiles which have been rasterized into are only updated once they are next tested.
+    private final float[] tileDepth = new float[TILES_X * TILES_Y];
+    private final boolean[] tileDirty = new boolean[TILES_X * TILES_Y];
+
+    private final float[] planes = new float[FrustumExtended.PLANE_DATA_SIZE];
+    private final float[] matrix = new float[16];
+
+    private float cameraX, cameraY, cameraZ;
+
+    // The projected corners of the box or face which is currently being processed
+    private final float[] cornerX = new float[8];
+    private final float[] cornerY = new float[8];
+    private final float[] cornerDepth = new float[8];
+
+    // The edges of the face which is currently being rasterized, each stored as the coefficients (a, b, c) of the
+    // function a * x + b * y + c, which is positive on the inside of the face
+    private final float[] edges = new float[4 * 3];
+
+    private int occluderCount;
+    private int culledCount;
+
+    /**
+     * Clears the depth buffer and starts a new pass for the view of the given frustum.
+     */
+    public void begin(FrustumExtended frustum) {
+        frustum.writePlanes(this.planes);
+        frustum.writeViewProjection(this.matrix);
+
+        this.cameraX = this.planes[FrustumExtended.PLANE_COUNT * 4];
+        this.cameraY = this.planes[FrustumExtended.PLANE_COUNT * 4 + 1];
+        this.cameraZ = this.planes[FrustumExtended.PLANE_COUNT * 4 + 2];
+
+        Arrays.fill(this.depth, Float.POSITIVE_INFINITY);
+        Arrays.fill(this.tileDepth, Float.POSITIVE_INFINITY);
+        Arrays.fill(this.tileDirty, false);
+
+        this.occluderCount = 0;
+        this.culledCount = 0;
+    }
+
+    /**
+     * Rasterizes the faces of the given box which face the camera into the depth buffer.
+     */
+    public void addOccluder(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        minX -= this.cameraX; minY -= this.cameraY; minZ -= this.cameraZ;
+        maxX -= this.cameraX; maxY -= this.cameraY; maxZ -= this.cameraZ;
+
+        boolean rasterized = false;
+
+        // Only one face on each axis can face the camera, and none can if the camera is between them
+        if (minX > 0.0f) {
+            rasterized |= this.rasterizeFace(minX, minY, minZ, minX, maxY, minZ, minX, maxY, maxZ, minX, minY, maxZ);
+        } else if (maxX < 0.0f) {
+            rasterized |= this.rasterizeFace(maxX, minY, minZ, maxX, maxY, minZ, maxX, maxY, maxZ, maxX, minY, maxZ);
+        }
+
+        if (minY > 0.0f) {
+            rasterized |= this.rasterizeFace(minX, minY, minZ, maxX, minY, minZ, maxX, minY, maxZ, minX, minY, maxZ);
+        } else if (maxY < 0.0f) {
+            rasterized |= this.rasterizeFace(minX, maxY, minZ, maxX, maxY, minZ, maxX, maxY, maxZ, minX, maxY, maxZ);
+        }
+
+        if (minZ > 0.0f) {
+            rasterized |= this.rasterizeFace(minX, minY, minZ, maxX, minY, minZ, maxX, maxY, minZ, minX, maxY, minZ);
+        } else if (maxZ < 0.0f) {
+            rasterized |= this.rasterizeFace(minX, minY, maxZ, maxX, minY, maxZ, maxX, maxY, maxZ, minX, maxY, maxZ);
+        }
+
+        if (rasterized) {
+            this.occluderCount++;
+        }
+    }
+
+    /**
+     * @return True if the given box is entirely hidden behind the occluders which have been rasterized so far
+     */
+    public boolean isOccluded(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        if (this.occluderCount == 0) {
+            return false;
+        }
+
+        minX -= this.cameraX; minY -= this.cameraY; minZ -= this.cameraZ;
+        maxX -= this.cameraX; maxY -= this.cameraY; maxZ -= this.cameraZ;
+
+        for (int i = 0; i < 8; i++) {
+            if (!this.project(i, (i & 1) == 0 ? minX : maxX, (i & 2) == 0 ? minY : maxY, (i & 4) == 0 ? minZ : maxZ)) {
+                return false;
+            }
+        }
+
+        float screenMinX = Float.POSITIVE_INFINITY, screenMaxX = Float.NEGATIVE_INFINITY;
+        float screenMinY = Float.POSITIVE_INFINITY, screenMaxY = Float.NEGATIVE_INFINITY;
+        float nearest = Float.POSITIVE_INFINITY;
+
+        for (int i = 0; i < 8; i++) {
+            screenMinX = Math.min(screenMinX, this.cornerX[i]);
+            screenMaxX = Math.max(screenMaxX, this.cornerX[i]);
+            screenMinY = Math.min(screenMinY, this.cornerY[i]);
+            screenMaxY = Math.max(screenMaxY, this.cornerY[i]);
+            nearest = Math.min(nearest, this.cornerDepth[i]);
+        }
+
+        int x0 = Math.max(0, (int) Math.floor(screenMinX) - 1);
+        int x1 = Math.min(WIDTH - 1, (int) Math.floor(screenMaxX) + 1);
+        int y0 = Math.max(0, (int) Math.floor(screenMinY) - 1);
+        int y1 = Math.min(HEIGHT - 1, (int) Math.floor(screenMaxY) + 1);
+
+        if (x0 > x1 || y0 > y1) {
+            return false;
+        }
+
+        if (this.isOccludedByTiles(x0, y0, x1, y1, nearest)) {
+            this.culledCount++;
+
+            return true;
+        }
+
+        float[] depth = this.depth;
+
+        for (int y = y0; y <= y1; y++) {
+            int row = y * WIDTH;
+            float farthest = 0.0f;
+
+            // Kept free of branches so that it can be vectorized
+            for (int x = x0; x <= x1; x++) {
+                farthest = Math.max(farthest, depth[row + x]);
+            }
+
+            if (farthest >= nearest) {
+                return false;
+            }
+        }
+
+        this.culledCount++;
+
+        return true;
+    }
+
+    private boolean isOccludedByTiles(int x0, int y0, int x1, int y1, float nearest) {
+        float[] tileDepth = this.tileDepth;
+        boolean[] tileDirty = this.tileDirty;
+
+        for (int y = y0 >> TILE_SIZE_SH; y <= y1 >> TILE_SIZE_SH; y++) {
+            int row = y * TILES_X;
+
+            for (int x = x0 >> TILE_SIZE_SH; x <= x1 >> TILE_SIZE_SH; x++) {
+                int tile = row + x;
+
+                if (tileDirty[tile]) {
+                    tileDepth[tile] = this.getFarthestDepthInTile(x, y);
+                    tileDirty[tile] = false;
+                }
+
+                if (tileDepth[tile] >= nearest) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private float getFarthestDepthInTile(int tileX, int tileY) {
+        float[] depth = this.depth;
+        float farthest = 0.0f;
+
+        for (int y = tileY << TILE_SIZE_SH; y < (tileY + 1) << TILE_SIZE_SH; y++) {
+            int row = (y * WIDTH) + (tileX << TILE_SIZE_SH);
+
+            for (int x = 0; x < TILE_SIZE; x++) {
+                farthest = Math.max(farthest, depth[row + x]);
+            }
+        }
+
+        return farthest;
+    }
+
+    private void markTilesDirty(int x0, int y0, int x1, int y1) {
+        for (int y = y0 >> TILE_SIZE_SH; y <= y1 >> TILE_SIZE_SH; y++) {
+            Arrays.fill(this.tileDirty, (y * TILES_X) + (x0 >> TILE_SIZE_SH), (y * TILES_X) + (x1 >> TILE_SIZE_SH) + 1, true);
+        }
+    }
+
+    private boolean rasterizeFace(float x0, float y0, float z0, float x1, float y1, float z1,
+                                  float x2, float y2, float z2, float x3, float y3, float z3) {
+        if (!this.project(0, x0, y0, z0) || !this.project(1, x1, y1, z1) ||
+                !this.project(2, x2, y2, z2) || !this.project(3, x3, y3, z3)) {
+            return false;
+        }
+
+        float[] cx = this.cornerX;
+        float[] cy = this.cornerY;
+
+        // Twice the signed area of the projected face, which tells which way around its corners go
+        float area = ((cx[0] - cx[2]) * (cy[1] - cy[3])) - ((cx[1] - cx[3]) * (cy[0] - cy[2]));
+
+        if (Math.abs(area) < 1.0e-4f) {
+            return false;
+        }
+
+        float orientation = Math.signum(area);
+
+        float[] edges = this.edges;
+
+        for (int i = 0; i < 4; i++) {
+            int j = (i + 1) & 3;
+
+            // The edge function is always evaluated from the same end of an edge, so that faces which share an edge
+            // agree exactly on which texels are on either side of it, and leave no gaps between them
+            int from = i, to = j;
+            float sign = orientation;
+
+            if (cx[j] < cx[i] || (cx[j] == cx[i] && cy[j] < cy[i])) {
+                from = j;
+                to = i;
+                sign = -sign;
+            }
+
+            float dx = cx[to] - cx[from];
+            float dy = cy[to] - cy[from];
+
+            edges[(i * 3)] = -dy * sign;
+            edges[(i * 3) + 1] = dx * sign;
+            edges[(i * 3) + 2] = ((dy * cx[from]) - (dx * cy[from])) * sign;
+        }
+
+        float screenMinX = Math.min(Math.min(cx[0], cx[1]), Math.min(cx[2], cx[3]));
+        float screenMaxX = Math.max(Math.max(cx[0], cx[1]), Math.max(cx[2], cx[3]));
+        float screenMinY = Math.min(Math.min(cy[0], cy[1]), Math.min(cy[2], cy[3]));
+        float screenMaxY = Math.max(Math.max(cy[0], cy[1]), Math.max(cy[2], cy[3]));
+
+        // Only texels whose centers are inside the face are covered
+        int minTexelX = Math.max(0, (int) Math.ceil(screenMinX - 0.5f));
+        int maxTexelX = Math.min(WIDTH - 1, (int) Math.floor(screenMaxX - 0.5f));
+        int minTexelY = Math.max(0, (int) Math.ceil(screenMinY - 0.5f));
+        int maxTexelY = Math.min(HEIGHT - 1, (int) Math.floor(screenMaxY - 0.5f));
+
+        float faceDepth = Math.max(Math.max(this.cornerDepth[0], this.cornerDepth[1]),
+                Math.max(this.cornerDepth[2], this.cornerDepth[3]));
+
+        float[] depth = this.depth;
+
+        for (int y = minTexelY; y <= maxTexelY; y++) {
+            float centerY = y + 0.5f;
+
+            int start = minTexelX;
+            int end = maxTexelX;
+
+            // The face is convex, so the texels it covers in each row form a single span, which is found by solving
+            // each edge function for the first or last texel center on its inside
+            for (int i = 0; i < 4; i++) {
+                float a = edges[(i * 3)];
+                float rest = (edges[(i * 3) + 1] * centerY) + edges[(i * 3) + 2];
+
+                if (a > 0.0f) {
+                    start = Math.max(start, (int) Math.ceil((-rest / a) - 0.5f));
+                } else if (a < 0.0f) {
+                    end = Math.min(end, (int) Math.floor((-rest / a) - 0.5f));
+                } else if (rest < 0.0f) {
+                    end = start - 1;
+                }
+            }
+
+            int row = y * WIDTH;
+
+            for (int x = start; x <= end; x++) {
+                depth[row + x] = Math.min(depth[row + x], faceDepth);
+            }
+        }
+
+        if (minTexelX <= maxTexelX && minTexelY <= maxTexelY) {
+            this.markTilesDirty(minTexelX, minTexelY, maxTexelX, maxTexelY);
+        }
+
+        return true;
+    }
+
+    /**
+     * Projects a position relative to the camera into the depth buffer's space, and stores it as the given corner.
+     *
+     * @return False if the position is too close to or behind the camera to be projected
+     */
+    private boolean project(int corner, float x, float y, float z) {
+        float[] m = this.matrix;
+
+        float w = (m[12] * x) + (m[13] * y) + (m[14] * z) + m[15];
+
+        if (w < NEAR_DEPTH) {
+            return false;
+        }
+
+        float clipX = (m[0] * x) + (m[1] * y) + (m[2] * z) + m[3];
+        float clipY = (m[4] * x) + (m[5] * y) + (m[6] * z) + m[7];
+
+        float invW = 1.0f / w;
+
+        this.cornerX[corner] = ((clipX * invW) * 0.5f + 0.5f) * WIDTH;
+        this.cornerY[corner] = ((clipY * invW) * 0.5f + 0.5f) * HEIGHT;
+        this.cornerDepth[corner] = w;
+
+        return true;
+    }
+
+    /**
+     * @return The number of occluders which were rasterized in the current pass
+     */
+    public int getOccluderCount() {
+        return this.occluderCount;
+    }
+
+    /**
+     * @return The number of boxes which were found to be hidden in the current pass
+     */
+    public int getCulledCount() {
+        return this.culledCount;
+    }
+}
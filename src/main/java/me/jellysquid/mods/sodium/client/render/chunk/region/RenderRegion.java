@@ -9,10 +9,9 @@ import me.jellysquid.mods.sodium.client.gl.arena.staging.StagingBuffer;
 import me.jellysquid.mods.sodium.client.gl.device.CommandList;
 import me.jellysquid.mods.sodium.client.gl.tessellation.GlTessellation;
 import me.jellysquid.mods.sodium.client.render.chunk.RenderSection;
-import me.jellysquid.mods.sodium.client.render.chunk.format.ChunkModelVertexFormats;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
 import me.jellysquid.mods.sodium.client.util.MathUtil;
-import me.jellysquid.mods.sodium.client.util.math.FrustumExtended;
+import me.jellysquid.mods.sodium.client.util.math.AabbBatch;
 import net.minecraft.util.math.ChunkSectionPos;
 import org.apache.commons.lang3.Validate;
 
@@ -35,7 +34,7 @@ public class RenderRegion {
 
     public static final int REGION_SIZE = REGION_WIDTH * REGION_HEIGHT * REGION_LENGTH;
 
-    private static final int REGION_EXCESS = 8;
+    static final int REGION_EXCESS = 8;
 
     static {
         Validate.isTrue(MathUtil.isPowerOfTwo(REGION_WIDTH));
@@ -111,6 +110,10 @@ public class RenderRegion {
         if (!this.chunks.remove(chunk)) {
             throw new IllegalStateException("Chunk " + chunk + " is not a member of region " + this);
         }
+
+        if (this.chunks.isEmpty()) {
+            this.manager.onRegionEmptied(this);
+        }
     }
 
     public boolean isEmpty() {
@@ -121,7 +124,12 @@ public class RenderRegion {
         return this.chunks.size();
     }
 
-    public void updateVisibility(FrustumExtended frustum) {
+    /**
+     * Adds the box which the region is tested against the frustum with to the given batch.
+     *
+     * @return The index of the box in the batch
+     */
+    public int addBounds(AabbBatch batch) {
         int x = this.getOriginX();
         int y = this.getOriginY();
         int z = this.getOriginZ();
@@ -129,10 +137,14 @@ public class RenderRegion {
         // HACK: Regions need to be slightly larger than their real volume
         // Otherwise, the first node in the iteration graph might be incorrectly culled when the camera
         // is at the extreme end of a region
-        this.visibility = frustum.aabbTest(x - REGION_EXCESS, y - REGION_EXCESS, z - REGION_EXCESS,
+        return batch.add(x - REGION_EXCESS, y - REGION_EXCESS, z - REGION_EXCESS,
                 x + (REGION_WIDTH << 4) + REGION_EXCESS, y + (REGION_HEIGHT << 4) + REGION_EXCESS, z + (REGION_LENGTH << 4) + REGION_EXCESS);
     }
 
+    public void setVisibility(RenderRegionVisibility visibility) {
+        this.visibility = visibility;
+    }
+
     public RenderRegionVisibility getVisibility() {
         return this.visibility;
     }
@@ -147,11 +159,12 @@ public class RenderRegion {
 
         public final Map<BlockRenderPass, GlTessellation> tessellations = new EnumMap<>(BlockRenderPass.class);
 
-        public RenderRegionArenas(CommandList commandList, StagingBuffer stagingBuffer) {
+        public RenderRegionArenas(CommandList commandList, StagingBuffer stagingBuffer, int vertexStride) {
             int expectedVertexCount = REGION_SIZE * 756;
-            int expectedIndexCount = (expectedVertexCount / 4) * 6;
+            // Only translucent geometry needs its own index data, as everything else uses the shared quad index buffer
+            int expectedIndexCount = ((expectedVertexCount / 4) * 6) / 8;
 
-            this.vertexBuffers = createArena(commandList, expectedVertexCount * ChunkModelVertexFormats.DEFAULT.getBufferVertexFormat().getStride(), stagingBuffer);
+            this.vertexBuffers = createArena(commandList, expectedVertexCount * vertexStride, stagingBuffer);
             this.indexBuffers = createArena(commandList, expectedIndexCount * 4, stagingBuffer);
         }
 
@@ -182,6 +195,33 @@ public class RenderRegion {
             return this.vertexBuffers.isEmpty() && this.indexBuffers.isEmpty();
         }
 
+        /**
+         * Moves up to the given number of bytes within the arenas to close gaps between their segments.
+         *
+         * @return The number of bytes which were moved
+         */
+        public int defragment(CommandList commandList, int maxBytes) {
+            int moved = this.vertexBuffers.defragment(commandList, maxBytes);
+
+            if (moved < maxBytes) {
+                moved += this.indexBuffers.defragment(commandList, maxBytes - moved);
+            }
+
+            return moved;
+        }
+
+        /**
+         * Releases memory from arenas which have been mostly empty for a while, or right away if forced to.
+         */
+        public void shrink(CommandList commandList, boolean force) {
+            boolean bufferChanged = this.vertexBuffers.shrink(commandList, force);
+            bufferChanged |= this.indexBuffers.shrink(commandList, force);
+
+            if (bufferChanged) {
+                this.deleteTessellations(commandList);
+            }
+        }
+
         public long getDeviceUsedMemory() {
             return this.vertexBuffers.getDeviceUsedMemory() + this.indexBuffers.getDeviceUsedMemory();
         }
@@ -190,6 +230,10 @@ public class RenderRegion {
             return this.vertexBuffers.getDeviceAllocatedMemory() + this.indexBuffers.getDeviceAllocatedMemory();
         }
 
+        public long getDeviceFragmentedMemory() {
+            return this.vertexBuffers.getDeviceFragmentedMemory() + this.indexBuffers.getDeviceFragmentedMemory();
+        }
+
         private static GlBufferArena createArena(CommandList commandList, int initialCapacity, StagingBuffer stagingBuffer) {
             return switch (SodiumClientMod.options().advanced.arenaMemoryAllocator) {
                 case ASYNC -> new AsyncBufferArena(commandList, initialCapacity, stagingBuffer);
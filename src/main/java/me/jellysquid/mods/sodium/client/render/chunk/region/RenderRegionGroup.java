@@ -0,0 +1,75 @@
+package me.jellysquid.mods.sodium.client.render.chunk.region;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import me.jellysquid.mods.sodium.client.util.math.AabbBatch;
+import net.minecraft.util.math.ChunkSectionPos;
+
+import java.util.List;
+
+/**
+ * A coarse group of neighboring regions which are tested against the frustum together before the regions themselves.
+ * At high render distances most groups are either entirely outside of the frustum or entirely inside of it, in which
+ * case every region in them can be given the same visibility without being tested.
+ */
+public class RenderRegionGroup {
+    public static final int GROUP_WIDTH = 4;
+    public static final int GROUP_HEIGHT = 4;
+    public static final int GROUP_LENGTH = 4;
+
+    private static final int GROUP_BLOCK_WIDTH = GROUP_WIDTH * RenderRegion.REGION_WIDTH * 16;
+    private static final int GROUP_BLOCK_HEIGHT = GROUP_HEIGHT * RenderRegion.REGION_HEIGHT * 16;
+    private static final int GROUP_BLOCK_LENGTH = GROUP_LENGTH * RenderRegion.REGION_LENGTH * 16;
+
+    private final List<RenderRegion> regions = new ObjectArrayList<>();
+
+    private final int x, y, z;
+
+    public RenderRegionGroup(int x, int y, int z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public static RenderRegionGroup createGroupForRegion(RenderRegion region) {
+        return new RenderRegionGroup(Math.floorDiv(region.getOriginX(), GROUP_BLOCK_WIDTH),
+                Math.floorDiv(region.getOriginY(), GROUP_BLOCK_HEIGHT),
+                Math.floorDiv(region.getOriginZ(), GROUP_BLOCK_LENGTH));
+    }
+
+    public static long getGroupKeyForRegion(RenderRegion region) {
+        return ChunkSectionPos.asLong(Math.floorDiv(region.getOriginX(), GROUP_BLOCK_WIDTH),
+                Math.floorDiv(region.getOriginY(), GROUP_BLOCK_HEIGHT),
+                Math.floorDiv(region.getOriginZ(), GROUP_BLOCK_LENGTH));
+    }
+
+    /**
+     * Adds the box which the group is tested against the frustum with to the given batch. The box is grown in the same
+     * way as the boxes of regions, so that it always contains them.
+     *
+     * @return The index of the box in the batch
+     */
+    public int addBounds(AabbBatch batch) {
+        int x = this.x * GROUP_BLOCK_WIDTH;
+        int y = this.y * GROUP_BLOCK_HEIGHT;
+        int z = this.z * GROUP_BLOCK_LENGTH;
+
+        return batch.add(x - RenderRegion.REGION_EXCESS, y - RenderRegion.REGION_EXCESS, z - RenderRegion.REGION_EXCESS,
+                x + GROUP_BLOCK_WIDTH + RenderRegion.REGION_EXCESS, y + GROUP_BLOCK_HEIGHT + RenderRegion.REGION_EXCESS, z + GROUP_BLOCK_LENGTH + RenderRegion.REGION_EXCESS);
+    }
+
+    public void addRegion(RenderRegion region) {
+        this.regions.add(region);
+    }
+
+    public void removeRegion(RenderRegion region) {
+        this.regions.remove(region);
+    }
+
+    public List<RenderRegion> getRegions() {
+        return this.regions;
+    }
+
+    public boolean isEmpty() {
+        return this.regions.isEmpty();
+    }
+}
@@ -2,7 +2,9 @@ package me.jellysquid.mods.sodium.client.render.chunk.region;
 
 import it.unimi.dsi.fastutil.longs.Long2ReferenceOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Reference2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import me.jellysquid.mods.sodium.client.SodiumClientMod;
+import me.jellysquid.mods.sodium.client.gl.arena.GlBufferSegment;
 import me.jellysquid.mods.sodium.client.gl.arena.PendingUpload;
 import me.jellysquid.mods.sodium.client.gl.arena.staging.FallbackStagingBuffer;
 import me.jellysquid.mods.sodium.client.gl.arena.staging.MappedStagingBuffer;
@@ -10,51 +12,211 @@ import me.jellysquid.mods.sodium.client.gl.arena.staging.StagingBuffer;
 import me.jellysquid.mods.sodium.client.gl.buffer.IndexedVertexData;
 import me.jellysquid.mods.sodium.client.gl.device.CommandList;
 import me.jellysquid.mods.sodium.client.gl.device.RenderDevice;
+import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
 import me.jellysquid.mods.sodium.client.render.chunk.ChunkGraphicsState;
 import me.jellysquid.mods.sodium.client.render.chunk.RenderSection;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildResult;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
+import me.jellysquid.mods.sodium.client.render.chunk.metrics.ChunkUploadEvent;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
-import me.jellysquid.mods.sodium.client.util.math.FrustumExtended;
+import me.jellysquid.mods.sodium.client.util.NativeBuffer;
+import me.jellysquid.mods.sodium.client.util.math.AabbBatch;
+import me.jellysquid.mods.sodium.client.util.math.BatchFrustumCuller;
 
 import java.util.*;
+import java.util.stream.Stream;
 
 public class RenderRegionManager {
+    // The number of bytes which can be moved within region arenas each frame to defragment them
+    private static final int DEFRAGMENT_BYTES_PER_FRAME = 2 * 1024 * 1024;
+
     private final Long2ReferenceOpenHashMap<RenderRegion> regions = new Long2ReferenceOpenHashMap<>();
+    private final Long2ReferenceOpenHashMap<RenderRegionGroup> groups = new Long2ReferenceOpenHashMap<>();
+
+    // The regions which have lost all of their sections since the last cleanup, and might need to be deleted
+    private final Set<RenderRegion> emptiedRegions = new ReferenceOpenHashSet<>();
 
     private final StagingBuffer stagingBuffer;
+    private final ChunkVertexType vertexType;
+
+    // The number of meshes which were identical to the mesh already on the device, and the bytes not uploaded for them
+    private long unchangedMeshes;
+    private long unchangedBytes;
+
+    // The total number of bytes which have been uploaded into region arenas
+    private long uploadedBytes;
+
+    // Re-used between frames when testing the visibility of region groups and regions
+    private final List<RenderRegionGroup> visibilityGroups = new ArrayList<>();
+    private final List<RenderRegion> visibilityRegions = new ArrayList<>();
+    private final AabbBatch visibilityBounds = new AabbBatch();
+    private RenderRegionVisibility[] visibilityResults = new RenderRegionVisibility[0];
 
-    public RenderRegionManager(CommandList commandList) {
+    public RenderRegionManager(CommandList commandList, ChunkVertexType vertexType) {
         this.stagingBuffer = createStagingBuffer(commandList);
+        this.vertexType = vertexType;
     }
 
-    public void updateVisibility(FrustumExtended frustum) {
-        for (RenderRegion region : this.regions.values()) {
-            if (!region.isEmpty()) {
-                region.updateVisibility(frustum);
+    /**
+     * Tests every region which contains sections against the frustum which the given culler was set up with. Groups of
+     * regions are tested first, and only the regions of groups which are partially visible are tested themselves.
+     */
+    public void updateVisibility(BatchFrustumCuller culler) {
+        List<RenderRegionGroup> groups = this.visibilityGroups;
+        groups.clear();
+        groups.addAll(this.groups.values());
+
+        AabbBatch bounds = this.visibilityBounds;
+        bounds.clear();
+
+        for (RenderRegionGroup group : groups) {
+            group.addBounds(bounds);
+        }
+
+        RenderRegionVisibility[] results = this.testContainment(culler, bounds);
+
+        List<RenderRegion> regions = this.visibilityRegions;
+        regions.clear();
+
+        // The results are read before the batch is re-used for the regions below
+        for (int i = 0; i < groups.size(); i++) {
+            RenderRegionVisibility visibility = results[i];
+
+            for (RenderRegion region : groups.get(i).getRegions()) {
+                if (visibility == RenderRegionVisibility.VISIBLE) {
+                    regions.add(region);
+                } else {
+                    region.setVisibility(visibility);
+                }
             }
         }
+
+        bounds.clear();
+
+        for (RenderRegion region : regions) {
+            region.addBounds(bounds);
+        }
+
+        results = this.testContainment(culler, bounds);
+
+        for (int i = 0; i < regions.size(); i++) {
+            regions.get(i).setVisibility(results[i]);
+        }
+    }
+
+    private RenderRegionVisibility[] testContainment(BatchFrustumCuller culler, AabbBatch bounds) {
+        if (this.visibilityResults.length < bounds.size()) {
+            this.visibilityResults = new RenderRegionVisibility[bounds.size() * 2];
+        }
+
+        culler.testContainment(bounds, this.visibilityResults);
+
+        return this.visibilityResults;
     }
 
     public void cleanup() {
-        this.stagingBuffer.flip();
+        try (CommandList commandList = RenderDevice.INSTANCE.createCommandList()) {
+            this.stagingBuffer.flip(commandList);
 
+            // Only the regions which have lost their sections need to be checked, rather than every loaded region
+            for (RenderRegion region : this.emptiedRegions) {
+                if (region.isEmpty()) {
+                    this.deleteRegion(commandList, region);
+                }
+            }
+
+            this.emptiedRegions.clear();
+
+            this.compactRegions(commandList);
+        }
+    }
+
+    /**
+     * Spreads the work of compacting region arenas over many frames, instead of only compacting an arena in a single
+     * copy when it needs to grow. Arenas which have been mostly empty for a while are shrunk.
+     */
+    private void compactRegions(CommandList commandList) {
+        int budget = DEFRAGMENT_BYTES_PER_FRAME;
+
+        for (RenderRegion region : this.regions.values()) {
+            RenderRegion.RenderRegionArenas arenas = region.getArenas();
+
+            if (arenas == null) {
+                continue;
+            }
+
+            arenas.shrink(commandList, false);
+
+            if (budget > 0) {
+                budget -= arenas.defragment(commandList, budget);
+            }
+        }
+    }
+
+    /**
+     * Releases the device memory of regions which have had meshes evicted from them. Arenas which are now empty are
+     * deleted, and all others are shrunk to fit their remaining contents.
+     */
+    public void releaseMemory(Collection<RenderRegion> regions) {
         try (CommandList commandList = RenderDevice.INSTANCE.createCommandList()) {
-            Iterator<RenderRegion> it = this.regions.values()
-                    .iterator();
+            for (RenderRegion region : regions) {
+                RenderRegion.RenderRegionArenas arenas = region.getArenas();
 
-            while (it.hasNext()) {
-                RenderRegion region = it.next();
+                if (arenas == null) {
+                    continue;
+                }
 
-                if (region.isEmpty()) {
+                if (arenas.isEmpty()) {
                     region.deleteResources(commandList);
-
-                    it.remove();
+                } else {
+                    arenas.shrink(commandList, true);
                 }
             }
         }
     }
 
+    public long getDeviceUsedMemory() {
+        long sum = 0;
+
+        for (RenderRegion region : this.regions.values()) {
+            RenderRegion.RenderRegionArenas arenas = region.getArenas();
+
+            if (arenas != null) {
+                sum += arenas.getDeviceUsedMemory();
+            }
+        }
+
+        return sum;
+    }
+
+    public long getDeviceAllocatedMemory() {
+        long sum = 0;
+
+        for (RenderRegion region : this.regions.values()) {
+            RenderRegion.RenderRegionArenas arenas = region.getArenas();
+
+            if (arenas != null) {
+                sum += arenas.getDeviceAllocatedMemory();
+            }
+        }
+
+        return sum;
+    }
+
+    public long getDeviceFragmentedMemory() {
+        long sum = 0;
+
+        for (RenderRegion region : this.regions.values()) {
+            RenderRegion.RenderRegionArenas arenas = region.getArenas();
+
+            if (arenas != null) {
+                sum += arenas.getDeviceFragmentedMemory();
+            }
+        }
+
+        return sum;
+    }
+
     public void upload(CommandList commandList, Iterator<ChunkBuildResult> queue) {
         for (Map.Entry<RenderRegion, List<ChunkBuildResult>> entry : this.setupUploadBatches(queue).entrySet()) {
             RenderRegion region = entry.getKey();
@@ -63,7 +225,9 @@ public class RenderRegionManager {
             this.upload(commandList, region, uploadQueue);
 
             for (ChunkBuildResult result : uploadQueue) {
-                result.render.onBuildFinished(result);
+                if (!result.isSortResult()) {
+                    result.render.onBuildFinished(result);
+                }
 
                 result.delete();
             }
@@ -72,9 +236,20 @@ public class RenderRegionManager {
 
     private void upload(CommandList commandList, RenderRegion region, List<ChunkBuildResult> results) {
         List<PendingSectionUpload> sectionUploads = new ArrayList<>();
+        Map<ChunkGraphicsState, PendingIndexUpload> indexUploads = new Reference2ObjectLinkedOpenHashMap<>();
 
         for (ChunkBuildResult result : results) {
+            if (result.isSortResult()) {
+                continue;
+            }
+
             for (BlockRenderPass pass : BlockRenderPass.VALUES) {
+                ChunkMeshData meshData = result.getMesh(pass);
+
+                if (meshData != null && this.tryReuseGraphicsState(result.render.getGraphicsState(pass), meshData, indexUploads)) {
+                    continue;
+                }
+
                 ChunkGraphicsState graphics = result.render.setGraphicsState(pass, null);
 
                 // De-allocate all storage for data we're about to replace
@@ -83,27 +258,63 @@ public class RenderRegionManager {
                     graphics.delete();
                 }
 
-                ChunkMeshData meshData = result.getMesh(pass);
-
                 if (meshData != null) {
                     IndexedVertexData vertexData = meshData.getVertexData();
 
+                    // Meshes drawn using the shared index buffer have no index data to upload
+                    PendingUpload indicesUpload = vertexData.indexBuffer() != null ? new PendingUpload(vertexData.indexBuffer()) : null;
+
                     sectionUploads.add(new PendingSectionUpload(result.render, meshData, pass,
-                            new PendingUpload(vertexData.vertexBuffer()),
-                            new PendingUpload(vertexData.indexBuffer())));
+                            new PendingUpload(vertexData.vertexBuffer()), indicesUpload));
                 }
             }
         }
 
+        // Sort results are collected after all rebuilds, since a rebuild of the same section in this batch replaces
+        // the graphics state which the sorted indices were created for
+        for (ChunkBuildResult result : results) {
+            if (result.isSortResult()) {
+                this.collectIndexUploads(result, indexUploads);
+            }
+        }
+
         // If we have nothing to upload, abort!
-        if (sectionUploads.isEmpty()) {
+        if (sectionUploads.isEmpty() && indexUploads.isEmpty()) {
             return;
         }
 
+        ChunkUploadEvent event = new ChunkUploadEvent();
+        event.begin();
+
         RenderRegion.RenderRegionArenas arenas = region.getOrCreateArenas(commandList);
 
-        boolean bufferChanged = arenas.vertexBuffers.upload(commandList, sectionUploads.stream().map(i -> i.vertexUpload));
-        bufferChanged |= arenas.indexBuffers.upload(commandList, sectionUploads.stream().map(i -> i.indicesUpload));
+        boolean bufferChanged = false;
+
+        if (!sectionUploads.isEmpty()) {
+            bufferChanged |= arenas.vertexBuffers.upload(commandList, sectionUploads.stream().map(i -> i.vertexUpload));
+        }
+
+        List<PendingUpload> pendingIndexUploads = Stream.concat(sectionUploads.stream().map(i -> i.indicesUpload).filter(Objects::nonNull),
+                indexUploads.values().stream().map(PendingIndexUpload::upload)).toList();
+
+        // Only translucent geometry has index data of its own, so many batches don't need to touch the index arena
+        if (!pendingIndexUploads.isEmpty()) {
+            bufferChanged |= arenas.indexBuffers.upload(commandList, pendingIndexUploads.stream());
+        }
+
+        long bytes = 0;
+
+        for (PendingSectionUpload upload : sectionUploads) {
+            bytes += upload.vertexUpload.getLength();
+        }
+
+        for (PendingUpload upload : pendingIndexUploads) {
+            bytes += upload.getLength();
+        }
+
+        this.uploadedBytes += bytes;
+
+        event.commit(sectionUploads.size() + indexUploads.size(), bytes);
 
         // If any of the buffers changed, the tessellation will need to be updated
         // Once invalidated the tessellation will be re-created on the next attempted use
@@ -113,7 +324,89 @@ public class RenderRegionManager {
 
         // Collect the upload results
         for (PendingSectionUpload upload : sectionUploads) {
-            upload.section.setGraphicsState(upload.pass, new ChunkGraphicsState(upload.vertexUpload.getResult(), upload.indicesUpload.getResult(), upload.meshData));
+            GlBufferSegment indexSegment = upload.indicesUpload != null ? upload.indicesUpload.getResult() : null;
+
+            upload.section.setGraphicsState(upload.pass, new ChunkGraphicsState(upload.vertexUpload.getResult(), indexSegment, upload.meshData));
+        }
+
+        for (Map.Entry<ChunkGraphicsState, PendingIndexUpload> entry : indexUploads.entrySet()) {
+            PendingIndexUpload upload = entry.getValue();
+            entry.getKey().setIndexSegment(upload.upload().getResult(), upload.indexHash());
+        }
+    }
+
+    /**
+     * Many rebuilds produce the same mesh as before, such as when a neighbouring block or the light around a section
+     * changes without affecting it. In that case, the data already on the device is kept and nothing is uploaded.
+     * Sorted meshes with the same vertex data only differ in the order of their quads, so only their index data is
+     * replaced, in the same way as the result of a sort task.
+     *
+     * @return True if the graphics state was kept for the new mesh, otherwise false if it needs to be replaced
+     */
+    private boolean tryReuseGraphicsState(ChunkGraphicsState graphics, ChunkMeshData meshData, Map<ChunkGraphicsState, PendingIndexUpload> indexUploads) {
+        if (graphics == null || !graphics.hasSameVertexData(meshData)) {
+            return false;
+        }
+
+        NativeBuffer indexBuffer = meshData.getVertexData().indexBuffer();
+
+        if (!graphics.hasSameIndexData(meshData)) {
+            if (meshData.getTranslucentQuads() == null || graphics.getIndexSegment() == null || indexBuffer == null) {
+                return false;
+            }
+
+            if (!indexUploads.containsKey(graphics)) {
+                graphics.getIndexSegment()
+                        .delete();
+            }
+
+            indexUploads.put(graphics, new PendingIndexUpload(new PendingUpload(indexBuffer), meshData.getIndexHash()));
+            indexBuffer = null;
+        }
+
+        this.unchangedMeshes++;
+        this.unchangedBytes += meshData.getVertexData().vertexBuffer().getLength();
+
+        if (indexBuffer != null) {
+            this.unchangedBytes += indexBuffer.getLength();
+        }
+
+        return true;
+    }
+
+    public long getUploadedBytes() {
+        return this.uploadedBytes;
+    }
+
+    public long getUnchangedMeshCount() {
+        return this.unchangedMeshes;
+    }
+
+    public long getUnchangedBytes() {
+        return this.unchangedBytes;
+    }
+
+    /**
+     * Collects the re-sorted index buffers of a sort result which still apply to the current graphics state of the
+     * section. The index data being replaced is released right away so that its space can be re-used by the upload.
+     */
+    private void collectIndexUploads(ChunkBuildResult result, Map<ChunkGraphicsState, PendingIndexUpload> uploads) {
+        for (Map.Entry<BlockRenderPass, ChunkBuildResult.SortedIndexData> entry : result.sortedIndices.entrySet()) {
+            ChunkBuildResult.SortedIndexData data = entry.getValue();
+
+            // If the section was rebuilt since the sort was started, the indices no longer refer to its vertex data
+            if (result.render.getGraphicsState(entry.getKey()) != data.state()) {
+                continue;
+            }
+
+            // A newer sort of the same state in this batch replaces the older one, whose segment was already released
+            if (!uploads.containsKey(data.state())) {
+                data.state()
+                        .getIndexSegment()
+                        .delete();
+            }
+
+            uploads.put(data.state(), new PendingIndexUpload(new PendingUpload(data.indexBuffer()), data.indexHash()));
         }
     }
 
@@ -152,17 +445,48 @@ public class RenderRegionManager {
 
         if (region == null) {
             this.regions.put(key, region = RenderRegion.createRegionForChunk(this, x, y, z));
+
+            long groupKey = RenderRegionGroup.getGroupKeyForRegion(region);
+            RenderRegionGroup group = this.groups.get(groupKey);
+
+            if (group == null) {
+                this.groups.put(groupKey, group = RenderRegionGroup.createGroupForRegion(region));
+            }
+
+            group.addRegion(region);
         }
 
         return region;
     }
 
+    private void deleteRegion(CommandList commandList, RenderRegion region) {
+        region.deleteResources(commandList);
+
+        this.regions.remove(RenderRegion.getRegionKeyForChunk(region.getOriginX() >> 4, region.getOriginY() >> 4, region.getOriginZ() >> 4));
+
+        long groupKey = RenderRegionGroup.getGroupKeyForRegion(region);
+        RenderRegionGroup group = this.groups.get(groupKey);
+
+        group.removeRegion(region);
+
+        if (group.isEmpty()) {
+            this.groups.remove(groupKey);
+        }
+    }
+
+    void onRegionEmptied(RenderRegion region) {
+        this.emptiedRegions.add(region);
+    }
+
     public void delete(CommandList commandList) {
         for (RenderRegion region : this.regions.values()) {
             region.deleteResources(commandList);
         }
 
         this.regions.clear();
+        this.groups.clear();
+        this.emptiedRegions.clear();
+
         this.stagingBuffer.delete(commandList);
     }
 
@@ -175,12 +499,13 @@ public class RenderRegionManager {
     }
 
     protected RenderRegion.RenderRegionArenas createRegionArenas(CommandList commandList) {
-        return new RenderRegion.RenderRegionArenas(commandList, this.stagingBuffer);
+        return new RenderRegion.RenderRegionArenas(commandList, this.stagingBuffer,
+                this.vertexType.getBufferVertexFormat().getStride());
     }
 
     private static StagingBuffer createStagingBuffer(CommandList commandList) {
         if (SodiumClientMod.options().advanced.useAdvancedStagingBuffers && MappedStagingBuffer.isSupported(RenderDevice.INSTANCE)) {
-            return new MappedStagingBuffer(commandList);
+            return new MappedStagingBuffer(commandList, SodiumClientMod.options().advanced.useDirectMeshUploads);
         }
 
         return new FallbackStagingBuffer(commandList);
@@ -189,4 +514,7 @@ public class RenderRegionManager {
     private record PendingSectionUpload(RenderSection section, ChunkMeshData meshData, BlockRenderPass pass,
                                         PendingUpload vertexUpload, PendingUpload indicesUpload) {
     }
+
+    private record PendingIndexUpload(PendingUpload upload, long indexHash) {
+    }
 }
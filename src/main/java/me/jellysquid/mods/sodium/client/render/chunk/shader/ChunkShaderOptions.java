@@ -1,17 +1,23 @@
 package me.jellysquid.mods.sodium.client.render.chunk.shader;
 
 import me.jellysquid.mods.sodium.client.gl.shader.ShaderConstants;
+import me.jellysquid.mods.sodium.client.model.vertex.type.ChunkVertexType;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
 
-public record ChunkShaderOptions(ChunkFogMode fog, BlockRenderPass pass) {
+public record ChunkShaderOptions(ChunkFogMode fog, BlockRenderPass pass, ChunkVertexType vertexType, boolean greedyMeshing) {
     public ShaderConstants constants() {
         ShaderConstants.Builder constants = ShaderConstants.builder();
         constants.addAll(this.fog.getDefines());
+        constants.addAll(this.vertexType.getShaderDefines());
 
         if (this.pass.getAlphaCutoff() != 0.0f) {
             constants.add("ALPHA_CUTOFF", String.valueOf(this.pass.getAlphaCutoff()));
         }
 
+        if (this.greedyMeshing) {
+            constants.add("USE_GREEDY_MESHING");
+        }
+
         return constants.build();
     }
 }
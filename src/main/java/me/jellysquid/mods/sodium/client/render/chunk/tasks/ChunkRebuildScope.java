@@ -0,0 +1,31 @@
+package me.jellysquid.mods.sodium.client.render.chunk.tasks;
+
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkBlockGeometry;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
+import net.minecraft.util.math.BlockBox;
+
+/**
+ * Describes which blocks of a section a rebuild task needs to render, and what to keep from the previous build.
+ *
+ * @param blockUpdateVersion The block update version of the section when the task was created
+ * @param retainGeometry True if the per-block geometry should be kept for later incremental rebuilds
+ * @param previousGeometry The retained geometry of the last build, or null if every block must be rendered
+ * @param previousData The render data of the last build, or null if every block must be rendered
+ * @param dirtyBlocks The section-local region of blocks which must be rendered again, or null if every block must be
+ *                    rendered
+ */
+public record ChunkRebuildScope(int blockUpdateVersion, boolean retainGeometry, ChunkBlockGeometry previousGeometry,
+                                ChunkRenderData previousData, BlockBox dirtyBlocks) {
+    public static ChunkRebuildScope full(int blockUpdateVersion, boolean retainGeometry) {
+        return new ChunkRebuildScope(blockUpdateVersion, retainGeometry, null, null, null);
+    }
+
+    public static ChunkRebuildScope incremental(int blockUpdateVersion, ChunkBlockGeometry previousGeometry,
+                                                ChunkRenderData previousData, BlockBox dirtyBlocks) {
+        return new ChunkRebuildScope(blockUpdateVersion, true, previousGeometry, previousData, dirtyBlocks);
+    }
+
+    public boolean isIncremental() {
+        return this.previousGeometry != null;
+    }
+}
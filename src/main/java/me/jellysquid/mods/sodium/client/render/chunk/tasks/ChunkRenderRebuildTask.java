@@ -1,12 +1,15 @@
 package me.jellysquid.mods.sodium.client.render.chunk.tasks;
 
 import me.jellysquid.mods.sodium.client.render.chunk.RenderSection;
+import me.jellysquid.mods.sodium.client.render.chunk.cache.ChunkMeshCache;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildBuffers;
 import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildResult;
+import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkBlockGeometry;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkMeshData;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderBounds;
 import me.jellysquid.mods.sodium.client.render.chunk.data.ChunkRenderData;
 import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+import me.jellysquid.mods.sodium.client.render.pipeline.GreedyQuadMesher;
 import me.jellysquid.mods.sodium.client.render.pipeline.context.ChunkRenderCacheLocal;
 import me.jellysquid.mods.sodium.client.util.task.CancellationSource;
 import me.jellysquid.mods.sodium.client.world.WorldSlice;
@@ -20,8 +23,11 @@ import net.minecraft.client.render.RenderLayers;
 import net.minecraft.client.render.block.entity.BlockEntityRenderer;
 import net.minecraft.client.render.chunk.ChunkOcclusionDataBuilder;
 import net.minecraft.client.render.model.BakedModel;
+import net.minecraft.client.texture.Sprite;
 import net.minecraft.fluid.FluidState;
+import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
 
 import java.util.EnumMap;
 import java.util.Map;
@@ -37,11 +43,26 @@ public class ChunkRenderRebuildTask extends ChunkRenderBuildTask {
     private final RenderSection render;
     private final ChunkRenderContext context;
     private final int frame;
+    private final ChunkRebuildScope scope;
+
+    // The position of the camera used to sort translucent geometry, or null if it should not be sorted
+    private final Vec3d camera;
+
+    // The cache which full rebuilds are loaded from and stored into, or null if meshes are not cached
+    private final ChunkMeshCache meshCache;
 
     public ChunkRenderRebuildTask(RenderSection render, ChunkRenderContext context, int frame) {
+        this(render, context, frame, ChunkRebuildScope.full(-1, false), null, null);
+    }
+
+    public ChunkRenderRebuildTask(RenderSection render, ChunkRenderContext context, int frame, ChunkRebuildScope scope, Vec3d camera,
+                                  ChunkMeshCache meshCache) {
         this.render = render;
         this.context = context;
         this.frame = frame;
+        this.scope = scope;
+        this.camera = camera;
+        this.meshCache = meshCache;
     }
 
     @Override
@@ -50,29 +71,88 @@ public class ChunkRenderRebuildTask extends ChunkRenderBuildTask {
         ChunkOcclusionDataBuilder occluder = new ChunkOcclusionDataBuilder();
         ChunkRenderBounds.Builder bounds = new ChunkRenderBounds.Builder();
 
+        // The number of blocks which were marked as closed in the occluder
+        int closedBlocks = 0;
+
         buffers.init(renderData, this.render.getChunkId());
 
         cache.init(this.context);
 
         WorldSlice slice = cache.getWorldSlice();
 
-        int minX = this.render.getOriginX();
-        int minY = this.render.getOriginY();
-        int minZ = this.render.getOriginZ();
+        int originX = this.render.getOriginX();
+        int originY = this.render.getOriginY();
+        int originZ = this.render.getOriginZ();
+
+        Vec3d sortOrigin = null;
+
+        if (this.camera != null) {
+            sortOrigin = this.camera.subtract(originX, originY, originZ);
+        }
+
+        ChunkMeshCache.Key cacheKey = null;
+
+        // Incremental rebuilds depend on the previous build, so only full rebuilds can be cached
+        if (this.meshCache != null && !this.scope.isIncremental()) {
+            cacheKey = this.meshCache.createKey(slice, this.render.getChunkPos());
+
+            if (cacheKey != null) {
+                ChunkMeshCache.Entry entry = this.meshCache.load(cacheKey, slice, buffers, sortOrigin);
+
+                // The geometry of each block isn't cached, so the next rebuild of the section will be a full one
+                if (entry != null) {
+                    return new ChunkBuildResult(this.render, entry.data(), entry.meshes(), this.frame, null,
+                            this.scope.blockUpdateVersion());
+                }
+            }
+        }
+
+        BlockBox dirty = this.scope.dirtyBlocks();
+        ChunkBlockGeometry.Builder geometry = null;
+
+        if (this.scope.isIncremental()) {
+            geometry = new ChunkBlockGeometry.Builder(buffers.getVertexStride(), this.scope.previousGeometry(), dirty);
+        } else if (this.scope.retainGeometry()) {
+            geometry = new ChunkBlockGeometry.Builder(buffers.getVertexStride());
+        }
+
+        // Merged quads span multiple blocks, so they can't be used when the geometry of each block is retained
+        GreedyQuadMesher greedy = geometry == null ? cache.getGreedyMesher() : null;
+
+        if (greedy != null) {
+            greedy.reset();
+        }
+
+        int minX = originX;
+        int minY = originY;
+        int minZ = originZ;
 
         int maxX = minX + 16;
         int maxY = minY + 16;
         int maxZ = minZ + 16;
 
+        if (this.scope.isIncremental()) {
+            // Only render the blocks which have changed, the geometry of everything else is kept from the last build
+            minX = originX + dirty.getMinX();
+            minY = originY + dirty.getMinY();
+            minZ = originZ + dirty.getMinZ();
+
+            maxX = originX + dirty.getMaxX() + 1;
+            maxY = originY + dirty.getMaxY() + 1;
+            maxZ = originZ + dirty.getMaxZ() + 1;
+        }
+
         BlockPos.Mutable blockPos = new BlockPos.Mutable();
         BlockPos.Mutable offset = new BlockPos.Mutable();
 
         for (int y = minY; y < maxY; y++) {
-            if (cancellationSource.isCancelled()) {
-                return null;
-            }
-
             for (int z = minZ; z < maxZ; z++) {
+                // Check for cancellation on every row of blocks so that superseded tasks exit quickly, even when a
+                // single layer of the section is expensive to render
+                if (cancellationSource.isCancelled()) {
+                    return null;
+                }
+
                 for (int x = minX; x < maxX; x++) {
                     BlockState blockState = slice.getBlockState(x, y, z);
 
@@ -83,7 +163,12 @@ public class ChunkRenderRebuildTask extends ChunkRenderBuildTask {
                     blockPos.set(x, y, z);
                     offset.set(x & 15, y & 15, z & 15);
 
+                    if (geometry != null) {
+                        buffers.markBlockStart();
+                    }
+
                     boolean rendered = false;
+                    boolean closed = blockState.isOpaqueFullCube(slice, blockPos);
 
                     if (blockState.getRenderType() == BlockRenderType.MODEL) {
                         RenderLayer layer = RenderLayers.getBlockLayer(blockState);
@@ -93,7 +178,13 @@ public class ChunkRenderRebuildTask extends ChunkRenderBuildTask {
 
                         long seed = blockState.getRenderingSeed(blockPos);
 
-                        if (cache.getBlockRenderer().renderModel(slice, blockState, blockPos, offset, model, buffers.get(layer), true, seed)) {
+                        GreedyQuadMesher blockGreedy = null;
+
+                        if (greedy != null && closed && layer == RenderLayer.getSolid()) {
+                            blockGreedy = greedy;
+                        }
+
+                        if (cache.getBlockRenderer().renderModel(slice, blockState, blockPos, offset, model, buffers.get(layer), true, seed, blockGreedy)) {
                             rendered = true;
                         }
                     }
@@ -121,8 +212,27 @@ public class ChunkRenderRebuildTask extends ChunkRenderBuildTask {
                         }
                     }
 
-                    if (blockState.isOpaqueFullCube(slice, blockPos)) {
+                    if (geometry != null) {
+                        // The occlusion data and bounds are created from the retained geometry after all blocks have
+                        // been rendered, since the occluder can't be told about the same block twice
+                        int block = ChunkBlockGeometry.getBlockIndex(x & 15, y & 15, z & 15);
+
+                        if (closed) {
+                            geometry.setClosed(block);
+                        }
+
+                        if (rendered) {
+                            geometry.setRendered(block);
+                        }
+
+                        buffers.recordBlock(block, geometry);
+
+                        continue;
+                    }
+
+                    if (closed) {
                         occluder.markClosed(blockPos);
+                        closedBlocks++;
                     }
 
                     if (rendered) {
@@ -132,10 +242,37 @@ public class ChunkRenderRebuildTask extends ChunkRenderBuildTask {
             }
         }
 
+        if (cancellationSource.isCancelled()) {
+            return null;
+        }
+
+        if (greedy != null) {
+            greedy.flush(buffers.get(RenderLayer.getSolid()));
+        }
+
+        ChunkBlockGeometry retained = null;
+
+        if (geometry != null) {
+            retained = geometry.build(dirty);
+
+            closedBlocks += this.addRetainedBlocks(retained, occluder, bounds);
+        }
+
+        if (this.scope.isIncremental()) {
+            this.addPreviousData(renderData, dirty);
+        }
+
         Map<BlockRenderPass, ChunkMeshData> meshes = new EnumMap<>(BlockRenderPass.class);
 
         for (BlockRenderPass pass : BlockRenderPass.VALUES) {
-            ChunkMeshData mesh = buffers.createMesh(pass);
+            Vec3d passSortOrigin = pass.isTranslucent() ? sortOrigin : null;
+            ChunkMeshData mesh;
+
+            if (this.scope.isIncremental()) {
+                mesh = buffers.createMesh(pass, retained, passSortOrigin);
+            } else {
+                mesh = buffers.createMesh(pass, passSortOrigin);
+            }
 
             if (mesh != null) {
                 meshes.put(pass, mesh);
@@ -143,9 +280,77 @@ public class ChunkRenderRebuildTask extends ChunkRenderBuildTask {
         }
 
         renderData.setOcclusionData(occluder.build());
+        renderData.setOpaque(closedBlocks == ChunkBlockGeometry.BLOCK_COUNT);
         renderData.setBounds(bounds.build(this.render.getChunkPos()));
 
-        return new ChunkBuildResult(this.render, renderData.build(), meshes, this.frame);
+        ChunkRenderData data = renderData.build();
+
+        // Storing an entry reads the meshes back, which would be far too slow from memory which is mapped for uploads
+        if (cacheKey != null && buffers.getMeshAllocator().isReadable()) {
+            this.meshCache.store(cacheKey, data, meshes);
+        }
+
+        return new ChunkBuildResult(this.render, data, meshes, this.frame, retained,
+                this.scope.blockUpdateVersion());
+    }
+
+    /**
+     * @return The number of retained blocks which were marked as closed in the occluder
+     */
+    private int addRetainedBlocks(ChunkBlockGeometry geometry, ChunkOcclusionDataBuilder occluder, ChunkRenderBounds.Builder bounds) {
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        int closedBlocks = 0;
+
+        for (int block = 0; block < ChunkBlockGeometry.BLOCK_COUNT; block++) {
+            int x = block & 15;
+            int y = (block >> 8) & 15;
+            int z = (block >> 4) & 15;
+
+            if (geometry.isClosed(block)) {
+                occluder.markClosed(pos.set(x, y, z));
+                closedBlocks++;
+            }
+
+            if (geometry.isRendered(block)) {
+                bounds.addBlock(x, y, z);
+            }
+        }
+
+        return closedBlocks;
+    }
+
+    /**
+     * Copies the block entities and animated sprites of the previous build which belong to blocks outside the dirty
+     * region. Sprites can't be attributed to a single block, so all of them are kept until the next full rebuild.
+     */
+    private void addPreviousData(ChunkRenderData.Builder renderData, BlockBox dirty) {
+        ChunkRenderData previous = this.scope.previousData();
+
+        for (BlockEntity entity : previous.getBlockEntities()) {
+            if (!this.isInside(dirty, entity.getPos())) {
+                renderData.addBlockEntity(entity, true);
+            }
+        }
+
+        for (BlockEntity entity : previous.getGlobalBlockEntities()) {
+            if (!this.isInside(dirty, entity.getPos())) {
+                renderData.addBlockEntity(entity, false);
+            }
+        }
+
+        for (Sprite sprite : previous.getAnimatedSprites()) {
+            renderData.addSprite(sprite);
+        }
+    }
+
+    private boolean isInside(BlockBox dirty, BlockPos pos) {
+        int x = pos.getX() - this.render.getOriginX();
+        int y = pos.getY() - this.render.getOriginY();
+        int z = pos.getZ() - this.render.getOriginZ();
+
+        return x >= dirty.getMinX() && x <= dirty.getMaxX() &&
+                y >= dirty.getMinY() && y <= dirty.getMaxY() &&
+                z >= dirty.getMinZ() && z <= dirty.getMaxZ();
     }
 
     @Override
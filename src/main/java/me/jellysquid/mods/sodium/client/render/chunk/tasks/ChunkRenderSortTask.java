@@ -0,0 +1,70 @@
+package me.jellysquid.mods.sodium.client.render.chunk.tasks;
+
+import me.jellysquid.mods.sodium.client.render.chunk.ChunkGraphicsState;
+import me.jellysquid.mods.sodium.client.render.chunk.RenderSection;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildBuffers;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.ChunkBuildResult;
+import me.jellysquid.mods.sodium.client.render.chunk.data.TranslucentQuadData;
+import me.jellysquid.mods.sodium.client.render.chunk.passes.BlockRenderPass;
+import me.jellysquid.mods.sodium.client.render.pipeline.context.ChunkRenderCacheLocal;
+import me.jellysquid.mods.sodium.client.util.NativeBuffer;
+import me.jellysquid.mods.sodium.client.util.task.CancellationSource;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Sorts the translucent geometry of a section again after the camera has moved. Only the index buffers are rebuilt
+ * from the quad data which was kept after the section was last built, so no blocks need to be rendered.
+ */
+public class ChunkRenderSortTask extends ChunkRenderBuildTask {
+    private final RenderSection render;
+    private final Map<BlockRenderPass, ChunkGraphicsState> states;
+    private final float cameraX, cameraY, cameraZ;
+    private final int frame;
+
+    /**
+     * @param states The graphics states of each translucent pass which should be sorted
+     * @param cameraX The x-coordinate of the camera, relative to the origin of the section
+     * @param cameraY The y-coordinate of the camera, relative to the origin of the section
+     * @param cameraZ The z-coordinate of the camera, relative to the origin of the section
+     */
+    public ChunkRenderSortTask(RenderSection render, Map<BlockRenderPass, ChunkGraphicsState> states,
+                               float cameraX, float cameraY, float cameraZ, int frame) {
+        this.render = render;
+        this.states = states;
+        this.cameraX = cameraX;
+        this.cameraY = cameraY;
+        this.cameraZ = cameraZ;
+        this.frame = frame;
+    }
+
+    @Override
+    public ChunkBuildResult performBuild(ChunkRenderCacheLocal cache, ChunkBuildBuffers buffers, CancellationSource cancellationSource) {
+        Map<BlockRenderPass, ChunkBuildResult.SortedIndexData> indices = new EnumMap<>(BlockRenderPass.class);
+
+        for (Map.Entry<BlockRenderPass, ChunkGraphicsState> entry : this.states.entrySet()) {
+            if (cancellationSource.isCancelled()) {
+                for (ChunkBuildResult.SortedIndexData data : indices.values()) {
+                    data.indexBuffer().free();
+                }
+
+                return null;
+            }
+
+            ChunkGraphicsState state = entry.getValue();
+            TranslucentQuadData quads = state.getTranslucentQuads();
+
+            NativeBuffer buffer = quads.sort(this.cameraX, this.cameraY, this.cameraZ, buffers.getMeshAllocator());
+
+            indices.put(entry.getKey(), new ChunkBuildResult.SortedIndexData(state, buffer));
+        }
+
+        return ChunkBuildResult.sorted(this.render, indices, this.frame);
+    }
+
+    @Override
+    public void releaseResources() {
+
+    }
+}
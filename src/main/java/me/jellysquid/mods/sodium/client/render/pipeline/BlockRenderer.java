@@ -45,19 +45,37 @@ public class BlockRenderer {
     private final boolean useAmbientOcclusion;
 
     public BlockRenderer(MinecraftClient client, LightPipelineProvider lighters, BiomeColorBlender biomeColorBlender) {
-        this.blockColors = (BlockColorsExtended) client.getBlockColors();
+        this((BlockColorsExtended) client.getBlockColors(), lighters, biomeColorBlender, MinecraftClient.isAmbientOcclusionEnabled());
+    }
+
+    public BlockRenderer(BlockColorsExtended blockColors, LightPipelineProvider lighters, BiomeColorBlender biomeColorBlender,
+                         boolean useAmbientOcclusion) {
+        this.blockColors = blockColors;
         this.biomeColorBlender = biomeColorBlender;
 
         this.lighters = lighters;
 
         this.occlusionCache = new BlockOcclusionCache();
-        this.useAmbientOcclusion = MinecraftClient.isAmbientOcclusionEnabled();
+        this.useAmbientOcclusion = useAmbientOcclusion;
     }
 
     public boolean renderModel(BlockRenderView world, BlockState state, BlockPos pos, BlockPos origin, BakedModel model, ChunkModelBuilder buffers, boolean cull, long seed) {
+        return this.renderModel(world, state, pos, origin, model, buffers, cull, seed, null);
+    }
+
+    /**
+     * Renders a block model. If a greedy mesher is given, any full faces of the block which can be merged with their
+     * neighbors are passed to it instead of being written to the buffers immediately.
+     */
+    public boolean renderModel(BlockRenderView world, BlockState state, BlockPos pos, BlockPos origin, BakedModel model, ChunkModelBuilder buffers, boolean cull, long seed,
+                               GreedyQuadMesher greedy) {
         LightPipeline lighter = this.lighters.getLighter(this.getLightingMode(state, model));
         Vec3d offset = state.getModelOffset(world, pos);
 
+        if (offset != Vec3d.ZERO) {
+            greedy = null;
+        }
+
         boolean rendered = false;
 
         for (Direction dir : DirectionUtil.ALL_DIRECTIONS) {
@@ -70,7 +88,11 @@ public class BlockRenderer {
             }
 
             if (!cull || this.occlusionCache.shouldDrawSide(state, world, pos, dir)) {
-                this.renderQuadList(world, state, pos, origin, lighter, offset, buffers, sided, ModelQuadFacing.fromDirection(dir));
+                // Faces made of several quads are drawn in the order of their quads, which merged quads can't keep to
+                // as they are written after the rest of the section
+                GreedyQuadMesher sideGreedy = sided.size() == 1 ? greedy : null;
+
+                this.renderQuadList(world, state, pos, origin, lighter, offset, buffers, sided, ModelQuadFacing.fromDirection(dir), sideGreedy);
 
                 rendered = true;
             }
@@ -81,7 +103,7 @@ public class BlockRenderer {
         List<BakedQuad> all = model.getQuads(state, null, this.random);
 
         if (!all.isEmpty()) {
-            this.renderQuadList(world, state, pos, origin, lighter, offset, buffers, all, ModelQuadFacing.UNASSIGNED);
+            this.renderQuadList(world, state, pos, origin, lighter, offset, buffers, all, ModelQuadFacing.UNASSIGNED, null);
 
             rendered = true;
         }
@@ -90,7 +112,7 @@ public class BlockRenderer {
     }
 
     private void renderQuadList(BlockRenderView world, BlockState state, BlockPos pos, BlockPos origin, LightPipeline lighter, Vec3d offset,
-                                ChunkModelBuilder buffers, List<BakedQuad> quads, ModelQuadFacing facing) {
+                                ChunkModelBuilder buffers, List<BakedQuad> quads, ModelQuadFacing facing, GreedyQuadMesher greedy) {
         ModelQuadColorProvider<BlockState> colorizer = null;
 
         ModelVertexSink vertices = buffers.getVertexSink();
@@ -110,16 +132,16 @@ public class BlockRenderer {
                 colorizer = this.blockColors.getColorProvider(state);
             }
 
-            this.renderQuad(world, state, pos, origin, vertices, indices, offset, colorizer, quad, light, buffers);
+            this.renderQuad(world, state, pos, origin, vertices, indices, offset, colorizer, quad, light, buffers, facing, greedy);
         }
 
         vertices.flush();
     }
 
     private void renderQuad(BlockRenderView world, BlockState state, BlockPos pos, BlockPos origin, ModelVertexSink vertices, IndexBufferBuilder indices, Vec3d blockOffset,
-                            ModelQuadColorProvider<BlockState> colorProvider, BakedQuad bakedQuad, QuadLightData light, ChunkModelBuilder model) {
+                            ModelQuadColorProvider<BlockState> colorProvider, BakedQuad bakedQuad, QuadLightData light, ChunkModelBuilder model,
+                            ModelQuadFacing facing, GreedyQuadMesher greedy) {
         ModelQuadView src = (ModelQuadView) bakedQuad;
-        ModelQuadOrientation orientation = ModelQuadOrientation.orientByBrightness(light.br);
 
         int[] colors = null;
 
@@ -127,6 +149,12 @@ public class BlockRenderer {
             colors = this.biomeColorBlender.getColors(world, pos, src, colorProvider, state);
         }
 
+        if (greedy != null && greedy.add(facing, origin, src, colors, light)) {
+            return;
+        }
+
+        ModelQuadOrientation orientation = ModelQuadOrientation.orientByBrightness(light.br);
+
         int vertexStart = vertices.getVertexCount();
 
         for (int i = 0; i < 4; i++) {
@@ -0,0 +1,435 @@
+package me.jellysquid.mods.sodium.client.render.pipeline;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import me.jellysquid.mods.sodium.client.model.IndexBufferBuilder;
+import me.jellysquid.mods.sodium.client.model.light.data.QuadLightData;
+import me.jellysquid.mods.sodium.client.model.quad.ModelQuadView;
+import me.jellysquid.mods.sodium.client.model.quad.properties.ModelQuadFacing;
+import me.jellysquid.mods.sodium.client.model.quad.properties.ModelQuadWinding;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.buffers.ChunkModelBuilder;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ModelVertexSink;
+import me.jellysquid.mods.sodium.client.util.color.ColorABGR;
+import net.minecraft.client.texture.Sprite;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Collects the full cube faces of opaque blocks in a chunk section and merges adjacent faces with identical texture,
+ * color and light into larger quads. Since the texture atlas can't be repeated by the sampler, merged quads carry the
+ * tiling coordinates of each corner in otherwise unused bits of the vertex and the shader wraps them within the sprite.
+ *
+ * Faces are only merged when all four of their corners share the same color and light values, so the result is
+ * identical to the unmerged geometry even with smooth lighting enabled.
+ */
+public class GreedyQuadMesher {
+    /**
+     * Set in the chunk ID of every vertex belonging to a merged quad.
+     */
+    public static final int GREEDY_QUAD_FLAG = 1 << 8;
+
+    /**
+     * The log2 of the sprite's size in multiples of 16 pixels is stored in the chunk ID starting from this bit.
+     */
+    public static final int SPRITE_SCALE_SHIFT = 9;
+
+    /**
+     * The tiling coordinates are stored in the upper byte of each light map coordinate with this bias applied, since
+     * the corner of a merged quad can extend in either direction from the sprite's origin.
+     */
+    public static final int TILE_COORD_BIAS = 16;
+
+    private static final int MAX_SPRITE_SCALE = 3;
+
+    private static final float EPSILON = 1.0e-5f;
+
+    // The axes (0 = x, 1 = y, 2 = z) which span the plane of each facing, and the axis along its normal
+    private static final int[] AXIS_A = new int[] { 0, 0, 2, 2, 0, 0 };
+    private static final int[] AXIS_B = new int[] { 2, 2, 1, 1, 1, 1 };
+    private static final int[] AXIS_NORMAL = new int[] { 1, 1, 0, 0, 2, 2 };
+
+    private static final boolean[] POSITIVE = new boolean[] { true, false, true, false, true, false };
+
+    // The plane coordinates of each corner of a face, in the order used for encoding the layout of a quad
+    private static final int[] CORNER_A = new int[] { 0, 1, 1, 0 };
+    private static final int[] CORNER_B = new int[] { 0, 0, 1, 1 };
+
+    // [facing][layer << 8 | b << 4 | a], holding the material ID + 1 of each face or zero if empty
+    private final int[][] faces = new int[ModelQuadFacing.DIRECTIONS.length][16 * 16 * 16];
+    private final boolean[] hasFaces = new boolean[ModelQuadFacing.DIRECTIONS.length];
+
+    private final ObjectArrayList<Material> materials = new ObjectArrayList<>();
+    private final Object2IntOpenHashMap<Material> materialIds = new Object2IntOpenHashMap<>();
+
+    private final Material key = new Material();
+
+    private final float[] position = new float[3];
+    private final int[] corners = new int[4];
+    private final int[] cornerTexU = new int[4];
+    private final int[] cornerTexV = new int[4];
+
+    public GreedyQuadMesher() {
+        this.materialIds.defaultReturnValue(-1);
+    }
+
+    /**
+     * Resets the mesher so that it can be used for another chunk section.
+     */
+    public void reset() {
+        for (int i = 0; i < this.faces.length; i++) {
+            if (this.hasFaces[i]) {
+                Arrays.fill(this.faces[i], 0);
+                this.hasFaces[i] = false;
+            }
+        }
+
+        this.materials.clear();
+        this.materialIds.clear();
+    }
+
+    /**
+     * Tries to add a quad to the mesher instead of rendering it directly.
+     *
+     * @param facing The facing of the quad, which must be the same as the cull face of the quad
+     * @param origin The position of the block within the chunk section
+     * @param quad The quad to add
+     * @param colors The per-vertex colors of the quad, or null if the quad is not tinted
+     * @param light The light data of the quad
+     * @return True if the quad was accepted, otherwise false if it must be rendered normally
+     */
+    public boolean add(ModelQuadFacing facing, BlockPos origin, ModelQuadView quad, int[] colors, QuadLightData light) {
+        if (facing == ModelQuadFacing.UNASSIGNED) {
+            return false;
+        }
+
+        Sprite sprite = quad.getSprite();
+
+        if (sprite == null) {
+            return false;
+        }
+
+        int scale = getSpriteScale(sprite);
+
+        if (scale < 0) {
+            return false;
+        }
+
+        int color = ColorABGR.mul(colors != null ? colors[0] : 0xFFFFFFFF, light.br[0]);
+        int lm = light.lm[0];
+
+        for (int i = 1; i < 4; i++) {
+            if (light.lm[i] != lm || ColorABGR.mul(colors != null ? colors[i] : 0xFFFFFFFF, light.br[i]) != color) {
+                return false;
+            }
+        }
+
+        int f = facing.ordinal();
+
+        int layer = getComponent(origin, AXIS_NORMAL[f]);
+        int a = getComponent(origin, AXIS_A[f]);
+        int b = getComponent(origin, AXIS_B[f]);
+
+        int slot = (layer << 8) | (b << 4) | a;
+
+        // Only one quad can be stored for each face, so any further quads on the same face (such as the overlay of a
+        // grass block) must be rendered normally
+        if (this.faces[f][slot] != 0) {
+            return false;
+        }
+
+        int layout = this.getLayout(facing, quad, sprite);
+
+        if (layout < 0) {
+            return false;
+        }
+
+        Material key = this.key;
+        key.set(sprite, scale, color, lm, layout);
+
+        int id = this.materialIds.getInt(key);
+
+        if (id < 0) {
+            Material material = key.copy();
+
+            id = this.materials.size();
+
+            this.materials.add(material);
+            this.materialIds.put(material, id);
+        }
+
+        this.faces[f][slot] = id + 1;
+        this.hasFaces[f] = true;
+
+        return true;
+    }
+
+    /**
+     * Merges all the faces which have been added since the last reset and writes the resulting quads to the builder.
+     */
+    public void flush(ChunkModelBuilder builder) {
+        ModelVertexSink vertices = builder.getVertexSink();
+
+        for (ModelQuadFacing facing : ModelQuadFacing.DIRECTIONS) {
+            int f = facing.ordinal();
+
+            if (!this.hasFaces[f]) {
+                continue;
+            }
+
+            int[] faces = this.faces[f];
+            IndexBufferBuilder indices = builder.getIndexBufferBuilder(facing);
+
+            for (int layer = 0; layer < 16; layer++) {
+                int base = layer << 8;
+
+                for (int b = 0; b < 16; b++) {
+                    for (int a = 0; a < 16; a++) {
+                        int id = faces[base | (b << 4) | a];
+
+                        if (id == 0) {
+                            continue;
+                        }
+
+                        int width = 1;
+
+                        while (a + width < 16 && faces[base | (b << 4) | (a + width)] == id) {
+                            width++;
+                        }
+
+                        int height = 1;
+
+                        while (b + height < 16 && isRowFilled(faces, base | ((b + height) << 4), a, width, id)) {
+                            height++;
+                        }
+
+                        for (int j = 0; j < height; j++) {
+                            int row = base | ((b + j) << 4);
+                            Arrays.fill(faces, row | a, row | (a + width), 0);
+                        }
+
+                        vertices.ensureCapacity(4);
+
+                        int vertexStart = vertices.getVertexCount();
+
+                        this.writeQuad(vertices, builder.getChunkId(), f, layer, a, b, width, height, this.materials.get(id - 1));
+
+                        indices.add(vertexStart, ModelQuadWinding.CLOCKWISE);
+                    }
+                }
+            }
+
+            this.hasFaces[f] = false;
+        }
+
+        vertices.flush();
+
+        for (Material material : this.materials) {
+            builder.addSprite(material.sprite);
+        }
+
+        this.materials.clear();
+        this.materialIds.clear();
+    }
+
+    private void writeQuad(ModelVertexSink vertices, int chunkId, int f, int layer, int a, int b, int width, int height, Material material) {
+        int layout = material.layout;
+
+        // The sprite corner which the first, second and fourth corners of the face are mapped to
+        int u0 = layout & 1, v0 = (layout >> 1) & 1;
+        int u1 = (layout >> 2) & 1, v1 = (layout >> 3) & 1;
+        int u3 = (layout >> 4) & 1, v3 = (layout >> 5) & 1;
+
+        float[] position = this.position;
+        position[AXIS_NORMAL[f]] = POSITIVE[f] ? layer + 1 : layer;
+
+        int vertexChunkId = chunkId | GREEDY_QUAD_FLAG | (material.scale << SPRITE_SCALE_SHIFT);
+
+        for (int i = 0; i < 4; i++) {
+            int corner = (layout >> (6 + (i * 2))) & 3;
+
+            int ca = CORNER_A[corner] * width;
+            int cb = CORNER_B[corner] * height;
+
+            position[AXIS_A[f]] = a + ca;
+            position[AXIS_B[f]] = b + cb;
+
+            // Extend the texture mapping of a single face across the merged quad
+            int tu = u0 + ((u1 - u0) * ca) + ((u3 - u0) * cb);
+            int tv = v0 + ((v1 - v0) * ca) + ((v3 - v0) * cb);
+
+            int light = material.light | ((tu + TILE_COORD_BIAS) << 8) | ((tv + TILE_COORD_BIAS) << 24);
+
+            vertices.writeVertex(position[0], position[1], position[2], material.color,
+                    material.sprite.getMinU(), material.sprite.getMinV(), light, vertexChunkId);
+        }
+    }
+
+    /**
+     * Determines which corner of the face each vertex of the quad lies on and which corner of the sprite is mapped
+     * to each corner of the face. Returns -1 if the quad does not exactly cover the face or the texture does not
+     * exactly cover the sprite.
+     */
+    private int getLayout(ModelQuadFacing facing, ModelQuadView quad, Sprite sprite) {
+        int f = facing.ordinal();
+        int normal = POSITIVE[f] ? 1 : 0;
+
+        int[] corners = this.corners;
+        int seen = 0;
+
+        for (int i = 0; i < 4; i++) {
+            float[] position = this.position;
+            position[0] = quad.getX(i);
+            position[1] = quad.getY(i);
+            position[2] = quad.getZ(i);
+
+            int n = toUnit(position[AXIS_NORMAL[f]]);
+            int a = toUnit(position[AXIS_A[f]]);
+            int b = toUnit(position[AXIS_B[f]]);
+
+            if (n != normal || a < 0 || b < 0) {
+                return -1;
+            }
+
+            int corner = getCorner(a, b);
+
+            if ((seen & (1 << corner)) != 0) {
+                return -1;
+            }
+
+            seen |= 1 << corner;
+            corners[i] = corner;
+
+            int u = toSpriteCorner(quad.getTexU(i), sprite.getMinU(), sprite.getMaxU());
+            int v = toSpriteCorner(quad.getTexV(i), sprite.getMinV(), sprite.getMaxV());
+
+            if (u < 0 || v < 0) {
+                return -1;
+            }
+
+            this.cornerTexU[corner] = u;
+            this.cornerTexV[corner] = v;
+        }
+
+        int[] texU = this.cornerTexU;
+        int[] texV = this.cornerTexV;
+
+        // The texture must be mapped onto the face by a rotation or mirroring for it to be extended across a larger quad
+        if (texU[2] != texU[1] + texU[3] - texU[0] || texV[2] != texV[1] + texV[3] - texV[0]) {
+            return -1;
+        }
+
+        int layout = texU[0] | (texV[0] << 1) | (texU[1] << 2) | (texV[1] << 3) | (texU[3] << 4) | (texV[3] << 5);
+
+        for (int i = 0; i < 4; i++) {
+            layout |= corners[i] << (6 + (i * 2));
+        }
+
+        return layout;
+    }
+
+    private static boolean isRowFilled(int[] faces, int row, int a, int width, int id) {
+        for (int i = a; i < a + width; i++) {
+            if (faces[row | i] != id) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int getCorner(int a, int b) {
+        for (int corner = 0; corner < 4; corner++) {
+            if (CORNER_A[corner] == a && CORNER_B[corner] == b) {
+                return corner;
+            }
+        }
+
+        throw new IllegalArgumentException();
+    }
+
+    private static int getSpriteScale(Sprite sprite) {
+        int size = sprite.getWidth();
+
+        if (size != sprite.getHeight()) {
+            return -1;
+        }
+
+        for (int scale = 0; scale <= MAX_SPRITE_SCALE; scale++) {
+            if (size == (16 << scale)) {
+                return scale;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int getComponent(BlockPos pos, int axis) {
+        return switch (axis) {
+            case 0 -> pos.getX();
+            case 1 -> pos.getY();
+            case 2 -> pos.getZ();
+            default -> throw new IllegalArgumentException();
+        };
+    }
+
+    private static int toUnit(float value) {
+        if (Math.abs(value) < EPSILON) {
+            return 0;
+        } else if (Math.abs(value - 1.0f) < EPSILON) {
+            return 1;
+        }
+
+        return -1;
+    }
+
+    private static int toSpriteCorner(float value, float min, float max) {
+        if (Math.abs(value - min) < EPSILON) {
+            return 0;
+        } else if (Math.abs(value - max) < EPSILON) {
+            return 1;
+        }
+
+        return -1;
+    }
+
+    private static class Material {
+        private Sprite sprite;
+        private int scale;
+        private int color;
+        private int light;
+        private int layout;
+
+        void set(Sprite sprite, int scale, int color, int light, int layout) {
+            this.sprite = sprite;
+            this.scale = scale;
+            this.color = color;
+            this.light = light;
+            this.layout = layout;
+        }
+
+        Material copy() {
+            Material material = new Material();
+            material.set(this.sprite, this.scale, this.color, this.light, this.layout);
+
+            return material;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Material)) return false;
+
+            Material other = (Material) o;
+
+            return this.sprite == other.sprite && this.color == other.color && this.light == other.light &&
+                    this.layout == other.layout;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(this.sprite), this.color, this.light, this.layout);
+        }
+    }
+}
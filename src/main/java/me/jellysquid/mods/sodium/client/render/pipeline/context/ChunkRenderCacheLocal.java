@@ -1,11 +1,13 @@
 package me.jellysquid.mods.sodium.client.render.pipeline.context;
 
+import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import me.jellysquid.mods.sodium.client.model.light.LightPipelineProvider;
 import me.jellysquid.mods.sodium.client.model.light.cache.ArrayLightDataCache;
 import me.jellysquid.mods.sodium.client.model.quad.blender.BiomeColorBlender;
 import me.jellysquid.mods.sodium.client.render.pipeline.BlockRenderer;
 import me.jellysquid.mods.sodium.client.render.pipeline.ChunkRenderCache;
 import me.jellysquid.mods.sodium.client.render.pipeline.FluidRenderer;
+import me.jellysquid.mods.sodium.client.render.pipeline.GreedyQuadMesher;
 import me.jellysquid.mods.sodium.client.world.WorldSlice;
 import me.jellysquid.mods.sodium.client.world.cloned.ChunkRenderContext;
 import net.minecraft.client.MinecraftClient;
@@ -17,6 +19,7 @@ public class ChunkRenderCacheLocal extends ChunkRenderCache {
 
     private final BlockRenderer blockRenderer;
     private final FluidRenderer fluidRenderer;
+    private final GreedyQuadMesher greedyMesher;
 
     private final BlockModels blockModels;
     private final WorldSlice worldSlice;
@@ -30,6 +33,7 @@ public class ChunkRenderCacheLocal extends ChunkRenderCache {
 
         this.blockRenderer = new BlockRenderer(client, lightPipelineProvider, biomeColorBlender);
         this.fluidRenderer = new FluidRenderer(lightPipelineProvider, biomeColorBlender);
+        this.greedyMesher = SodiumClientMod.options().advanced.isGreedyMeshingEnabled() ? new GreedyQuadMesher() : null;
 
         this.blockModels = client.getBakedModelManager().getBlockModels();
     }
@@ -46,6 +50,13 @@ public class ChunkRenderCacheLocal extends ChunkRenderCache {
         return this.fluidRenderer;
     }
 
+    /**
+     * @return The greedy mesher for the opaque geometry of chunk sections, or null if greedy meshing is disabled
+     */
+    public GreedyQuadMesher getGreedyMesher() {
+        return this.greedyMesher;
+    }
+
     public void init(ChunkRenderContext context) {
         this.lightDataCache.reset(context.getOrigin());
         this.worldSlice.copyData(context);
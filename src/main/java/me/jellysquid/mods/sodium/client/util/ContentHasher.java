@@ -0,0 +1,81 @@
+package me.jellysquid.mods.sodium.client.util;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hashes the contents of mesh buffers, which lets two buffers be compared without keeping a copy of either of them
+ * around. Buffers are always hashed from the data they are produced from, as the buffers themselves can live in
+ * write-only mapped memory which must never be read back.
+ *
+ * Values can either be hashed one at a time as they are written, or a whole block of memory can be hashed at once
+ * with {@link ContentHasher#hash(ByteBuffer)}. The two don't produce the same hash for the same data.
+ */
+public class ContentHasher {
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+
+    private long hash = PRIME_3;
+    private int count;
+
+    public void putInt(int value) {
+        this.hash = mix(this.hash, value);
+        this.count++;
+    }
+
+    public void putLong(long value) {
+        this.hash = mix(this.hash, value);
+        this.count++;
+    }
+
+    /**
+     * @return The hash of every value which has been added
+     */
+    public long finish() {
+        return avalanche(this.hash ^ this.count);
+    }
+
+    /**
+     * @return A hash of the remaining bytes of the buffer
+     */
+    public static long hash(ByteBuffer buffer) {
+        long address = MemoryUtil.memAddress(buffer);
+        int length = buffer.remaining();
+
+        // Four independent lanes are used so that the CPU can work on multiple words at once
+        long h0 = PRIME_1, h1 = PRIME_2, h2 = PRIME_3, h3 = PRIME_4;
+
+        int i = 0;
+
+        for (; i + 32 <= length; i += 32) {
+            h0 = mix(h0, MemoryUtil.memGetLong(address + i));
+            h1 = mix(h1, MemoryUtil.memGetLong(address + i + 8));
+            h2 = mix(h2, MemoryUtil.memGetLong(address + i + 16));
+            h3 = mix(h3, MemoryUtil.memGetLong(address + i + 24));
+        }
+
+        long hash = Long.rotateLeft(h0, 1) + Long.rotateLeft(h1, 7) + Long.rotateLeft(h2, 12) + Long.rotateLeft(h3, 18);
+        hash ^= length;
+
+        for (; i < length; i++) {
+            hash = mix(hash, MemoryUtil.memGetByte(address + i));
+        }
+
+        return avalanche(hash);
+    }
+
+    private static long mix(long hash, long value) {
+        return Long.rotateLeft(hash + (value * PRIME_2), 31) * PRIME_1;
+    }
+
+    private static long avalanche(long hash) {
+        hash ^= hash >>> 33;
+        hash *= PRIME_2;
+        hash ^= hash >>> 29;
+
+        return hash;
+    }
+}
@@ -1,8 +1,5 @@
 package me.jellysquid.mods.sodium.client.util;
 
-import it.unimi.dsi.fastutil.objects.Reference2ReferenceMap;
-import it.unimi.dsi.fastutil.objects.Reference2ReferenceMaps;
-import it.unimi.dsi.fastutil.objects.Reference2ReferenceOpenHashMap;
 import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -13,27 +10,49 @@ import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 public class NativeBuffer {
     private static final Logger LOGGER = LogManager.getLogger(NativeBuffer.class);
 
     private static final ReferenceQueue<NativeBuffer> RECLAIM_QUEUE = new ReferenceQueue<>();
-    private static final Reference2ReferenceMap<Reference<NativeBuffer>, BufferReference> ACTIVE_BUFFERS =
-            Reference2ReferenceMaps.synchronize(new Reference2ReferenceOpenHashMap<>());
+    // References don't override equals, so they are compared by identity
+    private static final Map<Reference<NativeBuffer>, BufferReference> ACTIVE_BUFFERS = new ConcurrentHashMap<>();
 
-    private static long ALLOCATED = 0L;
+    // The number of bytes held by live buffers, which can be larger than their lengths if they came from the pool
+    private static final LongAdder ALLOCATED = new LongAdder();
 
     private final BufferReference ref;
 
+    // A hash of the contents, provided by whatever wrote them
+    private long contentHash;
+    private boolean hasContentHash;
+
     public NativeBuffer(int capacity) {
         this.ref = allocate(capacity);
 
         ACTIVE_BUFFERS.put(new PhantomReference<>(this, RECLAIM_QUEUE), this.ref);
     }
 
+    /**
+     * Creates a buffer over memory which is owned by something else, such as a mapped staging buffer. The buffer is
+     * not tracked for leaks, and subclasses are responsible for releasing the memory in {@link NativeBuffer#free()}.
+     */
+    protected NativeBuffer(long address, int length) {
+        this.ref = new BufferReference(address, length, -1, null);
+    }
+
     public static NativeBuffer copy(ByteBuffer src) {
-        NativeBuffer dst = new NativeBuffer(src.remaining());
+        return copy(src, NativeBufferAllocator.DEFAULT);
+    }
+
+    public static NativeBuffer copy(ByteBuffer src, NativeBufferAllocator allocator) {
+        NativeBuffer dst = allocator.allocate(src.remaining());
+        dst.setContentHash(ContentHasher.hash(src));
+
         MemoryUtil.memCopy(src, dst.getDirectBuffer());
         return dst;
     }
@@ -48,10 +67,39 @@ public class NativeBuffer {
         deallocate(this.ref);
     }
 
+    /**
+     * Marks the buffer as freed without releasing its memory, for use by buffers which don't own their memory.
+     */
+    protected void markFreed() {
+        this.ref.checkFreed();
+        this.ref.freed = true;
+    }
+
     public int getLength() {
         return this.ref.length;
     }
 
+    /**
+     * Sets the hash of the contents of this buffer. The hash must be computed from the data the buffer was written
+     * from, as the buffer itself may not be readable.
+     */
+    public void setContentHash(long hash) {
+        this.contentHash = hash;
+        this.hasContentHash = true;
+    }
+
+    /**
+     * @return A hash of the contents of this buffer, which can be used to tell whether two buffers are (almost
+     * certainly) identical without keeping a copy of either of them around
+     */
+    public long getContentHash() {
+        if (!this.hasContentHash) {
+            throw new IllegalStateException("No hash was provided for the contents of the buffer");
+        }
+
+        return this.contentHash;
+    }
+
     public static void reclaim(boolean forceGc) {
         if (forceGc) {
             System.gc();
@@ -81,8 +129,11 @@ public class NativeBuffer {
         }
     }
 
+    /**
+     * @return The number of bytes of native memory held by buffers, including the free blocks kept by the pool
+     */
     public static long getTotalAllocated() {
-        return ALLOCATED;
+        return ALLOCATED.sum() + NativeMemoryPool.getResidentBytes();
     }
 
     private static StackTraceElement[] getStackTrace() {
@@ -93,6 +144,24 @@ public class NativeBuffer {
     private static final int MAX_ALLOCATION_ATTEMPTS = 3;
 
     private static BufferReference allocate(int bytes) {
+        int sizeClass = NativeMemoryPool.getSizeClass(bytes);
+        int blockSize = sizeClass >= 0 ? NativeMemoryPool.getBlockSize(sizeClass) : bytes;
+
+        long address = sizeClass >= 0 ? NativeMemoryPool.take(sizeClass) : MemoryUtil.NULL;
+
+        if (address == MemoryUtil.NULL) {
+            address = allocateBlock(blockSize);
+        }
+
+        StackTraceElement[] stackTrace = getStackTrace();
+
+        BufferReference ref = new BufferReference(address, bytes, sizeClass, stackTrace);
+        ALLOCATED.add(blockSize);
+
+        return ref;
+    }
+
+    private static long allocateBlock(int bytes) {
         long address = 0;
         int attempts = 0;
 
@@ -114,34 +183,39 @@ public class NativeBuffer {
             throw new OutOfMemoryError("Couldn't allocate %s bytes after %s attempts".formatted(bytes, attempts));
         }
 
-        StackTraceElement[] stackTrace = getStackTrace();
-
-        BufferReference ref = new BufferReference(address, bytes, stackTrace);
-        ALLOCATED += ref.length;
-
-        return ref;
+        return address;
     }
 
     private static void deallocate(BufferReference ref) {
         ref.checkFreed();
         ref.freed = true;
 
-        MemoryUtil.nmemFree(ref.address);
+        if (ref.sizeClass >= 0) {
+            NativeMemoryPool.release(ref.sizeClass, ref.address);
+
+            ALLOCATED.add(-NativeMemoryPool.getBlockSize(ref.sizeClass));
+        } else {
+            MemoryUtil.nmemFree(ref.address);
 
-        ALLOCATED -= ref.length;
+            ALLOCATED.add(-ref.length);
+        }
     }
 
     private static class BufferReference {
         public final long address;
         public final int length;
 
+        // The size class of the pooled block backing this buffer, or -1 if the buffer was allocated outside the pool
+        public final int sizeClass;
+
         public final StackTraceElement[] allocationSite;
 
         public boolean freed;
 
-        private BufferReference(long address, int length, StackTraceElement[] allocationSite) {
+        private BufferReference(long address, int length, int sizeClass, StackTraceElement[] allocationSite) {
             this.address = address;
             this.length = length;
+            this.sizeClass = sizeClass;
             this.allocationSite = allocationSite;
         }
 
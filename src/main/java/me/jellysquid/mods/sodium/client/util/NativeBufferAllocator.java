@@ -0,0 +1,19 @@
+package me.jellysquid.mods.sodium.client.util;
+
+/**
+ * Provides the memory for buffers which are handed off to another thread once they have been written, such as the
+ * finished meshes of chunk builder workers.
+ */
+public interface NativeBufferAllocator {
+    NativeBufferAllocator DEFAULT = NativeBuffer::new;
+
+    NativeBuffer allocate(int bytes);
+
+    /**
+     * @return True if the buffers from this allocator can be read back cheaply once written, which is not the case for
+     * write-combined memory shared with the device
+     */
+    default boolean isReadable() {
+        return true;
+    }
+}
@@ -0,0 +1,232 @@
+package me.jellysquid.mods.sodium.client.util;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of native memory blocks which are grouped into power-of-two size classes. Chunk meshes are allocated on the
+ * worker threads and freed on the main thread once they have been uploaded, so freed blocks are handed back through a
+ * shared stack for each size class. Worker threads which opt in with {@link NativeMemoryPool#enableThreadCache()} also
+ * keep a few blocks for themselves in front of the shared stacks, which covers the temporary buffers a worker allocates
+ * and frees while building a mesh. Every other thread, including the main thread, always uses the shared stacks.
+ */
+public class NativeMemoryPool {
+    private static final int MIN_BLOCK_SHIFT = 12; // 4 KiB
+    private static final int MAX_BLOCK_SHIFT = 23; // 8 MiB
+
+    private static final int SIZE_CLASS_COUNT = MAX_BLOCK_SHIFT - MIN_BLOCK_SHIFT + 1;
+
+    /**
+     * The number of blocks of each size class which a thread can keep for itself.
+     */
+    private static final int THREAD_CACHE_SIZE = 4;
+
+    /**
+     * The number of bytes which a thread can keep for itself across all size classes.
+     */
+    private static final long MAX_THREAD_CACHE_BYTES = 16L * 1024L * 1024L;
+
+    /**
+     * The number of bytes which can be kept in the shared stacks, past which freed blocks are returned to the system.
+     */
+    private static final long MAX_SHARED_BYTES = 64L * 1024L * 1024L;
+
+    private static final SharedStack[] SHARED_STACKS = new SharedStack[SIZE_CLASS_COUNT];
+
+    private static final ThreadLocal<ThreadCache> THREAD_CACHES = new ThreadLocal<>();
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    private static final AtomicLong SHARED_BYTES = new AtomicLong();
+    private static final AtomicLong CACHED_BYTES = new AtomicLong();
+
+    static {
+        for (int i = 0; i < SIZE_CLASS_COUNT; i++) {
+            SHARED_STACKS[i] = new SharedStack();
+        }
+    }
+
+    /**
+     * @return The size class of blocks which can hold the given number of bytes, or -1 if the allocation is too large
+     * to be pooled
+     */
+    public static int getSizeClass(int bytes) {
+        if (bytes <= (1 << MIN_BLOCK_SHIFT)) {
+            return 0;
+        }
+
+        int shift = 32 - Integer.numberOfLeadingZeros(bytes - 1);
+
+        return shift <= MAX_BLOCK_SHIFT ? shift - MIN_BLOCK_SHIFT : -1;
+    }
+
+    public static int getBlockSize(int sizeClass) {
+        return 1 << (sizeClass + MIN_BLOCK_SHIFT);
+    }
+
+    /**
+     * Takes a free block of the given size class from the pool.
+     *
+     * @return The address of the block, or {@link MemoryUtil#NULL} if the pool has no free blocks of that size and a
+     * new one needs to be allocated
+     */
+    public static long take(int sizeClass) {
+        ThreadCache cache = THREAD_CACHES.get();
+        long address = cache != null ? cache.take(sizeClass) : MemoryUtil.NULL;
+
+        if (address == MemoryUtil.NULL) {
+            address = SHARED_STACKS[sizeClass].pop();
+
+            if (address != MemoryUtil.NULL) {
+                SHARED_BYTES.addAndGet(-getBlockSize(sizeClass));
+            }
+        }
+
+        if (address != MemoryUtil.NULL) {
+            HITS.increment();
+        } else {
+            MISSES.increment();
+        }
+
+        return address;
+    }
+
+    /**
+     * Returns a block to the pool, or to the system if the pool already holds too much memory.
+     */
+    public static void release(int sizeClass, long address) {
+        ThreadCache cache = THREAD_CACHES.get();
+
+        if (cache == null || !cache.put(sizeClass, address)) {
+            releaseShared(sizeClass, address);
+        }
+    }
+
+    private static void releaseShared(int sizeClass, long address) {
+        int blockSize = getBlockSize(sizeClass);
+
+        if (SHARED_BYTES.addAndGet(blockSize) <= MAX_SHARED_BYTES) {
+            SHARED_STACKS[sizeClass].push(address);
+        } else {
+            SHARED_BYTES.addAndGet(-blockSize);
+
+            MemoryUtil.nmemFree(address);
+        }
+    }
+
+    /**
+     * Lets the current thread keep some of the blocks it frees for itself. This should only be used by threads which
+     * allocate and free blocks themselves, as blocks freed by any other thread would only sit in its cache.
+     * {@link NativeMemoryPool#releaseThreadCache()} must be called before the thread exits.
+     */
+    public static void enableThreadCache() {
+        if (THREAD_CACHES.get() == null) {
+            THREAD_CACHES.set(new ThreadCache());
+        }
+    }
+
+    /**
+     * Moves the blocks kept by the current thread into the shared stacks. This must be called before a thread which
+     * has enabled its cache exits, as the blocks would otherwise be leaked.
+     */
+    public static void releaseThreadCache() {
+        ThreadCache cache = THREAD_CACHES.get();
+
+        if (cache != null) {
+            THREAD_CACHES.remove();
+
+            cache.releaseAll();
+        }
+    }
+
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    /**
+     * @return The number of bytes held by free blocks in the pool
+     */
+    public static long getResidentBytes() {
+        return SHARED_BYTES.get() + CACHED_BYTES.get();
+    }
+
+    private static class ThreadCache {
+        private final long[][] blocks = new long[SIZE_CLASS_COUNT][THREAD_CACHE_SIZE];
+        private final int[] counts = new int[SIZE_CLASS_COUNT];
+
+        private long bytes;
+
+        public long take(int sizeClass) {
+            int count = this.counts[sizeClass];
+
+            if (count == 0) {
+                return MemoryUtil.NULL;
+            }
+
+            this.counts[sizeClass] = --count;
+
+            this.bytes -= getBlockSize(sizeClass);
+            CACHED_BYTES.addAndGet(-getBlockSize(sizeClass));
+
+            return this.blocks[sizeClass][count];
+        }
+
+        public boolean put(int sizeClass, long address) {
+            int count = this.counts[sizeClass];
+            int blockSize = getBlockSize(sizeClass);
+
+            if (count >= THREAD_CACHE_SIZE || this.bytes + blockSize > MAX_THREAD_CACHE_BYTES) {
+                return false;
+            }
+
+            this.blocks[sizeClass][count] = address;
+            this.counts[sizeClass] = count + 1;
+
+            this.bytes += blockSize;
+            CACHED_BYTES.addAndGet(blockSize);
+
+            return true;
+        }
+
+        public void releaseAll() {
+            for (int sizeClass = 0; sizeClass < SIZE_CLASS_COUNT; sizeClass++) {
+                long address;
+
+                while ((address = this.take(sizeClass)) != MemoryUtil.NULL) {
+                    releaseShared(sizeClass, address);
+                }
+            }
+        }
+    }
+
+    private static class SharedStack {
+        private long[] blocks = new long[16];
+        private int count;
+
+        public synchronized long pop() {
+            if (this.count == 0) {
+                return MemoryUtil.NULL;
+            }
+
+            return this.blocks[--this.count];
+        }
+
+        public synchronized void push(long address) {
+            if (this.count == this.blocks.length) {
+                long[] blocks = new long[this.blocks.length * 2];
+                System.arraycopy(this.blocks, 0, blocks, 0, this.count);
+
+                this.blocks = blocks;
+            }
+
+            this.blocks[this.count++] = address;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package me.jellysquid.mods.sodium.client.util.math;
+
+import java.util.Arrays;
+
+/**
+ * A list of axis-aligned bounding boxes which are stored as packed arrays of each coordinate, so that they can be
+ * tested against a frustum together by a {@link BatchFrustumCuller}.
+ */
+public class AabbBatch {
+    float[] minX, minY, minZ;
+    float[] maxX, maxY, maxZ;
+
+    private int size;
+
+    public AabbBatch() {
+        this(256);
+    }
+
+    public AabbBatch(int capacity) {
+        this.minX = new float[capacity];
+        this.minY = new float[capacity];
+        this.minZ = new float[capacity];
+        this.maxX = new float[capacity];
+        this.maxY = new float[capacity];
+        this.maxZ = new float[capacity];
+    }
+
+    /**
+     * Adds a box to the batch.
+     *
+     * @return The index of the box, which its result will be written at
+     */
+    public int add(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int i = this.size;
+
+        if (i == this.minX.length) {
+            this.grow();
+        }
+
+        this.minX[i] = minX;
+        this.minY[i] = minY;
+        this.minZ[i] = minZ;
+        this.maxX[i] = maxX;
+        this.maxY[i] = maxY;
+        this.maxZ[i] = maxZ;
+
+        this.size = i + 1;
+
+        return i;
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, this.minX.length * 2);
+
+        this.minX = Arrays.copyOf(this.minX, capacity);
+        this.minY = Arrays.copyOf(this.minY, capacity);
+        this.minZ = Arrays.copyOf(this.minZ, capacity);
+        this.maxX = Arrays.copyOf(this.maxX, capacity);
+        this.maxY = Arrays.copyOf(this.maxY, capacity);
+        this.maxZ = Arrays.copyOf(this.maxZ, capacity);
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,54 @@
+package me.jellysquid.mods.sodium.client.util.math;
+
+import me.jellysquid.mods.sodium.client.render.chunk.region.RenderRegionVisibility;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Tests many bounding boxes against a frustum at once. The results are the same as testing each box with
+ * {@link FrustumExtended#fastAabbTest} or {@link FrustumExtended#aabbTest}.
+ */
+public interface BatchFrustumCuller {
+    /**
+     * Copies the planes of the given frustum, which every following test will be made against.
+     */
+    void setFrustum(FrustumExtended frustum);
+
+    /**
+     * Tests whether each box in the batch intersects the frustum.
+     *
+     * @param results The array to write the result of each box into, at the same index as the box
+     */
+    void testIntersection(AabbBatch batch, boolean[] results);
+
+    /**
+     * Tests whether each box in the batch is outside, partially inside, or entirely inside the frustum.
+     *
+     * @param results The array to write the result of each box into, at the same index as the box
+     */
+    void testContainment(AabbBatch batch, RenderRegionVisibility[] results);
+
+    /**
+     * Creates a culler which uses the Vector API if the JVM was started with the incubator module available, or a
+     * scalar implementation otherwise.
+     */
+    static BatchFrustumCuller create() {
+        Logger logger = LogManager.getLogger(BatchFrustumCuller.class);
+
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                BatchFrustumCuller culler = (BatchFrustumCuller) Class.forName("me.jellysquid.mods.sodium.client.util.math.VectorFrustumCuller")
+                        .getDeclaredConstructor()
+                        .newInstance();
+
+                logger.info("Using vectorized frustum culling");
+
+                return culler;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                logger.warn("Failed to set up vectorized frustum culling, falling back to scalar code", e);
+            }
+        }
+
+        return new ScalarFrustumCuller();
+    }
+}
@@ -3,6 +3,25 @@ package me.jellysquid.mods.sodium.client.util.math;
 import me.jellysquid.mods.sodium.client.render.chunk.region.RenderRegionVisibility;
 
 public interface FrustumExtended {
+    int PLANE_COUNT = 6;
+
+    /**
+     * The number of floats written by {@link FrustumExtended#writePlanes(float[])}.
+     */
+    int PLANE_DATA_SIZE = (PLANE_COUNT * 4) + 3;
+
+    /**
+     * Writes the (x, y, z, w) of each plane of the frustum into the given array, followed by the position of the
+     * camera which boxes are made relative to before they are tested against the planes.
+     */
+    void writePlanes(float[] planes);
+
+    /**
+     * Writes the combined projection and view matrix of the frustum into the given array as 16 floats in row-major
+     * order. Like the planes, the matrix transforms positions which are relative to the camera.
+     */
+    void writeViewProjection(float[] matrix);
+
     boolean fastAabbTest(float minX, float minY, float minZ, float maxX, float maxY, float maxZ);
 
     RenderRegionVisibility aabbTest(float minX, float minY, float minZ, float maxX, float maxY, float maxZ);
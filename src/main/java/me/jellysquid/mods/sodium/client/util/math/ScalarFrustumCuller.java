@@ -0,0 +1,74 @@
+package me.jellysquid.mods.sodium.client.util.math;
+
+import me.jellysquid.mods.sodium.client.render.chunk.region.RenderRegionVisibility;
+
+/**
+ * Tests each box of a batch in turn, in the same way as the frustum's own tests but without calling through the
+ * frustum for every box.
+ */
+public class ScalarFrustumCuller implements BatchFrustumCuller {
+    final float[] planes = new float[FrustumExtended.PLANE_DATA_SIZE];
+
+    @Override
+    public void setFrustum(FrustumExtended frustum) {
+        frustum.writePlanes(this.planes);
+    }
+
+    @Override
+    public void testIntersection(AabbBatch batch, boolean[] results) {
+        testIntersection(this.planes, batch, 0, batch.size(), results);
+    }
+
+    @Override
+    public void testContainment(AabbBatch batch, RenderRegionVisibility[] results) {
+        testContainment(this.planes, batch, 0, batch.size(), results);
+    }
+
+    static void testIntersection(float[] planes, AabbBatch batch, int start, int end, boolean[] results) {
+        float cx = planes[FrustumExtended.PLANE_COUNT * 4];
+        float cy = planes[FrustumExtended.PLANE_COUNT * 4 + 1];
+        float cz = planes[FrustumExtended.PLANE_COUNT * 4 + 2];
+
+        for (int i = start; i < end; i++) {
+            float minX = batch.minX[i] - cx, minY = batch.minY[i] - cy, minZ = batch.minZ[i] - cz;
+            float maxX = batch.maxX[i] - cx, maxY = batch.maxY[i] - cy, maxZ = batch.maxZ[i] - cz;
+
+            boolean visible = true;
+
+            for (int p = 0; p < FrustumExtended.PLANE_COUNT * 4 && visible; p += 4) {
+                float x = planes[p], y = planes[p + 1], z = planes[p + 2], w = planes[p + 3];
+
+                visible = x * (x < 0 ? minX : maxX) + y * (y < 0 ? minY : maxY) + z * (z < 0 ? minZ : maxZ) >= -w;
+            }
+
+            results[i] = visible;
+        }
+    }
+
+    static void testContainment(float[] planes, AabbBatch batch, int start, int end, RenderRegionVisibility[] results) {
+        float cx = planes[FrustumExtended.PLANE_COUNT * 4];
+        float cy = planes[FrustumExtended.PLANE_COUNT * 4 + 1];
+        float cz = planes[FrustumExtended.PLANE_COUNT * 4 + 2];
+
+        for (int i = start; i < end; i++) {
+            float minX = batch.minX[i] - cx, minY = batch.minY[i] - cy, minZ = batch.minZ[i] - cz;
+            float maxX = batch.maxX[i] - cx, maxY = batch.maxY[i] - cy, maxZ = batch.maxZ[i] - cz;
+
+            boolean visible = true;
+            boolean inside = true;
+
+            for (int p = 0; p < FrustumExtended.PLANE_COUNT * 4 && visible; p += 4) {
+                float x = planes[p], y = planes[p + 1], z = planes[p + 2], w = planes[p + 3];
+
+                visible = x * (x < 0 ? minX : maxX) + y * (y < 0 ? minY : maxY) + z * (z < 0 ? minZ : maxZ) >= -w;
+                inside &= x * (x < 0 ? maxX : minX) + y * (y < 0 ? maxY : minY) + z * (z < 0 ? maxZ : minZ) >= -w;
+            }
+
+            if (!visible) {
+                results[i] = RenderRegionVisibility.CULLED;
+            } else {
+                results[i] = inside ? RenderRegionVisibility.FULLY_VISIBLE : RenderRegionVisibility.VISIBLE;
+            }
+        }
+    }
+}
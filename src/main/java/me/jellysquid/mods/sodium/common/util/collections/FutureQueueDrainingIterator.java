@@ -1,19 +1,41 @@
 package me.jellysquid.mods.sodium.common.util.collections;
 
 import it.unimi.dsi.fastutil.PriorityQueue;
-import me.jellysquid.mods.sodium.client.SodiumClientMod;
 
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Drains a queue of futures in order, waiting for each one to complete. If a deadline is given, the iterator stops
+ * once it has passed and the next future is still not complete, leaving that future and all those after it in the
+ * queue.
+ */
 public class FutureQueueDrainingIterator<T> implements Iterator<T> {
     private final PriorityQueue<CompletableFuture<T>> queue;
+    private final long deadline;
+    private final boolean hasDeadline;
+
     private T next = null;
 
     public FutureQueueDrainingIterator(PriorityQueue<CompletableFuture<T>> queue) {
         this.queue = queue;
+        this.deadline = 0L;
+        this.hasDeadline = false;
+    }
+
+    /**
+     * @param deadline The value of {@link System#nanoTime()} past which the iterator will no longer wait for futures
+     */
+    public FutureQueueDrainingIterator(PriorityQueue<CompletableFuture<T>> queue, long deadline) {
+        this.queue = queue;
+        this.deadline = deadline;
+        this.hasDeadline = true;
     }
 
     @Override
@@ -29,14 +51,38 @@ public class FutureQueueDrainingIterator<T> implements Iterator<T> {
 
     private void findNext() {
         while (!queue.isEmpty()) {
-            CompletableFuture<T> future = queue.dequeue();
+            CompletableFuture<T> future = queue.first();
 
             try {
-                next = future.join();
+                next = this.await(future);
+            } catch (TimeoutException e) {
+                // The future stays at the head of the queue, so that it can be picked up again later
                 return;
             } catch (CancellationException e) {
-                SodiumClientMod.logger().warn("Future was cancelled: {}", future);
+                // The task was superseded by a newer one, so there is nothing to process
+                queue.dequeue();
+                continue;
             }
+
+            queue.dequeue();
+            return;
+        }
+    }
+
+    private T await(CompletableFuture<T> future) throws TimeoutException {
+        if (!this.hasDeadline) {
+            return future.join();
+        }
+
+        try {
+            // Futures which are already complete are always returned, even if the deadline has passed
+            return future.get(Math.max(0L, this.deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new TimeoutException();
         }
     }
 
@@ -22,6 +22,8 @@ public class MixinFrustum implements FrustumExtended {
     private float nzX, nzY, nzZ, nzW;
     private float pzX, pzY, pzZ, pzW;
 
+    private final float[] viewProjection = new float[16];
+
     @Inject(method = "setPosition", at = @At("HEAD"))
     private void prePositionUpdate(double cameraX, double cameraY, double cameraZ, CallbackInfo ci) {
         this.xF = (float) cameraX;
@@ -31,6 +33,10 @@ public class MixinFrustum implements FrustumExtended {
 
     @Inject(method = "transform", at = @At("HEAD"))
     private void transform(Matrix4f mat, int x, int y, int z, int index, CallbackInfo ci) {
+        if (index == 0) {
+            this.captureViewProjection(mat);
+        }
+
         Vector4f vec = new Vector4f((float) x, (float) y, (float) z, 1.0F);
         vec.transform(mat);
         vec.normalize();
@@ -76,6 +82,46 @@ public class MixinFrustum implements FrustumExtended {
         }
     }
 
+    private void captureViewProjection(Matrix4f transposed) {
+        // The planes are extracted from the transpose of the matrix, so transforming each basis vector by it yields
+        // a row of the original matrix
+        for (int row = 0; row < 4; row++) {
+            Vector4f vec = new Vector4f(row == 0 ? 1.0F : 0.0F, row == 1 ? 1.0F : 0.0F, row == 2 ? 1.0F : 0.0F, row == 3 ? 1.0F : 0.0F);
+            vec.transform(transposed);
+
+            this.viewProjection[(row * 4)] = vec.getX();
+            this.viewProjection[(row * 4) + 1] = vec.getY();
+            this.viewProjection[(row * 4) + 2] = vec.getZ();
+            this.viewProjection[(row * 4) + 3] = vec.getW();
+        }
+    }
+
+    @Override
+    public void writeViewProjection(float[] matrix) {
+        System.arraycopy(this.viewProjection, 0, matrix, 0, 16);
+    }
+
+    @Override
+    public void writePlanes(float[] planes) {
+        writePlane(planes, 0, this.nxX, this.nxY, this.nxZ, this.nxW);
+        writePlane(planes, 4, this.pxX, this.pxY, this.pxZ, this.pxW);
+        writePlane(planes, 8, this.nyX, this.nyY, this.nyZ, this.nyW);
+        writePlane(planes, 12, this.pyX, this.pyY, this.pyZ, this.pyW);
+        writePlane(planes, 16, this.nzX, this.nzY, this.nzZ, this.nzW);
+        writePlane(planes, 20, this.pzX, this.pzY, this.pzZ, this.pzW);
+
+        planes[24] = this.xF;
+        planes[25] = this.yF;
+        planes[26] = this.zF;
+    }
+
+    private static void writePlane(float[] planes, int offset, float x, float y, float z, float w) {
+        planes[offset] = x;
+        planes[offset + 1] = y;
+        planes[offset + 2] = z;
+        planes[offset + 3] = w;
+    }
+
     @Override
     public boolean fastAabbTest(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
         return this.isAnyCornerVisible(minX - this.xF, minY - this.yF, minZ - this.zF,
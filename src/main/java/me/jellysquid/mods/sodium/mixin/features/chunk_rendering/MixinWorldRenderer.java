@@ -120,7 +120,8 @@ public abstract class MixinWorldRenderer implements WorldRendererExtended {
      */
     @Overwrite
     public void scheduleBlockRenders(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
-        this.renderer.scheduleRebuildForBlockArea(minX, minY, minZ, maxX, maxY, maxZ, false);
+        // Vanilla also renders the blocks around the area again, as their culled faces and smooth lighting may change
+        this.renderer.scheduleRebuildForBlockArea(minX - 1, minY - 1, minZ - 1, maxX + 1, maxY + 1, maxZ + 1, false);
     }
 
     /**
@@ -4,15 +4,19 @@ import com.google.common.collect.Lists;
 import me.jellysquid.mods.sodium.client.SodiumClientMod;
 import me.jellysquid.mods.sodium.client.render.SodiumWorldRenderer;
 import me.jellysquid.mods.sodium.client.util.NativeBuffer;
+import me.jellysquid.mods.sodium.client.util.NativeMemoryPool;
 import net.minecraft.client.gui.hud.DebugHud;
 import net.minecraft.util.Formatting;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.List;
 
 @Mixin(DebugHud.class)
 public abstract class MixinDebugHud {
@@ -40,6 +44,10 @@ public abstract class MixinDebugHud {
             if (str.startsWith("Allocated:")) {
                 strings.add(i + 1, getNativeMemoryString());
 
+                if (SodiumClientMod.options().advanced.enableMemoryTracing) {
+                    strings.add(i + 2, getNativePoolString());
+                }
+
                 break;
             }
         }
@@ -47,6 +55,22 @@ public abstract class MixinDebugHud {
         return strings;
     }
 
+    @Inject(method = "getLeftText", at = @At("RETURN"))
+    private void appendRenderMetrics(CallbackInfoReturnable<List<String>> cir) {
+        if (!SodiumClientMod.options().advanced.showRenderMetrics) {
+            return;
+        }
+
+        var renderer = SodiumWorldRenderer.instanceNullable();
+
+        if (renderer != null) {
+            List<String> strings = cir.getReturnValue();
+            strings.add("");
+            strings.add(Formatting.UNDERLINE + "Sodium Render Metrics");
+            strings.addAll(renderer.getMetricsDebugStrings());
+        }
+    }
+
     private static String getFormattedVersionText() {
         String version = SodiumClientMod.getVersion();
         Formatting color;
@@ -66,6 +90,13 @@ public abstract class MixinDebugHud {
         return "Off-Heap: +" + toMiB(getNativeMemoryUsage()) + "MB";
     }
 
+    private static String getNativePoolString() {
+        long hits = NativeMemoryPool.getHitCount();
+        long total = hits + NativeMemoryPool.getMissCount();
+
+        return "Native Pool: " + (total > 0 ? (hits * 100 / total) : 0) + "% hits, " + toMiB(NativeMemoryPool.getResidentBytes()) + "MB";
+    }
+
     private static long getNativeMemoryUsage() {
         return ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage().getUsed() + NativeBuffer.getTotalAllocated();
     }
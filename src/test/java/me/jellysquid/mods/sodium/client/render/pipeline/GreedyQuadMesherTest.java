@@ -0,0 +1,254 @@
+package me.jellysquid.mods.sodium.client.render.pipeline;
+
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import me.jellysquid.mods.sodium.client.model.IndexBufferBuilder;
+import me.jellysquid.mods.sodium.client.model.light.data.QuadLightData;
+import me.jellysquid.mods.sodium.client.model.quad.ModelQuadView;
+import me.jellysquid.mods.sodium.client.model.quad.properties.ModelQuadFacing;
+import me.jellysquid.mods.sodium.client.render.chunk.compile.buffers.ChunkModelBuilder;
+import me.jellysquid.mods.sodium.client.render.chunk.format.ModelVertexSink;
+import net.minecraft.client.texture.Sprite;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GreedyQuadMesherTest {
+    private static final float MIN_U = 0.25f, MAX_U = 0.5f;
+    private static final float MIN_V = 0.5f, MAX_V = 0.75f;
+
+    private static final int LIGHT = 0x00F000F0;
+    private static final int CHUNK_ID = 7;
+
+    /**
+     * Models such as the grass block have a second quad on the same face, which is drawn over the first. Both quads
+     * need to be kept, so the mesher must refuse the second one rather than replace the first.
+     */
+    @Test
+    void rejectsSecondQuadOnSameFace() {
+        GreedyQuadMesher mesher = new GreedyQuadMesher();
+
+        Sprite base = createSprite(16);
+        Sprite overlay = createSprite(16);
+
+        QuadLightData light = createLight();
+        BlockPos origin = new BlockPos(3, 4, 5);
+
+        assertTrue(mesher.add(ModelQuadFacing.UP, origin, new TopQuad(base), null, light));
+        assertFalse(mesher.add(ModelQuadFacing.UP, origin, new TopQuad(overlay), null, light));
+
+        // Faces of other blocks are still accepted
+        assertTrue(mesher.add(ModelQuadFacing.UP, origin.east(), new TopQuad(overlay), null, light));
+    }
+
+    /**
+     * A 3x2 area of identical top faces should be written as a single quad spanning the whole area, with the sprite
+     * tiled across it three times along the x-axis and twice along the z-axis.
+     */
+    @Test
+    void mergesIdenticalFaces() {
+        GreedyQuadMesher mesher = new GreedyQuadMesher();
+
+        // A 32x32 sprite is twice the base size, so its scale is stored as 1
+        Sprite sprite = createSprite(32);
+        QuadLightData light = createLight();
+
+        for (int x = 2; x < 5; x++) {
+            for (int z = 5; z < 7; z++) {
+                assertTrue(mesher.add(ModelQuadFacing.UP, new BlockPos(x, 4, z), new TopQuad(sprite), null, light));
+            }
+        }
+
+        RecordingModelBuilder builder = new RecordingModelBuilder();
+        mesher.flush(builder);
+
+        RecordingVertexSink vertices = builder.vertices;
+        assertEquals(4, vertices.getVertexCount());
+        assertEquals(6, builder.getIndexBufferBuilder(ModelQuadFacing.UP).getCount());
+        assertEquals(List.of(sprite), builder.sprites);
+
+        // The corners of the merged quad, and how many times the sprite has been tiled at each of them
+        float[][] positions = { { 2, 5, 5 }, { 5, 5, 5 }, { 5, 5, 7 }, { 2, 5, 7 } };
+        int[][] tiles = { { 0, 0 }, { 3, 0 }, { 3, 2 }, { 0, 2 } };
+
+        int expectedChunkId = CHUNK_ID | GreedyQuadMesher.GREEDY_QUAD_FLAG | (1 << GreedyQuadMesher.SPRITE_SCALE_SHIFT);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(positions[i][0], vertices.get(i, 0));
+            assertEquals(positions[i][1], vertices.get(i, 1));
+            assertEquals(positions[i][2], vertices.get(i, 2));
+
+            assertEquals(0xFFFFFFFF, vertices.colors.getInt(i));
+            assertEquals(MIN_U, vertices.texCoords.getFloat(i * 2));
+            assertEquals(MIN_V, vertices.texCoords.getFloat((i * 2) + 1));
+
+            int expectedLight = LIGHT | ((tiles[i][0] + GreedyQuadMesher.TILE_COORD_BIAS) << 8) |
+                    ((tiles[i][1] + GreedyQuadMesher.TILE_COORD_BIAS) << 24);
+
+            assertEquals(expectedLight, vertices.light.getInt(i));
+            assertEquals(expectedChunkId, vertices.chunkIds.getInt(i));
+        }
+    }
+
+    private static QuadLightData createLight() {
+        QuadLightData light = new QuadLightData();
+        Arrays.fill(light.br, 1.0f);
+        Arrays.fill(light.lm, LIGHT);
+
+        return light;
+    }
+
+    /**
+     * Sprites can't be created without a texture atlas and native image, so a mock which only provides the size and
+     * bounds read by the mesher is used instead.
+     */
+    private static Sprite createSprite(int size) {
+        Sprite sprite = mock(Sprite.class);
+
+        when(sprite.getWidth()).thenReturn(size);
+        when(sprite.getHeight()).thenReturn(size);
+        when(sprite.getMinU()).thenReturn(MIN_U);
+        when(sprite.getMaxU()).thenReturn(MAX_U);
+        when(sprite.getMinV()).thenReturn(MIN_V);
+        when(sprite.getMaxV()).thenReturn(MAX_V);
+
+        return sprite;
+    }
+
+    private static class RecordingModelBuilder implements ChunkModelBuilder {
+        private final RecordingVertexSink vertices = new RecordingVertexSink();
+        private final Map<ModelQuadFacing, IndexBufferBuilder> indices = new EnumMap<>(ModelQuadFacing.class);
+        private final List<Sprite> sprites = new ArrayList<>();
+
+        @Override
+        public ModelVertexSink getVertexSink() {
+            return this.vertices;
+        }
+
+        @Override
+        public IndexBufferBuilder getIndexBufferBuilder(ModelQuadFacing facing) {
+            return this.indices.computeIfAbsent(facing, key -> new IndexBufferBuilder(6));
+        }
+
+        @Override
+        public void addSprite(Sprite sprite) {
+            this.sprites.add(sprite);
+        }
+
+        @Override
+        public int getChunkId() {
+            return CHUNK_ID;
+        }
+    }
+
+    private static class RecordingVertexSink implements ModelVertexSink {
+        private final FloatArrayList positions = new FloatArrayList();
+        private final FloatArrayList texCoords = new FloatArrayList();
+        private final IntArrayList colors = new IntArrayList();
+        private final IntArrayList light = new IntArrayList();
+        private final IntArrayList chunkIds = new IntArrayList();
+
+        @Override
+        public void writeVertex(float posX, float posY, float posZ, int color, float u, float v, int light, int chunkId) {
+            this.positions.add(posX);
+            this.positions.add(posY);
+            this.positions.add(posZ);
+            this.texCoords.add(u);
+            this.texCoords.add(v);
+            this.colors.add(color);
+            this.light.add(light);
+            this.chunkIds.add(chunkId);
+        }
+
+        float get(int vertex, int axis) {
+            return this.positions.getFloat((vertex * 3) + axis);
+        }
+
+        @Override
+        public void ensureCapacity(int count) {
+
+        }
+
+        @Override
+        public void flush() {
+
+        }
+
+        @Override
+        public int getVertexCount() {
+            return this.colors.size();
+        }
+    }
+
+    /**
+     * A quad covering the top face of a block, with the whole sprite mapped across it.
+     */
+    private record TopQuad(Sprite sprite) implements ModelQuadView {
+        private static final float[] X = new float[] { 0.0f, 1.0f, 1.0f, 0.0f };
+        private static final float[] Z = new float[] { 0.0f, 0.0f, 1.0f, 1.0f };
+
+        @Override
+        public float getX(int idx) {
+            return X[idx];
+        }
+
+        @Override
+        public float getY(int idx) {
+            return 1.0f;
+        }
+
+        @Override
+        public float getZ(int idx) {
+            return Z[idx];
+        }
+
+        @Override
+        public int getColor(int idx) {
+            return 0xFFFFFFFF;
+        }
+
+        @Override
+        public float getTexU(int idx) {
+            return X[idx] == 0.0f ? MIN_U : MAX_U;
+        }
+
+        @Override
+        public float getTexV(int idx) {
+            return Z[idx] == 0.0f ? MIN_V : MAX_V;
+        }
+
+        @Override
+        public int getFlags() {
+            return 0;
+        }
+
+        @Override
+        public int getLight(int idx) {
+            return 0;
+        }
+
+        @Override
+        public int getNormal(int idx) {
+            return 0;
+        }
+
+        @Override
+        public int getColorIndex() {
+            return -1;
+        }
+
+        @Override
+        public Sprite getSprite() {
+            return this.sprite;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package me.jellysquid.mods.sodium.client.util.math;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import me.jellysquid.mods.sodium.client.render.chunk.region.RenderRegionVisibility;
+
+/**
+ * Tests as many boxes at once as fit into a vector register using the Vector API. The planes are the same for every
+ * box, so which corner of the boxes is tested against each plane is picked once per plane rather than once per box.
+ * Any boxes left over at the end of a batch are tested with scalar code.
+ *
+ * This class must only be loaded when the jdk.incubator.vector module is available, see
+ * {@link BatchFrustumCuller#create()}.
+ */
+class VectorFrustumCuller extends ScalarFrustumCuller {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void testIntersection(AabbBatch batch, boolean[] results) {
+        float[] planes = this.planes;
+
+        float cx = planes[FrustumExtended.PLANE_COUNT * 4];
+        float cy = planes[FrustumExtended.PLANE_COUNT * 4 + 1];
+        float cz = planes[FrustumExtended.PLANE_COUNT * 4 + 2];
+
+        int size = batch.size();
+        int bound = SPECIES.loopBound(size);
+
+        int i = 0;
+
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector minX = FloatVector.fromArray(SPECIES, batch.minX, i).sub(cx);
+            FloatVector minY = FloatVector.fromArray(SPECIES, batch.minY, i).sub(cy);
+            FloatVector minZ = FloatVector.fromArray(SPECIES, batch.minZ, i).sub(cz);
+            FloatVector maxX = FloatVector.fromArray(SPECIES, batch.maxX, i).sub(cx);
+            FloatVector maxY = FloatVector.fromArray(SPECIES, batch.maxY, i).sub(cy);
+            FloatVector maxZ = FloatVector.fromArray(SPECIES, batch.maxZ, i).sub(cz);
+
+            VectorMask<Float> visible = SPECIES.maskAll(true);
+
+            for (int p = 0; p < FrustumExtended.PLANE_COUNT * 4; p += 4) {
+                float x = planes[p], y = planes[p + 1], z = planes[p + 2], w = planes[p + 3];
+
+                FloatVector dot = (x < 0 ? minX : maxX).mul(x)
+                        .add((y < 0 ? minY : maxY).mul(y))
+                        .add((z < 0 ? minZ : maxZ).mul(z));
+
+                visible = visible.and(dot.compare(VectorOperators.GE, -w));
+            }
+
+            visible.intoArray(results, i);
+        }
+
+        testIntersection(planes, batch, i, size, results);
+    }
+
+    @Override
+    public void testContainment(AabbBatch batch, RenderRegionVisibility[] results) {
+        float[] planes = this.planes;
+
+        float cx = planes[FrustumExtended.PLANE_COUNT * 4];
+        float cy = planes[FrustumExtended.PLANE_COUNT * 4 + 1];
+        float cz = planes[FrustumExtended.PLANE_COUNT * 4 + 2];
+
+        int size = batch.size();
+        int bound = SPECIES.loopBound(size);
+
+        int i = 0;
+
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector minX = FloatVector.fromArray(SPECIES, batch.minX, i).sub(cx);
+            FloatVector minY = FloatVector.fromArray(SPECIES, batch.minY, i).sub(cy);
+            FloatVector minZ = FloatVector.fromArray(SPECIES, batch.minZ, i).sub(cz);
+            FloatVector maxX = FloatVector.fromArray(SPECIES, batch.maxX, i).sub(cx);
+            FloatVector maxY = FloatVector.fromArray(SPECIES, batch.maxY, i).sub(cy);
+            FloatVector maxZ = FloatVector.fromArray(SPECIES, batch.maxZ, i).sub(cz);
+
+            VectorMask<Float> visible = SPECIES.maskAll(true);
+            VectorMask<Float> inside = SPECIES.maskAll(true);
+
+            for (int p = 0; p < FrustumExtended.PLANE_COUNT * 4; p += 4) {
+                float x = planes[p], y = planes[p + 1], z = planes[p + 2], w = planes[p + 3];
+
+                FloatVector near = (x < 0 ? minX : maxX).mul(x)
+                        .add((y < 0 ? minY : maxY).mul(y))
+                        .add((z < 0 ? minZ : maxZ).mul(z));
+
+                FloatVector far = (x < 0 ? maxX : minX).mul(x)
+                        .add((y < 0 ? maxY : minY).mul(y))
+                        .add((z < 0 ? maxZ : minZ).mul(z));
+
+                visible = visible.and(near.compare(VectorOperators.GE, -w));
+                inside = inside.and(far.compare(VectorOperators.GE, -w));
+            }
+
+            long visibleBits = visible.toLong();
+            long insideBits = inside.toLong();
+
+            for (int lane = 0; lane < SPECIES.length(); lane++) {
+                if ((visibleBits & (1L << lane)) == 0) {
+                    results[i + lane] = RenderRegionVisibility.CULLED;
+                } else {
+                    results[i + lane] = (insideBits & (1L << lane)) != 0 ? RenderRegionVisibility.FULLY_VISIBLE : RenderRegionVisibility.VISIBLE;
+                }
+            }
+        }
+
+        testContainment(planes, batch, i, size, results);
+    }
+}